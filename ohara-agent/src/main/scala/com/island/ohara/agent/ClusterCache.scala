@@ -29,6 +29,7 @@ import com.island.ohara.client.configurator.v0.ZookeeperApi.ZookeeperClusterInfo
 import com.island.ohara.common.annotations.{Optional, VisibleForTesting}
 import com.island.ohara.common.cache.RefreshableCache
 import com.island.ohara.common.util.{CommonUtils, Releasable}
+import com.island.ohara.metrics.cache.CacheMetrics
 
 import scala.collection.JavaConverters._
 import scala.concurrent.duration.{Duration, _}
@@ -157,10 +158,28 @@ object ClusterCache {
           .frequency(java.time.Duration.ofMillis(frequency.toMillis))
           .preRemoveObserver((key, _) => CommonUtils.current() - key.createdTime > lazyRemove.toMillis)
           .build()
+        private[this] val metrics = CacheMetrics.builder().name("cluster").statistics(cache.statistics()).build()
 
-        override def close(): Unit = Releasable.close(cache)
+        override def close(): Unit = {
+          Releasable.close(metrics)
+          Releasable.close(cache)
+        }
 
-        override def snapshot: Map[ClusterInfo, Seq[ContainerInfo]] = cache.snapshot().asScala.toMap.values.toMap
+        /**
+          * the converted snapshot and its version. It is reused until the cached data are changed.
+          */
+        @volatile private[this] var converted: (Long, Map[ClusterInfo, Seq[ContainerInfo]]) = (-1L, Map.empty)
+
+        override def snapshot: Map[ClusterInfo, Seq[ContainerInfo]] = {
+          val version = cache.version()
+          val current = converted
+          if (current._1 == version) current._2
+          else {
+            val data = cache.snapshot().asScala.toMap.values.toMap
+            converted = version -> data
+            data
+          }
+        }
 
         override def requestUpdate(): Unit = cache.requestUpdate()
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.SettableFuture;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * The loader used by {@link Cache}. Guava cache guarantees that a key is loaded or reloaded by only
+ * one thread at the same time, and this loader adds two features.
+ *
+ * <ul>
+ *   <li>the reload is executed by {@link RefreshScheduler} so the reader gets the stale value
+ *       rather than waiting for the reload.
+ *   <li>if there is a bulk fetcher, the keys loaded or reloaded within the batch window are fetched
+ *       by a single call.
+ * </ul>
+ *
+ * If the load is called by a scheduler thread (for example, a refresh function reading another
+ * cache), the pending batch is flushed by the caller rather than waiting for the scheduler.
+ * Otherwise, the scheduler could be filled by the callers waiting for the flushes which can never
+ * run.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class BatchingLoader<K, V> extends CacheLoader<K, V> {
+  private final Function<K, V> fetcher;
+  private final Function<Set<K>, Map<K, V>> bulkFetcher;
+  private final Duration batchWindow;
+  private final RefreshScheduler scheduler;
+  private final LoadRecorder recorder = new LoadRecorder();
+  private final Object lock = new Object();
+  private Map<K, SettableFuture<V>> batch = null;
+
+  /**
+   * @param fetcher the fetcher of single key. It is null if bulk fetcher is used
+   * @param bulkFetcher the fetcher of many keys. It is null if fetcher is used
+   * @param batchWindow the time to collect the keys for bulk fetcher
+   * @param scheduler the threads running reload and bulk fetcher
+   */
+  BatchingLoader(
+      Function<K, V> fetcher,
+      Function<Set<K>, Map<K, V>> bulkFetcher,
+      Duration batchWindow,
+      RefreshScheduler scheduler) {
+    this.fetcher = fetcher;
+    this.bulkFetcher = bulkFetcher;
+    this.batchWindow = batchWindow;
+    this.scheduler = scheduler;
+  }
+
+  /** @return the recorder of fetcher and bulk fetcher */
+  LoadRecorder recorder() {
+    return recorder;
+  }
+
+  @Override
+  public V load(K key) {
+    if (bulkFetcher == null) return recorder.record(() -> fetcher.apply(key));
+    try {
+      ListenableFuture<V> future = enqueue(key);
+      if (RefreshScheduler.isSchedulerThread()) flush();
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public ListenableFuture<V> reload(K key, V oldValue) {
+    try {
+      if (bulkFetcher != null) return enqueue(key);
+      ListenableFutureTask<V> task =
+          ListenableFutureTask.create(() -> recorder.record(() -> fetcher.apply(key)));
+      scheduler.execute(task);
+      return task;
+    } catch (RejectedExecutionException e) {
+      // the scheduler is closed so we keep the old value
+      return Futures.immediateFuture(oldValue);
+    }
+  }
+
+  private ListenableFuture<V> enqueue(K key) {
+    synchronized (lock) {
+      if (batch == null) {
+        scheduler.schedule(this::flush, batchWindow);
+        batch = new HashMap<>();
+      }
+      return batch.computeIfAbsent(key, k -> SettableFuture.create());
+    }
+  }
+
+  private void flush() {
+    Map<K, SettableFuture<V>> current;
+    synchronized (lock) {
+      current = batch;
+      batch = null;
+    }
+    // the batch is flushed by the caller already
+    if (current == null) return;
+    try {
+      Map<K, V> values =
+          recorder.record(() -> bulkFetcher.apply(Collections.unmodifiableSet(current.keySet())));
+      current.forEach(
+          (key, future) -> {
+            V value = values.get(key);
+            if (value == null)
+              future.setException(
+                  new IllegalStateException("the bulk fetcher doesn't return the value of " + key));
+            else future.set(value);
+          });
+    } catch (Throwable e) {
+      current.values().forEach(future -> future.setException(e));
+    }
+  }
+}
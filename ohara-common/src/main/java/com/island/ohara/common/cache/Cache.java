@@ -17,7 +17,6 @@
 package com.island.ohara.common.cache;
 
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.island.ohara.common.annotations.Optional;
 import com.island.ohara.common.util.CommonUtils;
@@ -26,8 +25,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
@@ -35,8 +36,9 @@ import java.util.function.Function;
  * speed up some slow data access. However, using guava cache in whole ohara is overkill so we wrap
  * it to offer a more simple version to other modules. In this wrap, we offer two kind of behavior
  * of getting data from cache. The first is **blockingOnGet** which will block all get when the
- * associated key-value is timeout. Another is non-blocking on get which only blocks the first call
- * when the associated key-value is timeout, and the other call will get out-of-date value.
+ * associated key-value is timeout. Another is non-blocking on get which reloads the timeout value
+ * in background, and all calls get the out-of-date value until the reload is done. In both cases, a
+ * key is loaded by only one thread at the same time.
  *
  * @param <K> key type
  * @param <V> value type
@@ -83,24 +85,55 @@ public interface Cache<K, V> {
   /** Remove all entries in this cache. */
   void clear();
 
+  /** @return the statistics of this cache */
+  CacheStatistics statistics();
+
   static <K, V> Builder<K, V> builder() {
     return new Builder<>();
   }
 
   class Builder<K, V> implements com.island.ohara.common.pattern.Builder<Cache<K, V>> {
-    private int maxSize = 1000;
+    private Integer maxSize = null;
+    private Long maxWeight = null;
+    private BiFunction<K, V, Integer> weigher = null;
     private Duration timeout = Duration.ofSeconds(5);
     private boolean blockingOnGet = false;
     private Function<K, V> fetcher = null;
+    private Function<Set<K>, Map<K, V>> bulkFetcher = null;
+    private Duration batchWindow = Duration.ofMillis(10);
+    private RefreshScheduler scheduler = null;
 
     private Builder() {}
 
-    @Optional("Default value is 1000")
+    @Optional("Default value is 1000 if there is no maxWeight")
     public Builder<K, V> maxSize(int maxSize) {
       this.maxSize = CommonUtils.requirePositiveInt(maxSize);
       return this;
     }
 
+    /**
+     * Bound the cache by the total weight rather than the number of entries. It can't be used with
+     * maxSize.
+     *
+     * @param maxWeight the max total weight. If the default weigher is used, the unit is byte
+     * @return this builder
+     */
+    @Optional("default is no weight bound")
+    public Builder<K, V> maxWeight(long maxWeight) {
+      this.maxWeight = CommonUtils.requirePositiveLong(maxWeight);
+      return this;
+    }
+
+    /**
+     * @param weigher the function to calculate the weight of key-value. It requires maxWeight
+     * @return this builder
+     */
+    @Optional("default is SizeEstimator")
+    public Builder<K, V> weigher(BiFunction<K, V, Integer> weigher) {
+      this.weigher = Objects.requireNonNull(weigher);
+      return this;
+    }
+
     @Optional("Default value is 5 seconds")
     public Builder<K, V> timeout(Duration timeout) {
       this.timeout = Objects.requireNonNull(timeout);
@@ -126,37 +159,72 @@ public interface Cache<K, V> {
       return this;
     }
 
+    /**
+     * the function to load the value of single key. It can't be used with {@link
+     * #bulkFetcher(Function)}.
+     *
+     * @param fetcher fetcher
+     * @return this builder
+     */
     public Builder<K, V> fetcher(Function<K, V> fetcher) {
       this.fetcher = Objects.requireNonNull(fetcher);
       return this;
     }
 
+    /**
+     * the function to load the values of many keys. The keys loaded or reloaded within the {@link
+     * #batchWindow(Duration)} are collected and then fetched by a single call. It can't be used
+     * with {@link #fetcher(Function)}.
+     *
+     * @param bulkFetcher bulk fetcher. It must return the values of all input keys
+     * @return this builder
+     */
+    public Builder<K, V> bulkFetcher(Function<Set<K>, Map<K, V>> bulkFetcher) {
+      this.bulkFetcher = Objects.requireNonNull(bulkFetcher);
+      return this;
+    }
+
+    /**
+     * @param batchWindow the time to collect the keys for {@link #bulkFetcher(Function)}
+     * @return this builder
+     */
+    @Optional("Default value is 10 milliseconds")
+    public Builder<K, V> batchWindow(Duration batchWindow) {
+      this.batchWindow = Objects.requireNonNull(batchWindow);
+      return this;
+    }
+
+    /**
+     * The scheduler running the reload and bulk fetcher. The reload is executed in background so
+     * the non-blocking get returns the out-of-date value rather than waiting for the reload.
+     *
+     * @param scheduler scheduler
+     * @return this builder
+     */
+    @Optional("default is RefreshScheduler.shared()")
+    public Builder<K, V> scheduler(RefreshScheduler scheduler) {
+      this.scheduler = Objects.requireNonNull(scheduler);
+      return this;
+    }
+
     @Override
     public Cache<K, V> build() {
-      Objects.requireNonNull(fetcher);
+      if (fetcher != null && bulkFetcher != null)
+        throw new IllegalArgumentException("fetcher and bulkFetcher can't be used together");
+      if (fetcher == null) Objects.requireNonNull(bulkFetcher);
+      if (scheduler == null) scheduler = RefreshScheduler.shared();
+      CacheBuilder<K, V> builder = CacheBuilders.bounded(maxSize, maxWeight, weigher);
+      // guava cache guarantees that a key is loaded by single thread
+      BatchingLoader<K, V> loader =
+          new BatchingLoader<>(fetcher, bulkFetcher, batchWindow, scheduler);
       return new Cache<K, V>() {
         private final LoadingCache<K, V> cache =
             blockingOnGet
-                ? CacheBuilder.newBuilder()
-                    .maximumSize(maxSize)
-                    .expireAfterWrite(timeout.toMillis(), TimeUnit.MILLISECONDS)
-                    .build(
-                        new CacheLoader<K, V>() {
-                          @Override
-                          public V load(K key) {
-                            return fetcher.apply(key);
-                          }
-                        })
-                : CacheBuilder.newBuilder()
-                    .maximumSize(maxSize)
+                ? builder.expireAfterWrite(timeout.toMillis(), TimeUnit.MILLISECONDS).build(loader)
+                : builder
                     .refreshAfterWrite(timeout.toMillis(), TimeUnit.MILLISECONDS)
-                    .build(
-                        new CacheLoader<K, V>() {
-                          @Override
-                          public V load(K key) {
-                            return fetcher.apply(key);
-                          }
-                        });
+                    .build(loader);
+        private final CacheStatistics statistics = loader.recorder().statistics(cache::stats);
 
         @Override
         public V get(K key) {
@@ -187,6 +255,11 @@ public interface Cache<K, V> {
         public void clear() {
           cache.invalidateAll();
         }
+
+        @Override
+        public CacheStatistics statistics() {
+          return statistics;
+        }
       };
     }
   }
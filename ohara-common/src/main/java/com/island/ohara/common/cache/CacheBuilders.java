@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import com.google.common.cache.CacheBuilder;
+import java.util.function.BiFunction;
+
+/** the helper methods shared by {@link Cache.Builder} and {@link RefreshableCache.Builder}. */
+final class CacheBuilders {
+  /** the default max number of entries */
+  static final int DEFAULT_MAX_SIZE = 1000;
+
+  /**
+   * create a guava cache builder bounded by either size or weight.
+   *
+   * @param maxSize the max number of entries. null means the default value
+   * @param maxWeight the max total weight. null means the cache is bounded by size
+   * @param weigher weigher. null means {@link SizeEstimator}
+   * @param <K> key type
+   * @param <V> value type
+   * @return guava cache builder which records stats
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> CacheBuilder<K, V> bounded(
+      Integer maxSize, Long maxWeight, BiFunction<K, V, Integer> weigher) {
+    if (maxSize != null && maxWeight != null)
+      throw new IllegalArgumentException("maxSize and maxWeight can't be used together");
+    if (weigher != null && maxWeight == null)
+      throw new IllegalArgumentException("weigher requires maxWeight");
+    if (maxWeight == null)
+      return (CacheBuilder<K, V>)
+          CacheBuilder.newBuilder()
+              .maximumSize(maxSize == null ? DEFAULT_MAX_SIZE : maxSize)
+              .recordStats();
+    BiFunction<K, V, Integer> w = weigher == null ? SizeEstimator::weigh : weigher;
+    return CacheBuilder.newBuilder()
+        .maximumWeight(maxWeight)
+        .weigher((K key, V value) -> w.apply(key, value))
+        .recordStats();
+  }
+
+  private CacheBuilders() {}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The statistics of {@link Cache} and {@link RefreshableCache}. The values are accumulated since
+ * the cache is created, and each call returns the latest value. A load is a call to the fetcher of
+ * {@link Cache} or to the supplier of {@link RefreshableCache}.
+ */
+public interface CacheStatistics {
+
+  /** the upper bounds of load time used by {@link #loadTimeDistribution()} */
+  List<Duration> LOAD_TIME_BOUNDS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              Duration.ofMillis(1),
+              Duration.ofMillis(10),
+              Duration.ofMillis(100),
+              Duration.ofSeconds(1),
+              Duration.ofSeconds(10)));
+
+  /** @return the number of get which finds the cached value */
+  long hitCount();
+
+  /** @return the number of get which doesn't find the cached value */
+  long missCount();
+
+  /** @return the number of values evicted by size or timeout */
+  long evictionCount();
+
+  /** @return the number of completed load */
+  long loadCount();
+
+  /** @return the number of failed load */
+  long loadFailureCount();
+
+  /** @return the total time of load */
+  Duration totalLoadTime();
+
+  /** @return the max time of load */
+  Duration maxLoadTime();
+
+  /**
+   * @return the number of load in each range of time. The element i counts the load which is slower
+   *     than the bound i - 1 and not slower than the bound i in {@link #LOAD_TIME_BOUNDS}. The last
+   *     element counts the load which is slower than all bounds.
+   */
+  long[] loadTimeDistribution();
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A supplier offering the changes since a version. It is used by {@link RefreshableCache} to avoid
+ * pulling and comparing all key-values in each refresh. The version is a opaque token generated by
+ * the supplier, and the cache passes the version of latest delta to the next call.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+@FunctionalInterface
+public interface DeltaSupplier<K, V> {
+
+  /** the version passed to the first call. The supplier should return a full delta for it. */
+  long INITIAL_VERSION = -1;
+
+  /**
+   * @param version the version of latest delta, or {@link #INITIAL_VERSION} in first call
+   * @return the changes since the version
+   */
+  Delta<K, V> get(long version);
+
+  /**
+   * The changes of key-values.
+   *
+   * @param <K> key type
+   * @param <V> value type
+   */
+  final class Delta<K, V> {
+
+    /**
+     * @param version version
+     * @param <K> key type
+     * @param <V> value type
+     * @return a delta having no changes
+     */
+    public static <K, V> Delta<K, V> unchanged(long version) {
+      return new Delta<>(Collections.emptyMap(), Collections.emptySet(), version, false);
+    }
+
+    /**
+     * @param upserts the added or updated key-values
+     * @param deletions the removed keys
+     * @param version the version of this delta
+     * @param <K> key type
+     * @param <V> value type
+     * @return a delta
+     */
+    public static <K, V> Delta<K, V> of(Map<K, V> upserts, Set<K> deletions, long version) {
+      return new Delta<>(upserts, deletions, version, false);
+    }
+
+    /**
+     * a full delta replaces all cached key-values. It is useful when the supplier can't generate
+     * the changes since the version, for example, the version is too old.
+     *
+     * @param data all key-values
+     * @param version the version of this delta
+     * @param <K> key type
+     * @param <V> value type
+     * @return a full delta
+     */
+    public static <K, V> Delta<K, V> full(Map<K, V> data, long version) {
+      return new Delta<>(data, Collections.emptySet(), version, true);
+    }
+
+    private final Map<K, V> upserts;
+    private final Set<K> deletions;
+    private final long version;
+    private final boolean full;
+
+    private Delta(Map<K, V> upserts, Set<K> deletions, long version, boolean full) {
+      this.upserts = Objects.requireNonNull(upserts);
+      this.deletions = Objects.requireNonNull(deletions);
+      this.version = version;
+      this.full = full;
+    }
+
+    /** @return the added or updated key-values. It carries all key-values if this delta is full */
+    public Map<K, V> upserts() {
+      return upserts;
+    }
+
+    /** @return the removed keys */
+    public Set<K> deletions() {
+      return deletions;
+    }
+
+    /** @return the version of this delta */
+    public long version() {
+      return version;
+    }
+
+    /** @return true if this delta replaces all cached key-values */
+    public boolean isFull() {
+      return full;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import com.google.common.cache.CacheStats;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * record the time of load, and generate the {@link CacheStatistics} with the hit/miss/eviction
+ * counted by guava cache.
+ */
+final class LoadRecorder {
+  private static final long[] BOUNDS =
+      CacheStatistics.LOAD_TIME_BOUNDS.stream().mapToLong(Duration::toNanos).toArray();
+  private final AtomicLong count = new AtomicLong(0);
+  private final AtomicLong failureCount = new AtomicLong(0);
+  private final AtomicLong totalTime = new AtomicLong(0);
+  private final AtomicLong maxTime = new AtomicLong(0);
+  private final AtomicLongArray distribution = new AtomicLongArray(BOUNDS.length + 1);
+
+  <T> T record(Supplier<T> load) {
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      T value = load.get();
+      failed = false;
+      return value;
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      if (failed) failureCount.incrementAndGet();
+      count.incrementAndGet();
+      totalTime.addAndGet(elapsed);
+      maxTime.accumulateAndGet(elapsed, Math::max);
+      int index = 0;
+      while (index != BOUNDS.length && elapsed > BOUNDS[index]) ++index;
+      distribution.incrementAndGet(index);
+    }
+  }
+
+  /**
+   * @param stats the stats of guava cache. Noted that the cache must be built with recordStats
+   * @return statistics
+   */
+  CacheStatistics statistics(Supplier<CacheStats> stats) {
+    return new CacheStatistics() {
+      @Override
+      public long hitCount() {
+        return stats.get().hitCount();
+      }
+
+      @Override
+      public long missCount() {
+        return stats.get().missCount();
+      }
+
+      @Override
+      public long evictionCount() {
+        return stats.get().evictionCount();
+      }
+
+      @Override
+      public long loadCount() {
+        return count.get();
+      }
+
+      @Override
+      public long loadFailureCount() {
+        return failureCount.get();
+      }
+
+      @Override
+      public Duration totalLoadTime() {
+        return Duration.ofNanos(totalTime.get());
+      }
+
+      @Override
+      public Duration maxLoadTime() {
+        return Duration.ofNanos(maxTime.get());
+      }
+
+      @Override
+      public long[] loadTimeDistribution() {
+        long[] values = new long[distribution.length()];
+        for (int i = 0; i != values.length; ++i) values[i] = distribution.get(i);
+        return values;
+      }
+    };
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.common.util.Releasable;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded thread pool shared by many {@link RefreshableCache}. Each cache registers its refresh
+ * function and frequency, and the scheduler runs the function periodically. It is also used by
+ * {@link Cache} to reload the values in background. The rules of refresh are shown below.
+ *
+ * <ul>
+ *   <li>the delay of each refresh is jittered by 10% so the caches created at the same time don't
+ *       refresh at the same time.
+ *   <li>a refresh function is never executed concurrently. Hence, a slow function occupies at most
+ *       one thread and other caches are refreshed by the other threads.
+ *   <li>the concurrent {@link Task#requestUpdate()} are coalesced to a single refresh.
+ *   <li>the next refresh is scheduled after the current refresh is completed.
+ * </ul>
+ */
+public final class RefreshScheduler implements Releasable {
+  private static final Logger LOG = LoggerFactory.getLogger(RefreshScheduler.class);
+
+  /** the default number of threads. The refresh functions are usually blocked by remote calls. */
+  private static final int DEFAULT_THREADS =
+      Math.max(4, Runtime.getRuntime().availableProcessors());
+
+  private static volatile RefreshScheduler shared = null;
+
+  /** true if current thread is created by a scheduler */
+  private static final ThreadLocal<Boolean> SCHEDULER_THREAD = ThreadLocal.withInitial(() -> false);
+
+  /**
+   * @return the scheduler shared by all caches which don't specify the scheduler. It is never
+   *     closed.
+   */
+  public static RefreshScheduler shared() {
+    if (shared == null) {
+      synchronized (RefreshScheduler.class) {
+        if (shared == null) shared = new RefreshScheduler(DEFAULT_THREADS);
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * @param numberOfThreads the max number of concurrent refresh
+   * @return a new scheduler
+   */
+  public static RefreshScheduler of(int numberOfThreads) {
+    return new RefreshScheduler(CommonUtils.requirePositiveInt(numberOfThreads));
+  }
+
+  private final ScheduledThreadPoolExecutor executor;
+
+  private RefreshScheduler(int numberOfThreads) {
+    AtomicInteger threadCount = new AtomicInteger(0);
+    this.executor =
+        new ScheduledThreadPoolExecutor(
+            numberOfThreads,
+            r -> {
+              Thread thread =
+                  new Thread(
+                      () -> {
+                        SCHEDULER_THREAD.set(true);
+                        r.run();
+                      },
+                      "refresh-scheduler-" + threadCount.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            });
+    // the tasks of closed caches should be removed from the queue
+    this.executor.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * register a refresh function. The first refresh happens after the frequency.
+   *
+   * @param refresher refresh function
+   * @param frequency the time to run the function
+   * @return a task used to request update or cancel the refresh
+   */
+  public Task register(Runnable refresher, Duration frequency) {
+    if (executor.isShutdown()) throw new IllegalStateException("scheduler is closed!!!");
+    Task task = new Task(Objects.requireNonNull(refresher), Objects.requireNonNull(frequency));
+    task.scheduleNext();
+    return task;
+  }
+
+  /**
+   * The caller running on a scheduler thread should not block on the work scheduled to a scheduler
+   * since all threads may be blocked by such callers.
+   *
+   * @return true if current thread is created by a scheduler
+   */
+  static boolean isSchedulerThread() {
+    return SCHEDULER_THREAD.get();
+  }
+
+  /**
+   * run a one-shot action by the threads of this scheduler.
+   *
+   * @param action action
+   */
+  void execute(Runnable action) {
+    executor.execute(action);
+  }
+
+  /**
+   * run a one-shot action after the delay by the threads of this scheduler.
+   *
+   * @param action action
+   * @param delay delay
+   */
+  void schedule(Runnable action, Duration delay) {
+    executor.schedule(action, delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void close() {
+    if (this == shared) throw new UnsupportedOperationException("the shared scheduler is immortal");
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(30, TimeUnit.SECONDS))
+        throw new IllegalStateException("failed to release scheduler");
+    } catch (InterruptedException e) {
+      throw new IllegalStateException("failed to release scheduler", e);
+    }
+  }
+
+  /** The statistics of refresh. */
+  public interface Statistics {
+    /** @return the number of completed refresh */
+    long refreshCount();
+
+    /** @return the number of failed refresh */
+    long failureCount();
+
+    /** @return the elapsed time of latest refresh */
+    Duration lastDuration();
+
+    /** @return the max elapsed time of refresh */
+    Duration maxDuration();
+
+    /** @return the total elapsed time of refresh */
+    Duration totalDuration();
+  }
+
+  /** A registered refresh function. */
+  public final class Task implements Statistics, Releasable {
+    private final Runnable refresher;
+    private final long frequency;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean requested = new AtomicBoolean(false);
+    private final AtomicLong refreshCount = new AtomicLong(0);
+    private final AtomicLong failureCount = new AtomicLong(0);
+    private final AtomicLong lastDuration = new AtomicLong(0);
+    private final AtomicLong maxDuration = new AtomicLong(0);
+    private final AtomicLong totalDuration = new AtomicLong(0);
+    private ScheduledFuture<?> next = null;
+    /** the thread running the refresh. It is used to avoid waiting for itself */
+    private volatile Thread runner = null;
+
+    private Task(Runnable refresher, Duration frequency) {
+      this.refresher = refresher;
+      this.frequency = Math.max(1, frequency.toMillis());
+    }
+
+    /**
+     * request a refresh right now. It doesn't block the caller, and the requests arriving before
+     * the refresh are coalesced to a single refresh.
+     */
+    public void requestUpdate() {
+      if (closed.get()) throw new IllegalStateException("task is closed!!!");
+      if (requested.compareAndSet(false, true)) executor.execute(this::runRequested);
+    }
+
+    /** the request may be handled by another refresh already. */
+    private void runRequested() {
+      if (requested.get()) run();
+    }
+
+    private void run() {
+      if (closed.get()) return;
+      // the running refresh will check the request after it is done
+      if (!running.compareAndSet(false, true)) return;
+      // the task may be closed after the first check. The closer either sees the running flag or
+      // this check sees the closed flag.
+      if (closed.get()) {
+        idle();
+        return;
+      }
+      synchronized (this) {
+        runner = Thread.currentThread();
+      }
+      try {
+        requested.set(false);
+        long start = System.nanoTime();
+        try {
+          refresher.run();
+        } catch (Throwable e) {
+          failureCount.incrementAndGet();
+          LOG.error("failed to refresh", e);
+        } finally {
+          long elapsed = System.nanoTime() - start;
+          lastDuration.set(elapsed);
+          maxDuration.accumulateAndGet(elapsed, Math::max);
+          totalDuration.addAndGet(elapsed);
+          refreshCount.incrementAndGet();
+        }
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        idle();
+      }
+      if (requested.get()) executor.execute(this::runRequested);
+      else scheduleNext();
+    }
+
+    private synchronized void idle() {
+      running.set(false);
+      notifyAll();
+    }
+
+    /**
+     * wait for the running refresh. It is used after {@link #close()} to make sure the refresh
+     * function is not running. NOTED: it returns true immediately if it is called by the refresh
+     * function since the refresh can't wait for itself.
+     *
+     * @param timeout the max time to wait
+     * @return true if there is no running refresh (excluding the caller)
+     * @throws InterruptedException if the caller is interrupted
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+      if (runner == Thread.currentThread()) return true;
+      long deadline = System.nanoTime() + timeout.toNanos();
+      synchronized (this) {
+        while (running.get()) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) return false;
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * interrupt the running refresh. It is used after {@link #close()} to stop the refresh blocked
+     * by a remote call. Nothing happens if there is no running refresh.
+     */
+    public synchronized void interrupt() {
+      // the runner is cleared under the lock so the thread is not running other task
+      if (runner != null && runner != Thread.currentThread()) runner.interrupt();
+    }
+
+    private synchronized void scheduleNext() {
+      if (closed.get()) return;
+      if (next != null) next.cancel(false);
+      long jitter = frequency / 10;
+      long delay =
+          jitter == 0
+              ? frequency
+              : frequency + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+      next = executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long refreshCount() {
+      return refreshCount.get();
+    }
+
+    @Override
+    public long failureCount() {
+      return failureCount.get();
+    }
+
+    @Override
+    public Duration lastDuration() {
+      return Duration.ofNanos(lastDuration.get());
+    }
+
+    @Override
+    public Duration maxDuration() {
+      return Duration.ofNanos(maxDuration.get());
+    }
+
+    @Override
+    public Duration totalDuration() {
+      return Duration.ofNanos(totalDuration.get());
+    }
+
+    /**
+     * cancel the refresh. The running refresh is not interrupted (see {@link #interrupt()}), and
+     * the caller can wait for it by {@link #awaitIdle(Duration)}.
+     */
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        synchronized (this) {
+          if (next != null) next.cancel(false);
+          next = null;
+        }
+      }
+    }
+  }
+}
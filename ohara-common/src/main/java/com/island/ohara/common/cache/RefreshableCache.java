@@ -23,19 +23,22 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A cache with auto-refresh function. It invokes a inner thread to loop the refresh function, which
- * offers the latest key-values to the cache. The use case is that you really really really hate the
- * wait of reloading the new value for timeout key. The inner thread keeps feeding the thread on the
- * key-values supplied by you. Noted that it doesn't guarantee that all your get call won't be
- * blocked anymore since the first call submitted by you is still blocked. Noted that {@link
- * RefreshableCache.Builder#supplier} will clean up all cached data and then pull all generated data
- * from to cache.
+ * A cache with auto-refresh function. The refresh function, which offers the latest key-values to
+ * the cache, is executed by a {@link RefreshScheduler} so many caches can share a few threads. The
+ * use case is that you really really really hate the wait of reloading the new value for timeout
+ * key. The scheduler keeps feeding the cache on the key-values supplied by you. Noted that it
+ * doesn't guarantee that all your get call won't be blocked anymore since the first call submitted
+ * by you is still blocked. Noted that {@link RefreshableCache.Builder#supplier} will clean up all
+ * cached data and then pull all generated data from to cache.
  *
  * @param <K> key type
  * @param <V> value type
@@ -57,12 +60,22 @@ public interface RefreshableCache<K, V> extends Releasable {
   Optional<V> get(K key);
 
   /**
-   * snapshot all cached key-value pairs
+   * snapshot all cached key-value pairs. The snapshot is reused until the cached data are changed,
+   * so it is cheap to call this method frequently.
    *
    * @return a unmodified map
    */
   Map<K, V> snapshot();
 
+  /**
+   * The version is increased when the cached data are changed by refresh, put, remove, clear or
+   * eviction. The snapshots having same version carry same data, so the caller can skip the work if
+   * the version is not changed.
+   *
+   * @return the version of cached data
+   */
+  long version();
+
   /**
    * update the key-value stored in this cache. the previous value will be replaced.
    *
@@ -94,6 +107,17 @@ public interface RefreshableCache<K, V> extends Releasable {
    */
   void requestUpdate();
 
+  /** @return the statistics of this cache. The load is the call to supplier */
+  CacheStatistics statistics();
+
+  /**
+   * Close this cache. The running supplier is interrupted and this method waits for it for a while.
+   * It doesn't throw exception if the supplier is still running after the wait, and the data
+   * supplied after closing are discarded.
+   */
+  @Override
+  void close();
+
   Logger LOG = LoggerFactory.getLogger(RefreshableCache.class);
 
   static <K, V> Builder<K, V> builder() {
@@ -101,26 +125,78 @@ public interface RefreshableCache<K, V> extends Releasable {
   }
 
   class Builder<K, V> implements com.island.ohara.common.pattern.Builder<RefreshableCache<K, V>> {
-    private int maxSize = 1000;
+    /** the max time to wait for the running supplier when closing cache */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private Integer maxSize = null;
+    private Long maxWeight = null;
+    private BiFunction<K, V, Integer> weigher = null;
     private Duration timeout = null;
     private Duration frequency = Duration.ofSeconds(5);
     private Supplier<Map<K, V>> supplier = null;
+    private DeltaSupplier<K, V> deltaSupplier = null;
     /** the default value accept all remove request. */
     private BiFunction<K, V, Boolean> preRemoveObserver = (k, v) -> true;
 
+    private RefreshScheduler scheduler = null;
+
     private Builder() {}
 
-    @com.island.ohara.common.annotations.Optional("Default value is 1000")
+    @com.island.ohara.common.annotations.Optional("Default value is 1000 if there is no maxWeight")
     public Builder<K, V> maxSize(int maxSize) {
       this.maxSize = CommonUtils.requirePositiveInt(maxSize);
       return this;
     }
 
+    /**
+     * Bound the cache by the total weight rather than the number of entries. It can't be used with
+     * maxSize.
+     *
+     * @param maxWeight the max total weight. If the default weigher is used, the unit is byte
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is no weight bound")
+    public Builder<K, V> maxWeight(long maxWeight) {
+      this.maxWeight = CommonUtils.requirePositiveLong(maxWeight);
+      return this;
+    }
+
+    /**
+     * @param weigher the function to calculate the weight of key-value. It requires maxWeight
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is SizeEstimator")
+    public Builder<K, V> weigher(BiFunction<K, V, Integer> weigher) {
+      this.weigher = Objects.requireNonNull(weigher);
+      return this;
+    }
+
+    /**
+     * the function to supply all data to cache. The cached data which are not in the supplied data
+     * are removed. It can't be used with {@link #deltaSupplier(DeltaSupplier)}.
+     *
+     * @param supplier supplier
+     * @return this builder
+     */
     public Builder<K, V> supplier(Supplier<Map<K, V>> supplier) {
       this.supplier = Objects.requireNonNull(supplier);
       return this;
     }
 
+    /**
+     * the function to supply the changes since the latest refresh. The unchanged data cost nothing
+     * since the cache is not scanned. It can't be used with {@link #supplier(Supplier)}. If the
+     * cached data are evicted (by timeout, maxSize or maxWeight), removed or cleared, the next call
+     * gets {@link DeltaSupplier#INITIAL_VERSION} so as to reload all data.
+     *
+     * @param deltaSupplier delta supplier
+     * @return this builder
+     */
+    public Builder<K, V> deltaSupplier(DeltaSupplier<K, V> deltaSupplier) {
+      this.deltaSupplier = Objects.requireNonNull(deltaSupplier);
+      return this;
+    }
+
     /**
      * This function is invoked when cache prepare to remove the data. Through this function, you
      * can save your data from the update process.
@@ -159,75 +235,160 @@ public interface RefreshableCache<K, V> extends Releasable {
       return this;
     }
 
+    /**
+     * The scheduler running the refresh. The caches sharing a scheduler share its threads so there
+     * is no dedicated thread for each cache.
+     *
+     * @param scheduler scheduler
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is RefreshScheduler.shared()")
+    public Builder<K, V> scheduler(RefreshScheduler scheduler) {
+      this.scheduler = Objects.requireNonNull(scheduler);
+      return this;
+    }
+
     @Override
     public RefreshableCache<K, V> build() {
-      Objects.requireNonNull(supplier);
+      if (scheduler == null) scheduler = RefreshScheduler.shared();
+      if (supplier != null && deltaSupplier != null)
+        throw new IllegalArgumentException("supplier and deltaSupplier can't be used together");
+      if (supplier == null) Objects.requireNonNull(deltaSupplier);
       Objects.requireNonNull(frequency);
       Objects.requireNonNull(preRemoveObserver);
+      Objects.requireNonNull(scheduler);
+      // the version of cached data
+      AtomicLong version = new AtomicLong(0);
+      // true if some data are dropped without the supplier knowing. It forces a full delta
+      AtomicBoolean dropped = new AtomicBoolean(false);
+      CacheBuilder<K, V> builder =
+          CacheBuilders.bounded(maxSize, maxWeight, weigher)
+              .removalListener(
+                  notification -> {
+                    // the explicit removal and replacement are counted by the caller
+                    if (notification.wasEvicted()) {
+                      version.incrementAndGet();
+                      dropped.set(true);
+                    }
+                  });
       com.google.common.cache.Cache<K, V> cache =
           timeout == null
-              ? CacheBuilder.newBuilder().maximumSize(maxSize).build()
-              : CacheBuilder.newBuilder()
-                  .maximumSize(maxSize)
-                  .expireAfterWrite(timeout.toMillis(), TimeUnit.MILLISECONDS)
-                  .build();
-      ExecutorService service = Executors.newSingleThreadExecutor();
+              ? builder.build()
+              : builder.expireAfterWrite(timeout.toMillis(), TimeUnit.MILLISECONDS).build();
       AtomicBoolean closed = new AtomicBoolean(false);
-      BlockingQueue<Boolean> queue = new ArrayBlockingQueue<>(1);
-      service.execute(
-          () -> {
-            while (!closed.get()) {
-              try {
-                // we use wait/notify instead of TimeUnit.sleep since we enable caller to wake up
-                // this inner thread
-                // to update the cache.
-                queue.poll(frequency.toMillis(), TimeUnit.MILLISECONDS);
-              } catch (InterruptedException e) {
-                closed.set(true);
-                break;
-              }
-              try {
-                // DON'T clear cache in first phase since the supplier may fail
-                Map<K, V> data = supplier.get();
-                Map<K, V> oldData = new HashMap<>(cache.asMap());
-                oldData.forEach(
+      Consumer<Map<? extends K, ? extends V>> putAll =
+          data ->
+              data.forEach(
+                  (key, value) -> {
+                    if (!Objects.equals(cache.asMap().put(key, value), value))
+                      version.incrementAndGet();
+                  });
+      BiConsumer<K, V> remove =
+          (key, value) -> {
+            if (cache.asMap().remove(key, value)) version.incrementAndGet();
+          };
+      Consumer<Map<K, V>> replace =
+          data -> {
+            // DON'T clear cache in first phase since the supplier may fail. The view of guava cache
+            // is safe to iterate concurrently so we don't need to copy it.
+            cache
+                .asMap()
+                .forEach(
                     (key, value) -> {
                       if (!data.containsKey(key) && preRemoveObserver.apply(key, value))
-                        cache.invalidate(key);
+                        remove.accept(key, value);
                     });
-                cache.putAll(data);
-              } catch (Throwable e) {
-                LOG.error("failed to update cache", e);
+            putAll.accept(data);
+          };
+      LoadRecorder recorder = new LoadRecorder();
+      Runnable refresher;
+      if (supplier != null)
+        refresher =
+            () -> {
+              Map<K, V> data = supplier.get();
+              // the data supplied after closing are discarded
+              if (!closed.get()) replace.accept(data);
+            };
+      else {
+        // the refresh is never executed concurrently so it is ok to update the version without lock
+        AtomicLong deltaVersion = new AtomicLong(DeltaSupplier.INITIAL_VERSION);
+        refresher =
+            () -> {
+              // the unchanged delta never sends the evicted, removed or cleared data again so we
+              // request a full delta. Noted: if the cache is too small to keep all data, the
+              // eviction happens in each refresh and so all refreshes are full.
+              cache.cleanUp();
+              if (dropped.getAndSet(false)) deltaVersion.set(DeltaSupplier.INITIAL_VERSION);
+              DeltaSupplier.Delta<K, V> delta =
+                  Objects.requireNonNull(deltaSupplier.get(deltaVersion.get()));
+              // the data supplied after closing are discarded
+              if (closed.get()) return;
+              if (delta.isFull()) replace.accept(delta.upserts());
+              else {
+                delta
+                    .deletions()
+                    .forEach(
+                        key -> {
+                          // asMap().get does not count hit or miss
+                          V value = cache.asMap().get(key);
+                          if (value != null && preRemoveObserver.apply(key, value))
+                            remove.accept(key, value);
+                        });
+                putAll.accept(delta.upserts());
               }
-            }
-            LOG.info("refreshable cache is gone");
-          });
+              deltaVersion.set(delta.version());
+            };
+      }
+      // the load time includes the update of cache so the load count is increased after the update
+      RefreshScheduler.Task task =
+          scheduler.register(
+              () ->
+                  recorder.record(
+                      () -> {
+                        refresher.run();
+                        return null;
+                      }),
+              frequency);
+      CacheStatistics statistics = recorder.statistics(cache::stats);
       return new RefreshableCache<K, V>() {
+        private long snapshotVersion = -1;
+        private Map<K, V> snapshot = null;
 
         @Override
         public void requestUpdate() {
           if (closed.get()) throw new IllegalStateException("cache is closed!!!");
-          // we don't care for the return value since the false means that another thread invoke a
-          // update request at the same time.
-          queue.offer(true);
+          // the concurrent requests are coalesced by the scheduler
+          task.requestUpdate();
+        }
+
+        @Override
+        public CacheStatistics statistics() {
+          return statistics;
         }
 
         @Override
         public void close() {
           if (closed.compareAndSet(false, true)) {
-            service.shutdownNow();
+            task.close();
+            // the supplier may be blocked by a remote call so we interrupt it rather than waiting
+            // for it. The supplier ignoring the interrupt keeps running but its data are discarded
+            task.interrupt();
             try {
-              if (!service.awaitTermination(30, TimeUnit.SECONDS))
-                throw new IllegalStateException("failed to release cache");
+              if (!task.awaitIdle(CLOSE_TIMEOUT))
+                LOG.warn("the refresh is still running after " + CLOSE_TIMEOUT);
             } catch (InterruptedException e) {
-              throw new IllegalStateException("failed to release cache", e);
+              Thread.currentThread().interrupt();
             }
+            LOG.info("refreshable cache is gone");
           }
         }
 
         @Override
         public void remove(K key) {
-          cache.invalidate(key);
+          if (cache.asMap().remove(key) != null) {
+            version.incrementAndGet();
+            dropped.set(true);
+          }
         }
 
         @Override
@@ -237,15 +398,30 @@ public interface RefreshableCache<K, V> extends Releasable {
         }
 
         @Override
-        public Map<K, V> snapshot() {
+        public synchronized Map<K, V> snapshot() {
+          if (closed.get()) throw new IllegalStateException("cache is closed!!!");
+          // trigger the eviction of timeout data so the version is up-to-date
+          cache.cleanUp();
+          long current = version.get();
+          if (snapshot == null || snapshotVersion != current) {
+            // the data may be changed in copying but it is ok since the version is changed also.
+            snapshot = Collections.unmodifiableMap(new HashMap<>(cache.asMap()));
+            snapshotVersion = current;
+          }
+          return snapshot;
+        }
+
+        @Override
+        public long version() {
           if (closed.get()) throw new IllegalStateException("cache is closed!!!");
-          return Collections.unmodifiableMap(new HashMap<>(cache.asMap()));
+          cache.cleanUp();
+          return version.get();
         }
 
         @Override
         public void put(Map<? extends K, ? extends V> map) {
           if (closed.get()) throw new IllegalStateException("cache is closed!!!");
-          cache.putAll(map);
+          putAll.accept(map);
         }
 
         @Override
@@ -258,6 +434,8 @@ public interface RefreshableCache<K, V> extends Releasable {
         public void clear() {
           if (closed.get()) throw new IllegalStateException("cache is closed!!!");
           cache.invalidateAll();
+          version.incrementAndGet();
+          dropped.set(true);
         }
       };
     }
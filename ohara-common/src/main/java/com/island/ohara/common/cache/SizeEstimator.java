@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A rough estimator of heap size. It is the default weigher of {@link Cache} and {@link
+ * RefreshableCache}. The estimation is based on 64-bit jvm with compressed oops, and it counts the
+ * nested elements of collection, map and array. The object which is not supported is estimated as
+ * {@link #UNKNOWN_SIZE} bytes, so you should define your weigher if the values are custom objects.
+ */
+public final class SizeEstimator {
+  /** the size of unsupported object */
+  public static final int UNKNOWN_SIZE = 64;
+
+  private static final int HEADER = 16;
+  private static final int REFERENCE = 4;
+  /** the size of node of linked collection or hash map */
+  private static final int NODE = 32;
+  /** the elements deeper than this level are estimated as unknown objects */
+  private static final int MAX_DEPTH = 8;
+
+  /**
+   * @param key key
+   * @param value value
+   * @return the estimated size of key and value. It is never bigger than {@link Integer#MAX_VALUE}
+   */
+  public static int weigh(Object key, Object value) {
+    return (int) Math.min(Integer.MAX_VALUE, estimate(key, 0) + estimate(value, 0));
+  }
+
+  /**
+   * @param obj object
+   * @return the estimated size of object. It is never bigger than {@link Integer#MAX_VALUE}
+   */
+  public static int estimate(Object obj) {
+    return (int) Math.min(Integer.MAX_VALUE, estimate(obj, 0));
+  }
+
+  private static long estimate(Object obj, int depth) {
+    if (obj == null || obj instanceof Enum) return 0;
+    if (depth > MAX_DEPTH) return UNKNOWN_SIZE;
+    if (obj instanceof CharSequence) return HEADER * 3 + 2L * ((CharSequence) obj).length();
+    if (obj instanceof Number || obj instanceof Boolean || obj instanceof Character) return HEADER;
+    if (obj instanceof Optional)
+      return HEADER + estimate(((Optional<?>) obj).orElse(null), depth + 1);
+    if (obj instanceof Collection) {
+      long size = HEADER * 3;
+      for (Object element : (Collection<?>) obj) size += NODE + estimate(element, depth + 1);
+      return size;
+    }
+    if (obj instanceof Map) {
+      long size = HEADER * 3;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet())
+        size += NODE + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+      return size;
+    }
+    Class<?> clazz = obj.getClass();
+    if (clazz.isArray()) {
+      int length = Array.getLength(obj);
+      Class<?> component = clazz.getComponentType();
+      if (!component.isPrimitive()) {
+        long size = HEADER + (long) REFERENCE * length;
+        for (Object element : (Object[]) obj) size += estimate(element, depth + 1);
+        return size;
+      }
+      if (component == byte.class || component == boolean.class) return HEADER + length;
+      if (component == short.class || component == char.class) return HEADER + 2L * length;
+      if (component == int.class || component == float.class) return HEADER + 4L * length;
+      return HEADER + 8L * length;
+    }
+    return UNKNOWN_SIZE;
+  }
+
+  private SizeEstimator() {}
+}
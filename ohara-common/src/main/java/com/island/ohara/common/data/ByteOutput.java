@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A minimal output used by the built-in serializers. It enables the serializers to write data to
+ * byte array, {@link ByteBuffer} and {@link OutputStream} by same code without creating the
+ * intermediate arrays. All numbers are written in big-endian, which is same to {@link
+ * com.island.ohara.common.util.ByteUtils}.
+ */
+abstract class ByteOutput {
+
+  /**
+   * @param bytes the array to write
+   * @param offset the start position
+   * @return an output writing data to the array
+   */
+  static ByteOutput of(byte[] bytes, int offset) {
+    return new ByteOutput() {
+      private int position = offset;
+
+      @Override
+      void write(byte b) {
+        bytes[position++] = b;
+      }
+
+      @Override
+      void write(byte[] src, int offset, int length) {
+        System.arraycopy(src, offset, bytes, position, length);
+        position += length;
+      }
+    };
+  }
+
+  /**
+   * @param buffer the buffer to write. The data is written from current position and the position
+   *     is moved also.
+   * @return an output writing data to the buffer
+   */
+  static ByteOutput of(ByteBuffer buffer) {
+    Objects.requireNonNull(buffer);
+    return new ByteOutput() {
+      @Override
+      void write(byte b) {
+        buffer.put(b);
+      }
+
+      @Override
+      void write(byte[] src, int offset, int length) {
+        buffer.put(src, offset, length);
+      }
+    };
+  }
+
+  /**
+   * @param output the stream to write. The IOException is wrapped by IllegalArgumentException.
+   * @return an output writing data to the stream
+   */
+  static ByteOutput of(OutputStream output) {
+    Objects.requireNonNull(output);
+    return new ByteOutput() {
+      @Override
+      void write(byte b) {
+        try {
+          output.write(b);
+        } catch (IOException e) {
+          throw new IllegalArgumentException(e);
+        }
+      }
+
+      @Override
+      void write(byte[] src, int offset, int length) {
+        try {
+          output.write(src, offset, length);
+        } catch (IOException e) {
+          throw new IllegalArgumentException(e);
+        }
+      }
+    };
+  }
+
+  abstract void write(byte b);
+
+  abstract void write(byte[] src, int offset, int length);
+
+  final void write(byte[] src) {
+    write(src, 0, src.length);
+  }
+
+  final void writeShort(short value) {
+    write((byte) (value >>> 8));
+    write((byte) value);
+  }
+
+  final void writeInt(int value) {
+    write((byte) (value >>> 24));
+    write((byte) (value >>> 16));
+    write((byte) (value >>> 8));
+    write((byte) value);
+  }
+
+  final void writeLong(long value) {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+
+  /**
+   * write the non-negative int by varint. Each byte carries 7 bits and the highest bit is used to
+   * represent whether there are more bytes.
+   *
+   * @param value non-negative int
+   */
+  final void writeVarint(int value) {
+    while ((value & ~0x7F) != 0) {
+      write((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    write((byte) value);
+  }
+
+  /**
+   * write the UTF-8 bytes of string. The unpaired surrogate is replaced by '?' and it is what
+   * {@link String#getBytes} does.
+   *
+   * @param value string
+   */
+  final void writeUtf8(String value) {
+    for (int i = 0; i != value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c < 0x80) write((byte) c);
+      else if (c < 0x800) {
+        write((byte) (0xC0 | (c >>> 6)));
+        write((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        write((byte) (0xF0 | (codePoint >>> 18)));
+        write((byte) (0x80 | ((codePoint >>> 12) & 0x3F)));
+        write((byte) (0x80 | ((codePoint >>> 6) & 0x3F)));
+        write((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) write((byte) '?');
+      else {
+        write((byte) (0xE0 | (c >>> 12)));
+        write((byte) (0x80 | ((c >>> 6) & 0x3F)));
+        write((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  /**
+   * @param value non-negative int
+   * @return the number of bytes used by varint
+   */
+  static int sizeOfVarint(int value) {
+    if (value < 0) throw new IllegalArgumentException(value + " should be bigger than zero");
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      ++size;
+    }
+    return size;
+  }
+
+  /**
+   * compute the size of string encoded by UTF-8. see {@link #writeUtf8(String)}.
+   *
+   * @param value string
+   * @return the number of bytes
+   */
+  static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i != value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c < 0x80) length += 1;
+      else if (c < 0x800) length += 2;
+      else if (Character.isHighSurrogate(c)
+          && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        ++i;
+      } else if (Character.isSurrogate(c)) length += 1;
+      else length += 3;
+    }
+    return length;
+  }
+}
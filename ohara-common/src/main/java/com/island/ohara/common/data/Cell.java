@@ -17,6 +17,7 @@
 package com.island.ohara.common.data;
 
 import com.island.ohara.common.util.ByteUtils;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.stream.IntStream;
 
@@ -35,6 +36,64 @@ public interface Cell<T> {
   /** @return value from cell */
   T value();
 
+  /**
+   * the primitive cells return the type directly. Other cells check the value to find the type.
+   *
+   * @return the data type of value
+   */
+  default DataType dataType() {
+    return DataType.from(value());
+  }
+
+  static BooleanCell of(String name, boolean value) {
+    return new BooleanCell(name, value);
+  }
+
+  static ByteCell of(String name, byte value) {
+    return new ByteCell(name, value);
+  }
+
+  static ShortCell of(String name, short value) {
+    return new ShortCell(name, value);
+  }
+
+  static IntCell of(String name, int value) {
+    return new IntCell(name, value);
+  }
+
+  static LongCell of(String name, long value) {
+    return new LongCell(name, value);
+  }
+
+  static FloatCell of(String name, float value) {
+    return new FloatCell(name, value);
+  }
+
+  static DoubleCell of(String name, double value) {
+    return new DoubleCell(name, value);
+  }
+
+  /**
+   * char is not a primitive type of {@link DataType}. This method is used to avoid converting char
+   * to int implicitly.
+   *
+   * @param name name
+   * @param value char
+   * @return a cell carrying {@link Character}
+   */
+  static Cell<Character> of(String name, char value) {
+    return of(name, Character.valueOf(value));
+  }
+
+  /**
+   * create a cell. NOTED: the primitive value is stored by the primitive cells (for example, {@link
+   * IntCell}) so the boxing is avoided.
+   *
+   * @param name name
+   * @param value value
+   * @param <T> value type
+   * @return cell
+   */
   static <T> Cell<T> of(String name, T value) {
     Objects.requireNonNull(name);
     Objects.requireNonNull(value);
@@ -64,7 +123,10 @@ public interface Cell<T> {
               IntStream.range(0, bs.length)
                   .map(i -> bs[i])
                   .reduce(1, (hash, current) -> hash * 31 + current);
-        } else valueHash = value().hashCode();
+        } else if (value().getClass().isArray())
+          // the hash of wrapper is 31 + hash of array
+          valueHash = Arrays.deepHashCode(new Object[] {value()}) - 31;
+        else valueHash = value().hashCode();
         return name().hashCode() * 31 + valueHash;
       }
 
@@ -77,6 +139,8 @@ public interface Cell<T> {
           if (value() instanceof byte[] && that.value() instanceof byte[])
             return name().equals(that.name())
                 && ByteUtils.equals((byte[]) value(), (byte[]) that.value());
+          if (value().getClass().isArray())
+            return name().equals(that.name()) && Objects.deepEquals(value(), that.value());
           return name().equals(that.name()) && value().equals(that.value());
         }
         return false;
@@ -19,7 +19,6 @@ package com.island.ohara.common.data;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Stream;
 
 public enum DataType {
   BYTES((short) 0),
@@ -32,7 +31,18 @@ public enum DataType {
   DOUBLE((short) 7),
   STRING((short) 8),
   OBJECT((short) 9),
-  ROW((short) 10);
+  ROW((short) 10),
+  /** {@link java.sql.Timestamp}. It is stored as the microseconds since epoch */
+  TIMESTAMP((short) 11),
+  /** {@link java.sql.Date}. It is stored as the days since epoch */
+  DATE((short) 12),
+  /** {@link java.math.BigDecimal}. It is stored as the scale and unscaled bytes */
+  DECIMAL((short) 13),
+  /**
+   * the java array of BOOLEAN, SHORT, INT, LONG, FLOAT, DOUBLE, STRING, BYTES, ROW, TIMESTAMP, DATE
+   * or DECIMAL. For example, int[] and String[]. NOTED: byte[] is BYTES rather than ARRAY
+   */
+  ARRAY((short) 14);
 
   public final short order;
 
@@ -43,10 +53,8 @@ public enum DataType {
    * @return Data type
    */
   public static DataType of(short order) {
-    return Stream.of(DataType.values())
-        .filter(t -> t.order == order)
-        .findFirst()
-        .orElseThrow(() -> new IllegalArgumentException("unknown order:" + order));
+    if (order >= 0 && order < ORDERS.length && ORDERS[order] != null) return ORDERS[order];
+    throw new IllegalArgumentException("unknown order:" + order);
   }
 
   /**
@@ -66,12 +74,30 @@ public enum DataType {
     else if (obj instanceof Double) return DOUBLE;
     else if (obj instanceof String) return STRING;
     else if (obj instanceof Row) return ROW;
+    else if (obj instanceof java.sql.Timestamp) return TIMESTAMP;
+    else if (obj instanceof java.sql.Date) return DATE;
+    else if (obj instanceof java.math.BigDecimal) return DECIMAL;
+    else if (obj.getClass().isArray()
+        && LogicalTypes.elementType(obj.getClass().getComponentType()) != null) return ARRAY;
     else if (obj instanceof Serializable) return OBJECT;
     else throw new UnsupportedOperationException(obj.getClass() + " is not supported");
   }
 
   public static final List<DataType> all = Arrays.asList(DataType.values());
 
+  /** the lookup table used by {@link #of(short)}. It is faster than iterating all types. */
+  private static final DataType[] ORDERS =
+      new DataType[all.stream().mapToInt(type -> type.order).max().orElse(0) + 1];
+
+  static {
+    all.forEach(
+        type -> {
+          if (ORDERS[type.order] != null)
+            throw new IllegalStateException("duplicate order:" + type.order);
+          ORDERS[type.order] = type;
+        });
+  }
+
   DataType(short order) {
     this.order = order;
   }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+/** a cell carrying float value. see {@link PrimitiveCell} */
+public final class FloatCell extends PrimitiveCell<Float> {
+  private final float value;
+
+  FloatCell(String name, float value) {
+    super(name);
+    this.value = value;
+  }
+
+  /** @return the float value without boxing */
+  public float floatValue() {
+    return value;
+  }
+
+  @Override
+  public Float value() {
+    return value;
+  }
+
+  @Override
+  public DataType dataType() {
+    return DataType.FLOAT;
+  }
+
+  @Override
+  boolean valueEquals(Cell<?> that) {
+    if (that instanceof FloatCell)
+      return Float.floatToIntBits(value) == Float.floatToIntBits(((FloatCell) that).value);
+    return value().equals(that.value());
+  }
+
+  @Override
+  int valueHashCode() {
+    return Float.hashCode(value);
+  }
+}
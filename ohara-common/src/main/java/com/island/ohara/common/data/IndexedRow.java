@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The default implementation of {@link Row}. It keeps a map from name to index so seeking the cell
+ * by name is O(1), and the hash code is computed only once. The rows are used as keys of streams
+ * (group by and join) so the hash code and equality are called frequently.
+ */
+final class IndexedRow implements Row {
+
+  /**
+   * compute the hash code of row. The hash code is independent of the order of cells and tags since
+   * {@link Row#equals(Row, boolean)} ignores the order.
+   *
+   * @param row row
+   * @return hash code
+   */
+  static int hashCode(Row row) {
+    int cellsHash = 0;
+    for (Cell<?> cell : row) cellsHash += cell.hashCode();
+    List<String> tags = row.tags();
+    int tagsHash = 0;
+    for (String tag : tags.size() <= 1 ? tags : new HashSet<>(tags)) tagsHash += tag.hashCode();
+    return 31 * cellsHash + tagsHash;
+  }
+
+  private final List<String> tags;
+  private final List<Cell<?>> cells;
+  private final List<String> names;
+  private final Map<String, Integer> indexes;
+  // 0 means the hash code is not computed. It is safe to compute the hash code repeatedly
+  private int hash = 0;
+
+  IndexedRow(List<String> tags, Cell<?>[] cells) {
+    this.tags = Collections.unmodifiableList(new ArrayList<>(tags));
+    this.cells = Collections.unmodifiableList(Arrays.asList(cells.clone()));
+    String[] names = new String[cells.length];
+    Map<String, Integer> indexes = new HashMap<>(cells.length * 2);
+    for (int i = 0; i != cells.length; ++i) {
+      names[i] = Objects.requireNonNull(cells[i]).name();
+      if (indexes.put(names[i], i) != null)
+        throw new IllegalArgumentException("Row can't accept duplicate cell name");
+    }
+    this.names = Collections.unmodifiableList(Arrays.asList(names));
+    this.indexes = indexes;
+  }
+
+  @Override
+  public List<String> names() {
+    return names;
+  }
+
+  @Override
+  public Cell<?> cell(int index) {
+    if (index < 0 || index >= cells.size())
+      throw new NoSuchElementException("no cell exists with index:" + index);
+    return cells.get(index);
+  }
+
+  @Override
+  public Cell<?> cell(String name) {
+    Integer index = indexes.get(name);
+    if (index == null) throw new NoSuchElementException("no cell exists with name:" + name);
+    return cells.get(index);
+  }
+
+  @Override
+  public List<Cell<?>> cells() {
+    return cells;
+  }
+
+  @Override
+  public List<String> tags() {
+    return tags;
+  }
+
+  @Override
+  public int size() {
+    return cells.size();
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = hashCode(this);
+      hash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) return true;
+    if (obj instanceof IndexedRow && hashCode() != obj.hashCode()) return false;
+    if (obj instanceof Row) return equals((Row) obj, true);
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "cells:" + cells + ", tags:" + tags;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+/** a cell carrying int value. see {@link PrimitiveCell} */
+public final class IntCell extends PrimitiveCell<Integer> {
+  private final int value;
+
+  IntCell(String name, int value) {
+    super(name);
+    this.value = value;
+  }
+
+  /** @return the int value without boxing */
+  public int intValue() {
+    return value;
+  }
+
+  @Override
+  public Integer value() {
+    return value;
+  }
+
+  @Override
+  public DataType dataType() {
+    return DataType.INT;
+  }
+
+  @Override
+  boolean valueEquals(Cell<?> that) {
+    if (that instanceof IntCell) return value == ((IntCell) that).value;
+    return value().equals(that.value());
+  }
+
+  @Override
+  int valueHashCode() {
+    return Integer.hashCode(value);
+  }
+}
@@ -0,0 +1,655 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.util.ByteUtils;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A {@link Row} view over the serialized bytes generated by {@link Serializer#ROW}. Constructing a
+ * LazyRow only scans the headers (lengths and types) of cells so no cell is allocated. The cell is
+ * decoded when it is accessed by {@link #cell(int)} or {@link #cell(String)}, and the decoded cell
+ * is cached. It is useful to the consumers which touch only a few cells of a row, or reject most of
+ * the rows.
+ *
+ * <p>NOTED: the view does NOT copy the input buffer so the caller should not modify the buffer
+ * after passing it to the view.
+ */
+public final class LazyRow implements Row {
+
+  /**
+   * create a lazy row from the serialized row.
+   *
+   * @param bytes the bytes generated by {@link Serializer#ROW}
+   * @return a lazy row
+   */
+  public static LazyRow of(byte[] bytes) {
+    return of(ByteBuffer.wrap(Objects.requireNonNull(bytes)));
+  }
+
+  /**
+   * create a lazy row from the serialized row. The readable bytes (from position to limit) of the
+   * buffer are wrapped and the position of the input buffer is not changed.
+   *
+   * @param buffer the buffer carrying the bytes generated by {@link Serializer#ROW}
+   * @return a lazy row
+   */
+  public static LazyRow of(ByteBuffer buffer) {
+    try {
+      return new LazyRow(Objects.requireNonNull(buffer).slice());
+    } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+      throw new IllegalArgumentException("the serialized row is broken", e);
+    }
+  }
+
+  // the index of cell is composed of 5 int
+  private static final int NAME_OFFSET = 0;
+  private static final int NAME_LENGTH = 1;
+  private static final int TYPE = 2;
+  private static final int VALUE_OFFSET = 3;
+  private static final int VALUE_LENGTH = 4;
+  private static final int INDEX_SIZE = 5;
+
+  private final ByteBuffer buffer;
+  private final int version;
+  // the schema of version 2. It is null for other versions
+  private final RowSchema schema;
+  private final int[] index;
+  private final int tagsOffset;
+  private final Cell<?>[] cells;
+  private volatile List<String> tags = null;
+  private volatile Row materialized = null;
+  // 0 means the hash code is not computed. see IndexedRow
+  private int hash = 0;
+
+  private LazyRow(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.version = buffer.get(0);
+    switch (version) {
+      case 0:
+        {
+          int cellCount = requireLength(buffer.getInt(1));
+          this.index = new int[cellCount * INDEX_SIZE];
+          this.tagsOffset = scanV0(buffer, 1 + ByteUtils.SIZE_OF_INT, index);
+          this.cells = new Cell<?>[cellCount];
+          this.schema = null;
+          break;
+        }
+      case RowEncoder.VERSION:
+        {
+          ByteBuffer input = buffer.duplicate();
+          input.position(1);
+          int cellCount = readVarint(input);
+          this.index = new int[cellCount * INDEX_SIZE];
+          this.tagsOffset = scanV1(input, index, true);
+          this.cells = new Cell<?>[cellCount];
+          this.schema = null;
+          break;
+        }
+      case RowEncoder.SCHEMA_VERSION:
+        {
+          this.schema = RowSchema.find(buffer.getInt(1), buffer.getInt(1 + Integer.BYTES));
+          ByteBuffer input = buffer.duplicate();
+          input.position(1 + Integer.BYTES * 2);
+          int cellCount = schema.names().size();
+          this.index = new int[cellCount * INDEX_SIZE];
+          this.tagsOffset = scanV1(input, index, false);
+          this.cells = new Cell<?>[cellCount];
+          break;
+        }
+      default:
+        throw new UnsupportedOperationException("Unsupported version:" + version);
+    }
+  }
+
+  /**
+   * scan the headers of cells. The layout of version 0 is shown below.
+   *
+   * <p>version (1 byte) | cell count (4 bytes) | cell name length (2 bytes) | cell name | cell
+   * value type (2 bytes) | cell value length (2 bytes) | cell value | ... | tag count (2 bytes) |
+   * tag length (2 bytes) | tag bytes | ...
+   *
+   * @param buffer buffer
+   * @param offset the start of first cell
+   * @param index the array to store the offset and length of cells
+   * @return the offset of tags
+   */
+  private static int scanV0(ByteBuffer buffer, int offset, int[] index) {
+    for (int i = 0; i != index.length; i += INDEX_SIZE) {
+      int nameLength = requireLength(buffer.getShort(offset));
+      offset += ByteUtils.SIZE_OF_SHORT;
+      index[i + NAME_OFFSET] = offset;
+      index[i + NAME_LENGTH] = nameLength;
+      offset += nameLength;
+      index[i + TYPE] = buffer.getShort(offset);
+      offset += ByteUtils.SIZE_OF_SHORT;
+      int valueLength = requireLength(buffer.getShort(offset));
+      offset += ByteUtils.SIZE_OF_SHORT;
+      index[i + VALUE_OFFSET] = offset;
+      index[i + VALUE_LENGTH] = valueLength;
+      offset += valueLength;
+    }
+    return requireBoundary(buffer, offset);
+  }
+
+  /**
+   * scan the headers of cells. see {@link RowEncoder} for the layout of version 1 and version 2.
+   *
+   * @param input the buffer whose position is at the first cell
+   * @param index the array to store the offset and length of cells
+   * @param withNames true if the cells have names (version 1)
+   * @return the offset of tags
+   */
+  private static int scanV1(ByteBuffer input, int[] index, boolean withNames) {
+    for (int i = 0; i != index.length; i += INDEX_SIZE) {
+      if (withNames) {
+        int nameLength = readVarint(input);
+        index[i + NAME_OFFSET] = input.position();
+        index[i + NAME_LENGTH] = nameLength;
+        input.position(input.position() + nameLength);
+      }
+      DataType type = DataType.of(input.get());
+      index[i + TYPE] = type.order;
+      int valueLength = valueLength(type, input);
+      index[i + VALUE_OFFSET] = input.position();
+      index[i + VALUE_LENGTH] = valueLength;
+      input.position(input.position() + valueLength);
+    }
+    return input.position();
+  }
+
+  /**
+   * @param type the type of value
+   * @param input the buffer whose position is at the value length (or the value if the type has
+   *     fixed size)
+   * @return the length of value
+   */
+  private static int valueLength(DataType type, ByteBuffer input) {
+    switch (type) {
+      case BOOLEAN:
+      case BYTE:
+        return 1;
+      case SHORT:
+        return Short.BYTES;
+      case INT:
+      case FLOAT:
+      case DATE:
+        return Integer.BYTES;
+      case LONG:
+      case DOUBLE:
+      case TIMESTAMP:
+        return Long.BYTES;
+      default:
+        return readVarint(input);
+    }
+  }
+
+  /**
+   * decode the cells selected by the projection. The headers of all cells are scanned but the
+   * values of unselected cells are skipped without being decoded or copied, and no index is built.
+   * The returned row does not reference the buffer.
+   *
+   * @param buffer the buffer carrying the bytes generated by {@link Serializer#ROW}. The readable
+   *     bytes are read and the position is not changed
+   * @param projection projection
+   * @return a row having the selected cells (in the original order) and the tags
+   */
+  static Row project(ByteBuffer buffer, RowProjection projection) {
+    try {
+      ByteBuffer input = Objects.requireNonNull(buffer).slice();
+      int version = input.get();
+      List<Cell<?>> cells = new ArrayList<>(projection.size());
+      switch (version) {
+        case 0:
+          {
+            int cellCount = requireLength(input.getInt());
+            for (int i = 0; i != cellCount; ++i) {
+              int nameLength = requireLength(input.getShort());
+              int nameOffset = input.position();
+              input.position(nameOffset + nameLength);
+              short type = input.getShort();
+              int valueLength = requireLength(input.getShort());
+              int valueOffset = input.position();
+              input.position(valueOffset + valueLength);
+              if (projection.selects(i, input, nameOffset, nameLength))
+                cells.add(
+                    decode(
+                        input,
+                        name(input, nameOffset, nameLength),
+                        DataType.of(type),
+                        valueOffset,
+                        valueLength,
+                        false));
+            }
+            break;
+          }
+        case RowEncoder.VERSION:
+          {
+            int cellCount = readVarint(input);
+            for (int i = 0; i != cellCount; ++i) {
+              int nameLength = readVarint(input);
+              int nameOffset = input.position();
+              input.position(nameOffset + nameLength);
+              DataType type = DataType.of(input.get());
+              int valueLength = valueLength(type, input);
+              int valueOffset = input.position();
+              input.position(valueOffset + valueLength);
+              if (projection.selects(i, input, nameOffset, nameLength))
+                cells.add(
+                    decode(
+                        input,
+                        name(input, nameOffset, nameLength),
+                        type,
+                        valueOffset,
+                        valueLength,
+                        false));
+            }
+            break;
+          }
+        case RowEncoder.SCHEMA_VERSION:
+          {
+            int id = input.getInt();
+            RowSchema schema = RowSchema.find(id, input.getInt());
+            List<String> names = schema.names();
+            for (int i = 0; i != names.size(); ++i) {
+              DataType type = DataType.of(input.get());
+              int valueLength = valueLength(type, input);
+              int valueOffset = input.position();
+              input.position(valueOffset + valueLength);
+              if (projection.selects(i, names.get(i)))
+                cells.add(decode(input, names.get(i), type, valueOffset, valueLength, false));
+            }
+            break;
+          }
+        default:
+          throw new UnsupportedOperationException("Unsupported version:" + version);
+      }
+      return Row.of(
+          decodeTags(input, version, requireBoundary(input, input.position())),
+          cells.toArray(new Cell<?>[0]));
+    } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+      throw new IllegalArgumentException("the serialized row is broken", e);
+    }
+  }
+
+  /**
+   * read the varint encoded by {@link RowEncoder}.
+   *
+   * @param input input
+   * @return int value
+   */
+  static int readVarint(ByteBuffer input) {
+    int value = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+      byte b = input.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return requireLength(value);
+    }
+    throw new IllegalArgumentException("the varint is too long");
+  }
+
+  private static int requireBoundary(ByteBuffer buffer, int offset) {
+    if (offset > buffer.limit())
+      throw new IndexOutOfBoundsException(
+          "required " + offset + " bytes but actual " + buffer.limit() + " bytes");
+    return offset;
+  }
+
+  private static int requireLength(int length) {
+    if (length < 0) throw new IllegalArgumentException(length + " should be bigger than zero");
+    return length;
+  }
+
+  /**
+   * @param i the index of cell
+   * @return the name of cell. The interned string is returned if the name is registered
+   */
+  private String name(int i) {
+    if (schema != null) return schema.names().get(i);
+    return name(buffer, index[i * INDEX_SIZE + NAME_OFFSET], index[i * INDEX_SIZE + NAME_LENGTH]);
+  }
+
+  /** @return the interned name if the name is registered. Otherwise, a new string is returned */
+  private static String name(ByteBuffer buffer, int offset, int length) {
+    String name =
+        RowSchema.intern(buffer, offset, requireBoundary(buffer, offset + length) - offset);
+    return name != null ? name : string(buffer, offset, length);
+  }
+
+  private static String string(ByteBuffer buffer, int offset, int length) {
+    if (buffer.hasArray())
+      return new String(
+          buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+    return new String(bytes(buffer, offset, length), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytes(ByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(offset);
+    duplicate.get(bytes);
+    return bytes;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(offset);
+    duplicate.limit(offset + length);
+    return duplicate.slice();
+  }
+
+  /**
+   * compare the name of cell with the input name without decoding the name of cell.
+   *
+   * @param i the index of cell
+   * @param name the encoded name
+   * @return true if the name of cell is equal to input
+   */
+  private boolean matchName(int i, byte[] name) {
+    return matchName(
+        buffer, index[i * INDEX_SIZE + NAME_OFFSET], index[i * INDEX_SIZE + NAME_LENGTH], name);
+  }
+
+  /**
+   * compare the encoded name in the buffer with the input name.
+   *
+   * @param buffer buffer
+   * @param offset the offset of encoded name
+   * @param length the length of encoded name
+   * @param name the encoded name
+   * @return true if they are equal
+   */
+  static boolean matchName(ByteBuffer buffer, int offset, int length, byte[] name) {
+    if (length != name.length) return false;
+    for (int j = 0; j != length; ++j) if (buffer.get(offset + j) != name[j]) return false;
+    return true;
+  }
+
+  /**
+   * decode the cell.
+   *
+   * @param i the index of cell
+   * @param lazyRow true if the nested row should be a lazy row. Otherwise, the nested row is
+   *     decoded and it does not reference the buffer.
+   * @return cell
+   */
+  private Cell<?> decode(int i, boolean lazyRow) {
+    int base = i * INDEX_SIZE;
+    return decode(
+        buffer,
+        name(i),
+        DataType.of((short) index[base + TYPE]),
+        index[base + VALUE_OFFSET],
+        index[base + VALUE_LENGTH],
+        lazyRow);
+  }
+
+  /**
+   * decode the cell.
+   *
+   * @param buffer the buffer carrying the value
+   * @param name the name of cell
+   * @param type the type of value
+   * @param offset the offset of value
+   * @param length the length of value
+   * @param lazyRow true if the nested row should be a lazy row
+   * @return cell
+   */
+  private static Cell<?> decode(
+      ByteBuffer buffer, String name, DataType type, int offset, int length, boolean lazyRow) {
+    switch (type) {
+      case BYTES:
+        return Cell.of(name, bytes(buffer, offset, length));
+      case BOOLEAN:
+        return Cell.of(name, buffer.get(offset) != 0);
+      case BYTE:
+        return Cell.of(name, buffer.get(offset));
+      case SHORT:
+        return Cell.of(name, buffer.getShort(offset));
+      case INT:
+        return Cell.of(name, buffer.getInt(offset));
+      case LONG:
+        return Cell.of(name, buffer.getLong(offset));
+      case FLOAT:
+        return Cell.of(name, buffer.getFloat(offset));
+      case DOUBLE:
+        return Cell.of(name, buffer.getDouble(offset));
+      case STRING:
+        return Cell.of(name, string(buffer, offset, length));
+      case ROW:
+        LazyRow row = LazyRow.of(slice(buffer, offset, length));
+        return Cell.of(name, lazyRow ? row : row.materialize());
+      case OBJECT:
+        return Cell.of(name, Serializer.OBJECT.from(bytes(buffer, offset, length)));
+      case TIMESTAMP:
+        return Cell.of(name, LogicalTypes.toTimestamp(buffer.getLong(offset)));
+      case DATE:
+        return Cell.of(name, LogicalTypes.toDate(buffer.getInt(offset)));
+      case DECIMAL:
+        return Cell.of(name, LogicalTypes.decodeDecimal(slice(buffer, offset, length)));
+      case ARRAY:
+        return Cell.of(name, LogicalTypes.decodeArray(slice(buffer, offset, length)));
+      default:
+        throw new UnsupportedOperationException(type + " is not supported");
+    }
+  }
+
+  private List<String> decodeTags() {
+    return decodeTags(buffer, version, tagsOffset);
+  }
+
+  private static List<String> decodeTags(ByteBuffer buffer, int version, int tagsOffset) {
+    String[] tags;
+    switch (version) {
+      case 0:
+        {
+          int offset = tagsOffset;
+          tags = new String[requireLength(buffer.getShort(offset))];
+          offset += ByteUtils.SIZE_OF_SHORT;
+          for (int i = 0; i != tags.length; ++i) {
+            int length = requireLength(buffer.getShort(offset));
+            offset += ByteUtils.SIZE_OF_SHORT;
+            tags[i] = string(buffer, offset, requireBoundary(buffer, offset + length) - offset);
+            offset += length;
+          }
+          break;
+        }
+      default:
+        {
+          ByteBuffer input = buffer.duplicate();
+          input.position(tagsOffset);
+          tags = new String[readVarint(input)];
+          for (int i = 0; i != tags.length; ++i) {
+            int length = readVarint(input);
+            int offset = input.position();
+            tags[i] = string(buffer, offset, requireBoundary(buffer, offset + length) - offset);
+            input.position(offset + length);
+          }
+          break;
+        }
+    }
+    return Collections.unmodifiableList(Arrays.asList(tags));
+  }
+
+  /**
+   * @return a row having all decoded cells and tags. The nested rows are decoded also so the
+   *     returned row does not reference the buffer.
+   */
+  Row materialize() {
+    if (materialized == null) {
+      try {
+        Cell<?>[] cells = new Cell<?>[this.cells.length];
+        for (int i = 0; i != cells.length; ++i) cells[i] = decode(i, false);
+        materialized = Row.of(tags(), cells);
+      } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+        throw new IllegalArgumentException("the serialized row is broken", e);
+      }
+    }
+    return materialized;
+  }
+
+  @Override
+  public List<String> names() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return cell(index).name();
+      }
+
+      @Override
+      public int size() {
+        return cells.length;
+      }
+    };
+  }
+
+  @Override
+  public Cell<?> cell(int index) {
+    if (index < 0 || index >= cells.length)
+      throw new NoSuchElementException("no cell exists with index:" + index);
+    Cell<?> cell = cells[index];
+    if (cell == null) {
+      try {
+        cell = decode(index, true);
+      } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+        throw new IllegalArgumentException("the serialized row is broken", e);
+      }
+      cells[index] = cell;
+    }
+    return cell;
+  }
+
+  @Override
+  public Cell<?> cell(String name) {
+    if (schema != null) {
+      int index = schema.indexOf(Objects.requireNonNull(name));
+      if (index >= 0) return cell(index);
+      throw new NoSuchElementException("no cell exists with name:" + name);
+    }
+    byte[] nameBytes = ByteUtils.toBytes(Objects.requireNonNull(name));
+    for (int i = 0; i != cells.length; ++i) if (matchName(i, nameBytes)) return cell(i);
+    throw new NoSuchElementException("no cell exists with name:" + name);
+  }
+
+  @Override
+  public List<Cell<?>> cells() {
+    return new AbstractList<Cell<?>>() {
+      @Override
+      public Cell<?> get(int index) {
+        return cell(index);
+      }
+
+      @Override
+      public int size() {
+        return cells.length;
+      }
+    };
+  }
+
+  @Override
+  public List<String> tags() {
+    if (tags == null) {
+      try {
+        tags = decodeTags();
+      } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+        throw new IllegalArgumentException("the serialized row is broken", e);
+      }
+    }
+    return tags;
+  }
+
+  @Override
+  public int size() {
+    return cells.length;
+  }
+
+  /**
+   * The serialized row of version 2 carries the schema id rather than the names, so it is readable
+   * only by the readers which registered the schema. It should be encoded again before passing it
+   * to other readers.
+   *
+   * @return true if the serialized row wrapped by this view carries the cell names
+   */
+  boolean hasNames() {
+    return version != RowEncoder.SCHEMA_VERSION;
+  }
+
+  /**
+   * @return a copy of the serialized row wrapped by this view. It is cheaper than serializing this
+   *     row again.
+   */
+  byte[] toBytes() {
+    return bytes(buffer, 0, buffer.limit());
+  }
+
+  /** @return the size of the serialized row wrapped by this view */
+  int sizeInBytes() {
+    return buffer.limit();
+  }
+
+  /**
+   * write the serialized row wrapped by this view to the buffer.
+   *
+   * @param output buffer
+   */
+  void writeTo(ByteBuffer output) {
+    output.put(buffer.duplicate());
+  }
+
+  /**
+   * write the serialized row wrapped by this view to the stream.
+   *
+   * @param output stream
+   */
+  void writeTo(OutputStream output) {
+    if (buffer.hasArray())
+      ByteOutput.of(output).write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+    else ByteOutput.of(output).write(toBytes());
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = IndexedRow.hashCode(this);
+      hash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) return true;
+    if (obj instanceof Row) return equals((Row) obj, true);
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return materialize().toString();
+  }
+}
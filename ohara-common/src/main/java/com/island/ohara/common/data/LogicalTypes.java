@@ -0,0 +1,304 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.util.ByteUtils;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * The encodings of logical types. They are shared by {@link RowEncoder}, {@link LazyRow} and {@link
+ * RowBatch}.
+ *
+ * <ul>
+ *   <li>TIMESTAMP: the microseconds since epoch (8 bytes). The nanoseconds smaller than 1000 are
+ *       dropped
+ *   <li>DATE: the epoch day of the calendar date (4 bytes). The calendar date is the local date of
+ *       {@link java.sql.Date#toLocalDate()} and the decoded date is {@link
+ *       java.sql.Date#valueOf(java.time.LocalDate)}, so the date generated by {@link
+ *       java.sql.Date#valueOf(String)} keeps the same calendar fields. The time of day is dropped
+ *   <li>DECIMAL: scale (4 bytes) | unscaled value (two's-complement bytes)
+ *   <li>ARRAY: element type (1 byte) | element count (varint) | elements. The element of BYTES,
+ *       STRING, ROW and DECIMAL is prefixed by its length (varint). Other elements are written in
+ *       fixed size.
+ * </ul>
+ */
+final class LogicalTypes {
+
+  private static final long MICROS_PER_SECOND = 1000_000L;
+
+  static long toMicros(Timestamp timestamp) {
+    long seconds = Math.floorDiv(timestamp.getTime(), 1000L);
+    return seconds * MICROS_PER_SECOND + timestamp.getNanos() / 1000;
+  }
+
+  static Timestamp toTimestamp(long micros) {
+    Timestamp timestamp = new Timestamp(Math.floorDiv(micros, MICROS_PER_SECOND) * 1000L);
+    timestamp.setNanos((int) Math.floorMod(micros, MICROS_PER_SECOND) * 1000);
+    return timestamp;
+  }
+
+  static int toEpochDay(java.sql.Date date) {
+    return Math.toIntExact(date.toLocalDate().toEpochDay());
+  }
+
+  static java.sql.Date toDate(int epochDay) {
+    return java.sql.Date.valueOf(LocalDate.ofEpochDay(epochDay));
+  }
+
+  static byte[] encodeDecimal(BigDecimal value) {
+    byte[] unscaled = value.unscaledValue().toByteArray();
+    byte[] bytes = new byte[Integer.BYTES + unscaled.length];
+    ByteOutput output = ByteOutput.of(bytes, 0);
+    output.writeInt(value.scale());
+    output.write(unscaled);
+    return bytes;
+  }
+
+  /**
+   * @param input the buffer whose remaining bytes are the decimal
+   * @return decimal
+   */
+  static BigDecimal decodeDecimal(ByteBuffer input) {
+    int scale = input.getInt();
+    byte[] unscaled = new byte[input.remaining()];
+    input.get(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+
+  /**
+   * @param clazz the component type of array
+   * @return the type of element, or null if the array is not supported
+   */
+  static DataType elementType(Class<?> clazz) {
+    if (clazz == boolean.class) return DataType.BOOLEAN;
+    if (clazz == short.class) return DataType.SHORT;
+    if (clazz == int.class) return DataType.INT;
+    if (clazz == long.class) return DataType.LONG;
+    if (clazz == float.class) return DataType.FLOAT;
+    if (clazz == double.class) return DataType.DOUBLE;
+    if (clazz == String.class) return DataType.STRING;
+    if (clazz == byte[].class) return DataType.BYTES;
+    if (clazz == Timestamp.class) return DataType.TIMESTAMP;
+    if (clazz == java.sql.Date.class) return DataType.DATE;
+    if (clazz == BigDecimal.class) return DataType.DECIMAL;
+    if (Row.class.isAssignableFrom(clazz)) return DataType.ROW;
+    return null;
+  }
+
+  /**
+   * @param type the type of element
+   * @return the size of element, or -1 if the element has no fixed size
+   */
+  private static int elementSize(DataType type) {
+    switch (type) {
+      case BOOLEAN:
+        return 1;
+      case SHORT:
+        return Short.BYTES;
+      case INT:
+      case FLOAT:
+      case DATE:
+        return Integer.BYTES;
+      case LONG:
+      case DOUBLE:
+      case TIMESTAMP:
+        return Long.BYTES;
+      default:
+        return -1;
+    }
+  }
+
+  private static byte[] elementBytes(DataType type, Object element) {
+    Objects.requireNonNull(element, "the element of array can't be null");
+    switch (type) {
+      case BYTES:
+        return (byte[]) element;
+      case STRING:
+        return ByteUtils.toBytes((String) element);
+      case ROW:
+        return Serializer.ROW.to((Row) element);
+      case DECIMAL:
+        return encodeDecimal((BigDecimal) element);
+      default:
+        throw new UnsupportedOperationException(type + " is not supported");
+    }
+  }
+
+  /**
+   * @param array a java array whose component type is supported by {@link #elementType(Class)}
+   * @return the encoded array
+   */
+  static byte[] encodeArray(Object array) {
+    DataType type = elementType(array.getClass().getComponentType());
+    if (type == null)
+      throw new UnsupportedOperationException(array.getClass() + " is not supported");
+    int count = java.lang.reflect.Array.getLength(array);
+    long size = 1 + ByteOutput.sizeOfVarint(count);
+    int elementSize = elementSize(type);
+    byte[][] elements = null;
+    if (elementSize >= 0) size += (long) count * elementSize;
+    else {
+      Object[] values = (Object[]) array;
+      elements = new byte[count][];
+      for (int i = 0; i != count; ++i) {
+        elements[i] = elementBytes(type, values[i]);
+        size += ByteOutput.sizeOfVarint(elements[i].length) + (long) elements[i].length;
+      }
+    }
+    if (size > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(
+          "the max size from array is " + Integer.MAX_VALUE + " current:" + size);
+    byte[] bytes = new byte[(int) size];
+    ByteOutput output = ByteOutput.of(bytes, 0);
+    output.write((byte) type.order);
+    output.writeVarint(count);
+    switch (type) {
+      case BOOLEAN:
+        for (boolean value : (boolean[]) array) output.write(value ? (byte) -1 : (byte) 0);
+        break;
+      case SHORT:
+        for (short value : (short[]) array) output.writeShort(value);
+        break;
+      case INT:
+        for (int value : (int[]) array) output.writeInt(value);
+        break;
+      case LONG:
+        for (long value : (long[]) array) output.writeLong(value);
+        break;
+      case FLOAT:
+        for (float value : (float[]) array) output.writeInt(Float.floatToIntBits(value));
+        break;
+      case DOUBLE:
+        for (double value : (double[]) array) output.writeLong(Double.doubleToLongBits(value));
+        break;
+      case TIMESTAMP:
+        for (Timestamp value : (Timestamp[]) array)
+          output.writeLong(toMicros(Objects.requireNonNull(value)));
+        break;
+      case DATE:
+        for (java.sql.Date value : (java.sql.Date[]) array)
+          output.writeInt(toEpochDay(Objects.requireNonNull(value)));
+        break;
+      default:
+        for (byte[] element : elements) {
+          output.writeVarint(element.length);
+          output.write(element);
+        }
+        break;
+    }
+    return bytes;
+  }
+
+  /**
+   * @param input the buffer whose remaining bytes are the array
+   * @return a java array. The component type is decided by the element type
+   */
+  static Object decodeArray(ByteBuffer input) {
+    DataType type = DataType.of(input.get());
+    int count = LazyRow.readVarint(input);
+    switch (type) {
+      case BOOLEAN:
+        {
+          boolean[] values = new boolean[count];
+          for (int i = 0; i != count; ++i) values[i] = input.get() != 0;
+          return values;
+        }
+      case SHORT:
+        {
+          short[] values = new short[count];
+          for (int i = 0; i != count; ++i) values[i] = input.getShort();
+          return values;
+        }
+      case INT:
+        {
+          int[] values = new int[count];
+          for (int i = 0; i != count; ++i) values[i] = input.getInt();
+          return values;
+        }
+      case LONG:
+        {
+          long[] values = new long[count];
+          for (int i = 0; i != count; ++i) values[i] = input.getLong();
+          return values;
+        }
+      case FLOAT:
+        {
+          float[] values = new float[count];
+          for (int i = 0; i != count; ++i) values[i] = input.getFloat();
+          return values;
+        }
+      case DOUBLE:
+        {
+          double[] values = new double[count];
+          for (int i = 0; i != count; ++i) values[i] = input.getDouble();
+          return values;
+        }
+      case TIMESTAMP:
+        {
+          Timestamp[] values = new Timestamp[count];
+          for (int i = 0; i != count; ++i) values[i] = toTimestamp(input.getLong());
+          return values;
+        }
+      case DATE:
+        {
+          java.sql.Date[] values = new java.sql.Date[count];
+          for (int i = 0; i != count; ++i) values[i] = toDate(input.getInt());
+          return values;
+        }
+      case BYTES:
+        {
+          byte[][] values = new byte[count][];
+          for (int i = 0; i != count; ++i) values[i] = element(input);
+          return values;
+        }
+      case STRING:
+        {
+          String[] values = new String[count];
+          for (int i = 0; i != count; ++i) values[i] = ByteUtils.toString(element(input));
+          return values;
+        }
+      case ROW:
+        {
+          Row[] values = new Row[count];
+          for (int i = 0; i != count; ++i) values[i] = Serializer.ROW.from(element(input));
+          return values;
+        }
+      case DECIMAL:
+        {
+          BigDecimal[] values = new BigDecimal[count];
+          for (int i = 0; i != count; ++i)
+            values[i] = decodeDecimal(ByteBuffer.wrap(element(input)));
+          return values;
+        }
+      default:
+        throw new UnsupportedOperationException(type + " is not supported by array");
+    }
+  }
+
+  private static byte[] element(ByteBuffer input) {
+    byte[] bytes = new byte[LazyRow.readVarint(input)];
+    input.get(bytes);
+    return bytes;
+  }
+
+  private LogicalTypes() {}
+}
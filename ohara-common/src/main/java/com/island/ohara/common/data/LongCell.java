@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+/** a cell carrying long value. see {@link PrimitiveCell} */
+public final class LongCell extends PrimitiveCell<Long> {
+  private final long value;
+
+  LongCell(String name, long value) {
+    super(name);
+    this.value = value;
+  }
+
+  /** @return the long value without boxing */
+  public long longValue() {
+    return value;
+  }
+
+  @Override
+  public Long value() {
+    return value;
+  }
+
+  @Override
+  public DataType dataType() {
+    return DataType.LONG;
+  }
+
+  @Override
+  boolean valueEquals(Cell<?> that) {
+    if (that instanceof LongCell) return value == ((LongCell) that).value;
+    return value().equals(that.value());
+  }
+
+  @Override
+  int valueHashCode() {
+    return Long.hashCode(value);
+  }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of binary serializers used by {@link Serializer#OBJECT}. The object whose class is
+ * registered is written by the registered serializer, and other objects are written by java
+ * serialization. The layout of registered object is shown below.
+ *
+ * <p>version (1 byte) | type id (varint) | data written by registered serializer
+ *
+ * <p>The data written by java serialization always starts with the magic number (0xACED) so the
+ * deserialization can distinguish between them. The data generated by previous ohara are java
+ * serialization so they are still readable.
+ *
+ * <p>The type id is a part of serialized data so the writer and reader must register the same type
+ * with the same id. The ids smaller than {@link #MIN_ID} are reserved by the built-in types: {@link
+ * Date}, {@link Timestamp}, {@link java.sql.Date}, {@link Time}, {@link BigDecimal}, {@link
+ * BigInteger}, {@link Instant}, {@link LocalDate}, {@link LocalTime}, {@link LocalDateTime}, {@link
+ * UUID} and {@link Character}.
+ */
+public final class ObjectRegistry {
+  /** the min id of user-defined type. The smaller ids are reserved by built-in types. */
+  public static final int MIN_ID = 100;
+
+  static final byte VERSION = 1;
+  private static final byte JAVA_MAGIC_0 = (byte) 0xAC;
+  private static final byte JAVA_MAGIC_1 = (byte) 0xED;
+
+  private static final ConcurrentMap<Class<?>, Codec<?>> CODECS_BY_CLASS =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Integer, Codec<?>> CODECS_BY_ID = new ConcurrentHashMap<>();
+
+  /**
+   * register the serializer for specified class. The subclass is not matched so it needs to be
+   * registered individually.
+   *
+   * @param id type id. It must be bigger than or equal to {@link #MIN_ID}
+   * @param clazz the class
+   * @param serializer serializer
+   * @param <T> type
+   * @throws IllegalArgumentException if the id or class is registered already
+   */
+  public static <T> void register(int id, Class<T> clazz, Serializer<T> serializer) {
+    if (id < MIN_ID)
+      throw new IllegalArgumentException("the id:" + id + " is smaller than " + MIN_ID);
+    add(id, clazz, serializer);
+  }
+
+  /**
+   * @param clazz class
+   * @return true if the class has registered serializer
+   */
+  public static boolean isRegistered(Class<?> clazz) {
+    return CODECS_BY_CLASS.containsKey(clazz);
+  }
+
+  private static synchronized <T> void add(int id, Class<T> clazz, Serializer<T> serializer) {
+    Codec<T> codec =
+        new Codec<>(id, Objects.requireNonNull(clazz), Objects.requireNonNull(serializer));
+    if (CODECS_BY_ID.containsKey(id))
+      throw new IllegalArgumentException(
+          "the id:" + id + " is used by " + CODECS_BY_ID.get(id).clazz.getName());
+    if (CODECS_BY_CLASS.containsKey(clazz))
+      throw new IllegalArgumentException(clazz.getName() + " is registered already");
+    CODECS_BY_ID.put(id, codec);
+    CODECS_BY_CLASS.put(clazz, codec);
+  }
+
+  /**
+   * @param obj object
+   * @return serialized object
+   */
+  static byte[] encode(Object obj) {
+    Codec<?> codec = CODECS_BY_CLASS.get(obj.getClass());
+    if (codec == null) return javaSerialize(obj);
+    return codec.encode(obj);
+  }
+
+  /**
+   * @param bytes serialized object
+   * @return object
+   */
+  static Object decode(byte[] bytes) {
+    if (bytes.length >= 2 && bytes[0] == JAVA_MAGIC_0 && bytes[1] == JAVA_MAGIC_1)
+      return javaDeserialize(bytes);
+    try {
+      ByteBuffer input = ByteBuffer.wrap(bytes);
+      byte version = input.get();
+      if (version != VERSION)
+        throw new UnsupportedOperationException("Unsupported version:" + version);
+      int id = LazyRow.readVarint(input);
+      Codec<?> codec = CODECS_BY_ID.get(id);
+      if (codec == null) throw new IllegalArgumentException("no serializer is registered by " + id);
+      return codec.serializer.from(input.slice());
+    } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+      throw new IllegalArgumentException("the serialized object is broken", e);
+    }
+  }
+
+  private static byte[] javaSerialize(Object obj) {
+    try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(obj);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static Object javaDeserialize(byte[] bytes) {
+    try (ByteArrayInputStream bs = new ByteArrayInputStream(bytes);
+        ObjectInputStream input = new ObjectInputStream(bs)) {
+      return input.readObject();
+    } catch (IOException | java.lang.ClassNotFoundException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static final class Codec<T> {
+    private final int id;
+    private final Class<T> clazz;
+    private final Serializer<T> serializer;
+
+    private Codec(int id, Class<T> clazz, Serializer<T> serializer) {
+      this.id = id;
+      this.clazz = clazz;
+      this.serializer = serializer;
+    }
+
+    private byte[] encode(Object obj) {
+      T value = clazz.cast(obj);
+      int headerSize = 1 + ByteOutput.sizeOfVarint(id);
+      int size = serializer.sizeOf(value);
+      byte[] bytes = new byte[headerSize + size];
+      ByteOutput header = ByteOutput.of(bytes, 0);
+      header.write(VERSION);
+      header.writeVarint(id);
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, headerSize, size);
+      serializer.writeTo(value, buffer);
+      if (buffer.hasRemaining())
+        throw new IllegalStateException(
+            "the size of " + clazz.getName() + " is " + size + " but the written data is smaller");
+      return bytes;
+    }
+  }
+
+  /**
+   * the base class of built-in serializers. The subclasses read/write the buffer directly so there
+   * is no intermediate array.
+   */
+  private abstract static class BufferSerializer<T> implements Serializer<T> {
+    @Override
+    public abstract int sizeOf(T obj);
+
+    @Override
+    public abstract void writeTo(T obj, ByteBuffer buffer);
+
+    @Override
+    public abstract T from(ByteBuffer buffer);
+
+    @Override
+    public final byte[] to(T obj) {
+      byte[] bytes = new byte[sizeOf(obj)];
+      writeTo(obj, ByteBuffer.wrap(bytes));
+      return bytes;
+    }
+
+    @Override
+    public final T from(byte[] bytes) {
+      return from(ByteBuffer.wrap(bytes));
+    }
+  }
+
+  private static byte[] remaining(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  static {
+    add(
+        0,
+        Date.class,
+        new BufferSerializer<Date>() {
+          @Override
+          public int sizeOf(Date obj) {
+            return Long.BYTES;
+          }
+
+          @Override
+          public void writeTo(Date obj, ByteBuffer buffer) {
+            buffer.putLong(obj.getTime());
+          }
+
+          @Override
+          public Date from(ByteBuffer buffer) {
+            return new Date(buffer.getLong());
+          }
+        });
+    add(
+        1,
+        Timestamp.class,
+        new BufferSerializer<Timestamp>() {
+          @Override
+          public int sizeOf(Timestamp obj) {
+            return Long.BYTES + Integer.BYTES;
+          }
+
+          @Override
+          public void writeTo(Timestamp obj, ByteBuffer buffer) {
+            buffer.putLong(obj.getTime());
+            buffer.putInt(obj.getNanos());
+          }
+
+          @Override
+          public Timestamp from(ByteBuffer buffer) {
+            Timestamp timestamp = new Timestamp(buffer.getLong());
+            timestamp.setNanos(buffer.getInt());
+            return timestamp;
+          }
+        });
+    add(
+        2,
+        java.sql.Date.class,
+        new BufferSerializer<java.sql.Date>() {
+          @Override
+          public int sizeOf(java.sql.Date obj) {
+            return Long.BYTES;
+          }
+
+          @Override
+          public void writeTo(java.sql.Date obj, ByteBuffer buffer) {
+            buffer.putLong(obj.getTime());
+          }
+
+          @Override
+          public java.sql.Date from(ByteBuffer buffer) {
+            return new java.sql.Date(buffer.getLong());
+          }
+        });
+    add(
+        3,
+        Time.class,
+        new BufferSerializer<Time>() {
+          @Override
+          public int sizeOf(Time obj) {
+            return Long.BYTES;
+          }
+
+          @Override
+          public void writeTo(Time obj, ByteBuffer buffer) {
+            buffer.putLong(obj.getTime());
+          }
+
+          @Override
+          public Time from(ByteBuffer buffer) {
+            return new Time(buffer.getLong());
+          }
+        });
+    add(
+        4,
+        BigDecimal.class,
+        new BufferSerializer<BigDecimal>() {
+          @Override
+          public int sizeOf(BigDecimal obj) {
+            return Integer.BYTES + obj.unscaledValue().toByteArray().length;
+          }
+
+          @Override
+          public void writeTo(BigDecimal obj, ByteBuffer buffer) {
+            buffer.putInt(obj.scale());
+            buffer.put(obj.unscaledValue().toByteArray());
+          }
+
+          @Override
+          public BigDecimal from(ByteBuffer buffer) {
+            int scale = buffer.getInt();
+            return new BigDecimal(new BigInteger(remaining(buffer)), scale);
+          }
+        });
+    add(
+        5,
+        BigInteger.class,
+        new BufferSerializer<BigInteger>() {
+          @Override
+          public int sizeOf(BigInteger obj) {
+            return obj.toByteArray().length;
+          }
+
+          @Override
+          public void writeTo(BigInteger obj, ByteBuffer buffer) {
+            buffer.put(obj.toByteArray());
+          }
+
+          @Override
+          public BigInteger from(ByteBuffer buffer) {
+            return new BigInteger(remaining(buffer));
+          }
+        });
+    add(
+        6,
+        Instant.class,
+        new BufferSerializer<Instant>() {
+          @Override
+          public int sizeOf(Instant obj) {
+            return Long.BYTES + Integer.BYTES;
+          }
+
+          @Override
+          public void writeTo(Instant obj, ByteBuffer buffer) {
+            buffer.putLong(obj.getEpochSecond());
+            buffer.putInt(obj.getNano());
+          }
+
+          @Override
+          public Instant from(ByteBuffer buffer) {
+            return Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+          }
+        });
+    add(
+        7,
+        LocalDate.class,
+        new BufferSerializer<LocalDate>() {
+          @Override
+          public int sizeOf(LocalDate obj) {
+            return Long.BYTES;
+          }
+
+          @Override
+          public void writeTo(LocalDate obj, ByteBuffer buffer) {
+            buffer.putLong(obj.toEpochDay());
+          }
+
+          @Override
+          public LocalDate from(ByteBuffer buffer) {
+            return LocalDate.ofEpochDay(buffer.getLong());
+          }
+        });
+    add(
+        8,
+        LocalTime.class,
+        new BufferSerializer<LocalTime>() {
+          @Override
+          public int sizeOf(LocalTime obj) {
+            return Long.BYTES;
+          }
+
+          @Override
+          public void writeTo(LocalTime obj, ByteBuffer buffer) {
+            buffer.putLong(obj.toNanoOfDay());
+          }
+
+          @Override
+          public LocalTime from(ByteBuffer buffer) {
+            return LocalTime.ofNanoOfDay(buffer.getLong());
+          }
+        });
+    add(
+        9,
+        LocalDateTime.class,
+        new BufferSerializer<LocalDateTime>() {
+          @Override
+          public int sizeOf(LocalDateTime obj) {
+            return Long.BYTES * 2;
+          }
+
+          @Override
+          public void writeTo(LocalDateTime obj, ByteBuffer buffer) {
+            buffer.putLong(obj.toLocalDate().toEpochDay());
+            buffer.putLong(obj.toLocalTime().toNanoOfDay());
+          }
+
+          @Override
+          public LocalDateTime from(ByteBuffer buffer) {
+            LocalDate date = LocalDate.ofEpochDay(buffer.getLong());
+            return LocalDateTime.of(date, LocalTime.ofNanoOfDay(buffer.getLong()));
+          }
+        });
+    add(
+        10,
+        UUID.class,
+        new BufferSerializer<UUID>() {
+          @Override
+          public int sizeOf(UUID obj) {
+            return Long.BYTES * 2;
+          }
+
+          @Override
+          public void writeTo(UUID obj, ByteBuffer buffer) {
+            buffer.putLong(obj.getMostSignificantBits());
+            buffer.putLong(obj.getLeastSignificantBits());
+          }
+
+          @Override
+          public UUID from(ByteBuffer buffer) {
+            return new UUID(buffer.getLong(), buffer.getLong());
+          }
+        });
+    add(
+        11,
+        Character.class,
+        new BufferSerializer<Character>() {
+          @Override
+          public int sizeOf(Character obj) {
+            return Character.BYTES;
+          }
+
+          @Override
+          public void writeTo(Character obj, ByteBuffer buffer) {
+            buffer.putChar(obj);
+          }
+
+          @Override
+          public Character from(ByteBuffer buffer) {
+            return buffer.getChar();
+          }
+        });
+  }
+
+  private ObjectRegistry() {}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import java.util.Objects;
+
+/**
+ * The base class of cells carrying primitive value. The primitive cells store the value without
+ * boxing and they are compatible with the cells created by {@link Cell#of(String, Object)}. The
+ * boxed value is created only if {@link #value()} is called.
+ *
+ * @param <T> the boxed type
+ */
+abstract class PrimitiveCell<T> implements Cell<T> {
+  private final String name;
+
+  PrimitiveCell(String name) {
+    this.name = Objects.requireNonNull(name);
+  }
+
+  @Override
+  public final String name() {
+    return name;
+  }
+
+  /**
+   * @param that another cell
+   * @return true if the value of another cell is equal to this cell
+   */
+  abstract boolean valueEquals(Cell<?> that);
+
+  /** @return the hash code of value. It is same to the boxed value */
+  abstract int valueHashCode();
+
+  @Override
+  public final int hashCode() {
+    return name.hashCode() * 31 + valueHashCode();
+  }
+
+  @Override
+  public final boolean equals(Object obj) {
+    if (obj == this) return true;
+    if (obj instanceof Cell) {
+      Cell<?> that = (Cell<?>) obj;
+      return name.equals(that.name()) && valueEquals(that);
+    }
+    return false;
+  }
+
+  @Override
+  public final String toString() {
+    return name + "/" + value();
+  }
+}
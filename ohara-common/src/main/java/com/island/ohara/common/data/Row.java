@@ -16,15 +16,11 @@
 
 package com.island.ohara.common.data;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Objects;
-import java.util.function.IntBinaryOperator;
-import java.util.stream.Collectors;
 
 /**
  * a collection from {@link Cell}. Also, {@link Row} can carry variable tags which can be used to
@@ -78,80 +74,47 @@ public interface Row extends Iterable<Cell<?>> {
   }
 
   /**
-   * Compare all cells one-by-one. Noted: the order from cells doesn't impact the comparison.
+   * Compare all cells one-by-one. Noted: the order from cells and tags doesn't impact the
+   * comparison.
    *
    * @param that another row
    * @param includeTags true if the tags should be considered in the comparison
    * @return true if both rows have same cells and tags (if includeTags is true)
    */
   default boolean equals(Row that, boolean includeTags) {
-    if (cells().size() != that.cells().size()) return false;
-    if (includeTags && !tags().stream().allMatch(tag -> that.tags().stream().anyMatch(tag::equals)))
-      return false;
-    return cells().stream().allMatch(cell -> that.cells().stream().anyMatch(cell::equals));
+    if (size() != that.size()) return false;
+    if (includeTags
+        && !tags().equals(that.tags())
+        && !new HashSet<>(tags()).equals(new HashSet<>(that.tags()))) return false;
+    for (int i = 0; i != size(); ++i) {
+      Cell<?> cell = cell(i);
+      // fast path: both rows have the same order of cells
+      Cell<?> another = that.cell(i);
+      if (!cell.name().equals(another.name())) {
+        try {
+          another = that.cell(cell.name());
+        } catch (NoSuchElementException e) {
+          return false;
+        }
+      }
+      if (!cell.equals(another)) return false;
+    }
+    return true;
   }
 
   static Row of(Cell<?>... cells) {
     return of(Collections.emptyList(), cells);
   }
 
+  /**
+   * create a row. The returned row is immutable. The cell is sought by name in O(1) and the hash
+   * code is cached.
+   *
+   * @param tags tags
+   * @param cells cells. The duplicate names are illegal
+   * @return row
+   */
   static Row of(List<String> tags, Cell<?>... cells) {
-    List<String> tagsCopy = new ArrayList<>(tags);
-    List<Cell<?>> cellsCopy = Arrays.asList(cells);
-    // check duplicate names
-    int numberOfNames = cellsCopy.stream().map(Cell::name).collect(Collectors.toSet()).size();
-    if (numberOfNames != cellsCopy.size())
-      throw new IllegalArgumentException("Row can't accept duplicate cell name");
-    return new Row() {
-
-      @Override
-      public List<String> names() {
-        return cellsCopy.stream().map(Cell::name).collect(Collectors.toList());
-      }
-
-      @Override
-      public Cell<?> cell(int index) {
-        Cell<?> cell = cellsCopy.get(index);
-        if (cell == null) throw new NoSuchElementException("no cell exists with index:" + index);
-        return cell;
-      }
-
-      @Override
-      public Cell<?> cell(String name) {
-        return cellsCopy.stream()
-            .filter(c -> c.name().equals(name))
-            .findFirst()
-            .orElseThrow(() -> new NoSuchElementException("no cell exists with name:" + name));
-      }
-
-      @Override
-      public List<Cell<?>> cells() {
-        return Collections.unmodifiableList(cellsCopy);
-      }
-
-      @Override
-      public List<String> tags() {
-        return Collections.unmodifiableList(tagsCopy);
-      }
-
-      @Override
-      public int hashCode() {
-        IntBinaryOperator accumulate = (hash, current) -> hash * 31 + current;
-        return 31 * cells().stream().mapToInt(Objects::hashCode).reduce(1, accumulate)
-            + tags.stream().mapToInt(Objects::hashCode).reduce(1, accumulate);
-      }
-
-      @Override
-      public boolean equals(Object obj) {
-        if (obj == this) return true;
-        if (obj instanceof Row) return equals((Row) obj, true);
-        return false;
-      }
-
-      @Override
-      public String toString() {
-        return "cells:" + cells() + ", tags:" + tags;
-      }
-    };
+    return new IndexedRow(tags, cells);
   }
 }
@@ -0,0 +1,722 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.util.ByteUtils;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A batch of rows stored column-wise. All rows in a batch must have the same schema (the names and
+ * types of cells, and the order of cells). Each numeric column (including timestamp and date) is
+ * stored by a primitive array, and other values are stored by a byte slab with offsets. The value
+ * can be accessed by the typed methods (for example, {@link #intValue(int, int)}) without creating
+ * the {@link Row} and {@link Cell}.
+ *
+ * <p>The serialized form (see {@link Serializer#ROW_BATCH}) carries the schema only once so it is
+ * smaller than serializing the rows one by one. The layout is shown below.
+ *
+ * <p>version (1 byte) | row count (varint) | column count (varint) | column name length (varint) |
+ * column name | column type (1 byte) | ... | column data | ... | tag count of row (varint) | tag
+ * length (varint) | tag bytes | ...
+ *
+ * <p>The column data of BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, TIMESTAMP and DATE is the
+ * values in big-endian. The column data of other types is: slab length (varint) | value length
+ * (varint) | ... | slab. The string is encoded by UTF-8, the row is encoded by {@link
+ * Serializer#ROW}, the object is encoded by {@link Serializer#OBJECT}, and the decimal and array
+ * are encoded by {@link LogicalTypes}.
+ */
+public final class RowBatch implements Iterable<Row> {
+  static final int VERSION = 1;
+
+  public static final RowBatch EMPTY =
+      new RowBatch(0, new String[0], new DataType[0], new Object[0], Collections.emptyList());
+
+  /**
+   * convert the rows to a batch.
+   *
+   * @param rows rows having the same schema
+   * @return batch
+   * @throws IllegalArgumentException if the rows have different schema
+   */
+  public static RowBatch of(List<Row> rows) {
+    if (Objects.requireNonNull(rows).isEmpty()) return EMPTY;
+    Row first = rows.get(0);
+    String[] names = new String[first.size()];
+    DataType[] types = new DataType[first.size()];
+    for (int i = 0; i != names.length; ++i) {
+      Cell<?> cell = first.cell(i);
+      names[i] = cell.name();
+      types[i] = cell.dataType();
+    }
+    List<List<String>> tags = new ArrayList<>(rows.size());
+    for (Row row : rows) {
+      if (row.size() != names.length)
+        throw new IllegalArgumentException(
+            "the size of row is " + row.size() + " but the batch requires " + names.length);
+      for (int i = 0; i != names.length; ++i) {
+        Cell<?> cell = row.cell(i);
+        if (!names[i].equals(cell.name()) || types[i] != cell.dataType())
+          throw new IllegalArgumentException(
+              "the cell:"
+                  + cell.name()
+                  + "/"
+                  + cell.dataType()
+                  + " is not matched to the column:"
+                  + names[i]
+                  + "/"
+                  + types[i]);
+      }
+      tags.add(row.tags().isEmpty() ? Collections.emptyList() : row.tags());
+    }
+    Object[] columns = new Object[names.length];
+    for (int i = 0; i != columns.length; ++i) columns[i] = column(rows, i, types[i]);
+    return new RowBatch(rows.size(), names, types, columns, tags);
+  }
+
+  private static Object column(List<Row> rows, int index, DataType type) {
+    int size = rows.size();
+    switch (type) {
+      case BOOLEAN:
+        {
+          boolean[] values = new boolean[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof BooleanCell
+                    ? ((BooleanCell) cell).booleanValue()
+                    : (Boolean) cell.value();
+          }
+          return values;
+        }
+      case BYTE:
+        {
+          byte[] values = new byte[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof ByteCell ? ((ByteCell) cell).byteValue() : (Byte) cell.value();
+          }
+          return values;
+        }
+      case SHORT:
+        {
+          short[] values = new short[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof ShortCell ? ((ShortCell) cell).shortValue() : (Short) cell.value();
+          }
+          return values;
+        }
+      case INT:
+        {
+          int[] values = new int[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof IntCell ? ((IntCell) cell).intValue() : (Integer) cell.value();
+          }
+          return values;
+        }
+      case LONG:
+        {
+          long[] values = new long[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof LongCell ? ((LongCell) cell).longValue() : (Long) cell.value();
+          }
+          return values;
+        }
+      case FLOAT:
+        {
+          float[] values = new float[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof FloatCell ? ((FloatCell) cell).floatValue() : (Float) cell.value();
+          }
+          return values;
+        }
+      case DOUBLE:
+        {
+          double[] values = new double[size];
+          for (int i = 0; i != size; ++i) {
+            Cell<?> cell = rows.get(i).cell(index);
+            values[i] =
+                cell instanceof DoubleCell
+                    ? ((DoubleCell) cell).doubleValue()
+                    : (Double) cell.value();
+          }
+          return values;
+        }
+      case TIMESTAMP:
+        {
+          long[] values = new long[size];
+          for (int i = 0; i != size; ++i)
+            values[i] = LogicalTypes.toMicros((Timestamp) rows.get(i).cell(index).value());
+          return values;
+        }
+      case DATE:
+        {
+          int[] values = new int[size];
+          for (int i = 0; i != size; ++i)
+            values[i] = LogicalTypes.toEpochDay((java.sql.Date) rows.get(i).cell(index).value());
+          return values;
+        }
+      default:
+        {
+          byte[][] values = new byte[size][];
+          for (int i = 0; i != size; ++i)
+            values[i] = toBytes(type, rows.get(i).cell(index).value());
+          return Slab.of(values);
+        }
+    }
+  }
+
+  private static byte[] toBytes(DataType type, Object value) {
+    switch (type) {
+      case BYTES:
+        return (byte[]) value;
+      case STRING:
+        return ByteUtils.toBytes((String) value);
+      case ROW:
+        return Serializer.ROW.to((Row) value);
+      case OBJECT:
+        return Serializer.OBJECT.to(value);
+      case DECIMAL:
+        return LogicalTypes.encodeDecimal((BigDecimal) value);
+      case ARRAY:
+        return LogicalTypes.encodeArray(value);
+      default:
+        throw new UnsupportedOperationException(type + " is not supported");
+    }
+  }
+
+  /**
+   * deserialize the batch. The data is copied from the buffer so the returned batch does not
+   * reference the buffer. The position of buffer is moved to the end of batch.
+   *
+   * @param buffer the buffer carrying the bytes generated by {@link Serializer#ROW_BATCH}
+   * @return batch
+   */
+  static RowBatch of(ByteBuffer buffer) {
+    // the column data is big-endian so we don't use the byte order of caller's buffer
+    ByteBuffer input = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+    try {
+      int version = input.get();
+      if (version != VERSION)
+        throw new UnsupportedOperationException("Unsupported version:" + version);
+      int size = LazyRow.readVarint(input);
+      // each row has at least a tag count
+      requireRemaining(input, size);
+      int columnCount = LazyRow.readVarint(input);
+      // each column has at least a name length and a type
+      requireRemaining(input, columnCount * 2L);
+      String[] names = new String[columnCount];
+      DataType[] types = new DataType[columnCount];
+      for (int i = 0; i != columnCount; ++i) {
+        names[i] = ByteUtils.toString(readBytes(input, LazyRow.readVarint(input)));
+        types[i] = DataType.of(input.get());
+      }
+      Object[] columns = new Object[columnCount];
+      for (int i = 0; i != columnCount; ++i) columns[i] = readColumn(input, types[i], size);
+      List<List<String>> tags = new ArrayList<>(size);
+      for (int i = 0; i != size; ++i) {
+        int tagCount = LazyRow.readVarint(input);
+        if (tagCount == 0) tags.add(Collections.emptyList());
+        else {
+          String[] rowTags = new String[tagCount];
+          for (int j = 0; j != tagCount; ++j)
+            rowTags[j] = ByteUtils.toString(readBytes(input, LazyRow.readVarint(input)));
+          tags.add(Collections.unmodifiableList(Arrays.asList(rowTags)));
+        }
+      }
+      buffer.position(buffer.position() + input.position());
+      return new RowBatch(size, names, types, columns, tags);
+    } catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IllegalArgumentException("the serialized batch is broken", e);
+    }
+  }
+
+  /**
+   * check the remaining bytes before allocating the arrays so the broken header can't trigger huge
+   * allocation.
+   */
+  private static void requireRemaining(ByteBuffer input, long bytes) {
+    if (bytes < 0 || bytes > input.remaining()) throw new BufferUnderflowException();
+  }
+
+  private static byte[] readBytes(ByteBuffer input, int length) {
+    requireRemaining(input, length);
+    byte[] bytes = new byte[length];
+    input.get(bytes);
+    return bytes;
+  }
+
+  private static Object readColumn(ByteBuffer input, DataType type, int size) {
+    switch (type) {
+      case BOOLEAN:
+        {
+          requireRemaining(input, size);
+          boolean[] values = new boolean[size];
+          for (int i = 0; i != size; ++i) values[i] = input.get() != 0;
+          return values;
+        }
+      case BYTE:
+        return readBytes(input, size);
+      case SHORT:
+        {
+          requireRemaining(input, (long) size * Short.BYTES);
+          short[] values = new short[size];
+          input.asShortBuffer().get(values);
+          input.position(input.position() + size * Short.BYTES);
+          return values;
+        }
+      case INT:
+      case DATE:
+        {
+          requireRemaining(input, (long) size * Integer.BYTES);
+          int[] values = new int[size];
+          input.asIntBuffer().get(values);
+          input.position(input.position() + size * Integer.BYTES);
+          return values;
+        }
+      case LONG:
+      case TIMESTAMP:
+        {
+          requireRemaining(input, (long) size * Long.BYTES);
+          long[] values = new long[size];
+          input.asLongBuffer().get(values);
+          input.position(input.position() + size * Long.BYTES);
+          return values;
+        }
+      case FLOAT:
+        {
+          requireRemaining(input, (long) size * Float.BYTES);
+          float[] values = new float[size];
+          input.asFloatBuffer().get(values);
+          input.position(input.position() + size * Float.BYTES);
+          return values;
+        }
+      case DOUBLE:
+        {
+          requireRemaining(input, (long) size * Double.BYTES);
+          double[] values = new double[size];
+          input.asDoubleBuffer().get(values);
+          input.position(input.position() + size * Double.BYTES);
+          return values;
+        }
+      default:
+        {
+          int slabLength = LazyRow.readVarint(input);
+          // each value has at least a length
+          requireRemaining(input, size);
+          int[] offsets = new int[size + 1];
+          for (int i = 0; i != size; ++i) offsets[i + 1] = offsets[i] + LazyRow.readVarint(input);
+          if (offsets[size] != slabLength)
+            throw new IllegalArgumentException(
+                "the slab length is " + slabLength + " but the sum of values is " + offsets[size]);
+          return new Slab(offsets, readBytes(input, slabLength));
+        }
+    }
+  }
+
+  /**
+   * the values having no fixed size (string, bytes, row, object, decimal and array) are stored in a
+   * single array.
+   */
+  private static final class Slab {
+    private static Slab of(byte[][] values) {
+      int[] offsets = new int[values.length + 1];
+      for (int i = 0; i != values.length; ++i) {
+        long offset = (long) offsets[i] + values[i].length;
+        if (offset > Integer.MAX_VALUE)
+          throw new IllegalArgumentException(
+              "the max size from column is " + Integer.MAX_VALUE + " current:" + offset);
+        offsets[i + 1] = (int) offset;
+      }
+      byte[] bytes = new byte[offsets[values.length]];
+      for (int i = 0; i != values.length; ++i)
+        System.arraycopy(values[i], 0, bytes, offsets[i], values[i].length);
+      return new Slab(offsets, bytes);
+    }
+
+    private final int[] offsets;
+    private final byte[] bytes;
+
+    private Slab(int[] offsets, byte[] bytes) {
+      this.offsets = offsets;
+      this.bytes = bytes;
+    }
+
+    private int offset(int index) {
+      return offsets[index];
+    }
+
+    private int length(int index) {
+      return offsets[index + 1] - offsets[index];
+    }
+
+    private byte[] copy(int index) {
+      return Arrays.copyOfRange(bytes, offsets[index], offsets[index + 1]);
+    }
+  }
+
+  private final int size;
+  private final List<String> names;
+  private final List<DataType> types;
+  private final Map<String, Integer> indexes;
+  private final Object[] columns;
+  private final List<List<String>> tags;
+
+  private RowBatch(
+      int size, String[] names, DataType[] types, Object[] columns, List<List<String>> tags) {
+    this.size = size;
+    this.names = Collections.unmodifiableList(Arrays.asList(names));
+    this.types = Collections.unmodifiableList(Arrays.asList(types));
+    Map<String, Integer> indexes = new HashMap<>(names.length * 2);
+    for (int i = 0; i != names.length; ++i) indexes.putIfAbsent(names[i], i);
+    this.indexes = indexes;
+    this.columns = columns;
+    this.tags = Collections.unmodifiableList(tags);
+  }
+
+  /** @return the number of rows */
+  public int size() {
+    return size;
+  }
+
+  /** @return the names of columns */
+  public List<String> names() {
+    return names;
+  }
+
+  /** @return the types of columns */
+  public List<DataType> types() {
+    return types;
+  }
+
+  /**
+   * @param name the name of column
+   * @return the index of column
+   * @throws NoSuchElementException if there is no such column
+   */
+  public int columnIndex(String name) {
+    Integer index = indexes.get(name);
+    if (index == null) throw new NoSuchElementException("no column exists with name:" + name);
+    return index;
+  }
+
+  private Object column(int column, DataType type) {
+    if (types.get(column) != type)
+      throw new IllegalArgumentException(
+          "the type of column:"
+              + names.get(column)
+              + " is "
+              + types.get(column)
+              + " rather than "
+              + type);
+    return columns[column];
+  }
+
+  public boolean booleanValue(int row, int column) {
+    return ((boolean[]) column(column, DataType.BOOLEAN))[row];
+  }
+
+  public byte byteValue(int row, int column) {
+    return ((byte[]) column(column, DataType.BYTE))[row];
+  }
+
+  public short shortValue(int row, int column) {
+    return ((short[]) column(column, DataType.SHORT))[row];
+  }
+
+  public int intValue(int row, int column) {
+    return ((int[]) column(column, DataType.INT))[row];
+  }
+
+  public long longValue(int row, int column) {
+    return ((long[]) column(column, DataType.LONG))[row];
+  }
+
+  public float floatValue(int row, int column) {
+    return ((float[]) column(column, DataType.FLOAT))[row];
+  }
+
+  public double doubleValue(int row, int column) {
+    return ((double[]) column(column, DataType.DOUBLE))[row];
+  }
+
+  public String stringValue(int row, int column) {
+    Slab slab = (Slab) column(column, DataType.STRING);
+    return new String(slab.bytes, slab.offset(row), slab.length(row), StandardCharsets.UTF_8);
+  }
+
+  /** @return a copy of the bytes value */
+  public byte[] bytesValue(int row, int column) {
+    return ((Slab) column(column, DataType.BYTES)).copy(row);
+  }
+
+  public Timestamp timestampValue(int row, int column) {
+    return LogicalTypes.toTimestamp(((long[]) column(column, DataType.TIMESTAMP))[row]);
+  }
+
+  public java.sql.Date dateValue(int row, int column) {
+    return LogicalTypes.toDate(((int[]) column(column, DataType.DATE))[row]);
+  }
+
+  public BigDecimal decimalValue(int row, int column) {
+    Slab slab = (Slab) column(column, DataType.DECIMAL);
+    return LogicalTypes.decodeDecimal(
+        ByteBuffer.wrap(slab.bytes, slab.offset(row), slab.length(row)));
+  }
+
+  /**
+   * @param row the index of row
+   * @param column the index of column
+   * @return the cell of specified row and column
+   */
+  public Cell<?> cell(int row, int column) {
+    String name = names.get(column);
+    switch (types.get(column)) {
+      case BOOLEAN:
+        return Cell.of(name, booleanValue(row, column));
+      case BYTE:
+        return Cell.of(name, byteValue(row, column));
+      case SHORT:
+        return Cell.of(name, shortValue(row, column));
+      case INT:
+        return Cell.of(name, intValue(row, column));
+      case LONG:
+        return Cell.of(name, longValue(row, column));
+      case FLOAT:
+        return Cell.of(name, floatValue(row, column));
+      case DOUBLE:
+        return Cell.of(name, doubleValue(row, column));
+      case STRING:
+        return Cell.of(name, stringValue(row, column));
+      case BYTES:
+        return Cell.of(name, bytesValue(row, column));
+      case ROW:
+        return Cell.of(name, Serializer.ROW.from(((Slab) columns[column]).copy(row)));
+      case OBJECT:
+        return Cell.of(name, Serializer.OBJECT.from(((Slab) columns[column]).copy(row)));
+      case TIMESTAMP:
+        return Cell.of(name, timestampValue(row, column));
+      case DATE:
+        return Cell.of(name, dateValue(row, column));
+      case DECIMAL:
+        return Cell.of(name, decimalValue(row, column));
+      case ARRAY:
+        {
+          Slab slab = (Slab) columns[column];
+          return Cell.of(
+              name,
+              LogicalTypes.decodeArray(
+                  ByteBuffer.wrap(slab.bytes, slab.offset(row), slab.length(row))));
+        }
+      default:
+        throw new UnsupportedOperationException(types.get(column) + " is not supported");
+    }
+  }
+
+  /**
+   * @param index the index of row
+   * @return the row
+   */
+  public Row row(int index) {
+    if (index < 0 || index >= size)
+      throw new NoSuchElementException("no row exists with index:" + index);
+    Cell<?>[] cells = new Cell<?>[columns.length];
+    for (int i = 0; i != cells.length; ++i) cells[i] = cell(index, i);
+    return Row.of(tags.get(index), cells);
+  }
+
+  /** @return the rows converted from this batch */
+  public List<Row> rows() {
+    List<Row> rows = new ArrayList<>(size);
+    for (int i = 0; i != size; ++i) rows.add(row(i));
+    return rows;
+  }
+
+  @Override
+  public Iterator<Row> iterator() {
+    return new Iterator<Row>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public Row next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return row(index++);
+      }
+    };
+  }
+
+  // -------------------------------------------------[serialization]-------------------------------------------------//
+
+  /** @return the size of serialized batch */
+  int sizeInBytes() {
+    long bytes = 1 + ByteOutput.sizeOfVarint(size) + ByteOutput.sizeOfVarint(columns.length);
+    for (String name : names) bytes += sizeOfString(name) + 1;
+    for (int i = 0; i != columns.length; ++i) {
+      switch (types.get(i)) {
+        case BOOLEAN:
+        case BYTE:
+          bytes += size;
+          break;
+        case SHORT:
+          bytes += (long) size * Short.BYTES;
+          break;
+        case INT:
+        case FLOAT:
+        case DATE:
+          bytes += (long) size * Integer.BYTES;
+          break;
+        case LONG:
+        case DOUBLE:
+        case TIMESTAMP:
+          bytes += (long) size * Long.BYTES;
+          break;
+        default:
+          {
+            Slab slab = (Slab) columns[i];
+            bytes += ByteOutput.sizeOfVarint(slab.bytes.length) + slab.bytes.length;
+            for (int j = 0; j != size; ++j) bytes += ByteOutput.sizeOfVarint(slab.length(j));
+          }
+      }
+    }
+    for (List<String> rowTags : tags) {
+      bytes += ByteOutput.sizeOfVarint(rowTags.size());
+      for (String tag : rowTags) bytes += sizeOfString(tag);
+    }
+    if (bytes > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(
+          "the max size from batch is " + Integer.MAX_VALUE + " current:" + bytes);
+    return (int) bytes;
+  }
+
+  private static long sizeOfString(String value) {
+    int length = ByteOutput.utf8Length(value);
+    return ByteOutput.sizeOfVarint(length) + (long) length;
+  }
+
+  private static void writeString(String value, ByteOutput output) {
+    output.writeVarint(ByteOutput.utf8Length(value));
+    output.writeUtf8(value);
+  }
+
+  /**
+   * write the serialized batch to the output
+   *
+   * @param output output
+   */
+  void write(ByteOutput output) {
+    output.write((byte) VERSION);
+    output.writeVarint(size);
+    output.writeVarint(columns.length);
+    for (int i = 0; i != columns.length; ++i) {
+      writeString(names.get(i), output);
+      output.write((byte) types.get(i).order);
+    }
+    for (int i = 0; i != columns.length; ++i) {
+      Object column = columns[i];
+      switch (types.get(i)) {
+        case BOOLEAN:
+          for (boolean value : (boolean[]) column) output.write(value ? (byte) -1 : (byte) 0);
+          break;
+        case BYTE:
+          output.write((byte[]) column);
+          break;
+        case SHORT:
+          for (short value : (short[]) column) output.writeShort(value);
+          break;
+        case INT:
+        case DATE:
+          for (int value : (int[]) column) output.writeInt(value);
+          break;
+        case LONG:
+        case TIMESTAMP:
+          for (long value : (long[]) column) output.writeLong(value);
+          break;
+        case FLOAT:
+          for (float value : (float[]) column) output.writeInt(Float.floatToIntBits(value));
+          break;
+        case DOUBLE:
+          for (double value : (double[]) column) output.writeLong(Double.doubleToLongBits(value));
+          break;
+        default:
+          {
+            Slab slab = (Slab) column;
+            output.writeVarint(slab.bytes.length);
+            for (int j = 0; j != size; ++j) output.writeVarint(slab.length(j));
+            output.write(slab.bytes);
+          }
+      }
+    }
+    for (List<String> rowTags : tags) {
+      output.writeVarint(rowTags.size());
+      for (String tag : rowTags) writeString(tag, output);
+    }
+  }
+
+  /** @return serialized batch */
+  byte[] toBytes() {
+    byte[] bytes = new byte[sizeInBytes()];
+    write(ByteOutput.of(bytes, 0));
+    return bytes;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) return true;
+    if (obj instanceof RowBatch) {
+      RowBatch that = (RowBatch) obj;
+      return size == that.size && names.equals(that.names) && rows().equals(that.rows());
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * names.hashCode() + size;
+  }
+
+  @Override
+  public String toString() {
+    return "RowBatch{size=" + size + ", names=" + names + ", types=" + types + "}";
+  }
+}
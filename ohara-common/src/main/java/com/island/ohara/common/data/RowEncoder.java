@@ -0,0 +1,387 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encode the {@link Row} to the version 1 format. The layout is shown below.
+ *
+ * <p>version (1 byte) | cell count (varint) | cell name length (varint) | cell name | cell value
+ * type (1 byte) | cell value length (varint, only for BYTES, STRING, ROW, OBJECT, DECIMAL and
+ * ARRAY) | cell value | ... | tag count (varint) | tag length (varint) | tag bytes | ...
+ *
+ * <p>If the {@link RowSchema} is offered, the row is encoded to the version 2 format which replaces
+ * the cell count and cell names by the schema id and the checksum of names. The nested rows are
+ * always encoded to version 1.
+ *
+ * <p>version (1 byte) | schema id (4 bytes) | checksum (4 bytes) | cell value type (1 byte) | cell
+ * value length (varint, only for BYTES, STRING, ROW, OBJECT, DECIMAL and ARRAY) | cell value | ...
+ * | tag count (varint) | tag length (varint) | tag bytes | ...
+ *
+ * <p>The values of TIMESTAMP, DATE, DECIMAL and ARRAY are encoded by {@link LogicalTypes}.
+ *
+ * <p>The size of row is calculated before writing so all data are written to a single pre-sized
+ * array (or the buffer/stream offered by caller). The values which have no fixed size (nested row,
+ * object, decimal and array) are computed in the first pass and then reused by the second pass.
+ */
+final class RowEncoder {
+  static final int VERSION = 1;
+  static final int SCHEMA_VERSION = 2;
+
+  /**
+   * serialize the row to the version 1 format.
+   *
+   * @param row row
+   * @return serialized row
+   */
+  static byte[] encode(Row row) {
+    return new RowEncoder(row).toBytes();
+  }
+
+  /**
+   * serialize the row to the buffer. The data is written from the current position of buffer.
+   *
+   * @param row row
+   * @param buffer buffer
+   * @throws BufferOverflowException if there is insufficient space in the buffer. Noted that
+   *     nothing is written in this case
+   */
+  static void encode(Row row, ByteBuffer buffer) {
+    new RowEncoder(row).writeTo(buffer);
+  }
+
+  /**
+   * serialize the row to the stream.
+   *
+   * @param row row
+   * @param output output stream
+   */
+  static void encode(Row row, OutputStream output) {
+    new RowEncoder(row).writeTo(output);
+  }
+
+  /**
+   * @param row row
+   * @return the size of serialized row
+   */
+  static int sizeOf(Row row) {
+    return new RowEncoder(row).size;
+  }
+
+  private final Row row;
+  private final RowSchema schema;
+  private final int size;
+
+  /**
+   * the sizes of nested rows and the bytes of objects, decimals and arrays. They are stored in
+   * pre-order and the list is created only if the row has nested row or object.
+   */
+  private List<Object> computed = null;
+
+  private int computedIndex = 0;
+
+  private RowEncoder(Row row) {
+    this(row, null);
+  }
+
+  /**
+   * @param row row
+   * @param schema the schema having the same names as row, or null if the row is encoded to version
+   *     1
+   */
+  RowEncoder(Row row, RowSchema schema) {
+    this.row = row;
+    this.schema = schema;
+    long size = 1 + (schema == null ? sizeOf(row, this, true) : 8 + sizeOf(row, this, false));
+    if (size > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(
+          "the max size from row is " + Integer.MAX_VALUE + " current:" + size);
+    this.size = (int) size;
+  }
+
+  /** @return the size of serialized row */
+  int size() {
+    return size;
+  }
+
+  /** @return serialized row */
+  byte[] toBytes() {
+    byte[] bytes = new byte[size];
+    write(ByteOutput.of(bytes, 0));
+    return bytes;
+  }
+
+  /**
+   * write the serialized row to the buffer.
+   *
+   * @param buffer buffer
+   * @throws BufferOverflowException if there is insufficient space in the buffer
+   */
+  void writeTo(ByteBuffer buffer) {
+    if (buffer.remaining() < size) throw new BufferOverflowException();
+    if (buffer.hasArray()) {
+      // the array is faster than the buffer
+      write(ByteOutput.of(buffer.array(), buffer.arrayOffset() + buffer.position()));
+      buffer.position(buffer.position() + size);
+    } else write(ByteOutput.of(buffer));
+  }
+
+  /**
+   * write the serialized row to the stream.
+   *
+   * @param output stream
+   */
+  void writeTo(OutputStream output) {
+    write(ByteOutput.of(output));
+  }
+
+  private int reserve() {
+    if (computed == null) computed = new ArrayList<>();
+    computed.add(null);
+    return computed.size() - 1;
+  }
+
+  private Object next() {
+    return computed.get(computedIndex++);
+  }
+
+  private void write(ByteOutput output) {
+    if (schema == null) {
+      output.write((byte) VERSION);
+      write(row, output, true);
+    } else {
+      output.write((byte) SCHEMA_VERSION);
+      output.writeInt(schema.id());
+      output.writeInt(schema.checksum());
+      write(row, output, false);
+    }
+  }
+
+  /**
+   * @param row row
+   * @param withNames true if the cell count and cell names are written
+   * @return the size of row excluding the version byte (and schema id)
+   */
+  private static long sizeOf(Row row, RowEncoder encoder, boolean withNames) {
+    long size = withNames ? ByteOutput.sizeOfVarint(row.size()) : 0;
+    for (Cell<?> cell : row) {
+      if (withNames) size += sizeOfString(cell.name());
+      // value type
+      size += 1;
+      // the primitive cells offer the type directly so we don't need to box the value
+      DataType type = cell.dataType();
+      switch (type) {
+        case BYTES:
+          size += sizeOfBytes(((byte[]) cell.value()).length);
+          break;
+        case BOOLEAN:
+        case BYTE:
+          size += 1;
+          break;
+        case SHORT:
+          size += Short.BYTES;
+          break;
+        case INT:
+        case FLOAT:
+          size += Integer.BYTES;
+          break;
+        case LONG:
+        case DOUBLE:
+        case TIMESTAMP:
+          size += Long.BYTES;
+          break;
+        case DATE:
+          size += Integer.BYTES;
+          break;
+        case STRING:
+          size += sizeOfString((String) cell.value());
+          break;
+        case DECIMAL:
+          {
+            int slot = encoder.reserve();
+            byte[] bytes = LogicalTypes.encodeDecimal((BigDecimal) cell.value());
+            encoder.computed.set(slot, bytes);
+            size += sizeOfBytes(bytes.length);
+            break;
+          }
+        case ARRAY:
+          {
+            int slot = encoder.reserve();
+            byte[] bytes = LogicalTypes.encodeArray(cell.value());
+            encoder.computed.set(slot, bytes);
+            size += sizeOfBytes(bytes.length);
+            break;
+          }
+        case ROW:
+          {
+            Object value = cell.value();
+            // reserve the slot before computing nested row in order to keep the pre-order
+            int slot = encoder.reserve();
+            if (value instanceof LazyRow && ((LazyRow) value).hasNames()) {
+              // the lazy row is a view of serialized row so we can reuse the bytes
+              byte[] bytes = ((LazyRow) value).toBytes();
+              encoder.computed.set(slot, bytes);
+              size += sizeOfBytes(bytes.length);
+              break;
+            }
+            // nested row has version byte also
+            long rowSize = 1 + sizeOf((Row) value, encoder, true);
+            if (rowSize > Integer.MAX_VALUE)
+              throw new IllegalArgumentException(
+                  "the max size from value is " + Integer.MAX_VALUE + " current:" + rowSize);
+            encoder.computed.set(slot, (int) rowSize);
+            size += sizeOfBytes((int) rowSize);
+            break;
+          }
+        case OBJECT:
+          {
+            int slot = encoder.reserve();
+            byte[] bytes = Serializer.OBJECT.to(cell.value());
+            encoder.computed.set(slot, bytes);
+            size += sizeOfBytes(bytes.length);
+            break;
+          }
+        default:
+          throw new UnsupportedOperationException(type + " is not supported");
+      }
+    }
+    size += ByteOutput.sizeOfVarint(row.tags().size());
+    for (String tag : row.tags()) size += sizeOfString(tag);
+    return size;
+  }
+
+  /**
+   * write the row (excluding the version byte and schema id) to the output.
+   *
+   * @param row row
+   * @param output the output
+   * @param withNames true if the cell count and cell names are written
+   */
+  private void write(Row row, ByteOutput output, boolean withNames) {
+    if (withNames) output.writeVarint(row.size());
+    for (Cell<?> cell : row) {
+      if (withNames) writeString(cell.name(), output);
+      DataType type = cell.dataType();
+      output.write((byte) type.order);
+      switch (type) {
+        case BYTES:
+          writeBytes((byte[]) cell.value(), output);
+          break;
+        case BOOLEAN:
+          {
+            boolean value =
+                cell instanceof BooleanCell
+                    ? ((BooleanCell) cell).booleanValue()
+                    : (Boolean) cell.value();
+            output.write(value ? (byte) -1 : (byte) 0);
+            break;
+          }
+        case BYTE:
+          output.write(
+              cell instanceof ByteCell ? ((ByteCell) cell).byteValue() : (Byte) cell.value());
+          break;
+        case SHORT:
+          output.writeShort(
+              cell instanceof ShortCell ? ((ShortCell) cell).shortValue() : (Short) cell.value());
+          break;
+        case INT:
+          output.writeInt(
+              cell instanceof IntCell ? ((IntCell) cell).intValue() : (Integer) cell.value());
+          break;
+        case LONG:
+          output.writeLong(
+              cell instanceof LongCell ? ((LongCell) cell).longValue() : (Long) cell.value());
+          break;
+        case FLOAT:
+          output.writeInt(
+              Float.floatToIntBits(
+                  cell instanceof FloatCell
+                      ? ((FloatCell) cell).floatValue()
+                      : (Float) cell.value()));
+          break;
+        case DOUBLE:
+          output.writeLong(
+              Double.doubleToLongBits(
+                  cell instanceof DoubleCell
+                      ? ((DoubleCell) cell).doubleValue()
+                      : (Double) cell.value()));
+          break;
+        case STRING:
+          writeString((String) cell.value(), output);
+          break;
+        case TIMESTAMP:
+          output.writeLong(LogicalTypes.toMicros((Timestamp) cell.value()));
+          break;
+        case DATE:
+          output.writeInt(LogicalTypes.toEpochDay((java.sql.Date) cell.value()));
+          break;
+        case DECIMAL:
+        case ARRAY:
+          writeBytes((byte[]) next(), output);
+          break;
+        case ROW:
+          {
+            Object computedValue = next();
+            if (computedValue instanceof byte[]) {
+              writeBytes((byte[]) computedValue, output);
+              break;
+            }
+            output.writeVarint((Integer) computedValue);
+            output.write((byte) VERSION);
+            write((Row) cell.value(), output, true);
+            break;
+          }
+        case OBJECT:
+          writeBytes((byte[]) next(), output);
+          break;
+        default:
+          throw new UnsupportedOperationException(type + " is not supported");
+      }
+    }
+    output.writeVarint(row.tags().size());
+    for (String tag : row.tags()) writeString(tag, output);
+  }
+
+  // -------------------------------------------------[helpers]-------------------------------------------------//
+
+  private static long sizeOfBytes(int length) {
+    return ByteOutput.sizeOfVarint(length) + (long) length;
+  }
+
+  private static long sizeOfString(String value) {
+    return sizeOfBytes(ByteOutput.utf8Length(value));
+  }
+
+  /** write the length (varint) and the bytes */
+  private static void writeBytes(byte[] value, ByteOutput output) {
+    output.writeVarint(value.length);
+    output.write(value);
+  }
+
+  /** write the length (varint) and the UTF-8 bytes of string */
+  private static void writeString(String value, ByteOutput output) {
+    output.writeVarint(ByteOutput.utf8Length(value));
+    output.writeUtf8(value);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.util.ByteUtils;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link Serializer} of {@link Row} which deserializes only the selected cells. The cells are
+ * selected by name or by the index in the serialized row, and the values of other cells are skipped
+ * without being decoded or copied. It is useful to the consumers of wide rows which read only a few
+ * columns.
+ *
+ * <p>The cells which are not in the serialized row are ignored, so the deserialized row may have
+ * fewer cells than the projection. The tags are always deserialized. The serialization is same to
+ * {@link Serializer#ROW}.
+ */
+public final class RowProjection implements Serializer<Row> {
+
+  /**
+   * @param names the names of selected cells
+   * @return a projection which selects the cells by name
+   */
+  public static RowProjection of(Collection<String> names) {
+    return new RowProjection(new LinkedHashSet<>(Objects.requireNonNull(names)), new int[0]);
+  }
+
+  /**
+   * @param indexes the indexes of selected cells in the serialized row
+   * @return a projection which selects the cells by index
+   */
+  public static RowProjection of(int... indexes) {
+    for (int index : indexes)
+      if (index < 0) throw new IllegalArgumentException("the index:" + index + " is negative");
+    return new RowProjection(Collections.emptySet(), indexes);
+  }
+
+  private final Set<String> names;
+  private final byte[][] encodedNames;
+  private final int[] indexes;
+
+  private RowProjection(Set<String> names, int[] indexes) {
+    this.names = Collections.unmodifiableSet(names);
+    this.encodedNames = names.stream().map(ByteUtils::toBytes).toArray(byte[][]::new);
+    this.indexes = Arrays.stream(indexes).sorted().distinct().toArray();
+  }
+
+  /** @return the names of selected cells */
+  public Set<String> names() {
+    return names;
+  }
+
+  /** @return the number of selected cells */
+  int size() {
+    return names.size() + indexes.length;
+  }
+
+  private boolean selects(int index) {
+    return indexes.length != 0 && Arrays.binarySearch(indexes, index) >= 0;
+  }
+
+  /**
+   * @param index the index of cell
+   * @param name the name of cell
+   * @return true if the cell is selected
+   */
+  boolean selects(int index, String name) {
+    return selects(index) || names.contains(name);
+  }
+
+  /**
+   * @param index the index of cell
+   * @param buffer the buffer carrying the encoded name
+   * @param offset the offset of encoded name
+   * @param length the length of encoded name
+   * @return true if the cell is selected
+   */
+  boolean selects(int index, ByteBuffer buffer, int offset, int length) {
+    if (selects(index)) return true;
+    for (byte[] name : encodedNames)
+      if (LazyRow.matchName(buffer, offset, length, name)) return true;
+    return false;
+  }
+
+  @Override
+  public byte[] to(Row row) {
+    return Serializer.ROW.to(row);
+  }
+
+  @Override
+  public int sizeOf(Row row) {
+    return Serializer.ROW.sizeOf(row);
+  }
+
+  @Override
+  public void writeTo(Row row, ByteBuffer buffer) {
+    Serializer.ROW.writeTo(row, buffer);
+  }
+
+  @Override
+  public void writeTo(Row row, OutputStream output) {
+    Serializer.ROW.writeTo(row, output);
+  }
+
+  @Override
+  public Row from(byte[] bytes) {
+    return LazyRow.project(ByteBuffer.wrap(Objects.requireNonNull(bytes)), this);
+  }
+
+  @Override
+  public Row from(ByteBuffer buffer) {
+    Row row = LazyRow.project(buffer, this);
+    buffer.position(buffer.limit());
+    return row;
+  }
+}
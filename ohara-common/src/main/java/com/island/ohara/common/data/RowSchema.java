@@ -0,0 +1,291 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.util.ByteUtils;
+import com.island.ohara.common.util.CommonUtils;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * A registered list of cell names. The schema has two usages.
+ *
+ * <p>1) The names of registered schemas are interned. The deserializer ({@link Serializer#ROW} and
+ * {@link LazyRow}) reuses the interned strings rather than creating a new string for the name of
+ * each cell.
+ *
+ * <p>2) The {@link #serializer()} writes the rows having the same names to a compact format which
+ * carries the schema id rather than the names. NOTED: the reader must register the same schema
+ * before reading the compact format, so it is used only if all readers of the data know the schema.
+ *
+ * <p>The id is generated by the names so the different processes get the same id for same names.
+ * The compact format carries a checksum of names too, and the reader fails if the registered schema
+ * having the same id has different checksum (hash collision). The registered schemas are kept in
+ * memory until the process ends.
+ */
+public final class RowSchema {
+  private static final ConcurrentMap<Integer, RowSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+  /** the interned names. The key is the hash of UTF-8 bytes of name. */
+  private static final ConcurrentMap<Integer, Name[]> NAMES = new ConcurrentHashMap<>();
+
+  /**
+   * register the schema. The same instance is returned if the names are registered already.
+   *
+   * @param names the names of cells. The order is the order of cells in the row
+   * @return schema
+   */
+  public static RowSchema of(List<String> names) {
+    CommonUtils.requireNonEmpty(names).forEach(Objects::requireNonNull);
+    int id = id(names);
+    RowSchema schema = SCHEMAS.computeIfAbsent(id, k -> new RowSchema(id, names));
+    // the different names have same id (hash collision). The schema is still usable but it does not
+    // generate the compact format since reader can't find out the correct names.
+    if (!schema.names.equals(names)) return new RowSchema(id, names);
+    return schema;
+  }
+
+  /**
+   * @param id schema id
+   * @param checksum the checksum of names
+   * @return the registered schema
+   * @throws IllegalArgumentException if there is no such schema or the registered schema has
+   *     different names
+   */
+  static RowSchema find(int id, int checksum) {
+    RowSchema schema = SCHEMAS.get(id);
+    if (schema == null)
+      throw new IllegalArgumentException(
+          "the schema:" + id + " is not registered. Please register it by RowSchema.of");
+    if (schema.checksum != checksum)
+      throw new IllegalArgumentException(
+          "the registered schema:"
+              + schema
+              + " has different names from the data. expected checksum:"
+              + checksum
+              + " actual:"
+              + schema.checksum);
+    return schema;
+  }
+
+  /**
+   * find the interned name which has the same UTF-8 bytes.
+   *
+   * @param buffer buffer
+   * @param offset the start of name
+   * @param length the length of name
+   * @return the interned name or null if there is no registered name
+   */
+  static String intern(ByteBuffer buffer, int offset, int length) {
+    if (NAMES.isEmpty()) return null;
+    Name[] names = NAMES.get(hash(buffer, offset, length));
+    if (names != null)
+      for (Name name : names) if (name.matches(buffer, offset, length)) return name.value;
+    return null;
+  }
+
+  /**
+   * @param value name
+   * @return the interned name
+   */
+  private static String intern(String value) {
+    byte[] bytes = ByteUtils.toBytes(value);
+    Name[] names =
+        NAMES.compute(
+            hash(ByteBuffer.wrap(bytes), 0, bytes.length),
+            (k, current) -> {
+              if (current == null) return new Name[] {new Name(value, bytes)};
+              if (Arrays.stream(current).anyMatch(n -> n.value.equals(value))) return current;
+              Name[] newNames = Arrays.copyOf(current, current.length + 1);
+              newNames[current.length] = new Name(value, bytes);
+              return newNames;
+            });
+    return Arrays.stream(names).filter(n -> n.value.equals(value)).findFirst().get().value;
+  }
+
+  /** FNV-1a hash */
+  private static int hash(ByteBuffer buffer, int offset, int length) {
+    int hash = 0x811C9DC5;
+    for (int i = 0; i != length; ++i) {
+      hash ^= buffer.get(offset + i) & 0xFF;
+      hash *= 0x01000193;
+    }
+    return hash;
+  }
+
+  private static int id(List<String> names) {
+    int hash = 0x811C9DC5;
+    for (String name : names) {
+      byte[] bytes = ByteUtils.toBytes(name);
+      // the length is a part of hash in order to distinguish ["ab", "c"] from ["a", "bc"]
+      hash ^= bytes.length;
+      hash *= 0x01000193;
+      for (byte b : bytes) {
+        hash ^= b & 0xFF;
+        hash *= 0x01000193;
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * The checksum is independent of id so the names having same id still get different checksums. It
+   * consists of the number of names and the hash codes of names.
+   */
+  private static int checksum(List<String> names) {
+    return 31 * names.size() + names.hashCode();
+  }
+
+  private static final class Name {
+    private final String value;
+    private final byte[] bytes;
+
+    private Name(String value, byte[] bytes) {
+      this.value = value;
+      this.bytes = bytes;
+    }
+
+    private boolean matches(ByteBuffer buffer, int offset, int length) {
+      if (length != bytes.length) return false;
+      for (int i = 0; i != length; ++i) if (buffer.get(offset + i) != bytes[i]) return false;
+      return true;
+    }
+  }
+
+  private final int id;
+  private final int checksum;
+  private final List<String> names;
+  private final Map<String, Integer> indexes;
+
+  private RowSchema(int id, List<String> names) {
+    this.id = id;
+    this.checksum = checksum(names);
+    // the interned strings are shared by all schemas and rows
+    this.names =
+        Collections.unmodifiableList(
+            names.stream().map(RowSchema::intern).collect(Collectors.toList()));
+    Map<String, Integer> indexes = new HashMap<>();
+    for (int i = 0; i != this.names.size(); ++i) indexes.putIfAbsent(this.names.get(i), i);
+    this.indexes = Collections.unmodifiableMap(indexes);
+  }
+
+  /** @return the id generated by the names */
+  public int id() {
+    return id;
+  }
+
+  /** @return the checksum of names. It is written with id to the compact format */
+  int checksum() {
+    return checksum;
+  }
+
+  /** @return the names of cells */
+  public List<String> names() {
+    return names;
+  }
+
+  /**
+   * @param name the name of cell
+   * @return the index of cell or -1 if there is no such name
+   */
+  int indexOf(String name) {
+    return indexes.getOrDefault(name, -1);
+  }
+
+  /**
+   * @param row row
+   * @return true if this schema is registered and the names of row are same to this schema
+   */
+  boolean matches(Row row) {
+    if (SCHEMAS.get(id) != this || row.size() != names.size()) return false;
+    // the interned names make the comparison cheap since String#equals checks the reference first
+    for (int i = 0; i != names.size(); ++i)
+      if (!names.get(i).equals(row.cell(i).name())) return false;
+    return true;
+  }
+
+  /**
+   * The returned serializer writes the row which has the same names to the compact format, and the
+   * other rows are written by {@link Serializer#ROW}. The deserialization is same to {@link
+   * Serializer#ROW}.
+   *
+   * @return a serializer using this schema
+   */
+  public Serializer<Row> serializer() {
+    RowSchema schema = this;
+    return new Serializer<Row>() {
+      @Override
+      public byte[] to(Row obj) {
+        if (schema.matches(obj)) return new RowEncoder(obj, schema).toBytes();
+        return Serializer.ROW.to(obj);
+      }
+
+      @Override
+      public Row from(byte[] bytes) {
+        return Serializer.ROW.from(bytes);
+      }
+
+      @Override
+      public int sizeOf(Row obj) {
+        if (schema.matches(obj)) return new RowEncoder(obj, schema).size();
+        return Serializer.ROW.sizeOf(obj);
+      }
+
+      @Override
+      public void writeTo(Row obj, ByteBuffer buffer) {
+        if (schema.matches(obj)) new RowEncoder(obj, schema).writeTo(buffer);
+        else Serializer.ROW.writeTo(obj, buffer);
+      }
+
+      @Override
+      public void writeTo(Row obj, OutputStream output) {
+        if (schema.matches(obj)) new RowEncoder(obj, schema).writeTo(output);
+        else Serializer.ROW.writeTo(obj, output);
+      }
+
+      @Override
+      public Row from(ByteBuffer buffer) {
+        return Serializer.ROW.from(buffer);
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof RowSchema) return names.equals(((RowSchema) obj).names);
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return names.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "RowSchema{id=" + id + ", names=" + names + "}";
+  }
+}
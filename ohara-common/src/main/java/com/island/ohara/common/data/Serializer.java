@@ -18,16 +18,20 @@ package com.island.ohara.common.data;
 
 import com.island.ohara.common.util.ByteUtils;
 import java.io.*;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import org.apache.commons.lang3.ArrayUtils;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Used to convert a T object to V NOTED: the impl should not be an inner/anonymous class since
  * Store will use the reflection to create the object. The dynamical call to inner/anonymous class
  * is fraught with risks.
  *
+ * <p>The methods based on {@link ByteBuffer} and {@link OutputStream} enable caller to write the
+ * serialized data to the pooled (or direct) buffer without creating the intermediate array. The
+ * default implementations are based on {@link #to(Object)} and {@link #from(byte[])}, and the
+ * built-in serializers override them to avoid the array copy.
+ *
  * @param <T> data type
  */
 public interface Serializer<T> {
@@ -48,6 +52,55 @@ public interface Serializer<T> {
    */
   T from(byte[] bytes);
 
+  /**
+   * @param obj object
+   * @return the number of bytes written by {@link #writeTo(Object, ByteBuffer)}
+   */
+  default int sizeOf(T obj) {
+    return to(obj).length;
+  }
+
+  /**
+   * write the serialized object to the buffer. The data is written from the current position, and
+   * the position is moved to the end of written data.
+   *
+   * @param obj object
+   * @param buffer buffer
+   * @throws java.nio.BufferOverflowException if there is insufficient space in the buffer
+   */
+  default void writeTo(T obj, ByteBuffer buffer) {
+    buffer.put(to(obj));
+  }
+
+  /**
+   * write the serialized object to the stream. The IOException is wrapped by
+   * IllegalArgumentException.
+   *
+   * @param obj object
+   * @param output stream
+   */
+  default void writeTo(T obj, OutputStream output) {
+    try {
+      output.write(to(obj));
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * Convert the serialized data to object. The remaining bytes (from position to limit) of buffer
+   * are the serialized data, and the position is moved to the limit after this call. Noted: the
+   * returned object does not reference the buffer so it is safe to reuse the buffer.
+   *
+   * @param buffer serialized data
+   * @return object
+   */
+  default T from(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return from(bytes);
+  }
+
   Serializer<byte[]> BYTES =
       new Serializer<byte[]>() {
         @Override
@@ -59,6 +112,16 @@ public interface Serializer<T> {
         public byte[] from(byte[] bytes) {
           return bytes;
         }
+
+        @Override
+        public int sizeOf(byte[] obj) {
+          return obj.length;
+        }
+
+        @Override
+        public void writeTo(byte[] obj, ByteBuffer buffer) {
+          buffer.put(obj);
+        }
       };
 
   Serializer<Boolean> BOOLEAN =
@@ -72,6 +135,28 @@ public interface Serializer<T> {
         public Boolean from(byte[] bytes) {
           return ByteUtils.toBoolean(bytes);
         }
+
+        @Override
+        public int sizeOf(Boolean obj) {
+          return ByteUtils.SIZE_OF_BOOLEAN;
+        }
+
+        @Override
+        public void writeTo(Boolean obj, ByteBuffer buffer) {
+          buffer.put(obj ? (byte) -1 : (byte) 0);
+        }
+
+        @Override
+        public void writeTo(Boolean obj, OutputStream output) {
+          ByteOutput.of(output).write(obj ? (byte) -1 : (byte) 0);
+        }
+
+        @Override
+        public Boolean from(ByteBuffer buffer) {
+          boolean value = buffer.get(buffer.position()) != 0;
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<Byte> BYTE =
@@ -85,6 +170,28 @@ public interface Serializer<T> {
         public Byte from(byte[] bytes) {
           return bytes[0];
         }
+
+        @Override
+        public int sizeOf(Byte obj) {
+          return ByteUtils.SIZE_OF_BYTE;
+        }
+
+        @Override
+        public void writeTo(Byte obj, ByteBuffer buffer) {
+          buffer.put(obj);
+        }
+
+        @Override
+        public void writeTo(Byte obj, OutputStream output) {
+          ByteOutput.of(output).write(obj);
+        }
+
+        @Override
+        public Byte from(ByteBuffer buffer) {
+          byte value = buffer.get(buffer.position());
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<Short> SHORT =
@@ -98,6 +205,28 @@ public interface Serializer<T> {
         public Short from(byte[] bytes) {
           return ByteUtils.toShort(bytes);
         }
+
+        @Override
+        public int sizeOf(Short obj) {
+          return ByteUtils.SIZE_OF_SHORT;
+        }
+
+        @Override
+        public void writeTo(Short obj, ByteBuffer buffer) {
+          buffer.putShort(obj);
+        }
+
+        @Override
+        public void writeTo(Short obj, OutputStream output) {
+          ByteOutput.of(output).writeShort(obj);
+        }
+
+        @Override
+        public Short from(ByteBuffer buffer) {
+          short value = buffer.getShort(buffer.position());
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<Integer> INT =
@@ -111,6 +240,28 @@ public interface Serializer<T> {
         public Integer from(byte[] bytes) {
           return ByteUtils.toInt(bytes);
         }
+
+        @Override
+        public int sizeOf(Integer obj) {
+          return ByteUtils.SIZE_OF_INT;
+        }
+
+        @Override
+        public void writeTo(Integer obj, ByteBuffer buffer) {
+          buffer.putInt(obj);
+        }
+
+        @Override
+        public void writeTo(Integer obj, OutputStream output) {
+          ByteOutput.of(output).writeInt(obj);
+        }
+
+        @Override
+        public Integer from(ByteBuffer buffer) {
+          int value = buffer.getInt(buffer.position());
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<Long> LONG =
@@ -124,6 +275,28 @@ public interface Serializer<T> {
         public Long from(byte[] bytes) {
           return ByteUtils.toLong(bytes);
         }
+
+        @Override
+        public int sizeOf(Long obj) {
+          return ByteUtils.SIZE_OF_LONG;
+        }
+
+        @Override
+        public void writeTo(Long obj, ByteBuffer buffer) {
+          buffer.putLong(obj);
+        }
+
+        @Override
+        public void writeTo(Long obj, OutputStream output) {
+          ByteOutput.of(output).writeLong(obj);
+        }
+
+        @Override
+        public Long from(ByteBuffer buffer) {
+          long value = buffer.getLong(buffer.position());
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<Float> FLOAT =
@@ -137,6 +310,28 @@ public interface Serializer<T> {
         public Float from(byte[] bytes) {
           return ByteUtils.toFloat(bytes);
         }
+
+        @Override
+        public int sizeOf(Float obj) {
+          return ByteUtils.SIZE_OF_FLOAT;
+        }
+
+        @Override
+        public void writeTo(Float obj, ByteBuffer buffer) {
+          buffer.putFloat(obj);
+        }
+
+        @Override
+        public void writeTo(Float obj, OutputStream output) {
+          ByteOutput.of(output).writeInt(Float.floatToIntBits(obj));
+        }
+
+        @Override
+        public Float from(ByteBuffer buffer) {
+          float value = buffer.getFloat(buffer.position());
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<Double> DOUBLE =
@@ -150,6 +345,28 @@ public interface Serializer<T> {
         public Double from(byte[] bytes) {
           return ByteUtils.toDouble(bytes);
         }
+
+        @Override
+        public int sizeOf(Double obj) {
+          return ByteUtils.SIZE_OF_DOUBLE;
+        }
+
+        @Override
+        public void writeTo(Double obj, ByteBuffer buffer) {
+          buffer.putDouble(obj);
+        }
+
+        @Override
+        public void writeTo(Double obj, OutputStream output) {
+          ByteOutput.of(output).writeLong(Double.doubleToLongBits(obj));
+        }
+
+        @Override
+        public Double from(ByteBuffer buffer) {
+          double value = buffer.getDouble(buffer.position());
+          buffer.position(buffer.limit());
+          return value;
+        }
       };
 
   Serializer<String> STRING =
@@ -163,257 +380,155 @@ public interface Serializer<T> {
         public String from(byte[] bytes) {
           return ByteUtils.toString(bytes);
         }
+
+        @Override
+        public int sizeOf(String obj) {
+          return ByteOutput.utf8Length(obj);
+        }
+
+        @Override
+        public void writeTo(String obj, ByteBuffer buffer) {
+          if (buffer.remaining() < sizeOf(obj)) throw new BufferOverflowException();
+          ByteOutput.of(buffer).writeUtf8(obj);
+        }
+
+        @Override
+        public void writeTo(String obj, OutputStream output) {
+          ByteOutput.of(output).writeUtf8(obj);
+        }
+
+        @Override
+        public String from(ByteBuffer buffer) {
+          if (buffer.hasArray()) {
+            String value =
+                new String(
+                    buffer.array(),
+                    buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(),
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.limit());
+            return value;
+          }
+          // the direct buffer has no backed array so we have to copy the bytes
+          byte[] bytes = new byte[buffer.remaining()];
+          buffer.get(bytes);
+          return ByteUtils.toString(bytes);
+        }
       };
 
+  /**
+   * Serialize the row to bytes. The first byte of serialized row is the version of format. The
+   * version 0 uses fixed 2-bytes length so it can't carry the value which is bigger than {@link
+   * Short#MAX_VALUE}. The version 1 is introduced to use varint length and 1-byte type, and it is
+   * the format generated by this serializer. The deserialization supports both of them. see {@link
+   * RowEncoder} for the layout of version 1.
+   *
+   * <p>The bytes of {@link LazyRow} are written as they are unless they are version 2, which needs
+   * the schema registered by reader. The row of version 2 is encoded to version 1 again.
+   */
   Serializer<Row> ROW =
       new Serializer<Row>() {
         @Override
         public byte[] to(Row row) {
-          try (ByteArrayOutputStream output = new ByteArrayOutputStream()) {
-            output.write(0);
-            toV0(output, row);
-            output.flush();
-            return output.toByteArray();
-          } catch (Exception e) {
-            throw new IllegalArgumentException(e);
-          }
+          // the lazy row is a view of serialized row so we can reuse the bytes. The row of version
+          // 2
+          // is encoded again since the readers may not register the schema
+          if (isReusable(row)) return ((LazyRow) row).toBytes();
+          return RowEncoder.encode(row);
         }
 
-        /**
-         * cell count from row (4 bytes) cell name length (2 bytes) | cell name | cell value type (2
-         * byte) | cell value length (2 bytes) | cell value cell name length (2 bytes) | cell name |
-         * cell value type (2 byte) | cell value length (2 bytes) | cell value tag count (2 bytes)
-         * tag length (2 bytes) | tag bytes tag length (2 bytes) | tag bytes
-         *
-         * @param row row
-         * @param output output
-         */
-        @SuppressWarnings("unchecked")
-        private void toV0(ByteArrayOutputStream output, Row row) throws IOException {
-          output.write(INT.to(row.cells().size()));
-          row.cells()
-              .forEach(
-                  c -> {
-                    // we have got to cast Cell<?> to Cell<object>. Otherwise, we can't obey CAP#1
-                    Cell<Object> cell = (Cell<Object>) c;
-                    try {
-                      byte[] nameBytes = STRING.to(cell.name());
-                      final byte[] valueBytes;
-                      DataType type = DataType.from(cell.value());
-                      switch (type) {
-                        case BYTES:
-                          valueBytes = BYTES.to((byte[]) cell.value());
-                          break;
-                        case BOOLEAN:
-                          valueBytes = BOOLEAN.to((boolean) cell.value());
-                          break;
-                        case BYTE:
-                          valueBytes = BYTE.to((byte) cell.value());
-                          break;
-                        case SHORT:
-                          valueBytes = SHORT.to((short) cell.value());
-                          break;
-                        case INT:
-                          valueBytes = INT.to((int) cell.value());
-                          break;
-                        case LONG:
-                          valueBytes = LONG.to((long) cell.value());
-                          break;
-                        case FLOAT:
-                          valueBytes = FLOAT.to((float) cell.value());
-                          break;
-                        case DOUBLE:
-                          valueBytes = DOUBLE.to((double) cell.value());
-                          break;
-                        case STRING:
-                          valueBytes = STRING.to((String) cell.value());
-                          break;
-                        case ROW:
-                          valueBytes = ROW.to((Row) cell.value());
-                          break;
-                        case OBJECT:
-                          valueBytes = OBJECT.to(cell.value());
-                          break;
-                        default:
-                          throw new UnsupportedClassVersionError(type.getClass().getName());
-                      }
-                      if (nameBytes.length > Short.MAX_VALUE)
-                        throw new IllegalArgumentException(
-                            "the max size from name is "
-                                + Short.MAX_VALUE
-                                + " current:"
-                                + nameBytes.length);
-                      if (valueBytes.length > Short.MAX_VALUE)
-                        throw new IllegalArgumentException(
-                            "the max size from value is "
-                                + Short.MAX_VALUE
-                                + " current:"
-                                + valueBytes.length);
-                      // noted: the (int) length is converted to short type.
-                      output.write(SHORT.to((short) nameBytes.length));
-                      output.write(nameBytes);
-                      output.write(SHORT.to(type.order));
-                      // noted: the (int) length is converted to short type.
-                      output.write(SHORT.to((short) valueBytes.length));
-                      output.write(valueBytes);
-                    } catch (IOException e) {
-                      throw new IllegalArgumentException(e);
-                    }
-                  });
-
-          // process tag
-          // noted: the (int) length is converted to short type.
-          output.write(SHORT.to((short) row.tags().size()));
-          row.tags()
-              .forEach(
-                  tag -> {
-                    try {
-                      byte[] tagBytes = STRING.to(tag);
-                      if (tagBytes.length > Short.MAX_VALUE)
-                        throw new IllegalArgumentException(
-                            "the max size from tag is "
-                                + Short.MAX_VALUE
-                                + " current:"
-                                + tagBytes.length);
-                      // noted: the (int) length is converted to short type.
-                      output.write(SHORT.to((short) tagBytes.length));
-                      output.write(tagBytes);
-                    } catch (IOException e) {
-                      throw new IllegalArgumentException(e);
-                    }
-                  });
+        @Override
+        public Row from(byte[] bytes) {
+          return LazyRow.of(bytes).materialize();
         }
 
         @Override
-        public Row from(byte[] bytes) {
-          try (InputStream input = new ByteArrayInputStream(bytes)) {
-            int version = input.read();
-            switch (version) {
-              case 0:
-                return fromV0(input);
-              default:
-                throw new UnsupportedOperationException("Unsupported version:" + version);
-            }
-          } catch (Exception e) {
-            throw new IllegalArgumentException(e);
-          }
+        public int sizeOf(Row row) {
+          if (isReusable(row)) return ((LazyRow) row).sizeInBytes();
+          return RowEncoder.sizeOf(row);
         }
 
-        private byte[] forceRead(InputStream input, int len) {
-          if (len == 0) return ArrayUtils.EMPTY_BYTE_ARRAY;
-          else if (len < 0) throw new IllegalStateException(len + " should be bigger than zero");
-          else {
-            int remaining = len;
-            byte[] buf = new byte[len];
-            while (remaining != 0) {
-              try {
-                int rval = input.read(buf, buf.length - remaining, remaining);
-                if (rval < 0)
-                  throw new IllegalStateException(
-                      "required " + len + " but actual " + (len - remaining) + " bytes");
-                if (rval > remaining)
-                  throw new IllegalStateException(
-                      "ask " + remaining + " bytes but actual " + rval + " bytes");
-                remaining -= rval;
-              } catch (Throwable e) {
-                throw new IllegalStateException(e);
-              }
-            }
-            return buf;
-          }
+        @Override
+        public void writeTo(Row row, ByteBuffer buffer) {
+          if (isReusable(row)) ((LazyRow) row).writeTo(buffer);
+          else RowEncoder.encode(row, buffer);
         }
 
-        private Row fromV0(InputStream input) {
-          int cellCount = INT.from(forceRead(input, ByteUtils.SIZE_OF_INT));
-          if (cellCount < 0)
-            throw new IllegalStateException("the number from cell should be bigger than zero");
-          Cell<?>[] cells =
-              IntStream.range(0, cellCount)
-                  .mapToObj(
-                      i -> {
-                        int nameSize = SHORT.from(forceRead(input, ByteUtils.SIZE_OF_SHORT));
-                        String name = STRING.from(forceRead(input, nameSize));
-                        DataType type =
-                            DataType.of(SHORT.from(forceRead(input, ByteUtils.SIZE_OF_SHORT)));
-                        final Cell<?> cell;
-                        short valueSize = SHORT.from(forceRead(input, ByteUtils.SIZE_OF_SHORT));
-                        switch (type) {
-                          case BYTES:
-                            cell = Cell.of(name, BYTES.from(forceRead(input, valueSize)));
-                            break;
-                          case BOOLEAN:
-                            cell = Cell.of(name, BOOLEAN.from(forceRead(input, valueSize)));
-                            break;
-                          case BYTE:
-                            cell = Cell.of(name, BYTE.from(forceRead(input, valueSize)));
-                            break;
-                          case SHORT:
-                            cell = Cell.of(name, SHORT.from(forceRead(input, valueSize)));
-                            break;
-                          case INT:
-                            cell = Cell.of(name, INT.from(forceRead(input, valueSize)));
-                            break;
-                          case LONG:
-                            cell = Cell.of(name, LONG.from(forceRead(input, valueSize)));
-                            break;
-                          case FLOAT:
-                            cell = Cell.of(name, FLOAT.from(forceRead(input, valueSize)));
-                            break;
-                          case DOUBLE:
-                            cell = Cell.of(name, DOUBLE.from(forceRead(input, valueSize)));
-                            break;
-                          case STRING:
-                            cell = Cell.of(name, STRING.from(forceRead(input, valueSize)));
-                            break;
-                          case ROW:
-                            cell = Cell.of(name, ROW.from(forceRead(input, valueSize)));
-                            break;
-                          case OBJECT:
-                            cell = Cell.of(name, OBJECT.from(forceRead(input, valueSize)));
-                            break;
-                          default:
-                            throw new UnsupportedClassVersionError(type.getClass().getName());
-                        }
-                        return cell;
-                      })
-                  .toArray(Cell[]::new);
-          int tagCount = SHORT.from(forceRead(input, ByteUtils.SIZE_OF_SHORT));
-          if (tagCount < 0)
-            throw new IllegalStateException("the number from tag should be bigger than zero");
-          List<String> tag =
-              IntStream.range(0, tagCount)
-                  .mapToObj(
-                      i ->
-                          STRING.from(
-                              forceRead(
-                                  input, SHORT.from(forceRead(input, ByteUtils.SIZE_OF_SHORT)))))
-                  .collect(Collectors.toList());
-          return Row.of(tag, cells);
+        @Override
+        public void writeTo(Row row, OutputStream output) {
+          if (isReusable(row)) ((LazyRow) row).writeTo(output);
+          else RowEncoder.encode(row, output);
+        }
+
+        @Override
+        public Row from(ByteBuffer buffer) {
+          // all cells are decoded so the returned row does not reference the buffer
+          Row row = LazyRow.of(buffer).materialize();
+          buffer.position(buffer.limit());
+          return row;
+        }
+
+        private boolean isReusable(Row row) {
+          return row instanceof LazyRow && ((LazyRow) row).hasNames();
         }
       };
 
+  /**
+   * Serialize the batch to bytes. The schema of batch is written only once and the values are
+   * written column by column. see {@link RowBatch} for the layout.
+   */
+  Serializer<RowBatch> ROW_BATCH =
+      new Serializer<RowBatch>() {
+        @Override
+        public byte[] to(RowBatch batch) {
+          return batch.toBytes();
+        }
+
+        @Override
+        public RowBatch from(byte[] bytes) {
+          return RowBatch.of(ByteBuffer.wrap(bytes));
+        }
+
+        @Override
+        public int sizeOf(RowBatch batch) {
+          return batch.sizeInBytes();
+        }
+
+        @Override
+        public void writeTo(RowBatch batch, ByteBuffer buffer) {
+          if (buffer.remaining() < batch.sizeInBytes()) throw new BufferOverflowException();
+          batch.write(ByteOutput.of(buffer));
+        }
+
+        @Override
+        public void writeTo(RowBatch batch, OutputStream output) {
+          batch.write(ByteOutput.of(output));
+        }
+
+        @Override
+        public RowBatch from(ByteBuffer buffer) {
+          // the data is copied so the returned batch does not reference the buffer
+          RowBatch batch = RowBatch.of(buffer);
+          buffer.position(buffer.limit());
+          return batch;
+        }
+      };
+
+  /**
+   * Serialize the object to bytes. The object whose class is registered to {@link ObjectRegistry}
+   * is written by the registered serializer, and other objects are written by java serialization.
+   * The deserialization supports both of them.
+   */
   Serializer<Object> OBJECT =
       new Serializer<Object>() {
         @Override
         public byte[] to(Object obj) {
-          try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-              ObjectOutputStream out = new ObjectOutputStream(bytes)) {
-            out.writeObject(obj);
-            out.flush();
-            return bytes.toByteArray();
-          } catch (IOException e) {
-            throw new IllegalArgumentException(e);
-          }
+          return ObjectRegistry.encode(obj);
         }
 
         @Override
         public Object from(byte[] bytes) {
-          try (ByteArrayInputStream bs = new ByteArrayInputStream(bytes);
-              ObjectInputStream input = new ObjectInputStream(bs)) {
-            return input.readObject();
-          } catch (IOException | java.lang.ClassNotFoundException e) {
-            throw new IllegalArgumentException(e);
-          }
+          return ObjectRegistry.decode(bytes);
         }
       };
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+/** a cell carrying short value. see {@link PrimitiveCell} */
+public final class ShortCell extends PrimitiveCell<Short> {
+  private final short value;
+
+  ShortCell(String name, short value) {
+    super(name);
+    this.value = value;
+  }
+
+  /** @return the short value without boxing */
+  public short shortValue() {
+    return value;
+  }
+
+  @Override
+  public Short value() {
+    return value;
+  }
+
+  @Override
+  public DataType dataType() {
+    return DataType.SHORT;
+  }
+
+  @Override
+  boolean valueEquals(Cell<?> that) {
+    if (that instanceof ShortCell) return value == ((ShortCell) that).value;
+    return value().equals(that.value());
+  }
+
+  @Override
+  int valueHashCode() {
+    return Short.hashCode(value);
+  }
+}
@@ -21,6 +21,10 @@ public class OharaTimeoutException extends OharaException {
 
   public OharaTimeoutException() {}
 
+  public OharaTimeoutException(String message) {
+    super(message);
+  }
+
   public OharaTimeoutException(Throwable e) {
     super(e);
   }
@@ -20,12 +20,19 @@ import com.google.common.collect.ImmutableBiMap;
 import com.island.ohara.common.rule.SmallTest;
 import com.island.ohara.common.util.CommonUtils;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -160,10 +167,14 @@ public class TestCache extends SmallTest {
             }
           });
       TimeUnit.SECONDS.sleep(2);
-      Assert.assertFalse(secondCall.get());
-      if (blockingOnGet) Assert.assertFalse(thirdCall.get());
-      // there is already a old value for "key" so the third call should not be blocked
-      else Assert.assertTrue(thirdCall.get());
+      if (blockingOnGet) {
+        Assert.assertFalse(secondCall.get());
+        Assert.assertFalse(thirdCall.get());
+      } else {
+        // the reload is executed in background so both calls get the old value
+        Assert.assertTrue(secondCall.get());
+        Assert.assertTrue(thirdCall.get());
+      }
       latch.countDown();
       TimeUnit.SECONDS.sleep(2);
       Assert.assertTrue(secondCall.get());
@@ -204,4 +215,180 @@ public class TestCache extends SmallTest {
         UnsupportedOperationException.class,
         () -> cache.snapshot().put(key, CommonUtils.randomString()));
   }
+
+  @Test(expected = NullPointerException.class)
+  public void nullBulkFetcher() {
+    Cache.<String, String>builder().bulkFetcher(null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullBatchWindow() {
+    Cache.<String, String>builder().batchWindow(null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullScheduler() {
+    Cache.<String, String>builder().scheduler(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFetcherAndBulkFetcher() {
+    Cache.<String, String>builder()
+        .fetcher(key -> key)
+        .bulkFetcher(keys -> Collections.emptyMap())
+        .build();
+  }
+
+  @Test
+  public void testBulkFetcher() throws Exception {
+    int numberOfKeys = 10;
+    List<Set<String>> calls = new CopyOnWriteArrayList<>();
+    Cache<String, String> cache =
+        Cache.<String, String>builder()
+            .timeout(Duration.ofSeconds(10))
+            .batchWindow(Duration.ofMillis(500))
+            .bulkFetcher(
+                keys -> {
+                  calls.add(keys);
+                  return keys.stream().collect(Collectors.toMap(k -> k, k -> k + "-value"));
+                })
+            .build();
+    ExecutorService service = Executors.newFixedThreadPool(numberOfKeys);
+    try {
+      List<Future<String>> values =
+          IntStream.range(0, numberOfKeys)
+              .mapToObj(i -> service.submit(() -> cache.get(String.valueOf(i))))
+              .collect(Collectors.toList());
+      for (int i = 0; i != numberOfKeys; ++i)
+        Assert.assertEquals(i + "-value", values.get(i).get(10, TimeUnit.SECONDS));
+      // all misses are fetched by a single call
+      Assert.assertEquals(1, calls.size());
+      Assert.assertEquals(numberOfKeys, calls.get(0).size());
+    } finally {
+      service.shutdownNow();
+      Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testBulkFetcherInSchedulerThread() throws InterruptedException {
+    try (RefreshScheduler scheduler = RefreshScheduler.of(1)) {
+      Cache<String, String> cache =
+          Cache.<String, String>builder()
+              .scheduler(scheduler)
+              .batchWindow(Duration.ofMillis(100))
+              .bulkFetcher(
+                  keys -> keys.stream().collect(Collectors.toMap(k -> k, k -> k + "-value")))
+              .build();
+      List<String> values = new CopyOnWriteArrayList<>();
+      CountDownLatch latch = new CountDownLatch(1);
+      // the only thread of scheduler is blocked by the get if the flush is run by scheduler
+      RefreshScheduler.Task task =
+          scheduler.register(
+              () -> {
+                values.add(cache.get("a"));
+                latch.countDown();
+              },
+              Duration.ofDays(1));
+      task.requestUpdate();
+      Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(Collections.singletonList("a-value"), values);
+      task.close();
+    }
+  }
+
+  @Test
+  public void testBulkFetcherMissKey() {
+    Cache<String, String> cache =
+        Cache.<String, String>builder().bulkFetcher(keys -> Collections.emptyMap()).build();
+    try {
+      cache.get(CommonUtils.randomString());
+      Assert.fail("the value of key is not fetched");
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSingleFlight() throws Exception {
+    int numberOfThreads = 10;
+    AtomicInteger count = new AtomicInteger(0);
+    CountDownLatch latch = new CountDownLatch(1);
+    Cache<String, String> cache =
+        Cache.<String, String>builder()
+            .fetcher(
+                key -> {
+                  count.incrementAndGet();
+                  try {
+                    latch.await();
+                  } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                  }
+                  return key;
+                })
+            .build();
+    String key = CommonUtils.randomString();
+    ExecutorService service = Executors.newFixedThreadPool(numberOfThreads);
+    try {
+      List<Future<String>> values =
+          IntStream.range(0, numberOfThreads)
+              .mapToObj(i -> service.submit(() -> cache.get(key)))
+              .collect(Collectors.toList());
+      TimeUnit.SECONDS.sleep(1);
+      latch.countDown();
+      for (Future<String> value : values) Assert.assertEquals(key, value.get(10, TimeUnit.SECONDS));
+      Assert.assertEquals(1, count.get());
+    } finally {
+      service.shutdownNow();
+      Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeWeight() {
+    Cache.<String, String>builder().maxWeight(-1);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullWeigher() {
+    Cache.<String, String>builder().weigher(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxSizeAndMaxWeight() {
+    Cache.<String, String>builder().fetcher(key -> key).maxSize(10).maxWeight(10).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWeigherWithoutMaxWeight() {
+    Cache.<String, String>builder().fetcher(key -> key).weigher((k, v) -> 1).build();
+  }
+
+  @Test
+  public void testMaxWeight() {
+    Cache<String, String> cache =
+        Cache.<String, String>builder()
+            .fetcher(key -> key)
+            .maxWeight(100)
+            .weigher((k, v) -> v.length())
+            .build();
+    // each value weighs 10 so the cache can't keep all of them
+    for (int i = 0; i != 20; ++i)
+      cache.put(String.valueOf(i), String.join("", Collections.nCopies(10, "a")));
+    Assert.assertTrue(cache.size() <= 10);
+    Assert.assertEquals(20 - cache.size(), cache.statistics().evictionCount());
+  }
+
+  @Test
+  public void testDefaultWeigher() {
+    Cache<String, String> cache =
+        Cache.<String, String>builder()
+            .fetcher(key -> String.join("", Collections.nCopies(1000, "a")))
+            .maxWeight(10 * 1024)
+            .build();
+    for (int i = 0; i != 100; ++i) cache.get(String.valueOf(i));
+    // each value takes about 2KB
+    Assert.assertTrue(cache.size() < 10);
+  }
 }
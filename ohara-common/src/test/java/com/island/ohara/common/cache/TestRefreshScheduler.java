@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import com.island.ohara.common.rule.SmallTest;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRefreshScheduler extends SmallTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroThreads() {
+    RefreshScheduler.of(0);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testCloseShared() {
+    RefreshScheduler.shared().close();
+  }
+
+  @Test
+  public void testShared() {
+    Assert.assertSame(RefreshScheduler.shared(), RefreshScheduler.shared());
+  }
+
+  @Test
+  public void testManyTasksOnFewThreads() throws InterruptedException {
+    int numberOfTasks = 100;
+    try (RefreshScheduler scheduler = RefreshScheduler.of(2)) {
+      CountDownLatch latch = new CountDownLatch(numberOfTasks);
+      IntStream.range(0, numberOfTasks)
+          .forEach(i -> scheduler.register(latch::countDown, Duration.ofMillis(100)));
+      Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testSlowTaskDoesNotBlockOthers() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger count = new AtomicInteger(0);
+    try (RefreshScheduler scheduler = RefreshScheduler.of(2)) {
+      scheduler.register(
+          () -> {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              // nothing
+            }
+          },
+          Duration.ofMillis(10));
+      scheduler.register(count::incrementAndGet, Duration.ofMillis(100));
+      TimeUnit.SECONDS.sleep(2);
+      Assert.assertTrue(count.get() >= 5);
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testCoalesceRequests() throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger count = new AtomicInteger(0);
+    try (RefreshScheduler scheduler = RefreshScheduler.of(4)) {
+      RefreshScheduler.Task task =
+          scheduler.register(
+              () -> {
+                count.incrementAndGet();
+                start.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  // nothing
+                }
+              },
+              Duration.ofDays(1));
+      task.requestUpdate();
+      Assert.assertTrue(start.await(10, TimeUnit.SECONDS));
+      // the refresh is running so all requests are coalesced to a single refresh
+      IntStream.range(0, 100).forEach(i -> task.requestUpdate());
+      release.countDown();
+      TimeUnit.SECONDS.sleep(1);
+      Assert.assertEquals(2, count.get());
+      Assert.assertEquals(2, task.refreshCount());
+      Assert.assertEquals(0, task.failureCount());
+      Assert.assertTrue(task.maxDuration().compareTo(task.lastDuration()) >= 0);
+      Assert.assertTrue(task.totalDuration().compareTo(task.maxDuration()) >= 0);
+    }
+  }
+
+  @Test
+  public void testFailure() throws InterruptedException {
+    try (RefreshScheduler scheduler = RefreshScheduler.of(1)) {
+      RefreshScheduler.Task task =
+          scheduler.register(
+              () -> {
+                throw new RuntimeException("you can't pass");
+              },
+              Duration.ofMillis(100));
+      TimeUnit.SECONDS.sleep(1);
+      // the failed task is still scheduled
+      Assert.assertTrue(task.failureCount() >= 2);
+      Assert.assertEquals(task.refreshCount(), task.failureCount());
+    }
+  }
+
+  @Test
+  public void testClose() throws InterruptedException {
+    AtomicInteger count = new AtomicInteger(0);
+    try (RefreshScheduler scheduler = RefreshScheduler.of(1)) {
+      RefreshScheduler.Task task =
+          scheduler.register(count::incrementAndGet, Duration.ofMillis(100));
+      TimeUnit.SECONDS.sleep(1);
+      task.close();
+      int current = count.get();
+      Assert.assertTrue(current > 0);
+      TimeUnit.SECONDS.sleep(1);
+      // the running refresh is not interrupted
+      Assert.assertTrue(count.get() - current <= 1);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRequestUpdateAfterClose() {
+    try (RefreshScheduler scheduler = RefreshScheduler.of(1)) {
+      RefreshScheduler.Task task = scheduler.register(() -> {}, Duration.ofSeconds(1));
+      task.close();
+      task.requestUpdate();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRegisterAfterClose() {
+    RefreshScheduler scheduler = RefreshScheduler.of(1);
+    scheduler.close();
+    scheduler.register(() -> {}, Duration.ofSeconds(1));
+  }
+}
@@ -20,13 +20,20 @@ import com.google.common.collect.ImmutableMap;
 import com.island.ohara.common.rule.SmallTest;
 import com.island.ohara.common.util.CommonUtils;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.junit.Assert;
 import org.junit.Test;
@@ -298,6 +305,384 @@ public class TestRefreshableCache extends SmallTest {
     }
   }
 
+  @Test(expected = NullPointerException.class)
+  public void nullScheduler() {
+    RefreshableCache.<String, String>builder().scheduler(null);
+  }
+
+  @Test
+  public void testSharedScheduler() throws InterruptedException {
+    String key = CommonUtils.randomString();
+    try (RefreshScheduler scheduler = RefreshScheduler.of(1)) {
+      List<RefreshableCache<String, String>> caches =
+          IntStream.range(0, 10)
+              .mapToObj(
+                  i ->
+                      RefreshableCache.<String, String>builder()
+                          .supplier(() -> Collections.singletonMap(key, String.valueOf(i)))
+                          .frequency(Duration.ofMillis(300))
+                          .scheduler(scheduler)
+                          .build())
+              .collect(Collectors.toList());
+      TimeUnit.SECONDS.sleep(2);
+      IntStream.range(0, caches.size())
+          .forEach(
+              i -> {
+                RefreshableCache<String, String> cache = caches.get(i);
+                Assert.assertEquals(String.valueOf(i), cache.get(key).get());
+                Assert.assertTrue(cache.statistics().loadCount() > 0);
+                Assert.assertEquals(0, cache.statistics().loadFailureCount());
+                cache.close();
+              });
+    }
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullDeltaSupplier() {
+    RefreshableCache.<String, String>builder().deltaSupplier(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSupplierAndDeltaSupplier() {
+    RefreshableCache.<String, String>builder()
+        .supplier(Collections::emptyMap)
+        .deltaSupplier(DeltaSupplier.Delta::unchanged)
+        .build();
+  }
+
+  @Test
+  public void testDeltaSupplier() {
+    String key = CommonUtils.randomString();
+    String removedKey = CommonUtils.randomString();
+    List<Long> versions = new CopyOnWriteArrayList<>();
+    try (RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .deltaSupplier(
+                version -> {
+                  versions.add(version);
+                  if (version == DeltaSupplier.INITIAL_VERSION)
+                    return DeltaSupplier.Delta.full(Collections.singletonMap(key, "0"), 0);
+                  if (version == 0)
+                    return DeltaSupplier.Delta.of(
+                        Collections.singletonMap(key, "1"), Collections.singleton(removedKey), 1);
+                  return DeltaSupplier.Delta.unchanged(version);
+                })
+            .frequency(Duration.ofDays(1))
+            .build()) {
+      cache.put(removedKey, CommonUtils.randomString());
+      String otherKey = CommonUtils.randomString();
+      cache.put(otherKey, CommonUtils.randomString());
+
+      // the full delta replaces all data
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 1, Duration.ofSeconds(10));
+      Assert.assertEquals(Collections.singletonMap(key, "0"), cache.snapshot());
+
+      cache.put(removedKey, CommonUtils.randomString());
+      cache.put(otherKey, "a");
+      // the delta updates the key and remove the removed key only
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 2, Duration.ofSeconds(10));
+      Assert.assertEquals(ImmutableMap.of(key, "1", otherKey, "a"), cache.snapshot());
+
+      // nothing is changed
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 3, Duration.ofSeconds(10));
+      Assert.assertEquals(ImmutableMap.of(key, "1", otherKey, "a"), cache.snapshot());
+      Assert.assertEquals(Arrays.asList(DeltaSupplier.INITIAL_VERSION, 0L, 1L), versions);
+    }
+  }
+
+  /**
+   * run a delta cache which has all data in the full delta. The unchanged delta is returned if the
+   * version is not initial.
+   *
+   * @param builder the builder to configure
+   * @param drop the action dropping data from cache after the first refresh
+   * @return the versions passed to the delta supplier
+   */
+  private static List<Long> testDroppedData(
+      RefreshableCache.Builder<String, String> builder,
+      Consumer<RefreshableCache<String, String>> drop) {
+    List<Long> versions = new CopyOnWriteArrayList<>();
+    try (RefreshableCache<String, String> cache =
+        builder
+            .deltaSupplier(
+                version -> {
+                  versions.add(version);
+                  return version == DeltaSupplier.INITIAL_VERSION
+                      ? DeltaSupplier.Delta.full(Collections.singletonMap("a", "a"), 0)
+                      : DeltaSupplier.Delta.unchanged(version);
+                })
+            .frequency(Duration.ofDays(1))
+            .build()) {
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 1, Duration.ofSeconds(10));
+      drop.accept(cache);
+      // the dropped data are reloaded by full delta
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 2, Duration.ofSeconds(10));
+      Assert.assertEquals("a", cache.get("a").get());
+    }
+    return versions;
+  }
+
+  @Test
+  public void testDeltaSupplierAfterRemove() {
+    Assert.assertEquals(
+        Arrays.asList(DeltaSupplier.INITIAL_VERSION, DeltaSupplier.INITIAL_VERSION),
+        testDroppedData(RefreshableCache.builder(), cache -> cache.remove("a")));
+  }
+
+  @Test
+  public void testDeltaSupplierAfterClear() {
+    Assert.assertEquals(
+        Arrays.asList(DeltaSupplier.INITIAL_VERSION, DeltaSupplier.INITIAL_VERSION),
+        testDroppedData(RefreshableCache.builder(), RefreshableCache::clear));
+  }
+
+  @Test
+  public void testDeltaSupplierAfterTimeout() {
+    Assert.assertEquals(
+        Arrays.asList(DeltaSupplier.INITIAL_VERSION, DeltaSupplier.INITIAL_VERSION),
+        testDroppedData(
+            RefreshableCache.<String, String>builder().timeout(Duration.ofMillis(100)),
+            cache -> CommonUtils.await(() -> !cache.get("a").isPresent(), Duration.ofSeconds(10))));
+  }
+
+  @Test
+  public void testDeltaSupplierAfterSizeEviction() {
+    Assert.assertEquals(
+        Arrays.asList(DeltaSupplier.INITIAL_VERSION, DeltaSupplier.INITIAL_VERSION),
+        testDroppedData(
+            RefreshableCache.<String, String>builder().maxSize(1),
+            cache -> {
+              cache.put("b", "b");
+              Assert.assertFalse(cache.get("a").isPresent());
+            }));
+  }
+
+  @Test
+  public void testDeltaSupplierAfterWeightEviction() {
+    Assert.assertEquals(
+        Arrays.asList(DeltaSupplier.INITIAL_VERSION, DeltaSupplier.INITIAL_VERSION),
+        testDroppedData(
+            RefreshableCache.<String, String>builder().maxWeight(1).weigher((k, v) -> 1),
+            cache -> {
+              cache.put("b", "b");
+              Assert.assertFalse(cache.get("a").isPresent());
+            }));
+  }
+
+  @Test
+  public void testUnchangedDeltaSupplier() {
+    // nothing is dropped so the second delta is not full
+    Assert.assertEquals(
+        Arrays.asList(DeltaSupplier.INITIAL_VERSION, 0L),
+        testDroppedData(RefreshableCache.builder(), cache -> {}));
+  }
+
+  @Test
+  public void testDeltaSupplierWithRemoveListener() {
+    String key = CommonUtils.randomString();
+    String value = CommonUtils.randomString();
+    try (RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .deltaSupplier(
+                version ->
+                    DeltaSupplier.Delta.of(Collections.emptyMap(), Collections.singleton(key), 1))
+            .frequency(Duration.ofDays(1))
+            .preRemoveObserver((k, v) -> !key.equals(k))
+            .build()) {
+      cache.put(key, value);
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 1, Duration.ofSeconds(10));
+      Assert.assertEquals(value, cache.get(key).get());
+    }
+  }
+
+  @Test
+  public void testStatistics() {
+    AtomicBoolean fail = new AtomicBoolean(true);
+    String key = CommonUtils.randomString();
+    try (RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .supplier(
+                () -> {
+                  if (fail.get()) throw new IllegalStateException("you can't pass");
+                  return Collections.singletonMap(key, key);
+                })
+            .frequency(Duration.ofDays(1))
+            .build()) {
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadFailureCount() == 1, Duration.ofSeconds(10));
+      fail.set(false);
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 2, Duration.ofSeconds(10));
+      Assert.assertEquals(1, cache.statistics().loadFailureCount());
+      Assert.assertEquals(2, Arrays.stream(cache.statistics().loadTimeDistribution()).sum());
+      Assert.assertTrue(cache.get(key).isPresent());
+      Assert.assertFalse(cache.get(CommonUtils.randomString()).isPresent());
+      Assert.assertEquals(1, cache.statistics().hitCount());
+      Assert.assertEquals(1, cache.statistics().missCount());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxSizeAndMaxWeight() {
+    RefreshableCache.<String, String>builder()
+        .supplier(Collections::emptyMap)
+        .maxSize(10)
+        .maxWeight(10)
+        .build();
+  }
+
+  @Test
+  public void testMaxWeight() {
+    try (RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .supplier(Collections::emptyMap)
+            .frequency(Duration.ofDays(1))
+            .maxWeight(100)
+            .weigher((k, v) -> v.length())
+            .build()) {
+      // each value weighs 10 so the cache can't keep all of them
+      for (int i = 0; i != 20; ++i)
+        cache.put(String.valueOf(i), String.join("", Collections.nCopies(10, "a")));
+      Assert.assertTrue(cache.size() <= 10);
+      Assert.assertEquals(20 - cache.size(), cache.statistics().evictionCount());
+    }
+  }
+
+  @Test
+  public void testVersionedSnapshot() {
+    String key = CommonUtils.randomString();
+    try (RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .supplier(() -> Collections.singletonMap(key, key))
+            .frequency(Duration.ofDays(1))
+            .build()) {
+      long version = cache.version();
+      Map<String, String> snapshot = cache.snapshot();
+      // nothing is changed so the snapshot is reused
+      Assert.assertSame(snapshot, cache.snapshot());
+      Assert.assertEquals(version, cache.version());
+
+      cache.put(key, "a");
+      Assert.assertNotEquals(version, cache.version());
+      Assert.assertNotSame(snapshot, cache.snapshot());
+      Assert.assertEquals(Collections.singletonMap(key, "a"), cache.snapshot());
+
+      // same value doesn't change the version
+      version = cache.version();
+      snapshot = cache.snapshot();
+      cache.put(key, "a");
+      Assert.assertEquals(version, cache.version());
+      Assert.assertSame(snapshot, cache.snapshot());
+
+      // the refresh changes the value
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 1, Duration.ofSeconds(10));
+      Assert.assertNotEquals(version, cache.version());
+      Assert.assertEquals(Collections.singletonMap(key, key), cache.snapshot());
+
+      // the refresh supplying same data doesn't change the version
+      version = cache.version();
+      snapshot = cache.snapshot();
+      cache.requestUpdate();
+      CommonUtils.await(() -> cache.statistics().loadCount() == 2, Duration.ofSeconds(10));
+      Assert.assertEquals(version, cache.version());
+      Assert.assertSame(snapshot, cache.snapshot());
+
+      cache.remove(CommonUtils.randomString());
+      Assert.assertEquals(version, cache.version());
+      cache.remove(key);
+      Assert.assertNotEquals(version, cache.version());
+      Assert.assertEquals(0, cache.snapshot().size());
+
+      version = cache.version();
+      cache.clear();
+      Assert.assertNotEquals(version, cache.version());
+    }
+  }
+
+  @Test
+  public void testVersionOfTimeout() throws InterruptedException {
+    try (RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .supplier(Collections::emptyMap)
+            .frequency(Duration.ofDays(1))
+            .timeout(Duration.ofSeconds(1))
+            .build()) {
+      cache.put(CommonUtils.randomString(), CommonUtils.randomString());
+      long version = cache.version();
+      Assert.assertEquals(1, cache.snapshot().size());
+      TimeUnit.SECONDS.sleep(2);
+      // the timeout data is evicted
+      Assert.assertEquals(0, cache.snapshot().size());
+      Assert.assertNotEquals(version, cache.version());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testVersionAfterClose() {
+    RefreshableCache<String, String> cache = cache();
+    cache.close();
+    cache.version();
+  }
+
+  @Test
+  public void testCloseInterruptsRunningRefresh() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .supplier(
+                () -> {
+                  started.countDown();
+                  try {
+                    // the supplier is blocked by a remote call which never returns
+                    TimeUnit.DAYS.sleep(1);
+                  } catch (InterruptedException e) {
+                    interrupted.countDown();
+                  }
+                  return Collections.singletonMap("a", "a");
+                })
+            .frequency(Duration.ofDays(1))
+            .build();
+    cache.requestUpdate();
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+    ExecutorService service = Executors.newSingleThreadExecutor();
+    try {
+      // the close is not blocked by the hung supplier
+      service.submit(cache::close).get(5, TimeUnit.SECONDS);
+      Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+      Assert.assertEquals(1, cache.statistics().loadCount());
+    } finally {
+      service.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCloseInSupplier() throws Exception {
+    AtomicReference<RefreshableCache<String, String>> ref = new AtomicReference<>();
+    CountDownLatch closed = new CountDownLatch(1);
+    RefreshableCache<String, String> cache =
+        RefreshableCache.<String, String>builder()
+            .supplier(
+                () -> {
+                  // the refresh can't wait for itself
+                  ref.get().close();
+                  closed.countDown();
+                  return Collections.emptyMap();
+                })
+            .frequency(Duration.ofDays(1))
+            .build();
+    ref.set(cache);
+    cache.requestUpdate();
+    Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+  }
+
   private static RefreshableCache<String, String> cache() {
     return RefreshableCache.<String, String>builder()
         .supplier(
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.cache;
+
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSizeEstimator extends SmallTest {
+
+  @Test
+  public void testNull() {
+    Assert.assertEquals(0, SizeEstimator.estimate(null));
+    Assert.assertEquals(0, SizeEstimator.estimate(TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testString() {
+    Assert.assertTrue(
+        SizeEstimator.estimate(String.join("", Collections.nCopies(1000, "a")))
+            > SizeEstimator.estimate(String.join("", Collections.nCopies(10, "a"))));
+    Assert.assertTrue(
+        SizeEstimator.estimate(String.join("", Collections.nCopies(1000, "a"))) >= 2000);
+  }
+
+  @Test
+  public void testArray() {
+    Assert.assertTrue(SizeEstimator.estimate(new byte[1000]) >= 1000);
+    Assert.assertTrue(SizeEstimator.estimate(new long[1000]) >= 8000);
+    Assert.assertTrue(
+        SizeEstimator.estimate(new String[] {String.join("", Collections.nCopies(1000, "a"))})
+            >= 2000);
+  }
+
+  @Test
+  public void testNested() {
+    String value = String.join("", Collections.nCopies(1000, "a"));
+    int size = SizeEstimator.estimate(value);
+    Assert.assertTrue(SizeEstimator.estimate(Collections.singletonList(value)) > size);
+    Assert.assertTrue(SizeEstimator.estimate(Collections.singletonMap("a", value)) > size);
+    Assert.assertTrue(SizeEstimator.estimate(Optional.of(value)) > size);
+    Assert.assertTrue(
+        SizeEstimator.estimate(Arrays.asList(value, value)) > SizeEstimator.estimate(value) * 2);
+  }
+
+  @Test
+  public void testUnknown() {
+    Assert.assertEquals(SizeEstimator.UNKNOWN_SIZE, SizeEstimator.estimate(new Object()));
+  }
+
+  @Test
+  public void testCyclic() {
+    List<Object> list = new ArrayList<>();
+    list.add(list);
+    Assert.assertTrue(SizeEstimator.estimate(list) > 0);
+  }
+
+  @Test
+  public void testWeigh() {
+    String key = CommonUtils.randomString();
+    String value = CommonUtils.randomString();
+    Assert.assertEquals(
+        SizeEstimator.estimate(key) + SizeEstimator.estimate(value),
+        SizeEstimator.weigh(key, value));
+  }
+}
@@ -67,4 +67,43 @@ public class TestCell extends SmallTest {
     Assert.assertEquals(c.name(), "abc");
     Assert.assertEquals(c.value(), Row.of(Cell.of("abc", "aaa")));
   }
+
+  /** the primitive cells must be compatible with the cells carrying boxed value */
+  private static void checkPrimitive(Cell<?> primitive, Object boxed, DataType type) {
+    Cell<?> cell = Cell.of(primitive.name(), boxed);
+    Assert.assertEquals(type, primitive.dataType());
+    Assert.assertEquals(type, cell.dataType());
+    Assert.assertEquals(boxed, primitive.value());
+    Assert.assertEquals(cell, primitive);
+    Assert.assertEquals(primitive, cell);
+    Assert.assertEquals(cell.hashCode(), primitive.hashCode());
+    Assert.assertEquals(cell.toString(), primitive.toString());
+    Assert.assertNotEquals(Cell.of(primitive.name() + "a", boxed), primitive);
+  }
+
+  @Test
+  public void testPrimitiveCells() {
+    checkPrimitive(Cell.of("a", true), Boolean.TRUE, DataType.BOOLEAN);
+    checkPrimitive(Cell.of("a", (byte) 1), (byte) 1, DataType.BYTE);
+    checkPrimitive(Cell.of("a", (short) 1), (short) 1, DataType.SHORT);
+    checkPrimitive(Cell.of("a", 1), 1, DataType.INT);
+    checkPrimitive(Cell.of("a", 1L), 1L, DataType.LONG);
+    checkPrimitive(Cell.of("a", 1.5F), 1.5F, DataType.FLOAT);
+    checkPrimitive(Cell.of("a", 1.5D), 1.5D, DataType.DOUBLE);
+    checkPrimitive(Cell.of("a", Double.NaN), Double.NaN, DataType.DOUBLE);
+  }
+
+  @Test
+  public void testPrimitiveValue() {
+    Assert.assertTrue(Cell.of("a", true).booleanValue());
+    Assert.assertEquals(1, Cell.of("a", (byte) 1).byteValue());
+    Assert.assertEquals(2, Cell.of("a", (short) 2).shortValue());
+    Assert.assertEquals(3, Cell.of("a", 3).intValue());
+    Assert.assertEquals(4L, Cell.of("a", 4L).longValue());
+    Assert.assertEquals(5.0F, Cell.of("a", 5.0F).floatValue(), 0);
+    Assert.assertEquals(6.0D, Cell.of("a", 6.0D).doubleValue(), 0);
+    Assert.assertNotEquals(Cell.of("a", 3), Cell.of("a", 3L));
+    Assert.assertNotEquals(Cell.of("a", 3), Cell.of("a", 4));
+    Assert.assertEquals(Character.valueOf('c'), Cell.of("a", 'c').value());
+  }
 }
@@ -17,7 +17,9 @@
 package com.island.ohara.common.data;
 
 import com.island.ohara.common.rule.SmallTest;
+import java.math.BigDecimal;
 import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
@@ -66,5 +68,14 @@ public class TestDataType extends SmallTest {
     Assert.assertEquals(DataType.BYTES, DataType.from(new byte[2]));
     Assert.assertEquals(DataType.ROW, DataType.from(Row.of(Cell.of("aa", "aa"))));
     Assert.assertEquals(DataType.OBJECT, DataType.from(new Time(123123)));
+    Assert.assertEquals(DataType.OBJECT, DataType.from(new java.util.Date(123123)));
+    Assert.assertEquals(DataType.TIMESTAMP, DataType.from(new Timestamp(123123)));
+    Assert.assertEquals(DataType.DATE, DataType.from(new java.sql.Date(123123)));
+    Assert.assertEquals(DataType.DECIMAL, DataType.from(BigDecimal.TEN));
+    Assert.assertEquals(DataType.ARRAY, DataType.from(new int[2]));
+    Assert.assertEquals(DataType.ARRAY, DataType.from(new byte[2][]));
+    Assert.assertEquals(DataType.ARRAY, DataType.from(new String[2]));
+    // the array of unsupported type is a serializable object
+    Assert.assertEquals(DataType.OBJECT, DataType.from(new Time[2]));
   }
 }
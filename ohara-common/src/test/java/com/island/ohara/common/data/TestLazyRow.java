@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.rule.SmallTest;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLazyRow extends SmallTest {
+
+  private static final Row ROW =
+      Row.of(
+          Arrays.asList("tag", "tag2"),
+          Cell.of("bytes", new byte[] {1, 2, 3}),
+          Cell.of("boolean", true),
+          Cell.of("byte", (byte) 10),
+          Cell.of("short", (short) 11),
+          Cell.of("int", 12),
+          Cell.of("long", 13L),
+          Cell.of("float", 14.0F),
+          Cell.of("double", 15.0D),
+          Cell.of("string", "abc"),
+          Cell.of("row", Row.of(Cell.of("abc", "aaa"))),
+          Cell.of("object", new java.util.Date(100)));
+
+  @Test
+  public void testEquals() {
+    Row row = LazyRow.of(Serializer.ROW.to(ROW));
+    Assert.assertEquals(ROW, row);
+    Assert.assertEquals(row, ROW);
+    Assert.assertEquals(ROW.hashCode(), row.hashCode());
+  }
+
+  @Test
+  public void testCell() {
+    Row row = LazyRow.of(Serializer.ROW.to(ROW));
+    Assert.assertEquals(ROW.size(), row.size());
+    Assert.assertEquals(ROW.names(), row.names());
+    Assert.assertEquals(ROW.tags(), row.tags());
+    Assert.assertEquals(ROW.cell("string"), row.cell("string"));
+    Assert.assertEquals(ROW.cell(4), row.cell(4));
+    // the decoded cell is cached
+    Assert.assertSame(row.cell("int"), row.cell(4));
+    for (int i = 0; i != ROW.size(); ++i) Assert.assertEquals(ROW.cell(i), row.cell(i));
+  }
+
+  @Test
+  public void testNestedRow() {
+    Row row = LazyRow.of(Serializer.ROW.to(ROW));
+    Assert.assertTrue(row.cell("row").value() instanceof LazyRow);
+    Assert.assertEquals(ROW.cell("row").value(), row.cell("row").value());
+  }
+
+  @Test
+  public void testByteBuffer() {
+    byte[] bytes = Serializer.ROW.to(ROW);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 2);
+    buffer.put((byte) 100);
+    buffer.put(bytes);
+    buffer.put((byte) 100);
+    buffer.position(1);
+    buffer.limit(bytes.length + 1);
+    Row row = LazyRow.of(buffer);
+    Assert.assertEquals(ROW, row);
+    // the position of input buffer is not changed
+    Assert.assertEquals(1, buffer.position());
+  }
+
+  @Test
+  public void testToBytes() {
+    byte[] bytes = Serializer.ROW.to(ROW);
+    Assert.assertArrayEquals(bytes, Serializer.ROW.to(LazyRow.of(bytes)));
+  }
+
+  @Test
+  public void testEmpty() {
+    Row row = LazyRow.of(Serializer.ROW.to(Row.EMPTY));
+    Assert.assertEquals(0, row.size());
+    Assert.assertEquals(Collections.emptyList(), row.tags());
+    Assert.assertEquals(Row.EMPTY, row);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNonexistentName() {
+    LazyRow.of(Serializer.ROW.to(ROW)).cell("aaaaa");
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNonexistentIndex() {
+    LazyRow.of(Serializer.ROW.to(ROW)).cell(ROW.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBrokenBytes() {
+    byte[] bytes = Serializer.ROW.to(ROW);
+    LazyRow.of(Arrays.copyOf(bytes, bytes.length / 2));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnknownVersion() {
+    byte[] bytes = Serializer.ROW.to(ROW);
+    bytes[0] = 100;
+    LazyRow.of(bytes);
+  }
+}
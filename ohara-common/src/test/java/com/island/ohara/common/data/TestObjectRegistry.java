@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.ByteUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestObjectRegistry extends SmallTest {
+
+  private static byte[] javaSerialize(Object obj) throws IOException {
+    try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(obj);
+      out.flush();
+      return bytes.toByteArray();
+    }
+  }
+
+  @Test
+  public void testBuiltInTypes() throws IOException {
+    Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+    timestamp.setNanos(123456789);
+    for (Object obj :
+        Arrays.asList(
+            new Date(100),
+            timestamp,
+            new java.sql.Date(1000),
+            new Time(10000),
+            new BigDecimal("-12345678901234567890.123456789"),
+            new BigInteger("98765432109876543210"),
+            Instant.ofEpochSecond(100, 200),
+            LocalDate.of(2019, 5, 6),
+            LocalTime.of(1, 2, 3, 4),
+            LocalDateTime.of(2019, 5, 6, 1, 2, 3, 4),
+            UUID.randomUUID(),
+            'c')) {
+      Assert.assertTrue(ObjectRegistry.isRegistered(obj.getClass()));
+      byte[] bytes = Serializer.OBJECT.to(obj);
+      Assert.assertEquals(ObjectRegistry.VERSION, bytes[0]);
+      Assert.assertTrue(bytes.length < javaSerialize(obj).length);
+      Object another = Serializer.OBJECT.from(bytes);
+      Assert.assertEquals(obj.getClass(), another.getClass());
+      Assert.assertEquals(obj, another);
+    }
+  }
+
+  @Test
+  public void testJavaSerialization() {
+    ArrayList<String> obj = new ArrayList<>(Arrays.asList("a", "b"));
+    Assert.assertFalse(ObjectRegistry.isRegistered(obj.getClass()));
+    Assert.assertEquals(obj, Serializer.OBJECT.from(Serializer.OBJECT.to(obj)));
+  }
+
+  /** the data written by previous version are java serialization */
+  @Test
+  public void testReadJavaSerializedData() throws IOException {
+    Date date = new Date(100);
+    Assert.assertEquals(date, Serializer.OBJECT.from(javaSerialize(date)));
+    Row row = Row.of(Cell.of("a", date));
+    Assert.assertEquals(row, Serializer.ROW.from(Serializer.ROW.to(row)));
+  }
+
+  private static class Point implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int x;
+    private final int y;
+
+    private Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Point) return x == ((Point) obj).x && y == ((Point) obj).y;
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return x * 31 + y;
+    }
+  }
+
+  @Test
+  public void testRegister() {
+    Serializer<Point> serializer =
+        new Serializer<Point>() {
+          @Override
+          public byte[] to(Point obj) {
+            return ByteUtils.toBytes(((long) obj.x << 32) | (obj.y & 0xFFFFFFFFL));
+          }
+
+          @Override
+          public Point from(byte[] bytes) {
+            long value = ByteUtils.toLong(bytes);
+            return new Point((int) (value >>> 32), (int) value);
+          }
+        };
+    ObjectRegistry.register(ObjectRegistry.MIN_ID, Point.class, serializer);
+    Point point = new Point(-1, 2);
+    byte[] bytes = Serializer.OBJECT.to(point);
+    // version + type id (varint) + data
+    Assert.assertEquals(1 + 1 + Long.BYTES, bytes.length);
+    Assert.assertEquals(point, Serializer.OBJECT.from(bytes));
+
+    // duplicate id
+    assertException(
+        IllegalArgumentException.class,
+        () -> ObjectRegistry.register(ObjectRegistry.MIN_ID, String.class, Serializer.STRING));
+    // duplicate class
+    assertException(
+        IllegalArgumentException.class,
+        () -> ObjectRegistry.register(ObjectRegistry.MIN_ID + 1, Point.class, serializer));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReservedId() {
+    ObjectRegistry.register(ObjectRegistry.MIN_ID - 1, String.class, Serializer.STRING);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnregisteredId() {
+    Serializer.OBJECT.from(new byte[] {ObjectRegistry.VERSION, 99});
+  }
+}
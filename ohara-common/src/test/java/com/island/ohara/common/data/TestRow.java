@@ -19,6 +19,7 @@ package com.island.ohara.common.data;
 import com.island.ohara.common.rule.SmallTest;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.NoSuchElementException;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -77,4 +78,46 @@ public class TestRow extends SmallTest {
     Assert.assertEquals(row, row2);
     Assert.assertEquals(row2, row);
   }
+
+  @Test
+  public void testHashCodeIgnoresOrder() {
+    Row row = Row.of(Arrays.asList("tag", "tag2"), Cell.of("aa", "aa"), Cell.of("b", 123));
+    Row row2 = Row.of(Arrays.asList("tag2", "tag"), Cell.of("b", 123), Cell.of("aa", "aa"));
+    Assert.assertEquals(row, row2);
+    Assert.assertEquals(row2, row);
+    Assert.assertEquals(row.hashCode(), row2.hashCode());
+    Assert.assertEquals(row.hashCode(), LazyRow.of(Serializer.ROW.to(row2)).hashCode());
+  }
+
+  @Test
+  public void testNotEquals() {
+    Row row = Row.of(Arrays.asList("tag", "tag2"), Cell.of("aa", "aa"), Cell.of("b", 123));
+    Assert.assertNotEquals(
+        row, Row.of(Arrays.asList("tag", "tag2"), Cell.of("aa", "aa"), Cell.of("c", 123)));
+    Assert.assertNotEquals(
+        row, Row.of(Arrays.asList("tag", "tag2"), Cell.of("aa", "aa"), Cell.of("b", 124)));
+    Assert.assertNotEquals(row, Row.of(Arrays.asList("tag", "tag2"), Cell.of("aa", "aa")));
+    Assert.assertNotEquals(
+        row, Row.of(Collections.singletonList("tag"), Cell.of("aa", "aa"), Cell.of("b", 123)));
+    Assert.assertNotEquals(
+        Row.of(Collections.singletonList("tag"), Cell.of("aa", "aa"), Cell.of("b", 123)), row);
+  }
+
+  @Test
+  public void testNames() {
+    Row row = Row.of(Cell.of("aa", "aa"), Cell.of("b", 123));
+    Assert.assertEquals(Arrays.asList("aa", "b"), row.names());
+    Assert.assertSame(row.names(), row.names());
+    Assert.assertEquals(Cell.of("b", 123), row.cell("b"));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNonexistentName() {
+    Row.of(Cell.of("aa", "aa")).cell("b");
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNonexistentIndex() {
+    Row.of(Cell.of("aa", "aa")).cell(1);
+  }
 }
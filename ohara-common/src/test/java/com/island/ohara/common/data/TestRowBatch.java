@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.rule.SmallTest;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRowBatch extends SmallTest {
+
+  private static Row row(int index) {
+    return Row.of(
+        index % 2 == 0 ? Collections.emptyList() : Arrays.asList("tag", String.valueOf(index)),
+        Cell.of("bytes", new byte[] {(byte) index, 2, 3}),
+        Cell.of("boolean", index % 3 == 0),
+        Cell.of("byte", (byte) index),
+        Cell.of("short", (short) index),
+        Cell.of("int", index),
+        Cell.of("long", (long) index * 100),
+        Cell.of("float", index + 0.5F),
+        Cell.of("double", index + 0.25D),
+        Cell.of("string", "abc" + index),
+        Cell.of("row", Row.of(Cell.of("abc", index))),
+        Cell.of("object", new java.util.Date(index)));
+  }
+
+  private static List<Row> rows(int size) {
+    return IntStream.range(0, size).mapToObj(TestRowBatch::row).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testConversion() {
+    List<Row> rows = rows(10);
+    RowBatch batch = RowBatch.of(rows);
+    Assert.assertEquals(rows.size(), batch.size());
+    Assert.assertEquals(rows.get(0).names(), batch.names());
+    Assert.assertEquals(rows, batch.rows());
+    List<Row> iterated = new ArrayList<>();
+    batch.forEach(iterated::add);
+    Assert.assertEquals(rows, iterated);
+    Assert.assertEquals(rows.get(3).tags(), batch.row(3).tags());
+  }
+
+  @Test
+  public void testTypedValues() {
+    RowBatch batch = RowBatch.of(rows(10));
+    Assert.assertEquals(DataType.INT, batch.types().get(batch.columnIndex("int")));
+    for (int i = 0; i != batch.size(); ++i) {
+      Assert.assertEquals(i % 3 == 0, batch.booleanValue(i, batch.columnIndex("boolean")));
+      Assert.assertEquals((byte) i, batch.byteValue(i, batch.columnIndex("byte")));
+      Assert.assertEquals((short) i, batch.shortValue(i, batch.columnIndex("short")));
+      Assert.assertEquals(i, batch.intValue(i, batch.columnIndex("int")));
+      Assert.assertEquals(i * 100L, batch.longValue(i, batch.columnIndex("long")));
+      Assert.assertEquals(i + 0.5F, batch.floatValue(i, batch.columnIndex("float")), 0);
+      Assert.assertEquals(i + 0.25D, batch.doubleValue(i, batch.columnIndex("double")), 0);
+      Assert.assertEquals("abc" + i, batch.stringValue(i, batch.columnIndex("string")));
+      Assert.assertArrayEquals(
+          new byte[] {(byte) i, 2, 3}, batch.bytesValue(i, batch.columnIndex("bytes")));
+    }
+  }
+
+  @Test
+  public void testLogicalTypes() {
+    List<Row> rows =
+        IntStream.range(0, 10)
+            .mapToObj(
+                i ->
+                    Row.of(
+                        Cell.of("timestamp", new Timestamp(i * 1000L)),
+                        Cell.of("date", java.sql.Date.valueOf(LocalDate.ofEpochDay(i))),
+                        Cell.of("decimal", BigDecimal.valueOf(i, 2)),
+                        Cell.of("array", new int[] {i, i + 1})))
+            .collect(Collectors.toList());
+    RowBatch batch = RowBatch.of(rows);
+    for (int i = 0; i != batch.size(); ++i) {
+      Assert.assertEquals(
+          new Timestamp(i * 1000L), batch.timestampValue(i, batch.columnIndex("timestamp")));
+      Assert.assertEquals(
+          java.sql.Date.valueOf(LocalDate.ofEpochDay(i)),
+          batch.dateValue(i, batch.columnIndex("date")));
+      Assert.assertEquals(
+          BigDecimal.valueOf(i, 2), batch.decimalValue(i, batch.columnIndex("decimal")));
+    }
+    Assert.assertEquals(rows, batch.rows());
+    Assert.assertEquals(rows, Serializer.ROW_BATCH.from(Serializer.ROW_BATCH.to(batch)).rows());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongType() {
+    RowBatch batch = RowBatch.of(rows(1));
+    batch.longValue(0, batch.columnIndex("int"));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNonexistentColumn() {
+    RowBatch.of(rows(1)).columnIndex("aaa");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDifferentNames() {
+    RowBatch.of(Arrays.asList(Row.of(Cell.of("a", 1)), Row.of(Cell.of("b", 1))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDifferentTypes() {
+    RowBatch.of(Arrays.asList(Row.of(Cell.of("a", 1)), Row.of(Cell.of("a", 1L))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDifferentSize() {
+    RowBatch.of(Arrays.asList(Row.of(Cell.of("a", 1)), Row.of(Cell.of("a", 1), Cell.of("b", 1))));
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertSame(RowBatch.EMPTY, RowBatch.of(Collections.emptyList()));
+    Assert.assertEquals(0, RowBatch.EMPTY.size());
+    Assert.assertEquals(
+        RowBatch.EMPTY, Serializer.ROW_BATCH.from(Serializer.ROW_BATCH.to(RowBatch.EMPTY)));
+  }
+
+  @Test
+  public void testSerialization() {
+    List<Row> rows = rows(100);
+    RowBatch batch = RowBatch.of(rows);
+    byte[] bytes = Serializer.ROW_BATCH.to(batch);
+    Assert.assertEquals(bytes.length, Serializer.ROW_BATCH.sizeOf(batch));
+    RowBatch another = Serializer.ROW_BATCH.from(bytes);
+    Assert.assertEquals(batch, another);
+    Assert.assertEquals(rows, another.rows());
+    // the names are written only once
+    Assert.assertTrue(bytes.length < rows.stream().mapToInt(Serializer.ROW::sizeOf).sum());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Serializer.ROW_BATCH.writeTo(batch, output);
+    Assert.assertArrayEquals(bytes, output.toByteArray());
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    Serializer.ROW_BATCH.writeTo(batch, buffer);
+    buffer.flip();
+    Assert.assertEquals(batch, Serializer.ROW_BATCH.from(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBrokenBytes() {
+    byte[] bytes = Serializer.ROW_BATCH.to(RowBatch.of(rows(10)));
+    Serializer.ROW_BATCH.from(Arrays.copyOf(bytes, bytes.length / 2));
+  }
+
+  @Test
+  public void testLittleEndianBuffer() {
+    RowBatch batch = RowBatch.of(rows(10));
+    ByteBuffer buffer =
+        ByteBuffer.wrap(Serializer.ROW_BATCH.to(batch)).order(ByteOrder.LITTLE_ENDIAN);
+    Assert.assertEquals(batch, Serializer.ROW_BATCH.from(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+    Assert.assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHugeRowCount() {
+    // version | row count (2^28 - 1) | column count (0)
+    Serializer.ROW_BATCH.from(
+        new byte[] {1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F, 0});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHugeColumnCount() {
+    // version | row count (0) | column count (2^28 - 1)
+    Serializer.ROW_BATCH.from(
+        new byte[] {1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F});
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRowProjection extends SmallTest {
+
+  private static final Row ROW =
+      Row.of(
+          Arrays.asList("tag0", "tag1"),
+          Cell.of("bytes", new byte[] {1, 2, 3}),
+          Cell.of("int", 100),
+          Cell.of("string", "abc"),
+          Cell.of("row", Row.of(Cell.of("a", "b"))),
+          Cell.of("object", new java.util.Date(100)),
+          Cell.of("long", 10L));
+
+  @Test
+  public void testProjectByName() {
+    RowProjection projection = RowProjection.of(Arrays.asList("long", "string", "row"));
+    Row row = projection.from(Serializer.ROW.to(ROW));
+    // the order of cells is same to the serialized row
+    Assert.assertEquals(Arrays.asList("string", "row", "long"), row.names());
+    Assert.assertEquals("abc", row.cell("string").value());
+    Assert.assertEquals(Row.of(Cell.of("a", "b")), row.cell("row").value());
+    Assert.assertEquals(10L, row.cell("long").value());
+    Assert.assertEquals(ROW.tags(), row.tags());
+  }
+
+  @Test
+  public void testProjectByIndex() {
+    Row row = RowProjection.of(5, 1, 1).from(Serializer.ROW.to(ROW));
+    Assert.assertEquals(Row.of(ROW.tags(), ROW.cell(1), ROW.cell(5)), row);
+  }
+
+  @Test
+  public void testNonexistentColumn() {
+    Row row = RowProjection.of(Arrays.asList("int", "aaa")).from(Serializer.ROW.to(ROW));
+    Assert.assertEquals(Collections.singletonList("int"), row.names());
+    Assert.assertEquals(
+        0, RowProjection.of(Collections.singletonList("aaa")).from(Serializer.ROW.to(ROW)).size());
+    Assert.assertEquals(0, RowProjection.of(100).from(Serializer.ROW.to(ROW)).size());
+  }
+
+  @Test
+  public void testProjectAll() {
+    Assert.assertEquals(ROW, RowProjection.of(ROW.names()).from(Serializer.ROW.to(ROW)));
+  }
+
+  @Test
+  public void testSchemaVersion() {
+    List<String> names =
+        IntStream.range(0, 10)
+            .mapToObj(i -> CommonUtils.randomString(5) + i)
+            .collect(Collectors.toList());
+    RowSchema schema = RowSchema.of(names);
+    Row row =
+        Row.of(
+            names.stream()
+                .map(name -> Cell.of(name, name.hashCode()))
+                .toArray(size -> new Cell<?>[size]));
+    Row projected =
+        RowProjection.of(Arrays.asList(names.get(3), names.get(7)))
+            .from(schema.serializer().to(row));
+    Assert.assertEquals(Row.of(row.cell(3), row.cell(7)), projected);
+  }
+
+  @Test
+  public void testVersion0() {
+    Row row = TestSerializer.ROW_OF_V0;
+    String name = row.names().get(row.size() - 1);
+    Assert.assertEquals(
+        Row.of(row.tags(), row.cell(name)),
+        RowProjection.of(Collections.singletonList(name)).from(TestSerializer.ROW_V0));
+  }
+
+  @Test
+  public void testBuffer() {
+    ByteBuffer buffer = ByteBuffer.wrap(Serializer.ROW.to(ROW));
+    Row row = RowProjection.of(Collections.singletonList("int")).from(buffer);
+    Assert.assertFalse(buffer.hasRemaining());
+    // the row does not reference the buffer
+    Arrays.fill(buffer.array(), (byte) 0);
+    Assert.assertEquals(Row.of(ROW.tags(), Cell.of("int", 100)), row);
+  }
+
+  @Test
+  public void testSerialization() {
+    RowProjection projection = RowProjection.of(Collections.singletonList("int"));
+    Assert.assertArrayEquals(Serializer.ROW.to(ROW), projection.to(ROW));
+    Assert.assertEquals(Serializer.ROW.sizeOf(ROW), projection.sizeOf(ROW));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBrokenBytes() {
+    byte[] bytes = Serializer.ROW.to(ROW);
+    RowProjection.of(Collections.singletonList("int")).from(Arrays.copyOf(bytes, bytes.length / 2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeIndex() {
+    RowProjection.of(-1);
+  }
+}
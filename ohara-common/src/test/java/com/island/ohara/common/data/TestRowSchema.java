@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.common.data;
+
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRowSchema extends SmallTest {
+
+  private static Row row(String a, String b, String c) {
+    return Row.of(
+        Collections.singletonList("tag"),
+        Cell.of(a, 1),
+        Cell.of(b, "value"),
+        Cell.of(c, Row.of(Cell.of("nested", 2L))));
+  }
+
+  @Test
+  public void testSameId() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    RowSchema schema = RowSchema.of(Arrays.asList(a, b));
+    Assert.assertSame(schema, RowSchema.of(Arrays.asList(a, b)));
+    Assert.assertEquals(schema.id(), RowSchema.of(Arrays.asList(a, b)).id());
+    Assert.assertNotEquals(schema.id(), RowSchema.of(Arrays.asList(b, a)).id());
+    Assert.assertNotEquals(
+        RowSchema.of(Arrays.asList("ab" + a, "c")).id(),
+        RowSchema.of(Arrays.asList("a", "bc" + a)).id());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyNames() {
+    RowSchema.of(Collections.emptyList());
+  }
+
+  @Test
+  public void testCompactFormat() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    Row row = row(a, b, c);
+    Serializer<Row> serializer = RowSchema.of(Arrays.asList(a, b, c)).serializer();
+    byte[] bytes = serializer.to(row);
+    Assert.assertEquals(RowEncoder.SCHEMA_VERSION, bytes[0]);
+    Assert.assertEquals(bytes.length, serializer.sizeOf(row));
+    Assert.assertTrue(bytes.length < Serializer.ROW.to(row).length);
+    Assert.assertEquals(row, serializer.from(bytes));
+    Assert.assertEquals(row, Serializer.ROW.from(bytes));
+
+    LazyRow lazyRow = LazyRow.of(bytes);
+    Assert.assertEquals(row, lazyRow);
+    Assert.assertEquals(row.cell(b), lazyRow.cell(b));
+    Assert.assertEquals(row.cell(c), lazyRow.cell(c));
+    // the default serializer doesn't forward the bytes of version 2
+    Assert.assertArrayEquals(Serializer.ROW.to(row), Serializer.ROW.to(lazyRow));
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    serializer.writeTo(row, buffer);
+    buffer.flip();
+    Assert.assertEquals(row, serializer.from(buffer));
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    serializer.writeTo(row, output);
+    Assert.assertArrayEquals(bytes, output.toByteArray());
+  }
+
+  @Test
+  public void testForwardCompactRow() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    Row row = row(a, b, c);
+    byte[] expected = Serializer.ROW.to(row);
+    // the row is read from a topic written by the schema serializer
+    LazyRow lazyRow = LazyRow.of(RowSchema.of(Arrays.asList(a, b, c)).serializer().to(row));
+
+    // the forwarded row carries the names so the readers needn't register the schema
+    Assert.assertArrayEquals(expected, Serializer.ROW.to(lazyRow));
+    Assert.assertEquals(RowEncoder.VERSION, Serializer.ROW.to(lazyRow)[0]);
+    Assert.assertEquals(expected.length, Serializer.ROW.sizeOf(lazyRow));
+    ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+    Serializer.ROW.writeTo(lazyRow, buffer);
+    Assert.assertArrayEquals(expected, buffer.array());
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Serializer.ROW.writeTo(lazyRow, output);
+    Assert.assertArrayEquals(expected, output.toByteArray());
+
+    // the nested row is encoded by version 1 also
+    Assert.assertArrayEquals(
+        Serializer.ROW.to(Row.of(Cell.of("row", row))),
+        Serializer.ROW.to(Row.of(Cell.of("row", lazyRow))));
+
+    // the row of version 1 is forwarded as it is
+    Assert.assertArrayEquals(expected, Serializer.ROW.to(LazyRow.of(expected)));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNonexistentName() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    LazyRow.of(RowSchema.of(Arrays.asList(a, b, c)).serializer().to(row(a, b, c))).cell("aaa");
+  }
+
+  @Test
+  public void testDifferentNames() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    Row row = row(a, b, c);
+    // the order is different so the row is written by version 1
+    byte[] bytes = RowSchema.of(Arrays.asList(a, c, b)).serializer().to(row);
+    Assert.assertArrayEquals(Serializer.ROW.to(row), bytes);
+    Assert.assertEquals(row, Serializer.ROW.from(bytes));
+  }
+
+  @Test
+  public void testInternedNames() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    RowSchema schema = RowSchema.of(Arrays.asList(a, b, c));
+    // the version 1 reuses the registered names also
+    Row row = Serializer.ROW.from(Serializer.ROW.to(row(a, b, c)));
+    for (int i = 0; i != row.size(); ++i)
+      Assert.assertSame(schema.names().get(i), row.cell(i).name());
+    row = LazyRow.of(schema.serializer().to(row(a, b, c)));
+    for (int i = 0; i != row.size(); ++i)
+      Assert.assertSame(schema.names().get(i), row.cell(i).name());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnregisteredSchema() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    RowSchema schema = RowSchema.of(Arrays.asList(a, b, c));
+    byte[] bytes = schema.serializer().to(row(a, b, c));
+    ByteBuffer.wrap(bytes).putInt(1, schema.id() + 1);
+    LazyRow.of(bytes);
+  }
+
+  @Test
+  public void testCollidedSchema() {
+    String a = CommonUtils.randomString();
+    String b = CommonUtils.randomString();
+    String c = CommonUtils.randomString();
+    RowSchema schema = RowSchema.of(Arrays.asList(a, b, c));
+    byte[] bytes = schema.serializer().to(row(a, b, c));
+    // the writer has different names having the same id
+    ByteBuffer.wrap(bytes).putInt(1 + Integer.BYTES, schema.checksum() + 1);
+    try {
+      LazyRow.of(bytes).cell(a);
+      Assert.fail("the names of registered schema are different");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      Serializer.ROW.from(bytes);
+      Assert.fail("the names of registered schema are different");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -17,9 +17,15 @@
 package com.island.ohara.common.data;
 
 import com.island.ohara.common.rule.SmallTest;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.TimeZone;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -91,4 +97,261 @@ public class TestSerializer extends SmallTest {
             Row.of(Cell.of("abc", Row.of(Cell.of("abc", "aaa")))));
     data.forEach(v -> Assert.assertEquals(v, Serializer.ROW.from(Serializer.ROW.to(v))));
   }
+
+  /** the row serialized by version 0. see LazyRow */
+  static final byte[] ROW_V0 = {
+    0, 0, 0, 0, 3, 0, 1, 97, 0, 4, 0, 4, 0, 0, 0, 1, 0, 1, 98, 0, 8, 0, 1, 99, 0, 1, 100, 0, 10, 0,
+    22, 0, 0, 0, 0, 1, 0, 1, 101, 0, 5, 0, 8, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 1, 0, 3, 116, 97, 103
+  };
+
+  static final Row ROW_OF_V0 =
+      Row.of(
+          Collections.singletonList("tag"),
+          Cell.of("a", 1),
+          Cell.of("b", "c"),
+          Cell.of("d", Row.of(Cell.of("e", 2L))));
+
+  @Test
+  public void testRowV0() {
+    Assert.assertEquals(ROW_OF_V0, Serializer.ROW.from(ROW_V0));
+  }
+
+  @Test
+  public void testRowV1() {
+    byte[] bytes = Serializer.ROW.to(ROW_OF_V0);
+    Assert.assertEquals(1, bytes[0]);
+    Assert.assertEquals(ROW_OF_V0, Serializer.ROW.from(bytes));
+    // varint and 1-byte type make the row smaller
+    Assert.assertTrue(bytes.length < ROW_V0.length);
+  }
+
+  @Test
+  public void testLargeCell() {
+    byte[] largeBytes = new byte[Short.MAX_VALUE * 3];
+    for (int i = 0; i != largeBytes.length; ++i) largeBytes[i] = (byte) i;
+    StringBuilder largeString = new StringBuilder();
+    while (largeString.length() < Short.MAX_VALUE * 2) largeString.append("abc\u4e2d\u6587");
+    Row row =
+        Row.of(
+            Cell.of("bytes", largeBytes),
+            Cell.of("string", largeString.toString()),
+            Cell.of("row", Row.of(Cell.of("bytes", largeBytes))));
+    Assert.assertEquals(row, Serializer.ROW.from(Serializer.ROW.to(row)));
+  }
+
+  @Test
+  public void testUtf8() {
+    List<String> data =
+        Arrays.asList(
+            "", "abc", "\u00e9\u00e8", "\u4e2d\u6587", "\ud83d\ude00", "a\ud83d\ude00b\u4e2d");
+    data.forEach(
+        s -> {
+          Row row = Row.of(Cell.of(s + "name", s));
+          byte[] bytes = Serializer.ROW.to(row);
+          Assert.assertEquals(row, Serializer.ROW.from(bytes));
+          Assert.assertEquals(row, LazyRow.of(bytes));
+        });
+    // the unpaired surrogate is replaced by '?'
+    Assert.assertEquals(
+        Row.of(Cell.of("a", "?b")),
+        Serializer.ROW.from(Serializer.ROW.to(Row.of(Cell.of("a", "\ud83db")))));
+  }
+
+  @Test
+  public void testAllTypes() {
+    Row row =
+        Row.of(
+            Arrays.asList("a", "b"),
+            Cell.of("bytes", new byte[] {1, 2, 3}),
+            Cell.of("boolean", false),
+            Cell.of("byte", (byte) -10),
+            Cell.of("short", Short.MIN_VALUE),
+            Cell.of("int", Integer.MIN_VALUE),
+            Cell.of("long", Long.MIN_VALUE),
+            Cell.of("float", Float.MIN_VALUE),
+            Cell.of("double", Double.MAX_VALUE),
+            Cell.of("string", "abc"),
+            Cell.of("row", Row.of(Cell.of("abc", Row.of(Cell.of("abc", "aaa"))))),
+            Cell.of("object", new java.util.Date(100)));
+    Assert.assertEquals(row, Serializer.ROW.from(Serializer.ROW.to(row)));
+  }
+
+  @Test
+  public void testDateInNonUtcTimeZone() {
+    TimeZone timeZone = TimeZone.getDefault();
+    try {
+      for (String zone : Arrays.asList("Asia/Taipei", "America/New_York")) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        for (String value : Arrays.asList("2019-05-06", "1969-07-20")) {
+          java.sql.Date date = java.sql.Date.valueOf(value);
+          Row row = Row.of(Cell.of("date", date), Cell.of("dates", new java.sql.Date[] {date}));
+          byte[] bytes = Serializer.ROW.to(row);
+          Row another = Serializer.ROW.from(bytes);
+          Assert.assertEquals(date, another.cell("date").value());
+          Assert.assertEquals(value, another.cell("date").value().toString());
+          Assert.assertEquals(row, another);
+          Assert.assertEquals(date, LazyRow.of(bytes).cell("date").value());
+          RowBatch batch = RowBatch.of(Collections.singletonList(row));
+          Assert.assertEquals(date, batch.dateValue(0, batch.columnIndex("date")));
+          Assert.assertEquals(
+              row, Serializer.ROW_BATCH.from(Serializer.ROW_BATCH.to(batch)).rows().get(0));
+        }
+      }
+    } finally {
+      TimeZone.setDefault(timeZone);
+    }
+  }
+
+  @Test
+  public void testLogicalTypes() {
+    Timestamp timestamp = new Timestamp(-123456789L);
+    timestamp.setNanos(987654000);
+    Row row =
+        Row.of(
+            Cell.of("timestamp", timestamp),
+            Cell.of("date", java.sql.Date.valueOf("1969-07-20")),
+            Cell.of("decimal", new BigDecimal("-12345678901234567890.123456789")),
+            Cell.of("ints", new int[] {1, -2, 3}),
+            Cell.of("longs", new long[] {Long.MIN_VALUE, Long.MAX_VALUE}),
+            Cell.of("doubles", new double[] {0.5, -1.25}),
+            Cell.of("booleans", new boolean[] {true, false}),
+            Cell.of("strings", new String[] {"a", "", "c"}),
+            Cell.of("bytes", new byte[][] {{1, 2}, {}}),
+            Cell.of("rows", new Row[] {Row.of(Cell.of("a", 1))}),
+            Cell.of("timestamps", new Timestamp[] {timestamp}),
+            Cell.of("dates", new java.sql.Date[] {java.sql.Date.valueOf("2019-05-06")}),
+            Cell.of("decimals", new BigDecimal[] {BigDecimal.ONE, new BigDecimal("0.001")}),
+            Cell.of("empty", new String[0]));
+    byte[] bytes = Serializer.ROW.to(row);
+    Row another = Serializer.ROW.from(bytes);
+    Assert.assertEquals(row, another);
+    Assert.assertEquals(row.hashCode(), another.hashCode());
+    Assert.assertEquals(timestamp, another.cell("timestamp").value());
+    Assert.assertEquals(java.sql.Date.valueOf("1969-07-20"), another.cell("date").value());
+    Assert.assertEquals(DataType.TIMESTAMP, another.cell("timestamp").dataType());
+    Assert.assertEquals(DataType.ARRAY, another.cell("ints").dataType());
+    Assert.assertTrue(another.cell("ints").value() instanceof int[]);
+    Assert.assertEquals(row, Serializer.ROW.from(Serializer.ROW.to(another)));
+
+    // version + cell count + name + type + micros + tag count
+    Assert.assertEquals(
+        1 + 1 + 2 + 1 + Long.BYTES + 1, Serializer.ROW.sizeOf(Row.of(Cell.of("a", timestamp))));
+  }
+
+  @Test
+  public void testTimestampPrecision() {
+    Timestamp timestamp = new Timestamp(1000);
+    timestamp.setNanos(123456789);
+    Timestamp another =
+        (Timestamp)
+            Serializer.ROW
+                .from(Serializer.ROW.to(Row.of(Cell.of("a", timestamp))))
+                .cell("a")
+                .value();
+    // the nanoseconds smaller than microsecond are dropped
+    Assert.assertEquals(123456000, another.getNanos());
+    Assert.assertEquals(timestamp.getTime(), another.getTime());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullElement() {
+    Serializer.ROW.to(Row.of(Cell.of("a", new String[] {"a", null})));
+  }
+
+  @Test
+  public void testPrimitiveCells() {
+    Row primitive =
+        Row.of(
+            Cell.of("boolean", true),
+            Cell.of("byte", (byte) -10),
+            Cell.of("short", Short.MIN_VALUE),
+            Cell.of("int", Integer.MIN_VALUE),
+            Cell.of("long", Long.MIN_VALUE),
+            Cell.of("float", Float.MIN_VALUE),
+            Cell.of("double", Double.MAX_VALUE));
+    Row boxed =
+        Row.of(
+            Cell.of("boolean", Boolean.TRUE),
+            Cell.of("byte", Byte.valueOf((byte) -10)),
+            Cell.of("short", Short.valueOf(Short.MIN_VALUE)),
+            Cell.of("int", Integer.valueOf(Integer.MIN_VALUE)),
+            Cell.of("long", Long.valueOf(Long.MIN_VALUE)),
+            Cell.of("float", Float.valueOf(Float.MIN_VALUE)),
+            Cell.of("double", Double.valueOf(Double.MAX_VALUE)));
+    Assert.assertTrue(primitive.cell("int") instanceof IntCell);
+    Assert.assertFalse(boxed.cell("int") instanceof IntCell);
+    Assert.assertArrayEquals(Serializer.ROW.to(boxed), Serializer.ROW.to(primitive));
+    Row row = Serializer.ROW.from(Serializer.ROW.to(primitive));
+    Assert.assertEquals(boxed, row);
+    // the deserialized numbers are stored by primitive cells also
+    Assert.assertTrue(row.cell("long") instanceof LongCell);
+  }
+
+  @Test
+  public void testNestedLazyRow() {
+    Row nested = LazyRow.of(ROW_V0);
+    Row row = Row.of(Cell.of("a", nested), Cell.of("b", 1));
+    Assert.assertEquals(row, Serializer.ROW.from(Serializer.ROW.to(row)));
+  }
+
+  /**
+   * check the methods based on ByteBuffer and OutputStream generate the same bytes as {@link
+   * Serializer#to(Object)}
+   */
+  private static <T> void checkBufferAndStream(Serializer<T> serializer, T obj) {
+    byte[] expected = serializer.to(obj);
+    Assert.assertEquals(expected.length, serializer.sizeOf(obj));
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    serializer.writeTo(obj, output);
+    Assert.assertArrayEquals(expected, output.toByteArray());
+
+    for (ByteBuffer buffer :
+        Arrays.asList(
+            ByteBuffer.allocate(expected.length + 10),
+            ByteBuffer.allocateDirect(expected.length + 10))) {
+      buffer.position(5);
+      serializer.writeTo(obj, buffer);
+      Assert.assertEquals(5 + expected.length, buffer.position());
+      buffer.flip();
+      buffer.position(5);
+      T result = serializer.from(buffer);
+      Assert.assertEquals(buffer.limit(), buffer.position());
+      if (obj instanceof byte[]) Assert.assertArrayEquals((byte[]) obj, (byte[]) result);
+      else Assert.assertEquals(obj, result);
+    }
+  }
+
+  @Test
+  public void testBufferAndStream() {
+    checkBufferAndStream(Serializer.BYTES, new byte[] {1, 2, 3});
+    checkBufferAndStream(Serializer.BOOLEAN, true);
+    checkBufferAndStream(Serializer.BOOLEAN, false);
+    checkBufferAndStream(Serializer.BYTE, (byte) 10);
+    checkBufferAndStream(Serializer.SHORT, Short.MIN_VALUE);
+    checkBufferAndStream(Serializer.INT, Integer.MAX_VALUE);
+    checkBufferAndStream(Serializer.LONG, Long.MIN_VALUE);
+    checkBufferAndStream(Serializer.FLOAT, Float.MAX_VALUE);
+    checkBufferAndStream(Serializer.DOUBLE, Double.MIN_VALUE);
+    checkBufferAndStream(Serializer.STRING, "a\u4e2d\ud83d\ude00");
+    checkBufferAndStream(Serializer.OBJECT, new java.util.Date(100));
+    checkBufferAndStream(Serializer.ROW, ROW_OF_V0);
+    checkBufferAndStream(
+        Serializer.ROW, Row.of(Cell.of("a", LazyRow.of(ROW_V0)), Cell.of("b", new byte[10])));
+    checkBufferAndStream(Serializer.ROW, LazyRow.of(ROW_V0));
+  }
+
+  @Test(expected = BufferOverflowException.class)
+  public void testInsufficientBuffer() {
+    Serializer.ROW.writeTo(ROW_OF_V0, ByteBuffer.allocate(5));
+  }
+
+  @Test
+  public void testRowFromBufferDoesNotReferenceBuffer() {
+    ByteBuffer buffer = ByteBuffer.wrap(Serializer.ROW.to(ROW_OF_V0));
+    Row row = Serializer.ROW.from(buffer);
+    // reuse the buffer
+    Arrays.fill(buffer.array(), (byte) 0);
+    Assert.assertEquals(ROW_OF_V0, row);
+  }
 }
@@ -28,6 +28,7 @@ import com.island.ohara.client.configurator.v0.ZookeeperApi.ZookeeperClusterInfo
 import com.island.ohara.common.annotations.{Optional, VisibleForTesting}
 import com.island.ohara.common.cache.RefreshableCache
 import com.island.ohara.common.util.Releasable
+import com.island.ohara.metrics.cache.CacheMetrics
 
 import scala.concurrent.duration._
 
@@ -78,6 +79,7 @@ object MeterCache {
           }.asJava)
         .frequency(java.time.Duration.ofMillis(frequency.toMillis))
         .build()
+      private[this] val metrics = CacheMetrics.builder().name("meter").statistics(cache.statistics()).build()
 
       private[this] def key(clusterInfo: ClusterInfo): RequestKey = RequestKey(
         name = clusterInfo.name,
@@ -93,7 +95,10 @@ object MeterCache {
       override def meters(clusterInfo: ClusterInfo): Map[String, Seq[Meter]] =
         cache.get(key(clusterInfo)).orElse(Map.empty)
 
-      override def close(): Unit = if (closed.compareAndSet(false, true)) Releasable.close(cache)
+      override def close(): Unit = if (closed.compareAndSet(false, true)) {
+        Releasable.close(metrics)
+        Releasable.close(cache)
+      }
     }
   }
 }
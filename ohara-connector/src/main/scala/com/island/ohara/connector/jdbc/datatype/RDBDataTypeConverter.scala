@@ -59,6 +59,9 @@ class RDBDataTypeConverter {
       case RDB_TYPE_DATE =>
         Optional.ofNullable(resultSet.getDate(columnName, DateTimeUtils.CALENDAR)).orElseGet(() => new Date(0))
 
+      case RDB_TYPE_DECIMAL | RDB_TYPE_NUMERIC =>
+        Optional.ofNullable(resultSet.getBigDecimal(columnName)).orElseGet(() => java.math.BigDecimal.ZERO)
+
       case RDB_TYPE_TIME =>
         Optional.ofNullable(resultSet.getTime(columnName, DateTimeUtils.CALENDAR)).orElseGet(() => new Time(0))
 
@@ -85,4 +88,7 @@ object RDBDataTypeConverter {
   val RDB_TYPE_TIMESTAMP: String = "TIMESTAMP"
   val RDB_TYPE_DATE: String = "DATE"
   val RDB_TYPE_TIME: String = "TIME"
+  val RDB_TYPE_DECIMAL: String = "DECIMAL"
+  // a name from postgresql
+  val RDB_TYPE_NUMERIC: String = "NUMERIC"
 }
@@ -146,21 +146,24 @@ class JDBCSourceTask extends RowSourceTask {
         .map(s => (s, values(s.name, columns)))
         .map {
           case (s, value) =>
-            Cell.of(
-              s.newName,
-              s.dataType match {
-                case DataType.BOOLEAN                 => value.asInstanceOf[Boolean]
-                case DataType.SHORT                   => value.asInstanceOf[Short]
-                case DataType.INT                     => value.asInstanceOf[Int]
-                case DataType.LONG                    => value.asInstanceOf[Long]
-                case DataType.FLOAT                   => value.asInstanceOf[Float]
-                case DataType.DOUBLE                  => value.asInstanceOf[Double]
-                case DataType.BYTE                    => value.asInstanceOf[Byte]
-                case DataType.STRING                  => value.asInstanceOf[String]
-                case DataType.BYTES | DataType.OBJECT => value
-                case _                                => throw new IllegalArgumentException("Unsupported type...")
-              }
-            )
+            // the numbers are passed to Cell.of directly so they are stored by primitive cells without boxing
+            val cell: Cell[_] = s.dataType match {
+              case DataType.BOOLEAN                 => Cell.of(s.newName, value.asInstanceOf[Boolean])
+              case DataType.SHORT                   => Cell.of(s.newName, value.asInstanceOf[Short])
+              case DataType.INT                     => Cell.of(s.newName, value.asInstanceOf[Int])
+              case DataType.LONG                    => Cell.of(s.newName, value.asInstanceOf[Long])
+              case DataType.FLOAT                   => Cell.of(s.newName, value.asInstanceOf[Float])
+              case DataType.DOUBLE                  => Cell.of(s.newName, value.asInstanceOf[Double])
+              case DataType.BYTE                    => Cell.of(s.newName, value.asInstanceOf[Byte])
+              case DataType.STRING                  => Cell.of(s.newName, value.asInstanceOf[String])
+              case DataType.TIMESTAMP               => Cell.of(s.newName, value.asInstanceOf[Timestamp])
+              case DataType.DATE                    => Cell.of(s.newName, value.asInstanceOf[java.sql.Date])
+              case DataType.DECIMAL                 => Cell.of(s.newName, value.asInstanceOf[java.math.BigDecimal])
+              case DataType.BYTES | DataType.OBJECT => Cell.of(s.newName, value)
+              case DataType.ARRAY                   => Cell.of(s.newName, value)
+              case _                                => throw new IllegalArgumentException("Unsupported type...")
+            }
+            cell
         }: _*)
   }
 
@@ -43,21 +43,23 @@ class PerfSourceTask extends RowSourceTask {
     if (current - lastPoll > props.freq.toMillis) {
       val row: Row = Row.of(
         schema.sortBy(_.order).map { c =>
-          Cell.of(
-            c.name,
-            c.dataType match {
-              case DataType.BOOLEAN => false
-              case DataType.BYTE    => ByteUtils.toBytes(current).head
-              case DataType.BYTES   => ByteUtils.toBytes(current)
-              case DataType.SHORT   => current.toShort
-              case DataType.INT     => current.toInt
-              case DataType.LONG    => current
-              case DataType.FLOAT   => current.toFloat
-              case DataType.DOUBLE  => current.toDouble
-              case DataType.STRING  => current.toString
-              case _                => current
-            }
-          )
+          // the numbers are passed to Cell.of directly so they are stored by primitive cells without boxing
+          val cell: Cell[_] = c.dataType match {
+            case DataType.BOOLEAN   => Cell.of(c.name, false)
+            case DataType.BYTE      => Cell.of(c.name, ByteUtils.toBytes(current).head)
+            case DataType.BYTES     => Cell.of(c.name, ByteUtils.toBytes(current))
+            case DataType.SHORT     => Cell.of(c.name, current.toShort)
+            case DataType.INT       => Cell.of(c.name, current.toInt)
+            case DataType.LONG      => Cell.of(c.name, current)
+            case DataType.FLOAT     => Cell.of(c.name, current.toFloat)
+            case DataType.DOUBLE    => Cell.of(c.name, current.toDouble)
+            case DataType.STRING    => Cell.of(c.name, current.toString)
+            case DataType.TIMESTAMP => Cell.of(c.name, new java.sql.Timestamp(current))
+            case DataType.DATE      => Cell.of(c.name, new java.sql.Date(current))
+            case DataType.DECIMAL   => Cell.of(c.name, java.math.BigDecimal.valueOf(current))
+            case _                  => Cell.of(c.name, current)
+          }
+          cell
         }: _*
       )
       val records: Seq[RowSourceRecord] = topics.map(RowSourceRecord.builder().row(row).topicName(_).build())
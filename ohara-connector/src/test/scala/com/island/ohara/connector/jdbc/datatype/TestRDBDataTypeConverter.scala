@@ -65,6 +65,16 @@ class TestRDBDataTypeConverter extends MediumTest with Matchers with MockitoSuga
     result shouldBe 100
   }
 
+  @Test
+  def testConverterDecimal(): Unit = {
+    val resultSet: ResultSet = mock[ResultSet]
+    when(resultSet.getBigDecimal("column1")).thenReturn(new java.math.BigDecimal("123.45"))
+    val column = RdbColumn("column1", RDBDataTypeConverter.RDB_TYPE_DECIMAL, false)
+    val rdbDataTypeConverter: RDBDataTypeConverter = new RDBDataTypeConverter()
+    val result: Object = rdbDataTypeConverter.converterValue(resultSet, column)
+    result shouldBe new java.math.BigDecimal("123.45")
+  }
+
   @Test
   def testConverterChar(): Unit = {
     val resultSet: ResultSet = mock[ResultSet]
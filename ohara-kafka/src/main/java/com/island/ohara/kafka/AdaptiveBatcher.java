@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.annotations.VisibleForTesting;
+import com.island.ohara.common.util.ReleaseOnce;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An accumulator holding the records for a batching window before passing them to kafka producer.
+ * The kafka producer is configured with zero linger so the records flushed together are sent in the
+ * same batch. The window is adjusted by a feedback loop in each epoch.
+ *
+ * <ul>
+ *   <li>if the average ack latency is bigger than target, the window is halved.
+ *   <li>if there are too few records to fill a batch, the window is halved since the batching just
+ *       adds latency.
+ *   <li>if the average ack latency is smaller than half of target, the window is doubled. The max
+ *       window is half of target.
+ * </ul>
+ *
+ * The records are sent in submission order even if the window is changed.
+ */
+final class AdaptiveBatcher extends ReleaseOnce {
+  /** the min window. The window smaller than it is regarded as zero. */
+  private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final long targetNanos;
+  private final long maxWindowNanos;
+  private volatile long lastAdjust = System.nanoTime();
+  private final ScheduledExecutorService executor;
+  private final LongAdder submits = new LongAdder();
+  private final LongAdder acks = new LongAdder();
+  private final LongAdder ackNanos = new LongAdder();
+  private final AtomicLong increases = new AtomicLong(0);
+  private final AtomicLong decreases = new AtomicLong(0);
+  private volatile long windowNanos = 0;
+  private List<Runnable> pending = new ArrayList<>();
+
+  /**
+   * @param latencyTarget the expected latency from sending to ack
+   * @param epoch the time between adjustments. zero means the window is adjusted manually
+   */
+  AdaptiveBatcher(Duration latencyTarget, Duration epoch) {
+    this.targetNanos = Objects.requireNonNull(latencyTarget).toNanos();
+    if (targetNanos < MIN_WINDOW_NANOS * 2)
+      throw new IllegalArgumentException("the latency target must be bigger than 2ms");
+    this.maxWindowNanos = targetNanos / 2;
+    long epochNanos = epoch.toNanos();
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "adaptive-batcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (epochNanos > 0)
+      executor.scheduleAtFixedRate(this::adjust, epochNanos, epochNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * send the record now or after the window.
+   *
+   * @param send the action passing a record to kafka producer
+   */
+  void submit(Runnable send) {
+    submits.increment();
+    synchronized (this) {
+      if (isClosed()) throw new IllegalStateException("the producer is closed!!!");
+      if (windowNanos == 0 && pending.isEmpty()) send.run();
+      else {
+        pending.add(send);
+        if (pending.size() == 1)
+          executor.schedule(this::flush, Math.max(windowNanos, 1), TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * record a acked (or failed) record.
+   *
+   * @param latency the nanoseconds from submission to ack
+   */
+  void recordAck(long latency) {
+    acks.increment();
+    ackNanos.add(latency);
+  }
+
+  /** pass all pending records to kafka producer. */
+  synchronized void flush() {
+    List<Runnable> current = pending;
+    pending = new ArrayList<>();
+    current.forEach(Runnable::run);
+  }
+
+  /** adjust the window by the records and latency observed since last adjustment. */
+  private void adjust() {
+    long now = System.nanoTime();
+    long elapsed = Math.max(1, now - lastAdjust);
+    lastAdjust = now;
+    adjust(Duration.ofNanos(elapsed));
+  }
+
+  /**
+   * adjust the window by the records and latency observed in the elapsed time. The window is
+   * increased only if the increased window can batch at least two records. Otherwise, the low
+   * traffic makes the window grow and shrink by turns.
+   *
+   * @param elapsed the time of observing the records
+   */
+  @VisibleForTesting
+  void adjust(Duration elapsed) {
+    long elapsedNanos = Math.max(1, elapsed.toNanos());
+    long numberOfSubmits = submits.sumThenReset();
+    long numberOfAcks = acks.sumThenReset();
+    long latency = ackNanos.sumThenReset();
+    // nothing is observed
+    if (numberOfAcks == 0) return;
+    long avgLatency = latency / numberOfAcks;
+    long window = windowNanos;
+    if (avgLatency > targetNanos
+        || (window > 0 && recordsPerWindow(numberOfSubmits, window, elapsedNanos) < 2)) {
+      if (window == 0) return;
+      window = window / 2;
+      if (window < MIN_WINDOW_NANOS) window = 0;
+      decreases.incrementAndGet();
+    } else if (avgLatency < targetNanos / 2 && window < maxWindowNanos) {
+      window = Math.min(maxWindowNanos, Math.max(window * 2, MIN_WINDOW_NANOS));
+      if (recordsPerWindow(numberOfSubmits, window, elapsedNanos) < 2) return;
+      increases.incrementAndGet();
+    } else return;
+    windowNanos = window;
+  }
+
+  /** @return the expected number of records in a window */
+  private static double recordsPerWindow(long numberOfSubmits, long window, long elapsed) {
+    return (double) numberOfSubmits * window / elapsed;
+  }
+
+  /** @return current window */
+  Duration window() {
+    return Duration.ofNanos(windowNanos);
+  }
+
+  /** @return the number of increasing the window */
+  long increases() {
+    return increases.get();
+  }
+
+  /** @return the number of decreasing the window */
+  long decreases() {
+    return decreases.get();
+  }
+
+  @Override
+  protected void doClose() {
+    executor.shutdownNow();
+    // the pending records are sent before closing kafka producer
+    flush();
+  }
+}
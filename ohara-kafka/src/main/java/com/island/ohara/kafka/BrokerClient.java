@@ -22,10 +22,14 @@ import com.island.ohara.common.exception.OharaException;
 import com.island.ohara.common.exception.OharaExecutionException;
 import com.island.ohara.common.exception.OharaInterruptedException;
 import com.island.ohara.common.exception.OharaTimeoutException;
+import com.island.ohara.common.util.CommonUtils;
 import com.island.ohara.common.util.Releasable;
+import com.island.ohara.kafka.connector.TopicPartition;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -33,14 +37,20 @@ import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.NewPartitions;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.KafkaFuture;
 import org.apache.kafka.common.Node;
 import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 
 /**
  * a helper methods used by configurator. It provide many helper method to operate kafka cluster.
@@ -114,12 +124,69 @@ public interface BrokerClient extends Releasable {
    */
   Map<String, Integer> brokerPorts();
 
+  /**
+   * fetch the first offsets of all partitions of topics. The offsets are fetched by a batched
+   * request rather than a request per partition.
+   *
+   * @param topicNames topic names
+   * @return the first offsets of partitions
+   */
+  Map<TopicPartition, Long> beginningOffsets(List<String> topicNames);
+
+  /**
+   * fetch the log-end offsets (the offsets of next records) of all partitions of topics. The
+   * offsets are fetched by a batched request rather than a request per partition.
+   *
+   * @param topicNames topic names
+   * @return the log-end offsets of partitions
+   */
+  Map<TopicPartition, Long> endOffsets(List<String> topicNames);
+
+  /**
+   * fetch the committed offsets of consumer groups. The requests of all groups are sent together.
+   * The nonexistent group has empty offsets.
+   *
+   * @param groupIds group ids
+   * @return the committed offsets of each group
+   */
+  Map<String, Map<TopicPartition, Long>> committedOffsets(List<String> groupIds);
+
+  /**
+   * @param groupId group id
+   * @return the lag of each partition committed by the group. see {@link #lags(List)}
+   */
+  default Map<TopicPartition, Long> lag(String groupId) {
+    return lags(Collections.singletonList(groupId)).getOrDefault(groupId, Collections.emptyMap());
+  }
+
+  /**
+   * compute the lag (log-end offset - committed offset) of consumer groups. The committed offsets
+   * of all groups are fetched together, and the log-end offsets of all committed partitions are
+   * fetched by a batched request. Hence, the cost is almost same even if there are many groups.
+   * Noted: the sink connector "abc" uses the group "connect-abc".
+   *
+   * <p>The lag is negative if the committed offset is larger than the log-end offset. It happens
+   * when the records are removed (for example, the topic is truncated or recreated) after the
+   * offset is committed, and the group will reset its position when it consumes the partition. The
+   * committed partitions which don't exist (for example, the topic is deleted) are not reported.
+   *
+   * @param groupIds group ids
+   * @return the lag of each partition committed by each group
+   */
+  Map<String, Map<TopicPartition, Long>> lags(List<String> groupIds);
+
   static BrokerClient of(String connectionProps) {
     Duration timeout = Duration.ofSeconds(30);
     return new BrokerClient() {
 
       private final AdminClient admin = AdminClient.create(toAdminProps(connectionProps));
 
+      /**
+       * AdminClient can't fetch the offsets of partitions so we use a consumer having no group. It
+       * is created on demand and kafka consumer is not thread-safe so it is accessed with lock.
+       */
+      private KafkaConsumer<byte[], byte[]> offsetConsumer = null;
+
       private final ExceptionHandler handler =
           ExceptionHandler.builder()
               .with(ExecutionException.class, (e) -> new OharaExecutionException(e.getCause()))
@@ -260,6 +327,151 @@ public interface BrokerClient extends Releasable {
                     .collect(Collectors.toMap(Node::host, Node::port)));
       }
 
+      private synchronized <T> T withOffsetConsumer(
+          Function<KafkaConsumer<byte[], byte[]>, T> function) {
+        // kafka consumer throws the unchecked kafka exceptions so they are converted here
+        try {
+          if (offsetConsumer == null)
+            offsetConsumer =
+                new KafkaConsumer<>(
+                    toAdminProps(connectionProps),
+                    new ByteArrayDeserializer(),
+                    new ByteArrayDeserializer());
+          return function.apply(offsetConsumer);
+        } catch (org.apache.kafka.common.errors.TimeoutException e) {
+          throw new OharaTimeoutException(e);
+        } catch (InterruptException e) {
+          throw new OharaInterruptedException(e);
+        } catch (KafkaException e) {
+          throw new OharaExecutionException(e);
+        }
+      }
+
+      private List<org.apache.kafka.common.TopicPartition> partitions(List<String> topicNames) {
+        return handler.handle(
+            () ->
+                admin.describeTopics(topicNames).all()
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS).values().stream()
+                    .flatMap(
+                        d ->
+                            d.partitions().stream()
+                                .map(
+                                    p ->
+                                        new org.apache.kafka.common.TopicPartition(
+                                            d.name(), p.partition())))
+                    .collect(Collectors.toList()));
+      }
+
+      private Map<TopicPartition, Long> toOhara(
+          Map<org.apache.kafka.common.TopicPartition, Long> offsets) {
+        return offsets.entrySet().stream()
+            .collect(
+                Collectors.toMap(
+                    e -> new TopicPartition(e.getKey().topic(), e.getKey().partition()),
+                    Map.Entry::getValue));
+      }
+
+      @Override
+      public Map<TopicPartition, Long> beginningOffsets(List<String> topicNames) {
+        List<org.apache.kafka.common.TopicPartition> partitions = partitions(topicNames);
+        return toOhara(withOffsetConsumer(c -> c.beginningOffsets(partitions, timeout)));
+      }
+
+      @Override
+      public Map<TopicPartition, Long> endOffsets(List<String> topicNames) {
+        List<org.apache.kafka.common.TopicPartition> partitions = partitions(topicNames);
+        return toOhara(withOffsetConsumer(c -> c.endOffsets(partitions, timeout)));
+      }
+
+      @Override
+      public Map<String, Map<TopicPartition, Long>> committedOffsets(List<String> groupIds) {
+        return handler.handle(
+            () -> {
+              // send all requests before waiting for any response
+              Map<
+                      String,
+                      KafkaFuture<Map<org.apache.kafka.common.TopicPartition, OffsetAndMetadata>>>
+                  futures = new HashMap<>();
+              groupIds.forEach(
+                  groupId ->
+                      futures.put(
+                          groupId,
+                          admin.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata()));
+              long deadline = CommonUtils.current() + timeout.toMillis();
+              Map<String, Map<TopicPartition, Long>> result = new HashMap<>();
+              for (Map.Entry<
+                      String,
+                      KafkaFuture<Map<org.apache.kafka.common.TopicPartition, OffsetAndMetadata>>>
+                  entry : futures.entrySet()) {
+                Map<TopicPartition, Long> offsets = new HashMap<>();
+                entry
+                    .getValue()
+                    .get(Math.max(0, deadline - CommonUtils.current()), TimeUnit.MILLISECONDS)
+                    .forEach(
+                        (p, offset) -> {
+                          // the partition having no committed offset is ignored
+                          if (offset != null)
+                            offsets.put(
+                                new TopicPartition(p.topic(), p.partition()), offset.offset());
+                        });
+                result.put(entry.getKey(), Collections.unmodifiableMap(offsets));
+              }
+              return Collections.unmodifiableMap(result);
+            });
+      }
+
+      @Override
+      public Map<String, Map<TopicPartition, Long>> lags(List<String> groupIds) {
+        Map<String, Map<TopicPartition, Long>> committed = committedOffsets(groupIds);
+        Set<org.apache.kafka.common.TopicPartition> partitions = new HashSet<>();
+        committed
+            .values()
+            .forEach(
+                offsets ->
+                    offsets
+                        .keySet()
+                        .forEach(
+                            p ->
+                                partitions.add(
+                                    new org.apache.kafka.common.TopicPartition(
+                                        p.topicName(), p.partition()))));
+        // the group keeps the offsets of deleted topic (or deleted partitions of recreated topic).
+        // kafka consumer waits for the nonexistent partitions until timeout so they are removed
+        // before fetching the end offsets
+        if (!partitions.isEmpty()) {
+          Set<String> existentTopics = new HashSet<>(topicNames());
+          List<String> committedTopics =
+              partitions.stream()
+                  .map(org.apache.kafka.common.TopicPartition::topic)
+                  .filter(existentTopics::contains)
+                  .distinct()
+                  .collect(Collectors.toList());
+          partitions.retainAll(
+              committedTopics.isEmpty()
+                  ? Collections.emptySet()
+                  : new HashSet<>(partitions(committedTopics)));
+        }
+        Map<TopicPartition, Long> ends =
+            partitions.isEmpty()
+                ? Collections.emptyMap()
+                : toOhara(withOffsetConsumer(c -> c.endOffsets(partitions, timeout)));
+        // the negative lag is NOT hidden since it means the committed records are removed
+        return Collections.unmodifiableMap(
+            committed.entrySet().stream()
+                .collect(
+                    Collectors.toMap(
+                        Map.Entry::getKey,
+                        e ->
+                            Collections.unmodifiableMap(
+                                e.getValue().entrySet().stream()
+                                    // the partition of deleted topic is not reported
+                                    .filter(o -> ends.containsKey(o.getKey()))
+                                    .collect(
+                                        Collectors.toMap(
+                                            Map.Entry::getKey,
+                                            o -> ends.get(o.getKey()) - o.getValue()))))));
+      }
+
       /**
        * this impl will host a kafka.AdminClient so you must call the #close() to release the
        * kafka.AdminClient.
@@ -275,7 +487,13 @@ public interface BrokerClient extends Releasable {
 
       @Override
       public void close() {
-        admin.close();
+        try {
+          admin.close();
+        } finally {
+          synchronized (this) {
+            if (offsetConsumer != null) offsetConsumer.close();
+          }
+        }
       }
     };
   }
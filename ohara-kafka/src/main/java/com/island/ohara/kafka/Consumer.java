@@ -19,6 +19,7 @@ package com.island.ohara.kafka;
 import com.island.ohara.common.data.Serializer;
 import com.island.ohara.common.util.CommonUtils;
 import com.island.ohara.common.util.Releasable;
+import com.island.ohara.kafka.connector.TopicPartition;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,19 +29,15 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetResetStrategy;
-import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 
 /**
  * A wrap of kafka consumer.
@@ -56,7 +53,23 @@ public interface Consumer<K, V> extends Releasable {
    * @param timeout waiting time
    * @return records
    */
-  List<Record<K, V>> poll(Duration timeout);
+  default List<Record<K, V>> poll(Duration timeout) {
+    List<Record<K, V>> records = new ArrayList<>();
+    poll(timeout, record -> records.add(record.toRecord()));
+    return records;
+  }
+
+  /**
+   * poll the data from subscribed topics and pass them to the handler one by one. It doesn't create
+   * the intermediate list and record objects so it is good to the consumer reading huge data. Noted
+   * that the {@link RecordView} passed to handler is reused by all records, hence it is valid only
+   * in the handler. Call {@link RecordView#toRecord()} if you want to keep the record.
+   *
+   * @param timeout waiting time
+   * @param handler record handler
+   * @return the number of handled records
+   */
+  int poll(Duration timeout, RecordHandler<K, V> handler);
 
   /**
    * Overloading poll method
@@ -111,6 +124,76 @@ public interface Consumer<K, V> extends Releasable {
   /** @return the topic names subscribed by this consumer */
   Set<String> subscription();
 
+  /**
+   * Noted: the partitions are assigned by group coordinator if this consumer subscribes the topics.
+   * Hence, the assignment may be empty before first poll.
+   *
+   * @return the partitions assigned to this consumer
+   */
+  Set<TopicPartition> assignment();
+
+  /**
+   * move the position of partition. The next poll will start from the offset.
+   *
+   * @param partition an assigned partition
+   * @param offset offset
+   */
+  void seek(TopicPartition partition, long offset);
+
+  /**
+   * move the position of all assigned partitions to the earliest offsets whose timestamps are
+   * greater than or equal to the given timestamp. The partitions having no such offset are moved to
+   * the end.
+   *
+   * @param timestamp timestamp
+   * @return the new positions
+   */
+  Map<TopicPartition, Long> seekToTimestamp(long timestamp);
+
+  /** @return the first offsets of assigned partitions */
+  default Map<TopicPartition, Long> beginningOffsets() {
+    return beginningOffsets(assignment());
+  }
+
+  /**
+   * @param partitions partitions
+   * @return the first offsets of partitions
+   */
+  Map<TopicPartition, Long> beginningOffsets(Set<TopicPartition> partitions);
+
+  /** @return the offsets of next records of assigned partitions */
+  default Map<TopicPartition, Long> endOffsets() {
+    return endOffsets(assignment());
+  }
+
+  /**
+   * @param partitions partitions
+   * @return the offsets of next records of partitions
+   */
+  Map<TopicPartition, Long> endOffsets(Set<TopicPartition> partitions);
+
+  /**
+   * Noted: the records fetched but not returned by poll yet are not counted.
+   *
+   * @return the offsets of next records returned by poll for assigned partitions
+   */
+  Map<TopicPartition, Long> positions();
+
+  /** @return the group id of this consumer */
+  String groupId();
+
+  /** commit the offsets of records returned by poll. It is blocked until the commit is done. */
+  default void commit() {
+    commit(positions());
+  }
+
+  /**
+   * commit the offsets. It is blocked until the commit is done.
+   *
+   * @param offsets the offsets of next records to consume
+   */
+  void commit(Map<TopicPartition, Long> offsets);
+
   /** break the poll right now. */
   void wakeup();
 
@@ -123,10 +206,13 @@ public interface Consumer<K, V> extends Releasable {
     private Map<String, String> options = Collections.emptyMap();
     private OffsetResetStrategy fromBegin = OffsetResetStrategy.LATEST;
     private List<String> topicNames;
+    private Set<TopicPartition> assignments;
     private String groupId = String.format("ohara-consumer-%s", CommonUtils.uuid());
     private String connectionProps;
+    private boolean readCommitted = false;
     private Serializer<Key> keySerializer = null;
     private Serializer<Value> valueSerializer = null;
+    private boolean lazyDeserialization = false;
 
     private Builder() {
       // do nothing
@@ -177,6 +263,18 @@ public interface Consumer<K, V> extends Releasable {
       return this;
     }
 
+    /**
+     * assign the partitions to this consumer manually. It can't be used with {@link
+     * #topicName(String)} and {@link #topicNames(List)}.
+     *
+     * @param assignments the partitions you want to consume
+     * @return this builder
+     */
+    public Builder<Key, Value> assignments(Set<TopicPartition> assignments) {
+      this.assignments = CommonUtils.requireNonEmpty(assignments);
+      return this;
+    }
+
     @com.island.ohara.common.annotations.Optional("default is random string")
     public Builder<Key, Value> groupId(String groupId) {
       this.groupId = Objects.requireNonNull(groupId);
@@ -199,35 +297,35 @@ public interface Consumer<K, V> extends Releasable {
     }
 
     /**
-     * Used to convert byte array to ohara row. It is a private class since ohara consumer will
-     * instantiate one and pass it to kafka consumer. Hence, no dynamical call will happen in kafka
-     * consumer. The access exception won't be caused.
+     * fetch the raw bytes from kafka and decode the key and value on first access to {@link
+     * Record#key()}, {@link Record#value()} (or {@link RecordView#key()}, {@link
+     * RecordView#value()}). The decoded objects are memoized. It is useful to the caller which
+     * reads only the offsets, timestamps or topics of most records.
      *
-     * @param serializer ohara serializer
-     * @return a wrapper from kafka deserializer
+     * @return this builder
      */
-    private static <T> Deserializer<T> wrap(Serializer<T> serializer) {
-      return new org.apache.kafka.common.serialization.Deserializer<T>() {
-
-        @Override
-        public void configure(Map<String, ?> configs, boolean isKey) {
-          // do nothing
-        }
-
-        @Override
-        public T deserialize(String topic, byte[] data) {
-          return data == null ? null : serializer.from(data);
-        }
-
-        @Override
-        public void close() {
-          // do nothing
-        }
-      };
+    @com.island.ohara.common.annotations.Optional("default is false")
+    public Builder<Key, Value> lazyDeserialization() {
+      this.lazyDeserialization = true;
+      return this;
+    }
+
+    /**
+     * read only the records of committed transactions. It should be enabled if the topics are
+     * written by transactional {@link Producer}.
+     *
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is false")
+    public Builder<Key, Value> readCommitted() {
+      this.readCommitted = true;
+      return this;
     }
 
     private void checkArguments() {
-      CommonUtils.requireNonEmpty(topicNames);
+      if (topicNames != null && assignments != null)
+        throw new IllegalArgumentException("topicNames and assignments can't be used together");
+      if (assignments == null) CommonUtils.requireNonEmpty(topicNames);
       CommonUtils.requireNonEmpty(connectionProps);
       CommonUtils.requireNonEmpty(groupId);
       Objects.requireNonNull(fromBegin);
@@ -245,64 +343,78 @@ public interface Consumer<K, V> extends Releasable {
       props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, groupId);
       // kafka demand us to pass lowe case words...
       props.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, fromBegin.name().toLowerCase());
+      if (readCommitted) props.setProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+      // the data are decoded by ConsumerRecordView so kafka consumer just passes the raw bytes
+      KafkaConsumer<byte[], byte[]> kafkaConsumer =
+          new KafkaConsumer<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+
+      ConsumerRecordView<Key, Value> view =
+          new ConsumerRecordView<>(keySerializer, valueSerializer, lazyDeserialization);
+      if (assignments != null) {
+        kafkaConsumer.assign(
+            assignments.stream()
+                .map(p -> new org.apache.kafka.common.TopicPartition(p.topicName(), p.partition()))
+                .collect(Collectors.toList()));
+        return new ConsumerImpl<>(kafkaConsumer, groupId, view, false);
+      }
+      kafkaConsumer.subscribe(topicNames);
+      return new ConsumerImpl<>(kafkaConsumer, groupId, view, true);
+    }
+  }
 
-      KafkaConsumer<Key, Value> kafkaConsumer =
-          new KafkaConsumer<>(props, wrap(keySerializer), wrap(valueSerializer));
+  /**
+   * The handler of {@link #poll(Duration, RecordHandler)}.
+   *
+   * @param <K> key type
+   * @param <V> value type
+   */
+  @FunctionalInterface
+  interface RecordHandler<K, V> {
 
-      kafkaConsumer.subscribe(topicNames);
+    /**
+     * handle a record. The view is reused by next record so don't keep it.
+     *
+     * @param record record view
+     */
+    void handle(RecordView<K, V> record);
+  }
 
-      return new Consumer<Key, Value>() {
-        private ConsumerRecords<Key, Value> firstPoll = kafkaConsumer.poll(Duration.ofMillis(0));
-
-        @Override
-        public void close() {
-          kafkaConsumer.close();
-        }
-
-        @Override
-        public List<Record<Key, Value>> poll(Duration timeout) {
-
-          ConsumerRecords<Key, Value> r;
-          if (firstPoll == null || firstPoll.isEmpty()) r = kafkaConsumer.poll(timeout);
-          else {
-            r = firstPoll;
-            firstPoll = null;
-          }
-
-          if (r == null || r.isEmpty()) return Collections.emptyList();
-          else
-            return StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(r.iterator(), Spliterator.ORDERED), false)
-                .map(
-                    cr ->
-                        new Record<>(
-                            cr.topic(),
-                            cr.timestamp(),
-                            TimestampType.of(cr.timestampType()),
-                            cr.offset(),
-                            Optional.ofNullable(cr.headers())
-                                .map(
-                                    headers ->
-                                        StreamSupport.stream(headers.spliterator(), false)
-                                            .map(header -> new Header(header.key(), header.value()))
-                                            .collect(Collectors.toList()))
-                                .orElse(Collections.emptyList()),
-                            cr.key(),
-                            cr.value()))
-                .collect(Collectors.toList());
-        }
-
-        @Override
-        public Set<String> subscription() {
-          return Collections.unmodifiableSet(kafkaConsumer.subscription());
-        }
-
-        @Override
-        public void wakeup() {
-          kafkaConsumer.wakeup();
-        }
-      };
-    }
+  /**
+   * A read-only view of kafka's consumer record. It is reused by all records in a poll, and the
+   * headers are converted only when they are accessed.
+   *
+   * @param <K> key type
+   * @param <V> value type
+   */
+  interface RecordView<K, V> {
+
+    /** @return topic name */
+    String topicName();
+
+    /** @return the partition of this record */
+    int partition();
+
+    /** @return timestamp */
+    long timestamp();
+
+    /** @return timestamp type */
+    TimestampType timestampType();
+
+    /** @return the position of this record in the corresponding Kafka partition */
+    long offset();
+
+    /** @return header list */
+    List<Header> headers();
+
+    /** @return optional key */
+    Optional<K> key();
+
+    /** @return optional value */
+    Optional<V> value();
+
+    /** @return a immutable copy of this view */
+    Record<K, V> toRecord();
   }
 
   /**
@@ -313,28 +425,32 @@ public interface Consumer<K, V> extends Releasable {
    */
   class Record<K, V> {
     private final String topicName;
+    private final int partition;
     private final long timestamp;
     private final TimestampType timestampType;
     private final long offset;
     private final List<Header> headers;
-    private final K key;
-    private final V value;
+    private final LazyValue<K> key;
+    private final LazyValue<V> value;
 
     /**
      * @param topicName topic name
+     * @param partition partition
      * @param timestamp time to create this record or time to append this record.
-     * @param key key (nullable)
+     * @param key key
      * @param value value
      */
-    private Record(
+    Record(
         String topicName,
+        int partition,
         long timestamp,
         TimestampType timestampType,
         long offset,
         List<Header> headers,
-        K key,
-        V value) {
+        LazyValue<K> key,
+        LazyValue<V> value) {
       this.topicName = topicName;
+      this.partition = partition;
       this.timestamp = timestamp;
       this.timestampType = timestampType;
       this.offset = offset;
@@ -352,6 +468,15 @@ public interface Consumer<K, V> extends Releasable {
       return topicName;
     }
 
+    /**
+     * The partition of this record
+     *
+     * @return partition
+     */
+    public int partition() {
+      return partition;
+    }
+
     /**
      * The timestamp of this record.
      *
@@ -389,21 +514,23 @@ public interface Consumer<K, V> extends Releasable {
     }
 
     /**
-     * The key
+     * The key. If the consumer is built with {@link Builder#lazyDeserialization()}, the key is
+     * decoded by first call.
      *
      * @return optional key
      */
     public Optional<K> key() {
-      return Optional.ofNullable(key);
+      return Optional.ofNullable(key.get());
     }
 
     /**
-     * The value
+     * The value. If the consumer is built with {@link Builder#lazyDeserialization()}, the value is
+     * decoded by first call.
      *
      * @return optional value
      */
     public Optional<V> value() {
-      return Optional.ofNullable(value);
+      return Optional.ofNullable(value.get());
     }
 
     @Override
@@ -412,28 +539,30 @@ public interface Consumer<K, V> extends Releasable {
       if (o == null || getClass() != o.getClass()) return false;
       Record<?, ?> that = (Record<?, ?>) o;
       return Objects.equals(topicName, that.topicName)
+          && partition == that.partition
           && Objects.equals(timestamp, that.timestamp)
           && Objects.equals(timestampType, that.timestampType)
           && Objects.equals(offset, that.offset)
           && CommonUtils.equals(headers, that.headers)
-          && Objects.equals(key, that.key)
-          && Objects.equals(value, that.value);
+          && Objects.equals(key.get(), that.key.get())
+          && Objects.equals(value.get(), that.value.get());
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(topicName, headers, key, value);
+      return Objects.hash(topicName, headers, key.get(), value.get());
     }
 
     @Override
     public String toString() {
       return new ToStringBuilder(this)
           .append("topicName", topicName)
+          .append("partition", partition)
           .append("timestamp", timestamp)
           .append("offset", offset)
           .append("headers", headers)
-          .append("key", key)
-          .append("value", value)
+          .append("key", key.get())
+          .append("value", value.get())
           .toString();
     }
   }
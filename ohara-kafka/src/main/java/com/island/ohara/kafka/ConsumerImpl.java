@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.kafka.connector.TopicPartition;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+
+/**
+ * The implementation of {@link Consumer}. It is a thin wrap of kafka consumer, and the data are
+ * decoded by {@link ConsumerRecordView}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class ConsumerImpl<K, V> implements Consumer<K, V> {
+  private final org.apache.kafka.clients.consumer.Consumer<byte[], byte[]> kafkaConsumer;
+  private final String groupId;
+  private final ConsumerRecordView<K, V> view;
+
+  /**
+   * the records fetched by the constructor. The first poll is used to join the group so the
+   * assignment is available after the consumer is built.
+   */
+  private ConsumerRecords<byte[], byte[]> firstPoll;
+
+  /**
+   * @param kafkaConsumer kafka consumer. It must be subscribed or assigned already
+   * @param groupId the group id of kafka consumer
+   * @param view used to decode the records
+   * @param initialPoll true if the consumer should join the group by a poll
+   */
+  ConsumerImpl(
+      org.apache.kafka.clients.consumer.Consumer<byte[], byte[]> kafkaConsumer,
+      String groupId,
+      ConsumerRecordView<K, V> view,
+      boolean initialPoll) {
+    this.kafkaConsumer = Objects.requireNonNull(kafkaConsumer);
+    this.groupId = Objects.requireNonNull(groupId);
+    this.view = Objects.requireNonNull(view);
+    this.firstPoll = initialPoll ? kafkaConsumer.poll(Duration.ofMillis(0)) : null;
+  }
+
+  private static org.apache.kafka.common.TopicPartition toKafka(TopicPartition partition) {
+    return new org.apache.kafka.common.TopicPartition(partition.topicName(), partition.partition());
+  }
+
+  private static TopicPartition toOhara(org.apache.kafka.common.TopicPartition partition) {
+    return new TopicPartition(partition.topic(), partition.partition());
+  }
+
+  private static List<org.apache.kafka.common.TopicPartition> toKafka(
+      Set<TopicPartition> partitions) {
+    return partitions.stream().map(ConsumerImpl::toKafka).collect(Collectors.toList());
+  }
+
+  private static Map<TopicPartition, Long> toOhara(
+      Map<org.apache.kafka.common.TopicPartition, Long> offsets) {
+    return Collections.unmodifiableMap(
+        offsets.entrySet().stream()
+            .collect(Collectors.toMap(e -> toOhara(e.getKey()), Map.Entry::getValue)));
+  }
+
+  @Override
+  public void close() {
+    kafkaConsumer.close();
+  }
+
+  @Override
+  public int poll(Duration timeout, RecordHandler<K, V> handler) {
+    Objects.requireNonNull(handler);
+    ConsumerRecords<byte[], byte[]> r;
+    if (firstPoll == null || firstPoll.isEmpty()) r = kafkaConsumer.poll(timeout);
+    else {
+      r = firstPoll;
+      firstPoll = null;
+    }
+
+    if (r == null || r.isEmpty()) return 0;
+    int count = 0;
+    for (ConsumerRecord<byte[], byte[]> cr : r) {
+      handler.handle(view.reset(cr));
+      ++count;
+    }
+    return count;
+  }
+
+  @Override
+  public Set<String> subscription() {
+    return Collections.unmodifiableSet(kafkaConsumer.subscription());
+  }
+
+  @Override
+  public Set<TopicPartition> assignment() {
+    return Collections.unmodifiableSet(
+        kafkaConsumer.assignment().stream().map(ConsumerImpl::toOhara).collect(Collectors.toSet()));
+  }
+
+  @Override
+  public void seek(TopicPartition partition, long offset) {
+    if (offset < 0) throw new IllegalArgumentException("offset can't be negative");
+    // the records fetched by first poll are out of date
+    firstPoll = null;
+    kafkaConsumer.seek(toKafka(Objects.requireNonNull(partition)), offset);
+  }
+
+  @Override
+  public Map<TopicPartition, Long> seekToTimestamp(long timestamp) {
+    if (timestamp < 0) throw new IllegalArgumentException("timestamp can't be negative");
+    Set<org.apache.kafka.common.TopicPartition> partitions = kafkaConsumer.assignment();
+    if (partitions.isEmpty()) return Collections.emptyMap();
+    Map<org.apache.kafka.common.TopicPartition, OffsetAndTimestamp> found =
+        kafkaConsumer.offsetsForTimes(
+            partitions.stream().collect(Collectors.toMap(p -> p, p -> timestamp)));
+    // the partitions having no newer data are moved to the end
+    Map<org.apache.kafka.common.TopicPartition, Long> ends = kafkaConsumer.endOffsets(partitions);
+    Map<org.apache.kafka.common.TopicPartition, Long> offsets = new HashMap<>();
+    partitions.forEach(
+        p -> {
+          OffsetAndTimestamp offset = found.get(p);
+          offsets.put(p, offset == null ? ends.get(p) : offset.offset());
+        });
+    firstPoll = null;
+    offsets.forEach(kafkaConsumer::seek);
+    return toOhara(offsets);
+  }
+
+  @Override
+  public Map<TopicPartition, Long> beginningOffsets(Set<TopicPartition> partitions) {
+    return toOhara(kafkaConsumer.beginningOffsets(toKafka(partitions)));
+  }
+
+  @Override
+  public Map<TopicPartition, Long> endOffsets(Set<TopicPartition> partitions) {
+    return toOhara(kafkaConsumer.endOffsets(toKafka(partitions)));
+  }
+
+  @Override
+  public Map<TopicPartition, Long> positions() {
+    Map<TopicPartition, Long> offsets = new HashMap<>();
+    kafkaConsumer.assignment().forEach(p -> offsets.put(toOhara(p), kafkaConsumer.position(p)));
+    // the records of first poll are not passed to caller yet
+    if (firstPoll != null)
+      firstPoll
+          .partitions()
+          .forEach(p -> offsets.put(toOhara(p), firstPoll.records(p).get(0).offset()));
+    return Collections.unmodifiableMap(offsets);
+  }
+
+  @Override
+  public String groupId() {
+    return groupId;
+  }
+
+  @Override
+  public void commit(Map<TopicPartition, Long> offsets) {
+    if (offsets.isEmpty()) return;
+    kafkaConsumer.commitSync(
+        offsets.entrySet().stream()
+            .collect(
+                Collectors.toMap(
+                    e -> toKafka(e.getKey()), e -> new OffsetAndMetadata(e.getValue()))));
+  }
+
+  @Override
+  public void wakeup() {
+    kafkaConsumer.wakeup();
+  }
+}
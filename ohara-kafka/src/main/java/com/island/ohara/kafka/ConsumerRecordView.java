@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * A {@link Consumer.RecordView} backed by kafka's consumer record. The view is reset to the next
+ * record by the poll loop so a single instance serves all records of a poll. The headers are
+ * converted only when they are accessed. If the view is lazy, the key and value are also decoded on
+ * first access, and the decoded objects are memoized until next reset.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class ConsumerRecordView<K, V> implements Consumer.RecordView<K, V> {
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+  private final boolean lazy;
+  private ConsumerRecord<byte[], byte[]> record = null;
+  private List<Header> headers = null;
+  private boolean keyDecoded = false;
+  private K key = null;
+  private boolean valueDecoded = false;
+  private V value = null;
+
+  /**
+   * @param keySerializer used to decode the key
+   * @param valueSerializer used to decode the value
+   * @param lazy true if the key and value are decoded on first access. Otherwise, they are decoded
+   *     by {@link #reset(ConsumerRecord)}
+   */
+  ConsumerRecordView(Serializer<K> keySerializer, Serializer<V> valueSerializer, boolean lazy) {
+    this.keySerializer = Objects.requireNonNull(keySerializer);
+    this.valueSerializer = Objects.requireNonNull(valueSerializer);
+    this.lazy = lazy;
+  }
+
+  /**
+   * point this view to another record.
+   *
+   * @param record kafka record
+   * @return this view
+   */
+  ConsumerRecordView<K, V> reset(ConsumerRecord<byte[], byte[]> record) {
+    this.record = Objects.requireNonNull(record);
+    this.headers = null;
+    this.keyDecoded = false;
+    this.key = null;
+    this.valueDecoded = false;
+    this.value = null;
+    if (!lazy) {
+      decodeKey();
+      decodeValue();
+    }
+    return this;
+  }
+
+  private ConsumerRecord<byte[], byte[]> record() {
+    if (record == null) throw new IllegalStateException("the view is not pointed to any record");
+    return record;
+  }
+
+  private K decodeKey() {
+    if (!keyDecoded) {
+      byte[] bytes = record().key();
+      key = bytes == null ? null : keySerializer.from(bytes);
+      keyDecoded = true;
+    }
+    return key;
+  }
+
+  private V decodeValue() {
+    if (!valueDecoded) {
+      byte[] bytes = record().value();
+      value = bytes == null ? null : valueSerializer.from(bytes);
+      valueDecoded = true;
+    }
+    return value;
+  }
+
+  @Override
+  public String topicName() {
+    return record().topic();
+  }
+
+  @Override
+  public int partition() {
+    return record().partition();
+  }
+
+  @Override
+  public long timestamp() {
+    return record().timestamp();
+  }
+
+  @Override
+  public TimestampType timestampType() {
+    return TimestampType.of(record().timestampType());
+  }
+
+  @Override
+  public long offset() {
+    return record().offset();
+  }
+
+  @Override
+  public List<Header> headers() {
+    if (headers == null) {
+      org.apache.kafka.common.header.Headers kafkaHeaders = record().headers();
+      if (kafkaHeaders == null) headers = Collections.emptyList();
+      else {
+        List<Header> list = new ArrayList<>();
+        kafkaHeaders.forEach(header -> list.add(new Header(header.key(), header.value())));
+        headers = Collections.unmodifiableList(list);
+      }
+    }
+    return headers;
+  }
+
+  @Override
+  public Optional<K> key() {
+    return Optional.ofNullable(decodeKey());
+  }
+
+  @Override
+  public Optional<V> value() {
+    return Optional.ofNullable(decodeValue());
+  }
+
+  @Override
+  public Consumer.Record<K, V> toRecord() {
+    // the undecoded data are passed to the record so it is still decoded on first access
+    return new Consumer.Record<>(
+        topicName(),
+        partition(),
+        timestamp(),
+        timestampType(),
+        offset(),
+        headers(),
+        keyDecoded ? LazyValue.of(key) : LazyValue.of(record().key(), keySerializer),
+        valueDecoded ? LazyValue.of(value) : LazyValue.of(record().value(), valueSerializer));
+  }
+}
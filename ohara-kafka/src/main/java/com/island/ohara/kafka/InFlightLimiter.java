@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.util.CommonUtils;
+import java.time.Duration;
+
+/**
+ * Limit the number of records and bytes which are sent but not acked. It works like a semaphore
+ * having two kinds of permits. The permits are acquired before sending record and they are released
+ * by the callback of kafka producer. Noted: a record bigger than the byte limit is accepted if
+ * there is no in-flight record. Otherwise, the record can't be sent forever.
+ */
+final class InFlightLimiter {
+  private final int maxRecords;
+  private final long maxBytes;
+  private int records = 0;
+  private long bytes = 0;
+
+  /**
+   * @param maxRecords the max number of in-flight records
+   * @param maxBytes the max number of in-flight bytes
+   */
+  InFlightLimiter(int maxRecords, long maxBytes) {
+    this.maxRecords = CommonUtils.requirePositiveInt(maxRecords);
+    this.maxBytes = CommonUtils.requirePositiveLong(maxBytes);
+  }
+
+  private boolean isFull(int size) {
+    return records > 0 && (records >= maxRecords || bytes + size > maxBytes);
+  }
+
+  /**
+   * wait for the permits of a record.
+   *
+   * @param size the bytes of record
+   * @param timeout the max time to wait
+   * @return true if the permits are acquired. false if timeout
+   * @throws InterruptedException if the waiting is interrupted
+   */
+  synchronized boolean acquire(int size, Duration timeout) throws InterruptedException {
+    long deadline = CommonUtils.current() + timeout.toMillis();
+    while (isFull(size)) {
+      long remaining = deadline - CommonUtils.current();
+      if (remaining <= 0) return false;
+      wait(remaining);
+    }
+    records += 1;
+    bytes += size;
+    return true;
+  }
+
+  /**
+   * release the permits of a record.
+   *
+   * @param size the bytes of record
+   */
+  synchronized void release(int size) {
+    records -= 1;
+    bytes -= size;
+    notifyAll();
+  }
+
+  /** @return the number of in-flight records */
+  synchronized int records() {
+    return records;
+  }
+
+  /** @return the number of in-flight bytes */
+  synchronized long bytes() {
+    return bytes;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import java.util.Objects;
+
+/**
+ * A value decoded from serialized data on first access. The decoded value is memoized so the
+ * serializer is called only once.
+ *
+ * @param <T> value type
+ */
+final class LazyValue<T> {
+
+  /**
+   * @param value decoded value (nullable)
+   * @param <T> value type
+   * @return a LazyValue which is already decoded
+   */
+  static <T> LazyValue<T> of(T value) {
+    return new LazyValue<>(null, null, value);
+  }
+
+  /**
+   * @param bytes serialized data (nullable)
+   * @param serializer used to decode the data
+   * @param <T> value type
+   * @return a LazyValue which is decoded by first {@link #get()}
+   */
+  static <T> LazyValue<T> of(byte[] bytes, Serializer<T> serializer) {
+    if (bytes == null) return of(null);
+    return new LazyValue<>(bytes, Objects.requireNonNull(serializer), null);
+  }
+
+  private byte[] bytes;
+  private Serializer<T> serializer;
+  private T value;
+
+  private LazyValue(byte[] bytes, Serializer<T> serializer, T value) {
+    this.bytes = bytes;
+    this.serializer = serializer;
+    this.value = value;
+  }
+
+  /** @return decoded value (nullable) */
+  synchronized T get() {
+    if (serializer != null) {
+      value = serializer.from(bytes);
+      // release the serialized data since they are useless now
+      bytes = null;
+      serializer = null;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Track the in-flight offsets of each partition for {@link ParallelConsumer}. The records of a
+ * partition can be completed out of order, so the committable offset of a partition is the lowest
+ * in-flight offset (or the next offset of the last dispatched record if there is no in-flight
+ * record). Hence, only the contiguous completed offsets are committed.
+ *
+ * <p>Noted: {@link #dispatched}, {@link #committable()}, {@link #committed} and {@link #remove}
+ * should be called by the poll thread. {@link #completed} is thread-safe.
+ */
+final class OffsetTracker {
+
+  private static final class PartitionState {
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private long next = -1;
+    private long committed = -1;
+
+    private long committable() {
+      Long lowest = inFlight.ceiling(Long.MIN_VALUE);
+      return lowest == null ? next : lowest;
+    }
+  }
+
+  private final Map<TopicPartition, PartitionState> states = new ConcurrentHashMap<>();
+
+  /**
+   * record a dispatched offset. The offsets of a partition must be dispatched in order.
+   *
+   * @param partition partition
+   * @param offset offset
+   */
+  void dispatched(TopicPartition partition, long offset) {
+    PartitionState state =
+        states.computeIfAbsent(Objects.requireNonNull(partition), p -> new PartitionState());
+    if (offset < state.next)
+      throw new IllegalArgumentException(
+          "the offset:" + offset + " of " + partition + " is smaller than " + state.next);
+    state.inFlight.add(offset);
+    state.next = offset + 1;
+  }
+
+  /**
+   * record a completed offset.
+   *
+   * @param partition partition
+   * @param offset offset
+   */
+  void completed(TopicPartition partition, long offset) {
+    PartitionState state = states.get(partition);
+    // the partition may be removed by rebalance
+    if (state != null) state.inFlight.remove(offset);
+  }
+
+  /**
+   * @param partition partition
+   * @return the number of in-flight records of the partition
+   */
+  int inFlight(TopicPartition partition) {
+    PartitionState state = states.get(partition);
+    return state == null ? 0 : state.inFlight.size();
+  }
+
+  /** @return the number of in-flight records of all partitions */
+  long inFlight() {
+    return states.values().stream().mapToLong(s -> s.inFlight.size()).sum();
+  }
+
+  /**
+   * collect the offsets which are advanced since the latest successful commit. The offsets are
+   * returned again until they are marked by {@link #committed(Map)}, so the failed commit is
+   * retried by the next commit.
+   *
+   * @return the offsets to commit
+   */
+  Map<TopicPartition, OffsetAndMetadata> committable() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    states.forEach(
+        (partition, state) -> {
+          long offset = state.committable();
+          if (offset > state.committed) offsets.put(partition, new OffsetAndMetadata(offset));
+        });
+    return offsets;
+  }
+
+  /**
+   * mark the offsets as committed. It should be called after the commit succeeds.
+   *
+   * @param offsets the committed offsets
+   */
+  void committed(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    offsets.forEach(
+        (partition, offset) -> {
+          PartitionState state = states.get(partition);
+          // the partition may be removed by rebalance
+          if (state != null) state.committed = Math.max(state.committed, offset.offset());
+        });
+  }
+
+  /**
+   * stop tracking the partitions. It is called when the partitions are revoked.
+   *
+   * @param partitions partitions
+   */
+  void remove(Collection<TopicPartition> partitions) {
+    partitions.forEach(states::remove);
+  }
+}
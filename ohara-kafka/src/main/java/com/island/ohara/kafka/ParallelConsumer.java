@@ -0,0 +1,300 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.common.util.Releasable;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A consumer which processes the records by a worker pool. A single thread polls the data from
+ * kafka and dispatches the records to the workers. The records having the same partition (or the
+ * same key if {@link Ordering#KEY} is used) are processed by the same worker, so they are processed
+ * in order. Noted that a worker serves many partitions (or keys), so a slow record delays the other
+ * records assigned to the same worker.
+ *
+ * <p>The offsets are committed by the poll thread periodically, and only the contiguous completed
+ * offsets are committed. Hence, the records are processed at least once. If there are too many
+ * in-flight records in a partition, the partition is paused until the workers catch up.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface ParallelConsumer<K, V> extends Releasable {
+
+  /** @return the topic names subscribed by this consumer */
+  Set<String> subscription();
+
+  /** @return the number of dispatched records which are not completed */
+  long inFlight();
+
+  /** @return the number of paused partitions */
+  int pausedPartitions();
+
+  /**
+   * The poll thread stops if it fails to poll, dispatch or commit the records. In that case this
+   * consumer is regarded as closed and the failure is rethrown by {@link #close()}.
+   *
+   * @return the failure which stops the poll thread, or empty if the poll thread is fine
+   */
+  Optional<Throwable> error();
+
+  /** @return true if this consumer is closed or the poll thread is stopped by a failure */
+  boolean isClosed();
+
+  /** the unit of ordering. The records in the same unit are processed in order. */
+  enum Ordering {
+    /** the records in the same partition are processed in order */
+    PARTITION,
+    /**
+     * the records having the same key in the same partition are processed in order. The records
+     * having no key are ordered by partition.
+     */
+    KEY
+  }
+
+  /**
+   * The processor of records. It is called by the worker threads.
+   *
+   * @param <K> key type
+   * @param <V> value type
+   */
+  @FunctionalInterface
+  interface RecordProcessor<K, V> {
+
+    /**
+     * process a record. The record is regarded as completed after this method returns or throws.
+     *
+     * @param record record
+     */
+    void process(Consumer.Record<K, V> record);
+  }
+
+  static <Key, Value> Builder<Key, Value> builder() {
+    return new Builder<>();
+  }
+
+  class Builder<Key, Value>
+      implements com.island.ohara.common.pattern.Builder<ParallelConsumer<Key, Value>> {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelConsumer.class);
+    private Map<String, String> options = Collections.emptyMap();
+    private OffsetResetStrategy fromBegin = OffsetResetStrategy.LATEST;
+    private List<String> topicNames;
+    private String groupId = String.format("ohara-consumer-%s", CommonUtils.uuid());
+    private String connectionProps;
+    private Serializer<Key> keySerializer = null;
+    private Serializer<Value> valueSerializer = null;
+    private RecordProcessor<Key, Value> processor = null;
+    private BiConsumer<Consumer.Record<Key, Value>, Throwable> exceptionHandler =
+        (record, e) ->
+            LOG.error(
+                "failed to process "
+                    + record.topicName()
+                    + "-"
+                    + record.partition()
+                    + " at offset "
+                    + record.offset(),
+                e);
+    private int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+    private Ordering ordering = Ordering.PARTITION;
+    private int maxInFlightPerPartition = 1000;
+    private Duration commitInterval = Duration.ofSeconds(1);
+    private Duration pollTimeout = Duration.ofMillis(100);
+
+    private Builder() {
+      // do nothing
+    }
+
+    @com.island.ohara.common.annotations.Optional("default is empty")
+    public Builder<Key, Value> options(Map<String, String> options) {
+      this.options = CommonUtils.requireNonEmpty(options);
+      return this;
+    }
+
+    /**
+     * receive all un-deleted message from subscribed topics
+     *
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is OffsetResetStrategy.LATEST")
+    public Builder<Key, Value> offsetFromBegin() {
+      this.fromBegin = OffsetResetStrategy.EARLIEST;
+      return this;
+    }
+
+    /**
+     * receive the messages just after the last one
+     *
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is OffsetResetStrategy.LATEST")
+    public Builder<Key, Value> offsetAfterLatest() {
+      this.fromBegin = OffsetResetStrategy.LATEST;
+      return this;
+    }
+
+    /**
+     * @param topicName the topic you want to subscribe
+     * @return this builder
+     */
+    public Builder<Key, Value> topicName(String topicName) {
+      this.topicNames = Collections.singletonList(Objects.requireNonNull(topicName));
+      return this;
+    }
+
+    /**
+     * @param topicNames the topics you want to subscribe
+     * @return this builder
+     */
+    public Builder<Key, Value> topicNames(List<String> topicNames) {
+      this.topicNames = CommonUtils.requireNonEmpty(topicNames);
+      return this;
+    }
+
+    @com.island.ohara.common.annotations.Optional("default is random string")
+    public Builder<Key, Value> groupId(String groupId) {
+      this.groupId = Objects.requireNonNull(groupId);
+      return this;
+    }
+
+    public Builder<Key, Value> connectionProps(String connectionProps) {
+      this.connectionProps = CommonUtils.requireNonEmpty(connectionProps);
+      return this;
+    }
+
+    public Builder<Key, Value> keySerializer(Serializer<Key> keySerializer) {
+      this.keySerializer = Objects.requireNonNull(keySerializer);
+      return this;
+    }
+
+    public Builder<Key, Value> valueSerializer(Serializer<Value> valueSerializer) {
+      this.valueSerializer = Objects.requireNonNull(valueSerializer);
+      return this;
+    }
+
+    /**
+     * @param processor the processor called by workers
+     * @return this builder
+     */
+    public Builder<Key, Value> processor(RecordProcessor<Key, Value> processor) {
+      this.processor = Objects.requireNonNull(processor);
+      return this;
+    }
+
+    /**
+     * @param exceptionHandler called when the processor throws exception. The failed record is
+     *     still regarded as completed.
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is to log the exception")
+    public Builder<Key, Value> exceptionHandler(
+        BiConsumer<Consumer.Record<Key, Value>, Throwable> exceptionHandler) {
+      this.exceptionHandler = Objects.requireNonNull(exceptionHandler);
+      return this;
+    }
+
+    @com.island.ohara.common.annotations.Optional("default is the number of processors")
+    public Builder<Key, Value> numberOfWorkers(int numberOfWorkers) {
+      this.numberOfWorkers = CommonUtils.requirePositiveInt(numberOfWorkers);
+      return this;
+    }
+
+    @com.island.ohara.common.annotations.Optional("default is Ordering.PARTITION")
+    public Builder<Key, Value> ordering(Ordering ordering) {
+      this.ordering = Objects.requireNonNull(ordering);
+      return this;
+    }
+
+    /**
+     * the partition is paused if the number of in-flight records is bigger than this value, and it
+     * is resumed after the number is reduced to half.
+     *
+     * @param maxInFlightPerPartition the max number of in-flight records in a partition
+     * @return this builder
+     */
+    @com.island.ohara.common.annotations.Optional("default is 1000")
+    public Builder<Key, Value> maxInFlightPerPartition(int maxInFlightPerPartition) {
+      this.maxInFlightPerPartition = CommonUtils.requirePositiveInt(maxInFlightPerPartition);
+      return this;
+    }
+
+    @com.island.ohara.common.annotations.Optional("default is 1 second")
+    public Builder<Key, Value> commitInterval(Duration commitInterval) {
+      this.commitInterval = Objects.requireNonNull(commitInterval);
+      return this;
+    }
+
+    @com.island.ohara.common.annotations.Optional("default is 100 milliseconds")
+    public Builder<Key, Value> pollTimeout(Duration pollTimeout) {
+      this.pollTimeout = Objects.requireNonNull(pollTimeout);
+      return this;
+    }
+
+    private void checkArguments() {
+      CommonUtils.requireNonEmpty(topicNames);
+      CommonUtils.requireNonEmpty(connectionProps);
+      CommonUtils.requireNonEmpty(groupId);
+      Objects.requireNonNull(fromBegin);
+      Objects.requireNonNull(keySerializer);
+      Objects.requireNonNull(valueSerializer);
+      Objects.requireNonNull(processor);
+    }
+
+    @Override
+    public ParallelConsumer<Key, Value> build() {
+      checkArguments();
+
+      Properties props = new Properties();
+      options.forEach(props::setProperty);
+      props.setProperty(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, connectionProps);
+      props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+      // kafka demand us to pass lowe case words...
+      props.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, fromBegin.name().toLowerCase());
+      // the offsets are committed by the poll thread
+      props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+
+      return new ParallelConsumerImpl<>(
+          new KafkaConsumer<>(props, new ByteArrayDeserializer(), new ByteArrayDeserializer()),
+          topicNames,
+          // the data are decoded by workers
+          new ConsumerRecordView<>(keySerializer, valueSerializer, true),
+          processor,
+          exceptionHandler,
+          numberOfWorkers,
+          ordering,
+          maxInFlightPerPartition,
+          commitInterval,
+          pollTimeout);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.common.util.ReleaseOnce;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The implementation of {@link ParallelConsumer}. The kafka consumer is NOT thread-safe so it is
+ * accessed only by the poll thread.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class ParallelConsumerImpl<K, V> extends ReleaseOnce implements ParallelConsumer<K, V> {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelConsumer.class);
+  private final org.apache.kafka.clients.consumer.Consumer<byte[], byte[]> kafkaConsumer;
+  private final ConsumerRecordView<K, V> view;
+  private final RecordProcessor<K, V> processor;
+  private final BiConsumer<Consumer.Record<K, V>, Throwable> exceptionHandler;
+  private final List<ExecutorService> workers;
+  private final Ordering ordering;
+  private final int maxInFlightPerPartition;
+  private final Duration commitInterval;
+  private final Duration pollTimeout;
+  private final OffsetTracker tracker = new OffsetTracker();
+  private final Set<TopicPartition> paused = new HashSet<>();
+  private final Set<String> subscription;
+  private final Thread pollThread;
+  private volatile boolean running = true;
+  private volatile int numberOfPaused = 0;
+  private volatile Throwable error = null;
+
+  ParallelConsumerImpl(
+      org.apache.kafka.clients.consumer.Consumer<byte[], byte[]> kafkaConsumer,
+      List<String> topicNames,
+      ConsumerRecordView<K, V> view,
+      RecordProcessor<K, V> processor,
+      BiConsumer<Consumer.Record<K, V>, Throwable> exceptionHandler,
+      int numberOfWorkers,
+      Ordering ordering,
+      int maxInFlightPerPartition,
+      Duration commitInterval,
+      Duration pollTimeout) {
+    this.kafkaConsumer = kafkaConsumer;
+    this.view = view;
+    this.processor = processor;
+    this.exceptionHandler = exceptionHandler;
+    this.ordering = ordering;
+    this.maxInFlightPerPartition = maxInFlightPerPartition;
+    this.commitInterval = commitInterval;
+    this.pollTimeout = pollTimeout;
+    this.subscription = Collections.unmodifiableSet(new HashSet<>(topicNames));
+    this.workers =
+        IntStream.range(0, numberOfWorkers)
+            .mapToObj(
+                index ->
+                    Executors.newSingleThreadExecutor(
+                        r -> {
+                          Thread thread = new Thread(r, "parallel-consumer-worker-" + index);
+                          thread.setDaemon(true);
+                          return thread;
+                        }))
+            .collect(Collectors.toList());
+    kafkaConsumer.subscribe(topicNames, new RebalanceListener());
+    this.pollThread = new Thread(this::loop, "parallel-consumer-poll");
+    this.pollThread.setDaemon(true);
+    this.pollThread.start();
+  }
+
+  /**
+   * The in-flight records of revoked partitions are completed before the partitions are assigned to
+   * others. Otherwise, the processed records may be committed by nobody.
+   */
+  private class RebalanceListener implements ConsumerRebalanceListener {
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+      waitInFlight(partitions);
+      commitSync();
+      tracker.remove(partitions);
+      paused.removeAll(partitions);
+      numberOfPaused = paused.size();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+      // do nothing
+    }
+  }
+
+  private void loop() {
+    long lastCommit = CommonUtils.current();
+    try {
+      while (running) {
+        for (ConsumerRecord<byte[], byte[]> record : kafkaConsumer.poll(pollTimeout))
+          dispatch(record);
+        applyBackpressure();
+        if (CommonUtils.current() - lastCommit >= commitInterval.toMillis()) {
+          commitAsync();
+          lastCommit = CommonUtils.current();
+        }
+      }
+    } catch (WakeupException e) {
+      // the consumer is closing
+    } catch (Throwable e) {
+      LOG.error("the poll thread is dead", e);
+      error = e;
+    } finally {
+      workers.forEach(ExecutorService::shutdown);
+      workers.forEach(
+          worker -> {
+            try {
+              if (!worker.awaitTermination(30, TimeUnit.SECONDS))
+                LOG.error("some records are not processed in 30 seconds");
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+      try {
+        commitSync();
+      } catch (Throwable e) {
+        LOG.error("failed to commit the offsets", e);
+      }
+      kafkaConsumer.close();
+    }
+  }
+
+  private int workerIndex(ConsumerRecord<byte[], byte[]> record) {
+    int hash =
+        ordering == Ordering.KEY && record.key() != null
+            ? Arrays.hashCode(record.key())
+            : 31 * record.topic().hashCode() + record.partition();
+    return Math.floorMod(hash, workers.size());
+  }
+
+  private void dispatch(ConsumerRecord<byte[], byte[]> kafkaRecord) {
+    TopicPartition partition = new TopicPartition(kafkaRecord.topic(), kafkaRecord.partition());
+    long offset = kafkaRecord.offset();
+    Consumer.Record<K, V> record = view.reset(kafkaRecord).toRecord();
+    tracker.dispatched(partition, offset);
+    workers
+        .get(workerIndex(kafkaRecord))
+        .execute(
+            () -> {
+              try {
+                processor.process(record);
+              } catch (Throwable e) {
+                exceptionHandler.accept(record, e);
+              } finally {
+                tracker.completed(partition, offset);
+              }
+            });
+  }
+
+  private void applyBackpressure() {
+    Set<TopicPartition> toPause = new HashSet<>();
+    Set<TopicPartition> toResume = new HashSet<>();
+    kafkaConsumer
+        .assignment()
+        .forEach(
+            partition -> {
+              int inFlight = tracker.inFlight(partition);
+              if (paused.contains(partition)) {
+                if (inFlight <= maxInFlightPerPartition / 2) toResume.add(partition);
+              } else if (inFlight >= maxInFlightPerPartition) toPause.add(partition);
+            });
+    if (!toPause.isEmpty()) {
+      kafkaConsumer.pause(toPause);
+      paused.addAll(toPause);
+    }
+    if (!toResume.isEmpty()) {
+      kafkaConsumer.resume(toResume);
+      paused.removeAll(toResume);
+    }
+    numberOfPaused = paused.size();
+  }
+
+  private void waitInFlight(Collection<TopicPartition> partitions) {
+    while (partitions.stream().anyMatch(p -> tracker.inFlight(p) > 0)) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void commitAsync() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = tracker.committable();
+    if (!offsets.isEmpty())
+      kafkaConsumer.commitAsync(
+          offsets,
+          (committed, e) -> {
+            // the failed offsets are committed again by next commit
+            if (e != null) LOG.error("failed to commit " + committed, e);
+            else tracker.committed(committed);
+          });
+  }
+
+  private void commitSync() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = tracker.committable();
+    if (!offsets.isEmpty()) {
+      kafkaConsumer.commitSync(offsets);
+      tracker.committed(offsets);
+    }
+  }
+
+  @Override
+  public Set<String> subscription() {
+    return subscription;
+  }
+
+  @Override
+  public long inFlight() {
+    return tracker.inFlight();
+  }
+
+  @Override
+  public int pausedPartitions() {
+    return numberOfPaused;
+  }
+
+  @Override
+  public Optional<Throwable> error() {
+    return Optional.ofNullable(error);
+  }
+
+  /** @return true if this consumer is closed or the poll thread is dead */
+  @Override
+  public boolean isClosed() {
+    return super.isClosed() || error != null;
+  }
+
+  @Override
+  protected void doClose() {
+    running = false;
+    kafkaConsumer.wakeup();
+    try {
+      pollThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    if (error != null) throw new IllegalStateException("the poll thread is dead", error);
+  }
+}
@@ -18,17 +18,19 @@ package com.island.ohara.kafka;
 
 import com.island.ohara.common.annotations.Optional;
 import com.island.ohara.common.annotations.VisibleForTesting;
+import com.island.ohara.common.cache.RefreshScheduler;
 import com.island.ohara.common.data.Serializer;
 import com.island.ohara.common.util.CommonUtils;
 import com.island.ohara.common.util.Releasable;
+import com.island.ohara.kafka.connector.TopicPartition;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 
 /**
  * a simple wrap from kafka producer.
@@ -45,9 +47,78 @@ public interface Producer<Key, Value> extends Releasable {
    */
   Sender<Key, Value> sender();
 
+  /**
+   * create a sender used to send many records to brokers. The records are passed to kafka producer
+   * in a tight loop, and a single future is returned for whole batch.
+   *
+   * @return a batch sender
+   */
+  BatchSender<Key, Value> batchSender();
+
+  /**
+   * send the values having no key to the topic.
+   *
+   * @param topicName topic name
+   * @param values values
+   * @return the future of batch result
+   */
+  default Future<BatchResult> sendAll(String topicName, Iterable<Value> values) {
+    return batchSender().topicName(topicName).send(values);
+  }
+
   /** flush all on-the-flight data. */
   void flush();
 
+  /**
+   * start a transaction. The records sent after this call are invisible to the consumers reading
+   * committed records until {@link #commitTransaction()}. This producer must be built with {@link
+   * Builder#transactionalId(String)}.
+   *
+   * <p>A exactly-once read-process-write loop looks like:
+   *
+   * <pre>
+   * producer.beginTransaction();
+   * consumer.poll(timeout).forEach(record -&gt; producer.sender()...send());
+   * producer.sendOffsetsToTransaction(consumer);
+   * producer.commitTransaction();
+   * </pre>
+   *
+   * The consumer should read committed records ({@link Consumer.Builder#readCommitted()}) and the
+   * auto commit should be disabled since the offsets are committed by producer.
+   *
+   * @throws IllegalStateException if this producer is not transactional
+   */
+  void beginTransaction();
+
+  /**
+   * commit the consumed offsets as a part of current transaction. The offsets are committed only if
+   * the transaction is committed.
+   *
+   * @param offsets the offsets of next records to consume
+   * @param groupId the group id of consumer
+   */
+  void sendOffsetsToTransaction(Map<TopicPartition, Long> offsets, String groupId);
+
+  /**
+   * commit the positions of consumer as a part of current transaction. see {@link
+   * Consumer#positions()}
+   *
+   * @param consumer consumer
+   */
+  default void sendOffsetsToTransaction(Consumer<?, ?> consumer) {
+    sendOffsetsToTransaction(consumer.positions(), consumer.groupId());
+  }
+
+  /**
+   * commit current transaction. The pending records are sent before committing. If the commit
+   * fails, the caller should call {@link #abortTransaction()} and then rewind the consumer to last
+   * committed offsets.
+   */
+  void commitTransaction();
+
+  /** abort current transaction. The records sent in the transaction are discarded. */
+  void abortTransaction();
+
   static <Key, Value> Builder<Key, Value> builder() {
     return new Builder<>();
   }
@@ -60,6 +131,13 @@ public interface Producer<Key, Value> extends Releasable {
     private short numberOfAcks = 1;
     private Serializer<Key> keySerializer = null;
     private Serializer<Value> valueSerializer = null;
+    private Integer maxInFlightRecords = null;
+    private Long maxInFlightBytes = null;
+    private Duration inFlightTimeout = Duration.ofSeconds(60);
+    private String metricsName = null;
+    private Duration latencyTarget = null;
+    private boolean idempotence = false;
+    private String transactionalId = null;
 
     private Builder() {
       // no nothing
@@ -99,37 +177,105 @@ public interface Producer<Key, Value> extends Releasable {
     }
 
     /**
-     * Used to convert ohara row to byte array. It is a private class since ohara producer will
-     * instantiate one and pass it to kafka producer. Hence, no dynamical call will happen in kafka
-     * producer. The access exception won't be caused.
+     * limit the number of records which are sent but not acked. The sender is blocked if there are
+     * too many in-flight records.
      *
-     * @param serializer ohara serializer
-     * @param <T> object type
-     * @return a wrapper from kafka serializer
+     * @param maxInFlightRecords the max number of in-flight records
+     * @return this builder
      */
-    private static <T> org.apache.kafka.common.serialization.Serializer<T> wrap(
-        Serializer<T> serializer) {
-      return new org.apache.kafka.common.serialization.Serializer<T>() {
+    @Optional("default is no limit")
+    public Builder<Key, Value> maxInFlightRecords(int maxInFlightRecords) {
+      this.maxInFlightRecords = CommonUtils.requirePositiveInt(maxInFlightRecords);
+      return this;
+    }
 
-        @Override
-        public void configure(Map<String, ?> configs, boolean isKey) {
-          // do nothing
-        }
+    /**
+     * limit the serialized bytes of records which are sent but not acked. The sender is blocked if
+     * there are too many in-flight bytes.
+     *
+     * @param maxInFlightBytes the max bytes of in-flight records
+     * @return this builder
+     */
+    @Optional("default is no limit")
+    public Builder<Key, Value> maxInFlightBytes(long maxInFlightBytes) {
+      this.maxInFlightBytes = CommonUtils.requirePositiveLong(maxInFlightBytes);
+      return this;
+    }
 
-        @Override
-        public byte[] serialize(String topic, T data) {
-          return data == null ? null : serializer.to(data);
-        }
+    /**
+     * @param inFlightTimeout the max time to wait for the in-flight limit. The record is failed by
+     *     OharaTimeoutException if the time is up
+     * @return this builder
+     */
+    @Optional("default is 60 seconds")
+    public Builder<Key, Value> inFlightTimeout(Duration inFlightTimeout) {
+      this.inFlightTimeout = Objects.requireNonNull(inFlightTimeout);
+      return this;
+    }
 
-        @Override
-        public void close() {
-          // do nothing
-        }
-      };
+    /**
+     * export the metrics of this producer as counters. see {@link ProducerMetrics}
+     *
+     * @param metricsName the name of producer. It is a part of the group of counters
+     * @return this builder
+     */
+    @Optional("default is no metrics")
+    public Builder<Key, Value> metrics(String metricsName) {
+      this.metricsName = CommonUtils.requireNonEmpty(metricsName);
+      return this;
+    }
+
+    /**
+     * enable the adaptive batching. The records are held by producer for a batching window before
+     * being sent, and the window is adjusted every second according to the send rate and ack
+     * latency. The window is shrunk if the ack latency is bigger than target or there are too few
+     * records to batch, and it is grown (up to half of target) if the ack latency is far below
+     * target. The linger of kafka producer is set to zero in this mode. see {@link ProducerMetrics}
+     * for the metrics of the window.
+     *
+     * @param latencyTarget the expected latency from sending to ack
+     * @return this builder
+     */
+    @Optional("default is disabled")
+    public Builder<Key, Value> adaptiveBatching(Duration latencyTarget) {
+      this.latencyTarget = Objects.requireNonNull(latencyTarget);
+      return this;
+    }
+
+    /**
+     * enable the idempotent producer. The retried records are not duplicate in the topic. It
+     * demands all acks.
+     *
+     * @return this builder
+     */
+    @Optional("default is disabled")
+    public Builder<Key, Value> idempotence() {
+      this.idempotence = true;
+      this.numberOfAcks = -1;
+      return this;
+    }
+
+    /**
+     * enable the transactions. see {@link Producer#beginTransaction()}. The transactional producer
+     * is idempotent.
+     *
+     * @param transactionalId the id used to fence the previous producer having the same id. It
+     *     should be stable across restarts of the same application instance
+     * @return this builder
+     */
+    @Optional("default is not transactional")
+    public Builder<Key, Value> transactionalId(String transactionalId) {
+      this.transactionalId = CommonUtils.requireNonEmpty(transactionalId);
+      return idempotence();
     }
 
     private void checkArguments() {
       CommonUtils.requireNonEmpty(connectionProps);
+      if (idempotence && numberOfAcks != -1)
+        throw new IllegalArgumentException("idempotence requires all acks");
+      if (latencyTarget != null && options.containsKey(ProducerConfig.LINGER_MS_CONFIG))
+        throw new IllegalArgumentException(
+            ProducerConfig.LINGER_MS_CONFIG + " can't be used with adaptive batching");
       Objects.requireNonNull(keySerializer);
       Objects.requireNonNull(valueSerializer);
     }
@@ -137,87 +283,47 @@ public interface Producer<Key, Value> extends Releasable {
     @Override
     public Producer<Key, Value> build() {
       checkArguments();
-      return new Producer<Key, Value>() {
-
-        private Properties getProducerConfig() {
-          Properties props = new Properties();
-          options.forEach(props::setProperty);
-          props.setProperty(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, connectionProps);
-          props.setProperty(ProducerConfig.ACKS_CONFIG, String.valueOf(numberOfAcks));
-          return props;
-        }
-
-        private final KafkaProducer<Key, Value> producer =
-            new KafkaProducer<>(getProducerConfig(), wrap(keySerializer), wrap(valueSerializer));
-
-        @Override
-        public final Sender<Key, Value> sender() {
-          return new Sender<Key, Value>() {
-            @Override
-            public Future<RecordMetadata> doSend() {
-              CompletableFuture<RecordMetadata> completableFuture = new CompletableFuture<>();
-              ProducerRecord<Key, Value> record =
-                  new ProducerRecord<>(
-                      topicName,
-                      partition,
-                      timestamp,
-                      key,
-                      value,
-                      headers.stream()
-                          .map(Builder.this::toKafkaHeader)
-                          .collect(Collectors.toList()));
-
-              producer.send(
-                  record,
-                  (metadata, exception) -> {
-                    if (metadata == null && exception == null)
-                      completableFuture.completeExceptionally(
-                          new IllegalStateException(
-                              "no meta and exception from kafka producer...It should be impossible"));
-                    if (metadata != null && exception != null)
-                      completableFuture.completeExceptionally(
-                          new IllegalStateException(
-                              "Both meta and exception from kafka producer...It should be impossible"));
-                    if (metadata != null)
-                      completableFuture.complete(
-                          new RecordMetadata(
-                              metadata.topic(),
-                              metadata.partition(),
-                              metadata.offset(),
-                              metadata.timestamp(),
-                              metadata.serializedKeySize(),
-                              metadata.serializedValueSize()));
-                    if (exception != null) completableFuture.completeExceptionally(exception);
-                  });
-              return completableFuture;
-            }
-          };
-        }
-
-        @Override
-        public void flush() {
-          producer.flush();
-        }
-
-        @Override
-        public void close() {
+      Properties props = new Properties();
+      options.forEach(props::setProperty);
+      props.setProperty(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, connectionProps);
+      props.setProperty(ProducerConfig.ACKS_CONFIG, String.valueOf(numberOfAcks));
+      // the records are held by AdaptiveBatcher so kafka producer should send them immediately
+      if (latencyTarget != null) props.setProperty(ProducerConfig.LINGER_MS_CONFIG, "0");
+      if (idempotence) props.setProperty(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+      if (transactionalId != null)
+        props.setProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+      // the data are serialized by ProducerImpl so kafka producer just sends the raw bytes
+      KafkaProducer<byte[], byte[]> producer =
+          new KafkaProducer<>(props, new ByteArraySerializer(), new ByteArraySerializer());
+      if (transactionalId != null) {
+        try {
+          // fence the previous producers and complete their pending transactions
+          producer.initTransactions();
+        } catch (RuntimeException e) {
           producer.close();
+          throw e;
         }
-      };
-    }
-
-    private org.apache.kafka.common.header.Header toKafkaHeader(Header header) {
-      return new org.apache.kafka.common.header.Header() {
-        @Override
-        public String key() {
-          return header.key();
-        }
-
-        @Override
-        public byte[] value() {
-          return header.value();
-        }
-      };
+      }
+      InFlightLimiter limiter =
+          maxInFlightRecords == null && maxInFlightBytes == null
+              ? null
+              : new InFlightLimiter(
+                  maxInFlightRecords == null ? Integer.MAX_VALUE : maxInFlightRecords,
+                  maxInFlightBytes == null ? Long.MAX_VALUE : maxInFlightBytes);
+      AdaptiveBatcher batcher =
+          latencyTarget == null ? null : new AdaptiveBatcher(latencyTarget, Duration.ofSeconds(1));
+      ProducerMetrics metrics =
+          metricsName == null
+              ? null
+              : new ProducerMetrics(
+                  metricsName,
+                  producer::metrics,
+                  limiter,
+                  batcher,
+                  RefreshScheduler.shared(),
+                  Duration.ofSeconds(1));
+      return new ProducerImpl<>(
+          producer, keySerializer, valueSerializer, limiter, inFlightTimeout, metrics, batcher);
     }
   }
 
@@ -303,6 +409,129 @@ public interface Producer<Key, Value> extends Releasable {
     protected abstract Future<RecordMetadata> doSend();
   }
 
+  /**
+   * a fluent-style sender for many records. All records are sent to the same topic (and partition
+   * if it is defined), and the metadata of records are not created unless {@link #keepMetadata()}
+   * is called.
+   */
+  abstract class BatchSender<Key, Value> {
+    protected String topicName = null;
+    protected Integer partition = null;
+    protected boolean keepMetadata = false;
+
+    @VisibleForTesting
+    BatchSender() {
+      // do nothing
+    }
+
+    public BatchSender<Key, Value> topicName(String topicName) {
+      this.topicName = CommonUtils.requireNonEmpty(topicName);
+      return this;
+    }
+
+    @Optional("default is hash of key")
+    public BatchSender<Key, Value> partition(int partition) {
+      this.partition = partition;
+      return this;
+    }
+
+    /**
+     * collect the {@link RecordMetadata} of all records into {@link BatchResult#metadata()}.
+     *
+     * @return this sender
+     */
+    @Optional("default is false")
+    public BatchSender<Key, Value> keepMetadata() {
+      this.keepMetadata = true;
+      return this;
+    }
+
+    /**
+     * send the values having no key.
+     *
+     * @param values values
+     * @return the future of batch result
+     */
+    public Future<BatchResult> send(Iterable<Value> values) {
+      return send(values, v -> null, v -> v);
+    }
+
+    /**
+     * send the key-values.
+     *
+     * @param keyValues key-values
+     * @return the future of batch result
+     */
+    public Future<BatchResult> send(Map<Key, Value> keyValues) {
+      return send(keyValues.entrySet(), Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    /**
+     * send the items. The key and value of each record are generated by the mappers.
+     *
+     * @param items items
+     * @param keyMapper generate the key (nullable) of record
+     * @param valueMapper generate the value of record
+     * @param <T> item type
+     * @return the future of batch result
+     */
+    public <T> Future<BatchResult> send(
+        Iterable<T> items, Function<T, Key> keyMapper, Function<T, Value> valueMapper) {
+      Objects.requireNonNull(topicName);
+      return doSend(
+          Objects.requireNonNull(items),
+          Objects.requireNonNull(keyMapper),
+          Objects.requireNonNull(valueMapper));
+    }
+
+    protected abstract <T> Future<BatchResult> doSend(
+        Iterable<T> items, Function<T, Key> keyMapper, Function<T, Value> valueMapper);
+  }
+
+  /** the result of {@link BatchSender}. */
+  final class BatchResult {
+    private final int count;
+    private final int successCount;
+    private final Exception firstFailure;
+    private final List<RecordMetadata> metadata;
+
+    BatchResult(
+        int count, int successCount, Exception firstFailure, List<RecordMetadata> metadata) {
+      this.count = count;
+      this.successCount = successCount;
+      this.firstFailure = firstFailure;
+      this.metadata = Objects.requireNonNull(metadata);
+    }
+
+    /** @return the number of records in the batch */
+    public int count() {
+      return count;
+    }
+
+    /** @return the number of records which are sent successfully */
+    public int successCount() {
+      return successCount;
+    }
+
+    /** @return the number of failed records */
+    public int failureCount() {
+      return count - successCount;
+    }
+
+    /** @return the first exception happening in sending records */
+    public java.util.Optional<Exception> firstFailure() {
+      return java.util.Optional.ofNullable(firstFailure);
+    }
+
+    /**
+     * @return the metadata of records in sending order. The failed record has null metadata. It is
+     *     empty if {@link BatchSender#keepMetadata()} is not called
+     */
+    public List<RecordMetadata> metadata() {
+      return metadata;
+    }
+  }
+
   /** wrap from kafka RecordMetadata; */
   class RecordMetadata {
     private final String topicName;
@@ -312,7 +541,7 @@ public interface Producer<Key, Value> extends Releasable {
     private final int serializedKeySize;
     private final int serializedValueSize;
 
-    private RecordMetadata(
+    RecordMetadata(
         String topicName,
         int partition,
         long offset,
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.exception.OharaInterruptedException;
+import com.island.ohara.common.exception.OharaTimeoutException;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.kafka.connector.TopicPartition;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+/**
+ * The implementation of {@link Producer}. It is a thin wrap of kafka producer. The data are
+ * serialized by this class so the size of records is known before sending. If there is a {@link
+ * InFlightLimiter}, the caller is blocked until the in-flight records are below the limit. If there
+ * is a {@link AdaptiveBatcher}, the records are passed to kafka producer by the batcher.
+ *
+ * @param <Key> key type
+ * @param <Value> value type
+ */
+final class ProducerImpl<Key, Value> implements Producer<Key, Value> {
+  private final org.apache.kafka.clients.producer.Producer<byte[], byte[]> producer;
+  private final Serializer<Key> keySerializer;
+  private final Serializer<Value> valueSerializer;
+  private final InFlightLimiter limiter;
+  private final Duration inFlightTimeout;
+  private final ProducerMetrics metrics;
+  private final AdaptiveBatcher batcher;
+
+  /**
+   * @param producer kafka producer
+   * @param keySerializer key serializer
+   * @param valueSerializer value serializer
+   * @param limiter the in-flight limiter. nullable
+   * @param inFlightTimeout the max time to wait for the in-flight limiter
+   * @param metrics metrics. nullable
+   * @param batcher the adaptive batcher. nullable
+   */
+  ProducerImpl(
+      org.apache.kafka.clients.producer.Producer<byte[], byte[]> producer,
+      Serializer<Key> keySerializer,
+      Serializer<Value> valueSerializer,
+      InFlightLimiter limiter,
+      Duration inFlightTimeout,
+      ProducerMetrics metrics,
+      AdaptiveBatcher batcher) {
+    this.producer = Objects.requireNonNull(producer);
+    this.keySerializer = Objects.requireNonNull(keySerializer);
+    this.valueSerializer = Objects.requireNonNull(valueSerializer);
+    this.limiter = limiter;
+    this.inFlightTimeout = Objects.requireNonNull(inFlightTimeout);
+    this.metrics = metrics;
+    this.batcher = batcher;
+  }
+
+  /**
+   * send a record to kafka producer. The exception happening before sending (for example, the
+   * timeout of in-flight limiter) is passed to the callback. If there is a batcher, the exception
+   * thrown by kafka producer is passed to the callback too.
+   *
+   * @throws RuntimeException if the kafka producer throws exception directly
+   */
+  private void send(
+      String topicName,
+      Integer partition,
+      Long timestamp,
+      Key key,
+      Value value,
+      List<org.apache.kafka.common.header.Header> headers,
+      Callback callback) {
+    byte[] keyBytes = key == null ? null : keySerializer.to(key);
+    byte[] valueBytes = value == null ? null : valueSerializer.to(value);
+    int size =
+        (keyBytes == null ? 0 : keyBytes.length) + (valueBytes == null ? 0 : valueBytes.length);
+    if (limiter != null) {
+      long start = System.nanoTime();
+      boolean acquired;
+      try {
+        acquired = limiter.acquire(size, inFlightTimeout);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (metrics != null) metrics.recordFailure(0);
+        callback.onCompletion(null, new OharaInterruptedException(e));
+        return;
+      }
+      if (metrics != null) metrics.recordWait(System.nanoTime() - start);
+      if (!acquired) {
+        if (metrics != null) metrics.recordFailure(0);
+        callback.onCompletion(
+            null,
+            new OharaTimeoutException(
+                "there are too many in-flight records after " + inFlightTimeout));
+        return;
+      }
+    }
+    long start = System.nanoTime();
+    Callback actual = callback;
+    if (limiter != null || metrics != null || batcher != null)
+      actual =
+          (metadata, exception) -> {
+            complete(size, start, exception);
+            callback.onCompletion(metadata, exception);
+          };
+    ProducerRecord<byte[], byte[]> record =
+        new ProducerRecord<>(topicName, partition, timestamp, keyBytes, valueBytes, headers);
+    try {
+      if (batcher == null) producer.send(record, actual);
+      else {
+        Callback finalCallback = actual;
+        batcher.submit(
+            () -> {
+              try {
+                producer.send(record, finalCallback);
+              } catch (RuntimeException e) {
+                // the batcher may send the record in another thread so the exception is passed to
+                // callback
+                finalCallback.onCompletion(null, e);
+              }
+            });
+      }
+    } catch (RuntimeException e) {
+      // the callback is not called if the exception is thrown directly. The caller handles the
+      // exception so we only release the permits here.
+      if (actual != callback) complete(size, start, e);
+      throw e;
+    }
+  }
+
+  /**
+   * release the permits and record the metrics of a completed record.
+   *
+   * @param size the size of record
+   * @param start the time (in nanoseconds) of sending the record
+   * @param exception the failure, or null if the record is sent successfully
+   */
+  private void complete(int size, long start, Exception exception) {
+    if (limiter != null) limiter.release(size);
+    long latency = System.nanoTime() - start;
+    if (metrics != null) {
+      if (exception == null) metrics.recordSuccess(size, latency);
+      else metrics.recordFailure(latency);
+    }
+    if (batcher != null) batcher.recordAck(latency);
+  }
+
+  private static List<org.apache.kafka.common.header.Header> toKafkaHeaders(List<Header> headers) {
+    // kafka producer creates an empty headers if there is no header
+    if (headers.isEmpty()) return null;
+    return headers.stream().map(ProducerImpl::toKafkaHeader).collect(Collectors.toList());
+  }
+
+  private static org.apache.kafka.common.header.Header toKafkaHeader(Header header) {
+    return new org.apache.kafka.common.header.Header() {
+      @Override
+      public String key() {
+        return header.key();
+      }
+
+      @Override
+      public byte[] value() {
+        return header.value();
+      }
+    };
+  }
+
+  private static RecordMetadata toOhara(org.apache.kafka.clients.producer.RecordMetadata metadata) {
+    return new RecordMetadata(
+        metadata.topic(),
+        metadata.partition(),
+        metadata.offset(),
+        metadata.timestamp(),
+        metadata.serializedKeySize(),
+        metadata.serializedValueSize());
+  }
+
+  @Override
+  public Sender<Key, Value> sender() {
+    return new Sender<Key, Value>() {
+      @Override
+      public Future<RecordMetadata> doSend() {
+        CompletableFuture<RecordMetadata> completableFuture = new CompletableFuture<>();
+        ProducerImpl.this.send(
+            topicName,
+            partition,
+            timestamp,
+            key,
+            value,
+            toKafkaHeaders(headers),
+            (metadata, exception) -> {
+              if (metadata == null && exception == null)
+                completableFuture.completeExceptionally(
+                    new IllegalStateException(
+                        "no meta and exception from kafka producer...It should be impossible"));
+              if (metadata != null && exception != null)
+                completableFuture.completeExceptionally(
+                    new IllegalStateException(
+                        "Both meta and exception from kafka producer...It should be impossible"));
+              if (metadata != null) completableFuture.complete(toOhara(metadata));
+              if (exception != null) completableFuture.completeExceptionally(exception);
+            });
+        return completableFuture;
+      }
+    };
+  }
+
+  @Override
+  public BatchSender<Key, Value> batchSender() {
+    return new BatchSender<Key, Value>() {
+      @Override
+      protected <T> Future<BatchResult> doSend(
+          Iterable<T> items, Function<T, Key> keyMapper, Function<T, Value> valueMapper) {
+        BatchCallback callback = new BatchCallback(keepMetadata);
+        int index = 0;
+        for (T item : items) {
+          Callback recordCallback = callback.register(index++);
+          try {
+            ProducerImpl.this.send(
+                topicName,
+                partition,
+                null,
+                keyMapper.apply(item),
+                valueMapper.apply(item),
+                null,
+                recordCallback);
+          } catch (RuntimeException e) {
+            // the callback is not called if kafka producer throws the exception directly
+            recordCallback.onCompletion(null, e);
+          }
+        }
+        return callback.seal(index);
+      }
+    };
+  }
+
+  /**
+   * Aggregate the callbacks of a batch. The future is completed after all records are completed and
+   * the batch is sealed.
+   */
+  private static final class BatchCallback {
+    private final CompletableFuture<BatchResult> future = new CompletableFuture<>();
+    private final Map<Integer, RecordMetadata> metadata;
+    // the extra one is released by seal()
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger successes = new AtomicInteger(0);
+    private final AtomicReference<Exception> firstFailure = new AtomicReference<>(null);
+    private volatile int count = 0;
+
+    private BatchCallback(boolean keepMetadata) {
+      this.metadata = keepMetadata ? new ConcurrentHashMap<>() : null;
+    }
+
+    private Callback register(int index) {
+      pending.incrementAndGet();
+      return (m, e) -> {
+        if (e != null) firstFailure.compareAndSet(null, e);
+        else {
+          successes.incrementAndGet();
+          if (metadata != null) metadata.put(index, toOhara(m));
+        }
+        if (pending.decrementAndGet() == 0) complete();
+      };
+    }
+
+    private Future<BatchResult> seal(int count) {
+      this.count = count;
+      if (pending.decrementAndGet() == 0) complete();
+      return future;
+    }
+
+    private void complete() {
+      List<RecordMetadata> list;
+      if (metadata == null) list = Collections.emptyList();
+      else
+        list =
+            Collections.unmodifiableList(
+                IntStream.range(0, count).mapToObj(metadata::get).collect(Collectors.toList()));
+      future.complete(new BatchResult(count, successes.get(), firstFailure.get(), list));
+    }
+  }
+
+  @Override
+  public void flush() {
+    if (batcher != null) batcher.flush();
+    producer.flush();
+  }
+
+  @Override
+  public void beginTransaction() {
+    producer.beginTransaction();
+  }
+
+  @Override
+  public void sendOffsetsToTransaction(Map<TopicPartition, Long> offsets, String groupId) {
+    CommonUtils.requireNonEmpty(groupId);
+    producer.sendOffsetsToTransaction(
+        offsets.entrySet().stream()
+            .collect(
+                Collectors.toMap(
+                    e ->
+                        new org.apache.kafka.common.TopicPartition(
+                            e.getKey().topicName(), e.getKey().partition()),
+                    e -> new OffsetAndMetadata(e.getValue()))),
+        groupId);
+  }
+
+  @Override
+  public void commitTransaction() {
+    // the pending records belong to current transaction
+    if (batcher != null) batcher.flush();
+    producer.commitTransaction();
+  }
+
+  @Override
+  public void abortTransaction() {
+    // the pending records must be aborted with current transaction rather than leaking into next
+    // one
+    if (batcher != null) batcher.flush();
+    producer.abortTransaction();
+  }
+
+  @Override
+  public void close() {
+    try {
+      // the pending records must be passed to kafka producer before closing it
+      if (batcher != null) batcher.close();
+      producer.close();
+    } finally {
+      if (metrics != null) metrics.close();
+    }
+  }
+}
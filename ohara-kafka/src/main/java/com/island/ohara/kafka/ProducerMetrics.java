@@ -0,0 +1,272 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.annotations.VisibleForTesting;
+import com.island.ohara.common.cache.RefreshScheduler;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.common.util.Releasable;
+import com.island.ohara.common.util.ReleaseOnce;
+import com.island.ohara.metrics.basic.Counter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+/**
+ * Publish the metrics of {@link Producer} as {@link Counter}s. The counters of a producer are in
+ * the group "producer-{name}" so they can be found by {@link com.island.ohara.metrics.BeanChannel}.
+ * The records, errors and latencies are recorded by producer, and the batch size and queue time are
+ * copied from the metrics of kafka producer. The value of counters is synced periodically.
+ *
+ * <p>The rate of sent records (and errors) is the value of counter divided by the elapsed time
+ * between start time and query time of counter. The average latency is the total latency divided by
+ * the number of acked records (including errors).
+ *
+ * <p>If the producer is in adaptive batching mode, the current batching window and the number of
+ * adjustments made by {@link AdaptiveBatcher} are exported too. Otherwise, they are zero.
+ */
+public final class ProducerMetrics extends ReleaseOnce {
+  public static final String GROUP_PREFIX = "producer-";
+  public static final String SEND = "send";
+  public static final String SEND_ERROR = "send-error";
+  public static final String SEND_BYTES = "send-bytes";
+  public static final String ACK_LATENCY = "ack-latency";
+  public static final String MAX_ACK_LATENCY = "max-ack-latency";
+  public static final String IN_FLIGHT_WAIT_TIME = "in-flight-wait-time";
+  public static final String IN_FLIGHT_RECORDS = "in-flight-records";
+  public static final String IN_FLIGHT_BYTES = "in-flight-bytes";
+  public static final String BATCH_SIZE = "batch-size-avg";
+  public static final String RECORD_QUEUE_TIME = "record-queue-time-avg";
+  public static final String REQUEST_LATENCY = "request-latency-avg";
+  public static final String BATCH_WINDOW = "batch-window";
+  public static final String BATCH_WINDOW_INCREASE = "batch-window-increase";
+  public static final String BATCH_WINDOW_DECREASE = "batch-window-decrease";
+
+  /** the group of kafka producer metrics */
+  private static final String KAFKA_GROUP = "producer-metrics";
+
+  /** a counter and the function to get its value. */
+  private static class Binding {
+    private final Counter counter;
+    private final LongSupplier value;
+
+    private Binding(Counter counter, LongSupplier value) {
+      this.counter = counter;
+      this.value = value;
+    }
+  }
+
+  private final LongAdder sends = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder ackNanos = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private volatile long maxAckNanos = 0;
+  private final Supplier<Map<MetricName, ? extends Metric>> kafkaMetrics;
+  private final List<Binding> bindings;
+  private final RefreshScheduler.Task task;
+
+  /**
+   * create and register the counters.
+   *
+   * @param name the name of producer. It is a part of the group of counters
+   * @param kafkaMetrics the metrics of kafka producer
+   * @param limiter the in-flight limiter. nullable
+   * @param batcher the adaptive batcher. nullable
+   * @param scheduler used to sync the counters
+   * @param frequency the time to sync the counters
+   */
+  ProducerMetrics(
+      String name,
+      Supplier<Map<MetricName, ? extends Metric>> kafkaMetrics,
+      InFlightLimiter limiter,
+      AdaptiveBatcher batcher,
+      RefreshScheduler scheduler,
+      Duration frequency) {
+    String group = GROUP_PREFIX + CommonUtils.requireNonEmpty(name);
+    this.kafkaMetrics = kafkaMetrics;
+    List<Binding> bindings = new ArrayList<>();
+    bindings.add(bind(group, SEND, "records", "the number of acked records", sends::sum));
+    bindings.add(bind(group, SEND_ERROR, "records", "the number of failed records", errors::sum));
+    bindings.add(bind(group, SEND_BYTES, "bytes", "the bytes of acked records", bytes::sum));
+    bindings.add(
+        bind(
+            group,
+            ACK_LATENCY,
+            "ms",
+            "the total time from sending to ack",
+            () -> TimeUnit.NANOSECONDS.toMillis(ackNanos.sum())));
+    bindings.add(
+        bind(
+            group,
+            MAX_ACK_LATENCY,
+            "ms",
+            "the max time from sending to ack",
+            () -> TimeUnit.NANOSECONDS.toMillis(maxAckNanos)));
+    bindings.add(
+        bind(
+            group,
+            IN_FLIGHT_WAIT_TIME,
+            "ms",
+            "the total time waiting for the in-flight limit",
+            () -> TimeUnit.NANOSECONDS.toMillis(waitNanos.sum())));
+    bindings.add(
+        bind(
+            group,
+            IN_FLIGHT_RECORDS,
+            "records",
+            "the number of records which are not acked",
+            () -> limiter == null ? 0 : limiter.records()));
+    bindings.add(
+        bind(
+            group,
+            IN_FLIGHT_BYTES,
+            "bytes",
+            "the bytes of records which are not acked",
+            () -> limiter == null ? 0 : limiter.bytes()));
+    bindings.add(
+        bind(
+            group,
+            BATCH_SIZE,
+            "bytes",
+            "the average bytes of batches sent by kafka producer",
+            () -> kafkaMetric(BATCH_SIZE)));
+    bindings.add(
+        bind(
+            group,
+            RECORD_QUEUE_TIME,
+            "ms",
+            "the average time of records staying in the buffer of kafka producer",
+            () -> kafkaMetric(RECORD_QUEUE_TIME)));
+    bindings.add(
+        bind(
+            group,
+            REQUEST_LATENCY,
+            "ms",
+            "the average latency of produce requests",
+            () -> kafkaMetric(REQUEST_LATENCY)));
+    bindings.add(
+        bind(
+            group,
+            BATCH_WINDOW,
+            "ms",
+            "the current window of adaptive batching",
+            () -> batcher == null ? 0 : batcher.window().toMillis()));
+    bindings.add(
+        bind(
+            group,
+            BATCH_WINDOW_INCREASE,
+            "times",
+            "the number of increasing the window of adaptive batching",
+            () -> batcher == null ? 0 : batcher.increases()));
+    bindings.add(
+        bind(
+            group,
+            BATCH_WINDOW_DECREASE,
+            "times",
+            "the number of decreasing the window of adaptive batching",
+            () -> batcher == null ? 0 : batcher.decreases()));
+    this.bindings = Collections.unmodifiableList(bindings);
+    this.task = scheduler.register(this::update, frequency);
+  }
+
+  private static Binding bind(
+      String group, String name, String unit, String document, LongSupplier value) {
+    return new Binding(
+        Counter.builder().group(group).name(name).unit(unit).document(document).register(), value);
+  }
+
+  /**
+   * @param name the name of kafka producer metric
+   * @return the rounded value. Zero if the metric is not ready
+   */
+  private long kafkaMetric(String name) {
+    return kafkaMetrics.get().entrySet().stream()
+        .filter(e -> e.getKey().group().equals(KAFKA_GROUP) && e.getKey().name().equals(name))
+        .map(e -> e.getValue().metricValue())
+        .filter(v -> v instanceof Number)
+        .mapToDouble(v -> ((Number) v).doubleValue())
+        // the kafka metric is NaN if there is no sample
+        .filter(v -> !Double.isNaN(v) && !Double.isInfinite(v))
+        .mapToLong(Math::round)
+        .findFirst()
+        .orElse(0);
+  }
+
+  /**
+   * record a acked record.
+   *
+   * @param size the bytes of record
+   * @param latency the nanoseconds from sending to ack
+   */
+  void recordSuccess(int size, long latency) {
+    sends.increment();
+    bytes.add(size);
+    recordLatency(latency);
+  }
+
+  /**
+   * record a failed record.
+   *
+   * @param latency the nanoseconds from sending to failure
+   */
+  void recordFailure(long latency) {
+    errors.increment();
+    recordLatency(latency);
+  }
+
+  private void recordLatency(long latency) {
+    ackNanos.add(latency);
+    if (latency > maxAckNanos) {
+      synchronized (this) {
+        if (latency > maxAckNanos) maxAckNanos = latency;
+      }
+    }
+  }
+
+  /** @param nanos the time waiting for the in-flight limit */
+  void recordWait(long nanos) {
+    waitNanos.add(nanos);
+  }
+
+  /** sync the value of counters. */
+  @VisibleForTesting
+  void update() {
+    bindings.forEach(binding -> binding.counter.setAndGet(binding.value.getAsLong()));
+  }
+
+  /** @return the registered counters */
+  public List<Counter> counters() {
+    return Collections.unmodifiableList(
+        bindings.stream().map(binding -> binding.counter).collect(Collectors.toList()));
+  }
+
+  @Override
+  protected void doClose() {
+    task.close();
+    bindings.forEach(binding -> Releasable.close(binding.counter));
+  }
+}
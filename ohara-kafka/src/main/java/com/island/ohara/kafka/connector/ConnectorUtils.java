@@ -108,14 +108,15 @@ final class ConnectorUtils {
   @VisibleForTesting
   static long sizeOf(Object obj) {
     if (obj instanceof byte[]) return ((byte[]) obj).length;
-    else if (obj instanceof Row) return Serializer.ROW.to((Row) obj).length;
+    // sizeOf computes the size without generating the serialized bytes
+    else if (obj instanceof Row) return Serializer.ROW.sizeOf((Row) obj);
     else if (obj instanceof Boolean) return ByteUtils.SIZE_OF_BOOLEAN;
     else if (obj instanceof Short) return ByteUtils.SIZE_OF_SHORT;
     else if (obj instanceof Integer) return ByteUtils.SIZE_OF_INT;
     else if (obj instanceof Long) return ByteUtils.SIZE_OF_LONG;
     else if (obj instanceof Float) return ByteUtils.SIZE_OF_FLOAT;
     else if (obj instanceof Double) return ByteUtils.SIZE_OF_DOUBLE;
-    else if (obj instanceof String) return ((String) obj).getBytes().length;
+    else if (obj instanceof String) return Serializer.STRING.sizeOf((String) obj);
     else return 0;
   }
 
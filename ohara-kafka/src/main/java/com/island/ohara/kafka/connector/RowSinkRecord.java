@@ -16,8 +16,9 @@
 
 package com.island.ohara.kafka.connector;
 
+import com.island.ohara.common.data.LazyRow;
 import com.island.ohara.common.data.Row;
-import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.data.RowProjection;
 import com.island.ohara.common.util.CommonUtils;
 import com.island.ohara.kafka.TimestampType;
 import java.util.Objects;
@@ -80,13 +81,19 @@ public class RowSinkRecord {
    * @return ohara's sink record
    */
   static RowSinkRecord of(SinkRecord record) {
+    return of(record, null);
+  }
+
+  /**
+   * @param record kafka's sink record
+   * @param projection the projection used to deserialize the row. null means all cells are read
+   * @return ohara's sink record
+   */
+  static RowSinkRecord of(SinkRecord record, RowProjection projection) {
     return builder()
         .topicName(record.topic())
         // add a room to accept the row in kafka
-        .row(
-            (record.key() instanceof Row)
-                ? ((Row) record.key())
-                : Serializer.ROW.from((byte[]) record.key()))
+        .row(row(record.key(), projection))
         .partition(record.kafkaPartition())
         .offset(record.kafkaOffset())
         // constructing a record without timeout is legal in kafka ...
@@ -95,6 +102,14 @@ public class RowSinkRecord {
         .build();
   }
 
+  private static Row row(Object key, RowProjection projection) {
+    if (key instanceof Row) return (Row) key;
+    // only the selected cells are decoded
+    if (projection != null) return projection.from((byte[]) key);
+    // the cells are decoded on demand since most sinks don't touch all cells
+    return LazyRow.of((byte[]) key);
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -18,6 +18,7 @@ package com.island.ohara.kafka.connector;
 
 import com.google.common.collect.ImmutableMap;
 import com.island.ohara.common.annotations.VisibleForTesting;
+import com.island.ohara.common.data.RowProjection;
 import com.island.ohara.common.util.Releasable;
 import com.island.ohara.common.util.VersionUtils;
 import com.island.ohara.metrics.basic.Counter;
@@ -25,6 +26,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.connect.sink.SinkRecord;
@@ -113,6 +115,20 @@ public abstract class RowSinkTask extends SinkTask {
     return offsets;
   }
 
+  /**
+   * Declare the cells read by this task. The cells which are not selected by the projection are
+   * skipped when deserializing the rows, so the task which reads a few columns of wide rows can
+   * avoid decoding other cells. It is called once after {@link #_start(TaskSetting)}.
+   *
+   * <p>The default implementation returns empty so all cells are available (and they are decoded on
+   * demand).
+   *
+   * @return the projection of rows, or empty if all cells are read
+   */
+  protected Optional<RowProjection> _projection() {
+    return Optional.empty();
+  }
+
   protected RowSinkContext rowContext;
   // -------------------------------------------------[WRAPPED]-------------------------------------------------//
   @VisibleForTesting Counter rowCounter = null;
@@ -122,7 +138,10 @@ public abstract class RowSinkTask extends SinkTask {
   public final void put(Collection<SinkRecord> records) {
     if (records == null) records = Collections.emptyList();
     try {
-      _put(records.stream().map(RowSinkRecord::of).collect(Collectors.toList()));
+      _put(
+          records.stream()
+              .map(record -> RowSinkRecord.of(record, projection))
+              .collect(Collectors.toList()));
     } finally {
       // rowCounter should not be null ....
       if (rowCounter != null) rowCounter.addAndGet(records.size());
@@ -145,13 +164,17 @@ public abstract class RowSinkTask extends SinkTask {
   }
 
   @VisibleForTesting TaskSetting taskSetting = null;
+  // null means all cells are read
+  private RowProjection projection = null;
 
   @Override
   public final void start(Map<String, String> props) {
     taskSetting = TaskSetting.of(ImmutableMap.copyOf(props));
+    taskSetting.registerSchemas();
     rowCounter = ConnectorUtils.rowCounter(taskSetting.name());
     sizeCounter = ConnectorUtils.sizeCounter(taskSetting.name());
     _start(taskSetting);
+    projection = _projection().orElse(null);
   }
 
   @Override
@@ -133,6 +133,7 @@ public abstract class RowSourceTask extends SourceTask {
   @Override
   public final void start(Map<String, String> props) {
     taskSetting = TaskSetting.of(ImmutableMap.copyOf(props));
+    taskSetting.registerSchemas();
     rowCounter = ConnectorUtils.rowCounter(taskSetting.name());
     sizeCounter = ConnectorUtils.sizeCounter(taskSetting.name());
     _start(taskSetting);
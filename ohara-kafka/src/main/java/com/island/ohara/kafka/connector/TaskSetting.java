@@ -21,6 +21,7 @@ import static com.island.ohara.common.util.CommonUtils.toDuration;
 import com.google.common.collect.ImmutableMap;
 import com.island.ohara.common.annotations.VisibleForTesting;
 import com.island.ohara.common.data.Column;
+import com.island.ohara.common.data.RowSchema;
 import com.island.ohara.common.setting.PropGroups;
 import com.island.ohara.common.setting.SettingDef;
 import com.island.ohara.common.util.CommonUtils;
@@ -34,6 +35,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /** this class carries all required settings for row connectors. */
 public class TaskSetting {
@@ -302,12 +304,25 @@ public class TaskSetting {
     return stringList(ConnectorDefUtils.TOPIC_NAMES_DEFINITION.key());
   }
 
+  /** @return the columns of this connector */
   public List<Column> columns() {
     return propGroupsOption(ConnectorDefUtils.COLUMNS_DEFINITION.key())
         .map(PropGroups::toColumns)
         .orElseGet(Collections::emptyList);
   }
 
+  /**
+   * register the names of columns to {@link RowSchema} so the rows deserialized by this process
+   * reuse the interned names. It is called once when the task starts.
+   */
+  void registerSchemas() {
+    List<Column> columns = columns();
+    if (!columns.isEmpty()) {
+      RowSchema.of(columns.stream().map(Column::name).collect(Collectors.toList()));
+      RowSchema.of(columns.stream().map(Column::newName).collect(Collectors.toList()));
+    }
+  }
+
   @VisibleForTesting
   Map<String, String> raw() {
     return Collections.unmodifiableMap(raw);
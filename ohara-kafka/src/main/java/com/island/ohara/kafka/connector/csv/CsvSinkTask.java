@@ -16,6 +16,8 @@
 
 package com.island.ohara.kafka.connector.csv;
 
+import com.island.ohara.common.data.Column;
+import com.island.ohara.common.data.RowProjection;
 import com.island.ohara.kafka.connector.*;
 import com.island.ohara.kafka.connector.csv.sink.CsvDataWriter;
 import com.island.ohara.kafka.connector.storage.Storage;
@@ -23,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +67,18 @@ public abstract class CsvSinkTask extends RowSinkTask {
     writer = new CsvDataWriter(config, rowContext, storage);
   }
 
+  /**
+   * Only the columns of schema are written to the csv files so other cells are not deserialized. If
+   * the schema is empty, all cells are written.
+   */
+  @Override
+  protected Optional<RowProjection> _projection() {
+    List<Column> schema = config.schema();
+    if (schema == null || schema.isEmpty()) return Optional.empty();
+    return Optional.of(
+        RowProjection.of(schema.stream().map(Column::name).collect(Collectors.toList())));
+  }
+
   @Override
   protected void _open(List<TopicPartition> partitions) {
     writer.attach(partitions);
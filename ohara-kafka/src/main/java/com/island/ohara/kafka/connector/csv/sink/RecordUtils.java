@@ -16,11 +16,16 @@
 
 package com.island.ohara.kafka.connector.csv.sink;
 
+import com.island.ohara.common.data.Cell;
 import com.island.ohara.common.data.Column;
 import com.island.ohara.common.data.DataType;
+import com.island.ohara.common.data.Row;
 import com.island.ohara.kafka.connector.RowSinkRecord;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 public class RecordUtils {
@@ -37,21 +42,38 @@ public class RecordUtils {
   }
 
   public static String toLine(List<Column> newSchema, RowSinkRecord record) {
+    Row row = record.row();
+    // the lookup by name may scan all cells (for example, LazyRow) so the cells are indexed by a
+    // single pass. The column having no cell is skipped.
+    Map<String, Cell<?>> cells = new HashMap<>(row.size() * 2);
+    row.cells().forEach(cell -> cells.put(cell.name(), cell));
     return newSchema.stream()
         .sorted(Comparator.comparing(Column::order))
-        .flatMap(
+        .map(
             column -> {
               if (column.dataType() == DataType.BYTES) {
                 throw new RuntimeException(
                     "CSV sink connector not support type: " + column.dataType());
               }
-              return record.row().cells().stream()
-                  .filter(cell -> column.name().equals(cell.name()));
+              return cells.get(column.name());
             })
-        .map(cell -> cell.value().toString())
+        .filter(Objects::nonNull)
+        .map(cell -> toString(cell.value()))
         .collect(Collectors.joining(","));
   }
 
+  /**
+   * convert the value to the text parsed by csv source. The date is printed by the calendar fields
+   * of local time zone, which are same to the fields kept by the serialization of DATE.
+   *
+   * @param value cell value
+   * @return text
+   */
+  private static String toString(Object value) {
+    if (value instanceof java.sql.Date) return ((java.sql.Date) value).toLocalDate().toString();
+    return value.toString();
+  }
+
   public static List<Column> newSchema(List<Column> schema, RowSinkRecord record) {
     if (schema != null && !schema.isEmpty()) return schema;
     return record.row().cells().stream()
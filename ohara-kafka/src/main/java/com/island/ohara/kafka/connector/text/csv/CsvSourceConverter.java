@@ -152,6 +152,14 @@ public class CsvSourceConverter implements TextSourceConverter {
         return value;
       case OBJECT:
         return value;
+      case TIMESTAMP:
+        // yyyy-[m]m-[d]d hh:mm:ss[.f...]
+        return java.sql.Timestamp.valueOf(value);
+      case DATE:
+        // yyyy-[m]m-[d]d
+        return java.sql.Date.valueOf(value);
+      case DECIMAL:
+        return new java.math.BigDecimal(value);
       default:
         throw new IllegalArgumentException("Unsupported type " + type);
     }
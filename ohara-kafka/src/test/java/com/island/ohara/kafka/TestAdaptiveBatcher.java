@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.rule.SmallTest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAdaptiveBatcher extends SmallTest {
+  /** a record in a microsecond is busy enough to grow the window to minutes. */
+  private static final Duration BUSY_EPOCH = Duration.ofNanos(1000);
+
+  private static AdaptiveBatcher batcher(Duration latencyTarget) {
+    // zero epoch means the window is adjusted manually
+    return new AdaptiveBatcher(latencyTarget, Duration.ZERO);
+  }
+
+  /** submit a record acked by the latency and then adjust the window by a busy epoch. */
+  private static void observe(AdaptiveBatcher batcher, long latencyInMillis) {
+    observe(batcher, latencyInMillis, 1, BUSY_EPOCH);
+  }
+
+  /** submit the records acked by the latency and then adjust the window by the epoch. */
+  private static void observe(
+      AdaptiveBatcher batcher, long latencyInMillis, int numberOfRecords, Duration epoch) {
+    for (int i = 0; i != numberOfRecords; ++i) {
+      batcher.submit(() -> {});
+      batcher.recordAck(TimeUnit.MILLISECONDS.toNanos(latencyInMillis));
+    }
+    batcher.adjust(epoch);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooSmallTarget() {
+    batcher(Duration.ofMillis(1));
+  }
+
+  @Test
+  public void testZeroWindowSendsImmediately() {
+    try (AdaptiveBatcher batcher = batcher(Duration.ofSeconds(1))) {
+      List<Integer> sent = new ArrayList<>();
+      batcher.submit(() -> sent.add(1));
+      Assert.assertEquals(Collections.singletonList(1), sent);
+      Assert.assertEquals(Duration.ZERO, batcher.window());
+    }
+  }
+
+  @Test
+  public void testNothingObserved() {
+    try (AdaptiveBatcher batcher = batcher(Duration.ofSeconds(1))) {
+      batcher.adjust(BUSY_EPOCH);
+      Assert.assertEquals(Duration.ZERO, batcher.window());
+      Assert.assertEquals(0, batcher.increases());
+      Assert.assertEquals(0, batcher.decreases());
+    }
+  }
+
+  @Test
+  public void testIncreaseUpToHalfOfTarget() {
+    try (AdaptiveBatcher batcher = batcher(Duration.ofMillis(100))) {
+      for (int i = 0; i != 10; ++i) {
+        observe(batcher, 1);
+      }
+      Assert.assertEquals(Duration.ofMillis(50), batcher.window());
+      // 1ms -> 2ms -> 4ms -> 8ms -> 16ms -> 32ms -> 50ms
+      Assert.assertEquals(7, batcher.increases());
+      Assert.assertEquals(0, batcher.decreases());
+    }
+  }
+
+  @Test
+  public void testDecreaseIfLatencyIsTooHigh() {
+    try (AdaptiveBatcher batcher = batcher(Duration.ofMillis(100))) {
+      observe(batcher, 1);
+      observe(batcher, 1);
+      Assert.assertEquals(Duration.ofMillis(2), batcher.window());
+      observe(batcher, 200);
+      Assert.assertEquals(Duration.ofMillis(1), batcher.window());
+      observe(batcher, 200);
+      Assert.assertEquals(Duration.ZERO, batcher.window());
+      // zero window can't be decreased
+      observe(batcher, 200);
+      Assert.assertEquals(2, batcher.decreases());
+    }
+  }
+
+  @Test
+  public void testDecreaseIfTrafficIsLow() {
+    try (AdaptiveBatcher batcher = batcher(Duration.ofSeconds(10))) {
+      observe(batcher, 1);
+      Assert.assertEquals(Duration.ofMillis(1), batcher.window());
+      // a record in 100ms can't be batched by 1ms window
+      observe(batcher, 1, 1, Duration.ofMillis(100));
+      Assert.assertEquals(Duration.ZERO, batcher.window());
+      Assert.assertEquals(1, batcher.decreases());
+    }
+  }
+
+  @Test
+  public void testStableLowRate() {
+    // 500 and 1500 records per second can't fill a 1ms window with two records
+    for (int rate : Arrays.asList(500, 1500)) {
+      try (AdaptiveBatcher batcher = batcher(Duration.ofMillis(100))) {
+        for (int i = 0; i != 10; ++i) {
+          observe(batcher, 1, rate, Duration.ofSeconds(1));
+          Assert.assertEquals(Duration.ZERO, batcher.window());
+        }
+        Assert.assertEquals(0, batcher.increases());
+        Assert.assertEquals(0, batcher.decreases());
+      }
+    }
+  }
+
+  @Test
+  public void testStableHighRate() {
+    try (AdaptiveBatcher batcher = batcher(Duration.ofMillis(100))) {
+      for (int i = 0; i != 10; ++i) {
+        observe(batcher, 1, 5000, Duration.ofSeconds(1));
+      }
+      // 1ms -> 2ms -> 4ms -> 8ms -> 16ms -> 32ms -> 50ms
+      Assert.assertEquals(Duration.ofMillis(50), batcher.window());
+      Assert.assertEquals(7, batcher.increases());
+      Assert.assertEquals(0, batcher.decreases());
+    }
+  }
+
+  @Test
+  public void testOrder() {
+    List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+    try (AdaptiveBatcher batcher = batcher(Duration.ofMinutes(10))) {
+      // grow the window to minutes
+      for (int i = 0; i != 20; ++i) {
+        observe(batcher, 1);
+      }
+      batcher.submit(() -> sent.add(1));
+      batcher.submit(() -> sent.add(2));
+      Assert.assertTrue(sent.isEmpty());
+      // the pending records are sent before the later records even if the window is zero
+      for (int i = 0; i != 30; ++i) {
+        observe(batcher, Duration.ofHours(1).toMillis());
+      }
+      Assert.assertEquals(Duration.ZERO, batcher.window());
+      batcher.submit(() -> sent.add(3));
+      batcher.flush();
+      batcher.submit(() -> sent.add(4));
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4), sent);
+    }
+  }
+
+  @Test
+  public void testFlushAfterWindow() throws InterruptedException {
+    List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+    try (AdaptiveBatcher batcher = batcher(Duration.ofMillis(100))) {
+      observe(batcher, 1);
+      batcher.submit(() -> sent.add(1));
+      TimeUnit.SECONDS.sleep(1);
+      Assert.assertEquals(Collections.singletonList(1), sent);
+    }
+  }
+
+  @Test
+  public void testCloseSendsPendingRecords() {
+    List<Integer> sent = new ArrayList<>();
+    AdaptiveBatcher batcher = batcher(Duration.ofDays(1));
+    for (int i = 0; i != 20; ++i) {
+      observe(batcher, 1);
+    }
+    batcher.submit(() -> sent.add(1));
+    Assert.assertTrue(sent.isEmpty());
+    batcher.close();
+    Assert.assertEquals(Collections.singletonList(1), sent);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void submitAfterClose() {
+    AdaptiveBatcher batcher = batcher(Duration.ofSeconds(1));
+    batcher.close();
+    batcher.submit(() -> {});
+  }
+}
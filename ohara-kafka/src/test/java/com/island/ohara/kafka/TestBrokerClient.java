@@ -20,10 +20,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import com.island.ohara.common.data.Serializer;
 import com.island.ohara.common.exception.OharaExecutionException;
+import com.island.ohara.common.util.CommonUtils;
 import com.island.ohara.common.util.Releasable;
+import com.island.ohara.kafka.connector.TopicPartition;
 import com.island.ohara.testing.With3Brokers;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -144,6 +151,111 @@ public class TestBrokerClient extends With3Brokers {
     }
   }
 
+  @Test
+  public void testOffsetsAndLags() throws Exception {
+    String topicName = methodName();
+    client
+        .topicCreator()
+        .numberOfPartitions(2)
+        .numberOfReplications((short) 1)
+        .topicName(topicName)
+        .create();
+    TopicPartition p0 = new TopicPartition(topicName, 0);
+    TopicPartition p1 = new TopicPartition(topicName, 1);
+    try (Producer<String, String> producer =
+        Producer.<String, String>builder()
+            .keySerializer(Serializer.STRING)
+            .valueSerializer(Serializer.STRING)
+            .connectionProps(client.connectionProps())
+            .allAcks()
+            .build()) {
+      producer
+          .batchSender()
+          .topicName(topicName)
+          .partition(0)
+          .send(Arrays.asList("a", "b", "c"))
+          .get();
+      producer.batchSender().topicName(topicName).partition(1).send(Arrays.asList("d", "e")).get();
+    }
+    Map<TopicPartition, Long> begins =
+        client.beginningOffsets(Collections.singletonList(topicName));
+    assertEquals(0, (long) begins.get(p0));
+    assertEquals(0, (long) begins.get(p1));
+    Map<TopicPartition, Long> ends = client.endOffsets(Collections.singletonList(topicName));
+    assertEquals(3, (long) ends.get(p0));
+    assertEquals(2, (long) ends.get(p1));
+
+    String groupId = CommonUtils.randomString();
+    String nonexistentGroupId = CommonUtils.randomString();
+    try (Consumer<String, String> consumer =
+        Consumer.<String, String>builder()
+            .keySerializer(Serializer.STRING)
+            .valueSerializer(Serializer.STRING)
+            .groupId(groupId)
+            .connectionProps(client.connectionProps())
+            .assignments(new HashSet<>(Arrays.asList(p0, p1)))
+            .build()) {
+      Map<TopicPartition, Long> offsets = new HashMap<>();
+      offsets.put(p0, 1L);
+      // the committed offset is larger than the log-end offset
+      offsets.put(p1, 5L);
+      consumer.commit(offsets);
+    }
+    Map<String, Map<TopicPartition, Long>> committed =
+        client.committedOffsets(Arrays.asList(groupId, nonexistentGroupId));
+    assertEquals(1, (long) committed.get(groupId).get(p0));
+    assertEquals(5, (long) committed.get(groupId).get(p1));
+    assertTrue(committed.get(nonexistentGroupId).isEmpty());
+
+    Map<String, Map<TopicPartition, Long>> lags =
+        client.lags(Arrays.asList(groupId, nonexistentGroupId));
+    assertEquals(2, (long) lags.get(groupId).get(p0));
+    assertEquals(-3, (long) lags.get(groupId).get(p1));
+    assertTrue(lags.get(nonexistentGroupId).isEmpty());
+    assertEquals(lags.get(groupId), client.lag(groupId));
+  }
+
+  @Test
+  public void testLagsOfDeletedTopic() {
+    String topicName = methodName();
+    String deletedTopicName = CommonUtils.randomString();
+    Arrays.asList(topicName, deletedTopicName)
+        .forEach(
+            name ->
+                client
+                    .topicCreator()
+                    .numberOfPartitions(1)
+                    .numberOfReplications((short) 1)
+                    .topicName(name)
+                    .create());
+    TopicPartition partition = new TopicPartition(topicName, 0);
+    TopicPartition deletedPartition = new TopicPartition(deletedTopicName, 0);
+    String groupId = CommonUtils.randomString();
+    try (Consumer<String, String> consumer =
+        Consumer.<String, String>builder()
+            .keySerializer(Serializer.STRING)
+            .valueSerializer(Serializer.STRING)
+            .groupId(groupId)
+            .connectionProps(client.connectionProps())
+            .assignments(new HashSet<>(Arrays.asList(partition, deletedPartition)))
+            .build()) {
+      Map<TopicPartition, Long> offsets = new HashMap<>();
+      offsets.put(partition, 0L);
+      offsets.put(deletedPartition, 0L);
+      consumer.commit(offsets);
+    }
+    client.deleteTopic(deletedTopicName);
+    CommonUtils.await(() -> !client.exist(deletedTopicName), Duration.ofSeconds(30));
+    // the group keeps the offsets of deleted topic
+    assertTrue(
+        client
+            .committedOffsets(Collections.singletonList(groupId))
+            .get(groupId)
+            .containsKey(deletedPartition));
+    // the deleted partition is ignored rather than blocking the request until timeout
+    assertEquals(Collections.singletonMap(partition, 0L), client.lag(groupId));
+  }
+
   @After
   public void cleanup() {
     Releasable.close(client);
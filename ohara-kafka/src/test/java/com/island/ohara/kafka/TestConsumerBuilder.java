@@ -16,7 +16,9 @@
 
 package com.island.ohara.kafka;
 
+import com.island.ohara.common.data.Serializer;
 import com.island.ohara.common.rule.MediumTest;
+import com.island.ohara.kafka.connector.TopicPartition;
 import java.util.Collections;
 import org.junit.Test;
 
@@ -61,4 +63,25 @@ public class TestConsumerBuilder extends MediumTest {
   public void nullValueSerializer() {
     Consumer.builder().valueSerializer(null);
   }
+
+  @Test(expected = NullPointerException.class)
+  public void nullAssignments() {
+    Consumer.builder().assignments(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyAssignments() {
+    Consumer.builder().assignments(Collections.emptySet());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void topicNamesAndAssignments() {
+    Consumer.<String, String>builder()
+        .topicName("a")
+        .assignments(Collections.singleton(new TopicPartition("a", 0)))
+        .connectionProps("localhost:12345")
+        .keySerializer(Serializer.STRING)
+        .valueSerializer(Serializer.STRING)
+        .build();
+  }
 }
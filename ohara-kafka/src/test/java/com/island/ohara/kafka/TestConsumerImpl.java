@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.kafka.connector.TopicPartition;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConsumerImpl extends SmallTest {
+  private final String topicName = CommonUtils.randomString();
+  private final String groupId = CommonUtils.randomString();
+  private final TopicPartition p0 = new TopicPartition(topicName, 0);
+  private final TopicPartition p1 = new TopicPartition(topicName, 1);
+  private final org.apache.kafka.common.TopicPartition kp0 =
+      new org.apache.kafka.common.TopicPartition(topicName, 0);
+  private final org.apache.kafka.common.TopicPartition kp1 =
+      new org.apache.kafka.common.TopicPartition(topicName, 1);
+
+  /** MockConsumer doesn't support offsetsForTimes so we use the offset as timestamp. */
+  private final MockConsumer<byte[], byte[]> mock =
+      new MockConsumer<byte[], byte[]>(OffsetResetStrategy.EARLIEST) {
+        @Override
+        public synchronized Map<org.apache.kafka.common.TopicPartition, OffsetAndTimestamp>
+            offsetsForTimes(Map<org.apache.kafka.common.TopicPartition, Long> timestamps) {
+          Map<org.apache.kafka.common.TopicPartition, Long> ends = endOffsets(timestamps.keySet());
+          Map<org.apache.kafka.common.TopicPartition, OffsetAndTimestamp> offsets = new HashMap<>();
+          timestamps.forEach(
+              (p, timestamp) ->
+                  offsets.put(
+                      p,
+                      timestamp < ends.get(p)
+                          ? new OffsetAndTimestamp(timestamp, timestamp)
+                          : null));
+          return offsets;
+        }
+      };
+
+  /**
+   * assign two partitions having 10 records
+   *
+   * @return consumer
+   */
+  private Consumer<String, String> consumer() {
+    mock.assign(Arrays.asList(kp0, kp1));
+    Map<org.apache.kafka.common.TopicPartition, Long> begins = new HashMap<>();
+    begins.put(kp0, 0L);
+    begins.put(kp1, 0L);
+    mock.updateBeginningOffsets(begins);
+    Map<org.apache.kafka.common.TopicPartition, Long> ends = new HashMap<>();
+    ends.put(kp0, 10L);
+    ends.put(kp1, 10L);
+    mock.updateEndOffsets(ends);
+    IntStream.range(0, 10)
+        .forEach(
+            i ->
+                Arrays.asList(kp0, kp1)
+                    .forEach(
+                        p ->
+                            mock.addRecord(
+                                new ConsumerRecord<>(
+                                    topicName,
+                                    p.partition(),
+                                    i,
+                                    Serializer.STRING.to("key"),
+                                    Serializer.STRING.to(String.valueOf(i))))));
+    return new ConsumerImpl<>(
+        mock,
+        groupId,
+        new ConsumerRecordView<>(Serializer.STRING, Serializer.STRING, false),
+        false);
+  }
+
+  private static List<Long> offsets(List<Consumer.Record<String, String>> records, int partition) {
+    return records.stream()
+        .filter(r -> r.partition() == partition)
+        .map(Consumer.Record::offset)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testAssignment() {
+    try (Consumer<String, String> consumer = consumer()) {
+      Assert.assertEquals(new HashSet<>(Arrays.asList(p0, p1)), consumer.assignment());
+      Assert.assertTrue(consumer.subscription().isEmpty());
+    }
+  }
+
+  @Test
+  public void testOffsets() {
+    try (Consumer<String, String> consumer = consumer()) {
+      Assert.assertEquals(0, (long) consumer.beginningOffsets().get(p0));
+      Assert.assertEquals(10, (long) consumer.endOffsets().get(p1));
+      Assert.assertEquals(
+          Collections.singleton(p1), consumer.endOffsets(Collections.singleton(p1)).keySet());
+    }
+  }
+
+  @Test
+  public void testSeek() {
+    try (Consumer<String, String> consumer = consumer()) {
+      consumer.seek(p0, 7);
+      consumer.seek(p1, 9);
+      List<Consumer.Record<String, String>> records = consumer.poll(Duration.ofSeconds(1));
+      Assert.assertEquals(Arrays.asList(7L, 8L, 9L), offsets(records, 0));
+      Assert.assertEquals(Collections.singletonList(9L), offsets(records, 1));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeOffset() {
+    try (Consumer<String, String> consumer = consumer()) {
+      consumer.seek(p0, -1);
+    }
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullPartition() {
+    try (Consumer<String, String> consumer = consumer()) {
+      consumer.seek(null, 0);
+    }
+  }
+
+  @Test
+  public void testSeekToTimestamp() {
+    try (Consumer<String, String> consumer = consumer()) {
+      Map<TopicPartition, Long> offsets = consumer.seekToTimestamp(8);
+      Assert.assertEquals(8, (long) offsets.get(p0));
+      Assert.assertEquals(8, (long) offsets.get(p1));
+      List<Consumer.Record<String, String>> records = consumer.poll(Duration.ofSeconds(1));
+      Assert.assertEquals(Arrays.asList(8L, 9L), offsets(records, 0));
+      Assert.assertEquals(Arrays.asList(8L, 9L), offsets(records, 1));
+    }
+  }
+
+  @Test
+  public void testSeekToFutureTimestamp() {
+    try (Consumer<String, String> consumer = consumer()) {
+      // there is no newer data so the partitions are moved to the end
+      Map<TopicPartition, Long> offsets = consumer.seekToTimestamp(100);
+      Assert.assertEquals(10, (long) offsets.get(p0));
+      Assert.assertEquals(10, (long) offsets.get(p1));
+      Assert.assertTrue(consumer.poll(Duration.ofSeconds(1)).isEmpty());
+    }
+  }
+
+  @Test
+  public void testCommit() {
+    try (Consumer<String, String> consumer = consumer()) {
+      consumer.seek(p0, 5);
+      consumer.seek(p1, 5);
+      Assert.assertEquals(10, consumer.poll(Duration.ofSeconds(1)).size());
+      consumer.commit();
+      Assert.assertEquals(10, mock.committed(kp0).offset());
+      Assert.assertEquals(10, mock.committed(kp1).offset());
+
+      consumer.commit(Collections.singletonMap(p0, 3L));
+      Assert.assertEquals(3, mock.committed(kp0).offset());
+      Assert.assertEquals(10, mock.committed(kp1).offset());
+    }
+  }
+
+  @Test
+  public void testCommitEmptyOffsets() {
+    try (Consumer<String, String> consumer = consumer()) {
+      consumer.commit(Collections.emptyMap());
+      Assert.assertNull(mock.committed(kp0));
+    }
+  }
+
+  @Test
+  public void testPositions() {
+    try (Consumer<String, String> consumer = consumer()) {
+      Assert.assertEquals(groupId, consumer.groupId());
+      consumer.seek(p0, 5);
+      consumer.seek(p1, 7);
+      Map<TopicPartition, Long> positions = consumer.positions();
+      Assert.assertEquals(5, (long) positions.get(p0));
+      Assert.assertEquals(7, (long) positions.get(p1));
+      Assert.assertEquals(8, consumer.poll(Duration.ofSeconds(1)).size());
+      positions = consumer.positions();
+      Assert.assertEquals(10, (long) positions.get(p0));
+      Assert.assertEquals(10, (long) positions.get(p1));
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.rule.SmallTest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConsumerRecordView extends SmallTest {
+
+  private final AtomicInteger decodeCount = new AtomicInteger(0);
+
+  private final Serializer<String> countingSerializer =
+      new Serializer<String>() {
+        @Override
+        public byte[] to(String obj) {
+          return Serializer.STRING.to(obj);
+        }
+
+        @Override
+        public String from(byte[] bytes) {
+          decodeCount.incrementAndGet();
+          return Serializer.STRING.from(bytes);
+        }
+      };
+
+  private ConsumerRecordView<String, String> view() {
+    return view(false);
+  }
+
+  private ConsumerRecordView<String, String> view(boolean lazy) {
+    return new ConsumerRecordView<>(countingSerializer, countingSerializer, lazy);
+  }
+
+  private static ConsumerRecord<byte[], byte[]> record(
+      int partition, long offset, String key, String value) {
+    RecordHeaders headers = new RecordHeaders();
+    headers.add("h", value.getBytes(StandardCharsets.UTF_8));
+    return new ConsumerRecord<>(
+        "topic",
+        partition,
+        offset,
+        100,
+        org.apache.kafka.common.record.TimestampType.CREATE_TIME,
+        null,
+        -1,
+        -1,
+        key == null ? null : Serializer.STRING.to(key),
+        Serializer.STRING.to(value),
+        headers);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testEmptyView() {
+    view().offset();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullRecord() {
+    view().reset(null);
+  }
+
+  @Test
+  public void testReset() {
+    ConsumerRecordView<String, String> view = view();
+    view.reset(record(1, 10, "k", "v"));
+    Assert.assertEquals("topic", view.topicName());
+    Assert.assertEquals(1, view.partition());
+    Assert.assertEquals(10, view.offset());
+    Assert.assertEquals(100, view.timestamp());
+    Assert.assertEquals(TimestampType.CREATE_TIME, view.timestampType());
+    Assert.assertEquals("k", view.key().get());
+    Assert.assertEquals("v", view.value().get());
+    Assert.assertEquals(1, view.headers().size());
+    Assert.assertEquals("v", new String(view.headers().get(0).value(), StandardCharsets.UTF_8));
+
+    Assert.assertSame(view, view.reset(record(2, 20, null, "v2")));
+    Assert.assertEquals(2, view.partition());
+    Assert.assertEquals(20, view.offset());
+    Assert.assertFalse(view.key().isPresent());
+    // the headers of previous record are dropped
+    Assert.assertEquals("v2", new String(view.headers().get(0).value(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testLazyHeaders() {
+    ConsumerRecordView<String, String> view = view();
+    view.reset(record(1, 10, "k", "v"));
+    Assert.assertSame(view.headers(), view.headers());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiableHeaders() {
+    view().reset(record(1, 10, "k", "v")).headers().add(new Header("a", new byte[0]));
+  }
+
+  @Test
+  public void testToRecord() {
+    ConsumerRecordView<String, String> view = view();
+    Consumer.Record<String, String> record = view.reset(record(3, 30, "k", "v")).toRecord();
+    view.reset(record(4, 40, "k2", "v2"));
+    Assert.assertEquals("topic", record.topicName());
+    Assert.assertEquals(3, record.partition());
+    Assert.assertEquals(30, record.offset());
+    Assert.assertEquals("k", record.key().get());
+    Assert.assertEquals("v", record.value().get());
+    Assert.assertEquals(1, record.headers().size());
+    Assert.assertEquals(record, view.reset(record(3, 30, "k", "v")).toRecord());
+    Assert.assertNotEquals(record, view.reset(record(4, 30, "k", "v")).toRecord());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullKeySerializer() {
+    new ConsumerRecordView<>(null, Serializer.STRING, false);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullValueSerializer() {
+    new ConsumerRecordView<>(Serializer.STRING, null, false);
+  }
+
+  @Test
+  public void testEagerDeserialization() {
+    view().reset(record(1, 10, "k", "v"));
+    Assert.assertEquals(2, decodeCount.get());
+  }
+
+  @Test
+  public void testLazyDeserialization() {
+    ConsumerRecordView<String, String> view = view(true);
+    view.reset(record(1, 10, "k", "v"));
+    Assert.assertEquals(10, view.offset());
+    Assert.assertEquals(0, decodeCount.get());
+    Assert.assertEquals("v", view.value().get());
+    Assert.assertEquals("v", view.value().get());
+    Assert.assertEquals(1, decodeCount.get());
+    Assert.assertEquals("k", view.key().get());
+    Assert.assertEquals(2, decodeCount.get());
+    view.reset(record(1, 11, "k2", "v2"));
+    Assert.assertEquals("v2", view.value().get());
+    Assert.assertEquals(3, decodeCount.get());
+  }
+
+  @Test
+  public void testLazyRecord() {
+    ConsumerRecordView<String, String> view = view(true);
+    // the key is decoded by view so the record reuses it
+    Assert.assertEquals("k", view.reset(record(1, 10, "k", "v")).key().get());
+    Consumer.Record<String, String> record = view.toRecord();
+    view.reset(record(2, 20, "k2", "v2"));
+    Assert.assertEquals(1, decodeCount.get());
+    Assert.assertEquals("k", record.key().get());
+    Assert.assertEquals(1, decodeCount.get());
+    Assert.assertEquals("v", record.value().get());
+    Assert.assertEquals("v", record.value().get());
+    Assert.assertEquals(2, decodeCount.get());
+  }
+
+  @Test
+  public void testNullKey() {
+    ConsumerRecordView<String, String> view = view(true);
+    Assert.assertFalse(view.reset(record(1, 10, null, "v")).key().isPresent());
+    Assert.assertFalse(view.toRecord().key().isPresent());
+    Assert.assertEquals(0, decodeCount.get());
+  }
+}
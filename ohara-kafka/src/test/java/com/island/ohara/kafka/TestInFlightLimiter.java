@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.rule.SmallTest;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestInFlightLimiter extends SmallTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroRecords() {
+    new InFlightLimiter(0, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroBytes() {
+    new InFlightLimiter(10, 0);
+  }
+
+  @Test
+  public void testRecordLimit() throws InterruptedException {
+    InFlightLimiter limiter = new InFlightLimiter(2, Long.MAX_VALUE);
+    Assert.assertTrue(limiter.acquire(10, Duration.ZERO));
+    Assert.assertTrue(limiter.acquire(10, Duration.ZERO));
+    Assert.assertFalse(limiter.acquire(10, Duration.ofMillis(100)));
+    Assert.assertEquals(2, limiter.records());
+    Assert.assertEquals(20, limiter.bytes());
+    limiter.release(10);
+    Assert.assertTrue(limiter.acquire(10, Duration.ZERO));
+  }
+
+  @Test
+  public void testByteLimit() throws InterruptedException {
+    InFlightLimiter limiter = new InFlightLimiter(Integer.MAX_VALUE, 100);
+    Assert.assertTrue(limiter.acquire(60, Duration.ZERO));
+    Assert.assertFalse(limiter.acquire(60, Duration.ofMillis(100)));
+    Assert.assertTrue(limiter.acquire(40, Duration.ZERO));
+    limiter.release(60);
+    limiter.release(40);
+    Assert.assertEquals(0, limiter.records());
+    Assert.assertEquals(0, limiter.bytes());
+  }
+
+  @Test
+  public void testBigRecord() throws InterruptedException {
+    InFlightLimiter limiter = new InFlightLimiter(Integer.MAX_VALUE, 100);
+    // there is no in-flight record so the big record is accepted
+    Assert.assertTrue(limiter.acquire(1000, Duration.ZERO));
+    Assert.assertFalse(limiter.acquire(1, Duration.ofMillis(100)));
+  }
+
+  @Test
+  public void testReleaseWakesWaiter() throws InterruptedException {
+    InFlightLimiter limiter = new InFlightLimiter(1, Long.MAX_VALUE);
+    Assert.assertTrue(limiter.acquire(10, Duration.ZERO));
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicBoolean acquired = new AtomicBoolean(false);
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                acquired.set(limiter.acquire(10, Duration.ofSeconds(30)));
+              } catch (InterruptedException e) {
+                // nothing
+              } finally {
+                done.countDown();
+              }
+            });
+    thread.start();
+    Assert.assertFalse(done.await(500, TimeUnit.MILLISECONDS));
+    limiter.release(10);
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(acquired.get());
+  }
+}
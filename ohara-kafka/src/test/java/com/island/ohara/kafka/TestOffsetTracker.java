@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.rule.SmallTest;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOffsetTracker extends SmallTest {
+  private final TopicPartition partition = new TopicPartition("topic", 0);
+
+  @Test(expected = NullPointerException.class)
+  public void nullPartition() {
+    new OffsetTracker().dispatched(null, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDispatchOldOffset() {
+    OffsetTracker tracker = new OffsetTracker();
+    tracker.dispatched(partition, 10);
+    tracker.dispatched(partition, 9);
+  }
+
+  @Test
+  public void testEmpty() {
+    OffsetTracker tracker = new OffsetTracker();
+    Assert.assertTrue(tracker.committable().isEmpty());
+    Assert.assertEquals(0, tracker.inFlight(partition));
+    Assert.assertEquals(0, tracker.inFlight());
+    // unknown partition is ignored
+    tracker.completed(partition, 10);
+  }
+
+  @Test
+  public void testContiguousOffsets() {
+    OffsetTracker tracker = new OffsetTracker();
+    tracker.dispatched(partition, 10);
+    tracker.dispatched(partition, 11);
+    tracker.dispatched(partition, 12);
+    Assert.assertEquals(3, tracker.inFlight(partition));
+    Map<TopicPartition, OffsetAndMetadata> offsets = tracker.committable();
+    Assert.assertEquals(10, offsets.get(partition).offset());
+    tracker.committed(offsets);
+    // nothing is changed
+    Assert.assertTrue(tracker.committable().isEmpty());
+
+    // 11 and 12 are completed but 10 is still in-flight
+    tracker.completed(partition, 12);
+    tracker.completed(partition, 11);
+    Assert.assertEquals(1, tracker.inFlight(partition));
+    Assert.assertTrue(tracker.committable().isEmpty());
+
+    tracker.completed(partition, 10);
+    Assert.assertEquals(0, tracker.inFlight(partition));
+    Assert.assertEquals(13, tracker.committable().get(partition).offset());
+  }
+
+  @Test
+  public void testFailedCommit() {
+    OffsetTracker tracker = new OffsetTracker();
+    tracker.dispatched(partition, 10);
+    tracker.completed(partition, 10);
+    Assert.assertEquals(11, tracker.committable().get(partition).offset());
+    // the commit fails so the offset is committed again
+    Assert.assertEquals(11, tracker.committable().get(partition).offset());
+    tracker.committed(Collections.singletonMap(partition, new OffsetAndMetadata(11)));
+    Assert.assertTrue(tracker.committable().isEmpty());
+    // the stale commit can't move the committed offset backward
+    tracker.dispatched(partition, 11);
+    tracker.completed(partition, 11);
+    tracker.committed(Collections.singletonMap(partition, new OffsetAndMetadata(10)));
+    Assert.assertEquals(12, tracker.committable().get(partition).offset());
+    // the removed partition is ignored
+    tracker.remove(Collections.singletonList(partition));
+    tracker.committed(Collections.singletonMap(partition, new OffsetAndMetadata(12)));
+    Assert.assertTrue(tracker.committable().isEmpty());
+  }
+
+  @Test
+  public void testGap() {
+    OffsetTracker tracker = new OffsetTracker();
+    // the offsets of compacted topic are not continuous
+    tracker.dispatched(partition, 10);
+    tracker.dispatched(partition, 20);
+    tracker.completed(partition, 10);
+    Assert.assertEquals(20, tracker.committable().get(partition).offset());
+    tracker.completed(partition, 20);
+    Assert.assertEquals(21, tracker.committable().get(partition).offset());
+  }
+
+  @Test
+  public void testManyPartitions() {
+    TopicPartition another = new TopicPartition("topic", 1);
+    OffsetTracker tracker = new OffsetTracker();
+    tracker.dispatched(partition, 0);
+    tracker.dispatched(another, 100);
+    tracker.completed(another, 100);
+    Assert.assertEquals(1, tracker.inFlight());
+    Map<TopicPartition, OffsetAndMetadata> offsets = tracker.committable();
+    Assert.assertEquals(0, offsets.get(partition).offset());
+    Assert.assertEquals(101, offsets.get(another).offset());
+  }
+
+  @Test
+  public void testRemove() {
+    OffsetTracker tracker = new OffsetTracker();
+    tracker.dispatched(partition, 0);
+    tracker.remove(Collections.singletonList(partition));
+    Assert.assertEquals(0, tracker.inFlight());
+    Assert.assertTrue(tracker.committable().isEmpty());
+    // the partition is assigned again
+    tracker.dispatched(partition, 0);
+    Assert.assertEquals(1, tracker.inFlight());
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestParallelConsumer extends SmallTest {
+  private final String topicName = CommonUtils.randomString();
+  private final TopicPartition p0 = new TopicPartition(topicName, 0);
+  private final TopicPartition p1 = new TopicPartition(topicName, 1);
+  /** MockConsumer disallows to get the committed offsets after closing so we keep a copy. */
+  private final Map<TopicPartition, Long> committedOffsets = new ConcurrentHashMap<>();
+  /** the offsets of failed async commits. */
+  private final Map<TopicPartition, Long> failedOffsets = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean failAsyncCommit = new AtomicBoolean(false);
+
+  private final MockConsumer<byte[], byte[]> mock =
+      new MockConsumer<byte[], byte[]>(OffsetResetStrategy.EARLIEST) {
+        @Override
+        public synchronized void commitAsync(
+            Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+          // MockConsumer#commitSync calls commitAsync with null callback
+          if (callback != null && failAsyncCommit.get()) {
+            offsets.forEach((p, offset) -> failedOffsets.put(p, offset.offset()));
+            callback.onComplete(offsets, new IllegalStateException("you can't commit"));
+            return;
+          }
+          super.commitAsync(offsets, callback);
+          offsets.forEach((p, offset) -> committedOffsets.put(p, offset.offset()));
+        }
+      };
+
+  /**
+   * the records are added by poll thread since the MockConsumer requires the partitions to be
+   * assigned.
+   *
+   * @param numberOfRecords the number of records in each partition
+   */
+  private void prepare(int numberOfRecords) {
+    mock.schedulePollTask(
+        () -> {
+          mock.rebalance(Arrays.asList(p0, p1));
+          Map<TopicPartition, Long> offsets = new HashMap<>();
+          offsets.put(p0, 0L);
+          offsets.put(p1, 0L);
+          mock.updateBeginningOffsets(offsets);
+          IntStream.range(0, numberOfRecords)
+              .forEach(
+                  i ->
+                      Arrays.asList(p0, p1)
+                          .forEach(
+                              p ->
+                                  mock.addRecord(
+                                      new ConsumerRecord<>(
+                                          topicName,
+                                          p.partition(),
+                                          i,
+                                          Serializer.STRING.to("key-" + i % 3),
+                                          Serializer.STRING.to(String.valueOf(i))))));
+        });
+  }
+
+  private ParallelConsumer<String, String> consumer(
+      ParallelConsumer.RecordProcessor<String, String> processor,
+      ParallelConsumer.Ordering ordering,
+      int maxInFlightPerPartition) {
+    return new ParallelConsumerImpl<>(
+        mock,
+        Collections.singletonList(topicName),
+        new ConsumerRecordView<>(Serializer.STRING, Serializer.STRING, true),
+        processor,
+        (record, e) -> {},
+        4,
+        ordering,
+        maxInFlightPerPartition,
+        Duration.ofMillis(10),
+        Duration.ofMillis(10));
+  }
+
+  private long committed(TopicPartition partition) {
+    return committedOffsets.getOrDefault(partition, -1L);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullProcessor() {
+    ParallelConsumer.builder().processor(null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullOrdering() {
+    ParallelConsumer.builder().ordering(null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullExceptionHandler() {
+    ParallelConsumer.builder().exceptionHandler(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroWorkers() {
+    ParallelConsumer.builder().numberOfWorkers(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroMaxInFlight() {
+    ParallelConsumer.builder().maxInFlightPerPartition(0);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void ignoreProcessor() {
+    ParallelConsumer.<String, String>builder()
+        .topicName(topicName)
+        .connectionProps("localhost:12345")
+        .keySerializer(Serializer.STRING)
+        .valueSerializer(Serializer.STRING)
+        .build();
+  }
+
+  private void testOrder(ParallelConsumer.Ordering ordering) {
+    int numberOfRecords = 100;
+    Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+    prepare(numberOfRecords);
+    try (ParallelConsumer<String, String> consumer =
+        consumer(
+            record -> {
+              String group =
+                  ordering == ParallelConsumer.Ordering.KEY
+                      ? record.partition() + "-" + record.key().get()
+                      : String.valueOf(record.partition());
+              processed.computeIfAbsent(group, k -> new ArrayList<>()).add(record.offset());
+            },
+            ordering,
+            1000)) {
+      CommonUtils.await(() -> committed(p0) == numberOfRecords, Duration.ofSeconds(30));
+      CommonUtils.await(() -> committed(p1) == numberOfRecords, Duration.ofSeconds(30));
+      Assert.assertEquals(0, consumer.inFlight());
+    }
+    Assert.assertEquals(
+        numberOfRecords * 2, processed.values().stream().mapToInt(List::size).sum());
+    processed
+        .values()
+        .forEach(
+            offsets -> {
+              List<Long> sorted = new ArrayList<>(offsets);
+              Collections.sort(sorted);
+              Assert.assertEquals(sorted, offsets);
+            });
+  }
+
+  @Test
+  public void testPartitionOrder() {
+    testOrder(ParallelConsumer.Ordering.PARTITION);
+  }
+
+  @Test
+  public void testKeyOrder() {
+    testOrder(ParallelConsumer.Ordering.KEY);
+  }
+
+  @Test
+  public void testCommitContiguousOffsets() throws InterruptedException {
+    int numberOfRecords = 30;
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger count = new AtomicInteger(0);
+    prepare(numberOfRecords);
+    try (ParallelConsumer<String, String> consumer =
+        consumer(
+            record -> {
+              // the record having offset 5 of p0 is blocked
+              if (record.partition() == 0 && record.offset() == 5) {
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  throw new IllegalStateException(e);
+                }
+              }
+              count.incrementAndGet();
+            },
+            ParallelConsumer.Ordering.KEY,
+            1000)) {
+      // the offsets before the blocked record are committed
+      CommonUtils.await(() -> committed(p0) == 5, Duration.ofSeconds(30));
+      // the records having other keys are completed but the committed offset can't pass 5
+      CommonUtils.await(() -> consumer.inFlight() < numberOfRecords, Duration.ofSeconds(30));
+      TimeUnit.MILLISECONDS.sleep(500);
+      Assert.assertEquals(5, committed(p0));
+      release.countDown();
+      CommonUtils.await(() -> committed(p0) == numberOfRecords, Duration.ofSeconds(30));
+    }
+    Assert.assertEquals(numberOfRecords * 2, count.get());
+  }
+
+  @Test
+  public void testBackpressure() {
+    int numberOfRecords = 50;
+    CountDownLatch release = new CountDownLatch(1);
+    prepare(numberOfRecords);
+    try (ParallelConsumer<String, String> consumer =
+        consumer(
+            record -> {
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+            },
+            ParallelConsumer.Ordering.PARTITION,
+            10)) {
+      CommonUtils.await(() -> consumer.pausedPartitions() == 2, Duration.ofSeconds(30));
+      Assert.assertEquals(2, mock.paused().size());
+      release.countDown();
+      CommonUtils.await(() -> consumer.pausedPartitions() == 0, Duration.ofSeconds(30));
+      CommonUtils.await(() -> consumer.inFlight() == 0, Duration.ofSeconds(30));
+      Assert.assertTrue(mock.paused().isEmpty());
+    }
+    Assert.assertEquals(numberOfRecords, committed(p0));
+    Assert.assertEquals(numberOfRecords, committed(p1));
+  }
+
+  @Test
+  public void testExceptionHandler() {
+    int numberOfRecords = 10;
+    AtomicInteger failures = new AtomicInteger(0);
+    prepare(numberOfRecords);
+    try (ParallelConsumer<String, String> consumer =
+        new ParallelConsumerImpl<>(
+            mock,
+            Collections.singletonList(topicName),
+            new ConsumerRecordView<>(Serializer.STRING, Serializer.STRING, true),
+            record -> {
+              throw new IllegalArgumentException("you can't pass");
+            },
+            (record, e) -> failures.incrementAndGet(),
+            2,
+            ParallelConsumer.Ordering.PARTITION,
+            1000,
+            Duration.ofMillis(10),
+            Duration.ofMillis(10))) {
+      CommonUtils.await(() -> failures.get() == numberOfRecords * 2, Duration.ofSeconds(30));
+      // the failed records are regarded as completed
+      CommonUtils.await(() -> committed(p0) == numberOfRecords, Duration.ofSeconds(30));
+      Assert.assertEquals(0, consumer.inFlight());
+    }
+  }
+
+  @Test
+  public void testClose() throws InterruptedException {
+    CountDownLatch processed = new CountDownLatch(1);
+    prepare(1);
+    ParallelConsumer<String, String> consumer =
+        new ParallelConsumerImpl<>(
+            mock,
+            Collections.singletonList(topicName),
+            new ConsumerRecordView<>(Serializer.STRING, Serializer.STRING, true),
+            record -> processed.countDown(),
+            (record, e) -> {},
+            2,
+            ParallelConsumer.Ordering.PARTITION,
+            1000,
+            // disable the periodical commit
+            Duration.ofDays(1),
+            Duration.ofMillis(10));
+    Assert.assertEquals(Collections.singleton(topicName), consumer.subscription());
+    Assert.assertTrue(processed.await(30, TimeUnit.SECONDS));
+    Assert.assertFalse(consumer.isClosed());
+    Assert.assertEquals(-1, committed(p0));
+    consumer.close();
+    Assert.assertTrue(consumer.isClosed());
+    Assert.assertTrue(mock.closed());
+    // the completed offsets are committed before closing
+    Assert.assertEquals(1, committed(p0));
+    Assert.assertEquals(1, committed(p1));
+  }
+
+  @Test
+  public void testRetryFailedCommit() {
+    failAsyncCommit.set(true);
+    prepare(1);
+    ParallelConsumer<String, String> consumer =
+        consumer(record -> {}, ParallelConsumer.Ordering.PARTITION, 1000);
+    CommonUtils.await(() -> failedOffsets.getOrDefault(p0, -1L) == 1, Duration.ofSeconds(30));
+    CommonUtils.await(() -> failedOffsets.getOrDefault(p1, -1L) == 1, Duration.ofSeconds(30));
+    Assert.assertEquals(-1, committed(p0));
+    // there is no more record but the failed offsets are committed by closing
+    consumer.close();
+    Assert.assertEquals(1, committed(p0));
+    Assert.assertEquals(1, committed(p1));
+  }
+
+  @Test
+  public void testDeadPollThread() {
+    IllegalStateException failure = new IllegalStateException("you can't poll");
+    mock.schedulePollTask(
+        () -> {
+          throw failure;
+        });
+    ParallelConsumer<String, String> consumer =
+        consumer(record -> {}, ParallelConsumer.Ordering.PARTITION, 1000);
+    CommonUtils.await(consumer::isClosed, Duration.ofSeconds(30));
+    Assert.assertSame(failure, consumer.error().get());
+    CommonUtils.await(mock::closed, Duration.ofSeconds(30));
+    try {
+      consumer.close();
+      Assert.fail("the failure of poll thread should be rethrown");
+    } catch (IllegalStateException e) {
+      Assert.assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void testNoErrorByDefault() {
+    ParallelConsumer<String, String> consumer =
+        consumer(record -> {}, ParallelConsumer.Ordering.PARTITION, 1000);
+    Assert.assertFalse(consumer.error().isPresent());
+    consumer.close();
+    Assert.assertFalse(consumer.error().isPresent());
+    Assert.assertTrue(consumer.isClosed());
+  }
+}
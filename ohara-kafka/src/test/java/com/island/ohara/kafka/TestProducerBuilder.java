@@ -16,6 +16,7 @@
 
 package com.island.ohara.kafka;
 
+import com.island.ohara.common.data.Serializer;
 import com.island.ohara.common.rule.SmallTest;
 import org.junit.Test;
 
@@ -40,4 +41,25 @@ public class TestProducerBuilder extends SmallTest {
   public void nullValueSerializer() {
     Producer.builder().valueSerializer(null);
   }
+
+  @Test(expected = NullPointerException.class)
+  public void nullTransactionalId() {
+    Producer.builder().transactionalId(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyTransactionalId() {
+    Producer.builder().transactionalId("");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void idempotenceWithoutAllAcks() {
+    Producer.<String, String>builder()
+        .connectionProps("localhost:12345")
+        .keySerializer(Serializer.STRING)
+        .valueSerializer(Serializer.STRING)
+        .idempotence()
+        .noAcks()
+        .build();
+  }
 }
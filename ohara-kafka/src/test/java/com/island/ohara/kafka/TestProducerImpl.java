@@ -0,0 +1,459 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka;
+
+import com.island.ohara.common.cache.RefreshScheduler;
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.exception.OharaTimeoutException;
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.kafka.connector.TopicPartition;
+import com.island.ohara.metrics.BeanChannel;
+import com.island.ohara.metrics.basic.CounterMBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProducerImpl extends SmallTest {
+  private final String topicName = CommonUtils.randomString();
+
+  private static MockProducer<byte[], byte[]> mock(boolean autoComplete) {
+    return new MockProducer<>(autoComplete, new ByteArraySerializer(), new ByteArraySerializer());
+  }
+
+  private static Producer<String, String> producer(MockProducer<byte[], byte[]> mock) {
+    return new ProducerImpl<>(
+        mock, Serializer.STRING, Serializer.STRING, null, Duration.ofSeconds(10), null, null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullTopicName() {
+    producer(mock(true)).batchSender().topicName(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyTopicName() {
+    producer(mock(true)).batchSender().topicName("");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void ignoreTopicName() {
+    producer(mock(true)).batchSender().send(Collections.singletonList("a"));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullValues() {
+    producer(mock(true)).batchSender().topicName(topicName).send((List<String>) null);
+  }
+
+  @Test
+  public void testSendAll() throws ExecutionException, InterruptedException {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    try (Producer<String, String> producer = producer(mock)) {
+      List<String> values =
+          IntStream.range(0, 100).mapToObj(String::valueOf).collect(Collectors.toList());
+      Producer.BatchResult result = producer.sendAll(topicName, values).get();
+      Assert.assertEquals(100, result.count());
+      Assert.assertEquals(100, result.successCount());
+      Assert.assertEquals(0, result.failureCount());
+      Assert.assertFalse(result.firstFailure().isPresent());
+      // the metadata is not requested
+      Assert.assertTrue(result.metadata().isEmpty());
+      Assert.assertEquals(
+          values,
+          mock.history().stream()
+              .map(r -> Serializer.STRING.from(r.value()))
+              .collect(Collectors.toList()));
+      mock.history().forEach(r -> Assert.assertNull(r.key()));
+      mock.history().forEach(r -> Assert.assertEquals(topicName, r.topic()));
+    }
+  }
+
+  @Test
+  public void testEmptyBatch() throws ExecutionException, InterruptedException {
+    try (Producer<String, String> producer = producer(mock(false))) {
+      Future<Producer.BatchResult> f = producer.sendAll(topicName, Collections.emptyList());
+      Assert.assertTrue(f.isDone());
+      Assert.assertEquals(0, f.get().count());
+    }
+  }
+
+  @Test
+  public void testKeepMetadata() throws ExecutionException, InterruptedException {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    Map<String, String> keyValues = new LinkedHashMap<>();
+    keyValues.put("a", "b");
+    keyValues.put("c", "d");
+    try (Producer<String, String> producer = producer(mock)) {
+      Producer.BatchResult result =
+          producer
+              .batchSender()
+              .topicName(topicName)
+              .partition(0)
+              .keepMetadata()
+              .send(keyValues)
+              .get();
+      Assert.assertEquals(2, result.metadata().size());
+      result.metadata().forEach(m -> Assert.assertEquals(topicName, m.topicName()));
+      result.metadata().forEach(m -> Assert.assertEquals(0, m.partition()));
+      Assert.assertEquals(
+          Arrays.asList("a", "c"),
+          mock.history().stream()
+              .map(r -> Serializer.STRING.from(r.key()))
+              .collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testFailure() throws ExecutionException, InterruptedException {
+    MockProducer<byte[], byte[]> mock = mock(false);
+    RuntimeException first = new RuntimeException("first");
+    try (Producer<String, String> producer = producer(mock)) {
+      Future<Producer.BatchResult> f =
+          producer
+              .batchSender()
+              .topicName(topicName)
+              .keepMetadata()
+              .send(Arrays.asList("a", "b", "c"));
+      Assert.assertFalse(f.isDone());
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertFalse(f.isDone());
+      Assert.assertTrue(mock.errorNext(first));
+      Assert.assertTrue(mock.errorNext(new RuntimeException("second")));
+      Assert.assertTrue(f.isDone());
+      Producer.BatchResult result = f.get();
+      Assert.assertEquals(3, result.count());
+      Assert.assertEquals(1, result.successCount());
+      Assert.assertEquals(2, result.failureCount());
+      Assert.assertSame(first, result.firstFailure().get());
+      Assert.assertNotNull(result.metadata().get(0));
+      Assert.assertNull(result.metadata().get(1));
+    }
+  }
+
+  @Test
+  public void testSynchronousFailure() throws ExecutionException, InterruptedException {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    Producer<String, String> producer = producer(mock);
+    producer.close();
+    // the closed producer throws exception directly
+    Producer.BatchResult result = producer.sendAll(topicName, Arrays.asList("a", "b")).get();
+    Assert.assertEquals(2, result.count());
+    Assert.assertEquals(2, result.failureCount());
+    Assert.assertTrue(result.firstFailure().isPresent());
+  }
+
+  @Test
+  public void testSynchronousFailureWithLimiter() throws ExecutionException, InterruptedException {
+    AtomicInteger count = new AtomicInteger(0);
+    MockProducer<byte[], byte[]> mock =
+        new MockProducer<byte[], byte[]>(
+            false, new ByteArraySerializer(), new ByteArraySerializer()) {
+          @Override
+          public synchronized Future<org.apache.kafka.clients.producer.RecordMetadata> send(
+              ProducerRecord<byte[], byte[]> record, Callback callback) {
+            if (count.getAndIncrement() == 0) throw new IllegalStateException("you can't pass");
+            return super.send(record, callback);
+          }
+        };
+    InFlightLimiter limiter = new InFlightLimiter(100, 1_000_000);
+    try (Producer<String, String> producer =
+        new ProducerImpl<>(
+            mock,
+            Serializer.STRING,
+            Serializer.STRING,
+            limiter,
+            Duration.ofSeconds(10),
+            null,
+            null)) {
+      Future<Producer.BatchResult> future =
+          producer.sendAll(topicName, Arrays.asList("a", "b", "c"));
+      // the permits of failed record are released
+      Assert.assertEquals(2, limiter.records());
+      // the batch is not completed until the pending records are acked
+      Assert.assertFalse(future.isDone());
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertFalse(future.isDone());
+      Assert.assertTrue(mock.completeNext());
+      Producer.BatchResult result = future.get();
+      Assert.assertEquals(3, result.count());
+      Assert.assertEquals(2, result.successCount());
+      Assert.assertEquals(1, result.failureCount());
+      Assert.assertEquals(0, limiter.records());
+      Assert.assertEquals(0, limiter.bytes());
+    }
+  }
+
+  @Test
+  public void testSender() throws ExecutionException, InterruptedException {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    try (Producer<String, String> producer = producer(mock)) {
+      Producer.RecordMetadata metadata =
+          producer
+              .sender()
+              .topicName(topicName)
+              .key("a")
+              .value("b")
+              .header(new Header("h", new byte[] {1}))
+              .send()
+              .get();
+      Assert.assertEquals(topicName, metadata.topicName());
+      Assert.assertEquals(1, mock.history().size());
+      Assert.assertEquals("h", mock.history().get(0).headers().lastHeader("h").key());
+    }
+  }
+
+  @Test
+  public void testInFlightLimit() throws InterruptedException, ExecutionException {
+    MockProducer<byte[], byte[]> mock = mock(false);
+    try (Producer<String, String> producer =
+        new ProducerImpl<>(
+            mock,
+            Serializer.STRING,
+            Serializer.STRING,
+            new InFlightLimiter(2, Long.MAX_VALUE),
+            Duration.ofMillis(100),
+            null,
+            null)) {
+      Future<Producer.RecordMetadata> f0 = producer.sender().topicName(topicName).value("a").send();
+      Future<Producer.RecordMetadata> f1 = producer.sender().topicName(topicName).value("b").send();
+      Future<Producer.RecordMetadata> f2 = producer.sender().topicName(topicName).value("c").send();
+      Assert.assertTrue(f2.isDone());
+      try {
+        f2.get();
+        Assert.fail("there are too many in-flight records");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof OharaTimeoutException);
+      }
+      Assert.assertEquals(2, mock.history().size());
+      // the permit is released by the callback
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertNotNull(f0.get());
+      Future<Producer.RecordMetadata> f3 = producer.sender().topicName(topicName).value("d").send();
+      Assert.assertEquals(3, mock.history().size());
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertNotNull(f1.get());
+      Assert.assertNotNull(f3.get());
+    }
+  }
+
+  private static Map<String, Long> counters(ProducerMetrics metrics) {
+    return metrics.counters().stream()
+        .collect(Collectors.toMap(CounterMBean::name, CounterMBean::getValue));
+  }
+
+  @Test
+  public void testMetrics() throws InterruptedException {
+    String name = CommonUtils.randomString();
+    MockProducer<byte[], byte[]> mock = mock(false);
+    InFlightLimiter limiter = new InFlightLimiter(100, Long.MAX_VALUE);
+    ProducerMetrics metrics =
+        new ProducerMetrics(
+            name, mock::metrics, limiter, null, RefreshScheduler.shared(), Duration.ofDays(1));
+    try (Producer<String, String> producer =
+        new ProducerImpl<>(
+            mock,
+            Serializer.STRING,
+            Serializer.STRING,
+            limiter,
+            Duration.ofSeconds(10),
+            metrics,
+            null)) {
+      producer.sendAll(topicName, Arrays.asList("a", "b", "c"));
+      metrics.update();
+      Assert.assertEquals(3, (long) counters(metrics).get(ProducerMetrics.IN_FLIGHT_RECORDS));
+      Assert.assertEquals(0, (long) counters(metrics).get(ProducerMetrics.SEND));
+      TimeUnit.MILLISECONDS.sleep(10);
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertTrue(mock.completeNext());
+      Assert.assertTrue(mock.errorNext(new RuntimeException("you can't pass")));
+      metrics.update();
+      Map<String, Long> values = counters(metrics);
+      Assert.assertEquals(2, (long) values.get(ProducerMetrics.SEND));
+      Assert.assertEquals(1, (long) values.get(ProducerMetrics.SEND_ERROR));
+      Assert.assertEquals(
+          Serializer.STRING.to("a").length * 2, (long) values.get(ProducerMetrics.SEND_BYTES));
+      Assert.assertEquals(0, (long) values.get(ProducerMetrics.IN_FLIGHT_RECORDS));
+      Assert.assertTrue(values.get(ProducerMetrics.ACK_LATENCY) >= 10);
+      Assert.assertTrue(values.get(ProducerMetrics.MAX_ACK_LATENCY) >= 10);
+      // MockProducer has no metrics
+      Assert.assertEquals(0, (long) values.get(ProducerMetrics.BATCH_SIZE));
+      // the counters are registered
+      Assert.assertEquals(
+          metrics.counters().size(),
+          BeanChannel.local().counterMBeans().stream()
+              .filter(c -> c.group().equals(ProducerMetrics.GROUP_PREFIX + name))
+              .count());
+    }
+    // the counters are unregistered by producer
+    Assert.assertEquals(
+        0,
+        BeanChannel.local().counterMBeans().stream()
+            .filter(c -> c.group().equals(ProducerMetrics.GROUP_PREFIX + name))
+            .count());
+  }
+
+  @Test
+  public void testAdaptiveBatching() throws InterruptedException, ExecutionException {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    AdaptiveBatcher batcher = new AdaptiveBatcher(Duration.ofSeconds(10), Duration.ZERO);
+    try (Producer<String, String> producer =
+        new ProducerImpl<>(
+            mock,
+            Serializer.STRING,
+            Serializer.STRING,
+            null,
+            Duration.ofSeconds(10),
+            null,
+            batcher)) {
+      // the window is zero so the record is sent immediately
+      Assert.assertNotNull(producer.sender().topicName(topicName).value("a").send().get());
+      batcher.adjust(Duration.ofNanos(1000));
+      Assert.assertTrue(batcher.window().toMillis() > 0);
+      Future<Producer.BatchResult> result =
+          producer.batchSender().topicName(topicName).send(Arrays.asList("b", "c"));
+      // the records are sent after the window
+      Assert.assertEquals(2, result.get().successCount());
+      Assert.assertEquals(
+          Arrays.asList("a", "b", "c"),
+          mock.history().stream()
+              .map(r -> Serializer.STRING.from(r.value()))
+              .collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testPendingRecordsAreSentByClose() {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    AdaptiveBatcher batcher = new AdaptiveBatcher(Duration.ofDays(1), Duration.ZERO);
+    Producer<String, String> producer =
+        new ProducerImpl<>(
+            mock,
+            Serializer.STRING,
+            Serializer.STRING,
+            null,
+            Duration.ofSeconds(10),
+            null,
+            batcher);
+    // grow the window to a huge value
+    IntStream.range(0, 20)
+        .forEach(
+            i -> {
+              producer.sender().topicName(topicName).value("a").send();
+              producer.flush();
+              batcher.adjust(Duration.ofNanos(1000));
+            });
+    Assert.assertTrue(batcher.window().toMinutes() > 1);
+    Assert.assertEquals(20, mock.history().size());
+    producer.sender().topicName(topicName).value("b").send();
+    Assert.assertEquals(20, mock.history().size());
+    producer.close();
+    Assert.assertEquals(21, mock.history().size());
+  }
+
+  @Test
+  public void testCommitTransaction() {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    mock.initTransactions();
+    try (Producer<String, String> producer = producer(mock)) {
+      producer.beginTransaction();
+      producer.sender().topicName(topicName).value("a").send();
+      String groupId = CommonUtils.randomString();
+      producer.sendOffsetsToTransaction(
+          Collections.singletonMap(new TopicPartition(topicName, 0), 10L), groupId);
+      Assert.assertFalse(mock.transactionCommitted());
+      producer.commitTransaction();
+      Assert.assertTrue(mock.transactionCommitted());
+      Assert.assertEquals(1, mock.history().size());
+      Assert.assertEquals(1, mock.consumerGroupOffsetsHistory().size());
+      Assert.assertEquals(
+          10,
+          mock.consumerGroupOffsetsHistory()
+              .get(0)
+              .get(groupId)
+              .get(new org.apache.kafka.common.TopicPartition(topicName, 0))
+              .offset());
+    }
+  }
+
+  @Test
+  public void testAbortTransaction() {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    mock.initTransactions();
+    try (Producer<String, String> producer = producer(mock)) {
+      producer.beginTransaction();
+      producer.sender().topicName(topicName).value("a").send();
+      producer.abortTransaction();
+      Assert.assertTrue(mock.transactionAborted());
+      // the records of aborted transaction are discarded
+      Assert.assertTrue(mock.history().isEmpty());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTransactionOnNonTransactionalProducer() {
+    try (Producer<String, String> producer = producer(mock(true))) {
+      producer.beginTransaction();
+    }
+  }
+
+  @Test
+  public void testPendingRecordsAreCommittedWithTransaction() {
+    MockProducer<byte[], byte[]> mock = mock(true);
+    mock.initTransactions();
+    AdaptiveBatcher batcher = new AdaptiveBatcher(Duration.ofDays(1), Duration.ZERO);
+    try (Producer<String, String> producer =
+        new ProducerImpl<>(
+            mock,
+            Serializer.STRING,
+            Serializer.STRING,
+            null,
+            Duration.ofSeconds(10),
+            null,
+            batcher)) {
+      producer.beginTransaction();
+      // grow the window to a huge value
+      IntStream.range(0, 20)
+          .forEach(
+              i -> {
+                producer.sender().topicName(topicName).value("a").send();
+                producer.flush();
+                batcher.adjust(Duration.ofNanos(1000));
+              });
+      Assert.assertTrue(batcher.window().toMinutes() > 1);
+      producer.sender().topicName(topicName).value("b").send();
+      producer.commitTransaction();
+      Assert.assertEquals(21, mock.history().size());
+    }
+  }
+}
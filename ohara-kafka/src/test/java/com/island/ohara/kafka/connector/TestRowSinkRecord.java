@@ -20,9 +20,13 @@ import static org.junit.Assert.assertEquals;
 
 import com.island.ohara.common.data.Cell;
 import com.island.ohara.common.data.Row;
+import com.island.ohara.common.data.RowProjection;
+import com.island.ohara.common.data.Serializer;
 import com.island.ohara.common.rule.SmallTest;
 import com.island.ohara.common.util.CommonUtils;
 import com.island.ohara.kafka.TimestampType;
+import java.util.Collections;
+import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.Test;
 
 public class TestRowSinkRecord extends SmallTest {
@@ -133,4 +137,24 @@ public class TestRowSinkRecord extends SmallTest {
     assertEquals(tsType, r.timestampType());
     assertEquals(offset, r.offset());
   }
+
+  @Test
+  public void testProjection() {
+    Row row = Row.of(Cell.of("a", 1), Cell.of("b", "abc"), Cell.of("c", 3L));
+    SinkRecord record =
+        new SinkRecord(
+            methodName(),
+            1,
+            null,
+            Serializer.ROW.to(row),
+            null,
+            null,
+            100,
+            10L,
+            org.apache.kafka.common.record.TimestampType.CREATE_TIME);
+    assertEquals(row, RowSinkRecord.of(record).row());
+    assertEquals(
+        Row.of(Cell.of("b", "abc")),
+        RowSinkRecord.of(record, RowProjection.of(Collections.singletonList("b"))).row());
+  }
 }
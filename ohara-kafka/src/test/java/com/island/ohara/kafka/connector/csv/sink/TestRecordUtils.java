@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.kafka.connector.csv.sink;
+
+import com.island.ohara.common.data.Cell;
+import com.island.ohara.common.data.Column;
+import com.island.ohara.common.data.DataType;
+import com.island.ohara.common.data.LazyRow;
+import com.island.ohara.common.data.Row;
+import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.kafka.TimestampType;
+import com.island.ohara.kafka.connector.RowSinkRecord;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRecordUtils extends SmallTest {
+
+  private static RowSinkRecord record(Row row) {
+    return RowSinkRecord.builder()
+        .topicName("topic")
+        .row(row)
+        .partition(0)
+        .offset(0)
+        .timestamp(0)
+        .timestampType(TimestampType.NO_TIMESTAMP_TYPE)
+        .build();
+  }
+
+  @Test
+  public void testDateInNonUtcTimeZone() {
+    TimeZone timeZone = TimeZone.getDefault();
+    try {
+      for (String zone : Arrays.asList("Asia/Taipei", "America/New_York")) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        List<Column> schema =
+            Collections.singletonList(
+                Column.builder().name("date").dataType(DataType.DATE).order(0).build());
+        // csv source parses the date by java.sql.Date.valueOf
+        Row row =
+            Serializer.ROW.from(
+                Serializer.ROW.to(Row.of(Cell.of("date", java.sql.Date.valueOf("2019-05-06")))));
+        Assert.assertEquals("2019-05-06", RecordUtils.toLine(schema, record(row)));
+      }
+    } finally {
+      TimeZone.setDefault(timeZone);
+    }
+  }
+
+  @Test
+  public void testMissingColumn() {
+    List<Column> schema =
+        Arrays.asList(
+            Column.builder().name("c").dataType(DataType.INT).order(2).build(),
+            Column.builder().name("b").dataType(DataType.INT).order(1).build(),
+            Column.builder().name("a").dataType(DataType.INT).order(0).build());
+    Row row = Row.of(Cell.of("a", 1), Cell.of("c", 3), Cell.of("d", 4));
+    Assert.assertEquals("1,3", RecordUtils.toLine(schema, record(row)));
+    Assert.assertEquals(
+        "1,3", RecordUtils.toLine(schema, record(LazyRow.of(Serializer.ROW.to(row)))));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testBytesColumn() {
+    RecordUtils.toLine(
+        Collections.singletonList(
+            Column.builder().name("a").dataType(DataType.BYTES).order(0).build()),
+        record(Row.of(Cell.of("a", new byte[] {1}))));
+  }
+}
@@ -24,6 +24,8 @@ import com.island.ohara.common.rule.SmallTest;
 import com.island.ohara.kafka.connector.RowSourceContext;
 import com.island.ohara.kafka.connector.RowSourceRecord;
 import java.io.*;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -179,6 +181,13 @@ public class TestCsvSourceConverter extends SmallTest {
     Assert.assertTrue(converter.convertByType("5", DataType.DOUBLE) instanceof Double);
     Assert.assertTrue(converter.convertByType("str", DataType.STRING) instanceof String);
     Assert.assertTrue(converter.convertByType("obj", DataType.OBJECT) instanceof Object);
+    Assert.assertEquals(
+        Timestamp.valueOf("2019-05-06 01:02:03.456"),
+        converter.convertByType("2019-05-06 01:02:03.456", DataType.TIMESTAMP));
+    Assert.assertEquals(
+        java.sql.Date.valueOf("2019-05-06"), converter.convertByType("2019-05-06", DataType.DATE));
+    Assert.assertEquals(
+        new BigDecimal("-123.4500"), converter.convertByType("-123.4500", DataType.DECIMAL));
   }
 
   @Test(expected = NumberFormatException.class)
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.metrics.cache;
+
+import com.island.ohara.common.annotations.Optional;
+import com.island.ohara.common.annotations.VisibleForTesting;
+import com.island.ohara.common.cache.CacheStatistics;
+import com.island.ohara.common.cache.RefreshScheduler;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.common.util.Releasable;
+import com.island.ohara.common.util.ReleaseOnce;
+import com.island.ohara.metrics.basic.Counter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Publish the {@link CacheStatistics} as {@link Counter}s. The counters of a cache are in the group
+ * "cache-{name}" so they can be found by {@link com.island.ohara.metrics.BeanChannel}. The value of
+ * counters is synced with the statistics periodically.
+ */
+public final class CacheMetrics extends ReleaseOnce {
+  public static final String GROUP_PREFIX = "cache-";
+  public static final String HIT = "hit";
+  public static final String MISS = "miss";
+  public static final String EVICTION = "eviction";
+  public static final String LOAD = "load";
+  public static final String LOAD_FAILURE = "load-failure";
+  public static final String LOAD_TIME = "load-time";
+  public static final String MAX_LOAD_TIME = "max-load-time";
+
+  /**
+   * @param index the index of {@link CacheStatistics#loadTimeDistribution()}
+   * @return the name of counter
+   */
+  public static String loadTimeDistribution(int index) {
+    List<Duration> bounds = CacheStatistics.LOAD_TIME_BOUNDS;
+    return index < bounds.size()
+        ? LOAD_TIME + "-le-" + bounds.get(index).toMillis() + "ms"
+        : LOAD_TIME + "-gt-" + bounds.get(bounds.size() - 1).toMillis() + "ms";
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** a counter and the function to get its value. */
+  private static class Binding {
+    private final Counter counter;
+    private final ToLongFunction<CacheStatistics> value;
+
+    private Binding(Counter counter, ToLongFunction<CacheStatistics> value) {
+      this.counter = counter;
+      this.value = value;
+    }
+  }
+
+  private final CacheStatistics statistics;
+  private final List<Binding> bindings;
+  private final RefreshScheduler.Task task;
+
+  private CacheMetrics(
+      CacheStatistics statistics,
+      List<Binding> bindings,
+      RefreshScheduler scheduler,
+      Duration frequency) {
+    this.statistics = statistics;
+    this.bindings = Collections.unmodifiableList(bindings);
+    this.task = scheduler.register(this::update, frequency);
+  }
+
+  /** sync the value of counters with the statistics. */
+  @VisibleForTesting
+  void update() {
+    bindings.forEach(binding -> binding.counter.setAndGet(binding.value.applyAsLong(statistics)));
+  }
+
+  /** @return the registered counters */
+  public List<Counter> counters() {
+    return Collections.unmodifiableList(
+        bindings.stream().map(binding -> binding.counter).collect(Collectors.toList()));
+  }
+
+  @Override
+  protected void doClose() {
+    task.close();
+    bindings.forEach(binding -> Releasable.close(binding.counter));
+  }
+
+  public static class Builder implements com.island.ohara.common.pattern.Builder<CacheMetrics> {
+    private String name;
+    private CacheStatistics statistics;
+    private Duration frequency = Duration.ofSeconds(1);
+    private RefreshScheduler scheduler = null;
+
+    private Builder() {}
+
+    /**
+     * @param name the name of cache. It is a part of the group of counters
+     * @return this builder
+     */
+    public Builder name(String name) {
+      this.name = CommonUtils.requireNonEmpty(name);
+      return this;
+    }
+
+    public Builder statistics(CacheStatistics statistics) {
+      this.statistics = Objects.requireNonNull(statistics);
+      return this;
+    }
+
+    /**
+     * @param frequency the time to sync the counters with statistics
+     * @return this builder
+     */
+    @Optional("default value is 1 second")
+    public Builder frequency(Duration frequency) {
+      this.frequency = Objects.requireNonNull(frequency);
+      return this;
+    }
+
+    @Optional("default is RefreshScheduler.shared()")
+    public Builder scheduler(RefreshScheduler scheduler) {
+      this.scheduler = Objects.requireNonNull(scheduler);
+      return this;
+    }
+
+    private Binding bind(
+        String counterName, String unit, String document, ToLongFunction<CacheStatistics> value) {
+      return new Binding(
+          Counter.builder()
+              .group(GROUP_PREFIX + name)
+              .name(counterName)
+              .unit(unit)
+              .document(document)
+              .value(value.applyAsLong(statistics))
+              .register(),
+          value);
+    }
+
+    /**
+     * create and register the counters.
+     *
+     * @return CacheMetrics
+     */
+    @Override
+    public CacheMetrics build() {
+      CommonUtils.requireNonEmpty(name);
+      Objects.requireNonNull(statistics);
+      Objects.requireNonNull(frequency);
+      if (scheduler == null) scheduler = RefreshScheduler.shared();
+      List<Binding> bindings = new ArrayList<>();
+      bindings.add(bind(HIT, "times", "the number of cache hit", CacheStatistics::hitCount));
+      bindings.add(bind(MISS, "times", "the number of cache miss", CacheStatistics::missCount));
+      bindings.add(
+          bind(EVICTION, "times", "the number of evicted values", CacheStatistics::evictionCount));
+      bindings.add(bind(LOAD, "times", "the number of load", CacheStatistics::loadCount));
+      bindings.add(
+          bind(
+              LOAD_FAILURE,
+              "times",
+              "the number of failed load",
+              CacheStatistics::loadFailureCount));
+      bindings.add(
+          bind(LOAD_TIME, "ms", "the total time of load", s -> s.totalLoadTime().toMillis()));
+      bindings.add(
+          bind(MAX_LOAD_TIME, "ms", "the max time of load", s -> s.maxLoadTime().toMillis()));
+      for (int i = 0; i != CacheStatistics.LOAD_TIME_BOUNDS.size() + 1; ++i) {
+        int index = i;
+        bindings.add(
+            bind(
+                loadTimeDistribution(index),
+                "times",
+                "the number of load in the range of time",
+                s -> s.loadTimeDistribution()[index]));
+      }
+      return new CacheMetrics(statistics, bindings, scheduler, frequency);
+    }
+  }
+}
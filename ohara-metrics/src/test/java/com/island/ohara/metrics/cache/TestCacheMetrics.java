@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 is-land
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.island.ohara.metrics.cache;
+
+import com.island.ohara.common.cache.Cache;
+import com.island.ohara.common.cache.CacheStatistics;
+import com.island.ohara.common.rule.SmallTest;
+import com.island.ohara.common.util.CommonUtils;
+import com.island.ohara.metrics.BeanChannel;
+import com.island.ohara.metrics.basic.CounterMBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCacheMetrics extends SmallTest {
+
+  @Test(expected = NullPointerException.class)
+  public void nullName() {
+    CacheMetrics.builder().name(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyName() {
+    CacheMetrics.builder().name("");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullStatistics() {
+    CacheMetrics.builder().statistics(null);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullFrequency() {
+    CacheMetrics.builder().frequency(null);
+  }
+
+  @Test
+  public void testLoadTimeDistribution() {
+    Assert.assertEquals("load-time-le-1ms", CacheMetrics.loadTimeDistribution(0));
+    Assert.assertEquals(
+        "load-time-gt-10000ms",
+        CacheMetrics.loadTimeDistribution(CacheStatistics.LOAD_TIME_BOUNDS.size()));
+  }
+
+  private static Map<String, Long> counters(String group) {
+    return BeanChannel.local().counterMBeans().stream()
+        .filter(counter -> counter.group().equals(group))
+        .collect(Collectors.toMap(CounterMBean::name, CounterMBean::getValue));
+  }
+
+  @Test
+  public void testPublish() {
+    String name = CommonUtils.randomString();
+    Cache<String, String> cache =
+        Cache.<String, String>builder().fetcher(Function.identity()).build();
+    try (CacheMetrics metrics =
+        CacheMetrics.builder()
+            .name(name)
+            .statistics(cache.statistics())
+            .frequency(Duration.ofDays(1))
+            .build()) {
+      Map<String, Long> counters = counters(CacheMetrics.GROUP_PREFIX + name);
+      Assert.assertEquals(CacheStatistics.LOAD_TIME_BOUNDS.size() + 8, counters.size());
+      Assert.assertEquals(metrics.counters().size(), counters.size());
+      counters.values().forEach(value -> Assert.assertEquals(0, (long) value));
+
+      cache.get("a");
+      cache.get("a");
+      cache.get("b");
+      metrics.update();
+      counters = counters(CacheMetrics.GROUP_PREFIX + name);
+      Assert.assertEquals(1, (long) counters.get(CacheMetrics.HIT));
+      Assert.assertEquals(2, (long) counters.get(CacheMetrics.MISS));
+      Assert.assertEquals(2, (long) counters.get(CacheMetrics.LOAD));
+      Assert.assertEquals(0, (long) counters.get(CacheMetrics.LOAD_FAILURE));
+      List<Long> distribution =
+          Arrays.stream(cache.statistics().loadTimeDistribution())
+              .boxed()
+              .collect(Collectors.toList());
+      Assert.assertEquals(2, distribution.stream().mapToLong(Long::longValue).sum());
+      for (int i = 0; i != distribution.size(); ++i)
+        Assert.assertEquals(
+            distribution.get(i), counters.get(CacheMetrics.loadTimeDistribution(i)));
+    }
+    // the counters are unregistered
+    Assert.assertEquals(0, counters(CacheMetrics.GROUP_PREFIX + name).size());
+  }
+
+  @Test
+  public void testAutoUpdate() {
+    String name = CommonUtils.randomString();
+    Cache<String, String> cache =
+        Cache.<String, String>builder().fetcher(Function.identity()).build();
+    try (CacheMetrics metrics =
+        CacheMetrics.builder()
+            .name(name)
+            .statistics(cache.statistics())
+            .frequency(Duration.ofMillis(100))
+            .build()) {
+      cache.get("a");
+      CommonUtils.await(
+          () -> counters(CacheMetrics.GROUP_PREFIX + name).get(CacheMetrics.LOAD) == 1,
+          Duration.ofSeconds(10));
+      Assert.assertFalse(metrics.isClosed());
+    }
+  }
+}
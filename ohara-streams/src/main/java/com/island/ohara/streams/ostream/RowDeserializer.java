@@ -16,20 +16,36 @@
 
 package com.island.ohara.streams.ostream;
 
+import com.island.ohara.common.data.LazyRow;
 import com.island.ohara.common.data.Row;
-import com.island.ohara.common.data.Serializer;
+import com.island.ohara.common.data.RowProjection;
 import java.util.Map;
 
 // Kafka use it's own serializer to initial Serdes object, we need to implement that
 public class RowDeserializer implements org.apache.kafka.common.serialization.Deserializer<Row> {
 
+  // null means all cells are read
+  private final RowProjection projection;
+
+  public RowDeserializer() {
+    this(null);
+  }
+
+  /** @param projection the projection used to deserialize the rows, or null to read all cells */
+  RowDeserializer(RowProjection projection) {
+    this.projection = projection;
+  }
+
   @Override
   public void configure(Map<String, ?> configs, boolean isKey) {}
 
   @Override
   public Row deserialize(String topic, byte[] data) {
     if (data == null) return null;
-    else return Serializer.ROW.from(data);
+    // only the selected cells are decoded
+    else if (projection != null) return projection.from(data);
+    // the cells are decoded on demand since the filter may reject the row before touching all cells
+    else return LazyRow.of(data);
   }
 
   @Override
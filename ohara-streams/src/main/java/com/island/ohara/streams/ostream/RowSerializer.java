@@ -23,13 +23,24 @@ import java.util.Map;
 // Kafka use it's own serializer to initial Serdes object, we need to implement that
 public class RowSerializer implements org.apache.kafka.common.serialization.Serializer<Row> {
 
+  private final Serializer<Row> serializer;
+
+  public RowSerializer() {
+    this(Serializer.ROW);
+  }
+
+  /** @param serializer the serializer used to convert row to bytes */
+  RowSerializer(Serializer<Row> serializer) {
+    this.serializer = serializer;
+  }
+
   @Override
   public void configure(Map<String, ?> configs, boolean isKey) {}
 
   @Override
   public byte[] serialize(String topic, Row data) {
     if (data == null) return null;
-    else return Serializer.ROW.to(data);
+    else return serializer.to(data);
   }
 
   @Override
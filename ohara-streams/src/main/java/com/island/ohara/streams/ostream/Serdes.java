@@ -17,6 +17,8 @@
 package com.island.ohara.streams.ostream;
 
 import com.island.ohara.common.data.Row;
+import com.island.ohara.common.data.RowProjection;
+import com.island.ohara.common.data.RowSchema;
 import java.util.Map;
 
 public class Serdes {
@@ -26,6 +28,30 @@ public class Serdes {
   public static Serde<Double> DOUBLE = DoubleSerde.get();
   public static final Serde<byte[]> BYTES = BytesSerde.get();
 
+  /**
+   * create a row serde which writes the rows having the same names as schema by the schema id
+   * rather than the names. see {@link RowSchema#serializer()}. NOTED: all readers of the topic must
+   * register the same schema.
+   *
+   * @param schema row schema
+   * @return row serde
+   */
+  public static Serde<Row> row(RowSchema schema) {
+    return new WrapperSerde<>(new RowSerializer(schema.serializer()), new RowDeserializer());
+  }
+
+  /**
+   * create a row serde which deserializes only the cells selected by the projection. It is useful
+   * to the streams which read a few columns of wide rows. The serialization is same to {@link
+   * #ROW}.
+   *
+   * @param projection row projection
+   * @return row serde
+   */
+  public static Serde<Row> row(RowProjection projection) {
+    return new WrapperSerde<>(new RowSerializer(), new RowDeserializer(projection));
+  }
+
   protected static class WrapperSerde<T> implements Serde<T> {
 
     private final org.apache.kafka.common.serialization.Serializer<T> serializer;